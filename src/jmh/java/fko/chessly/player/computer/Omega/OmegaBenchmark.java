@@ -0,0 +1,178 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.player.computer.Omega;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH benchmarks for the hot paths of the Omega engine. Each benchmark iterates over the
+ * fixed corpus of positions in {@link OmegaBenchmarkPositions}.
+ * <p>
+ * Run with: <code>mvn -P jmh compile exec:exec</code>
+ *
+ * @author Frank
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OmegaBenchmark {
+
+    private OmegaBoardPosition[] _positions;
+    private int[][] _legalMoves;
+
+    private final OmegaMoveGenerator _moveGenerator = new OmegaMoveGenerator();
+    private final OmegaEvaluation _evaluation = new OmegaEvaluation(new OmegaEngine(), new OmegaMoveGenerator());
+    private OmegaTranspositionTable _transpositionTable;
+
+    /**
+     * Creates the positions and pre-calculates the legal moves so the make/undo benchmark
+     * does not measure move generation.
+     */
+    @Setup
+    public void setup() {
+        _positions = OmegaBenchmarkPositions.createPositions();
+        _legalMoves = new int[_positions.length][];
+        for (int i = 0; i < _positions.length; i++) {
+            OmegaMoveList moves = _moveGenerator.getLegalMoves(_positions[i], false);
+            _legalMoves[i] = new int[moves.size()];
+            for (int j = 0; j < moves.size(); j++) {
+                _legalMoves[i][j] = moves.get(j);
+            }
+        }
+        _transpositionTable = new OmegaTranspositionTable(8);
+        for (OmegaBoardPosition p : _positions) {
+            _transpositionTable.put(p, 0, OmegaTranspositionTable.TT_EntryType.EXACT, 1, OmegaMove.NOMOVE);
+        }
+    }
+
+    /**
+     * Makes and undoes all legal moves of all positions.
+     *
+     * @return sum of zobrist keys to avoid dead code elimination
+     */
+    @Benchmark
+    public long makeUndoMove() {
+        long sum = 0;
+        for (int i = 0; i < _positions.length; i++) {
+            final OmegaBoardPosition p = _positions[i];
+            final int[] moves = _legalMoves[i];
+            for (int j = 0; j < moves.length; j++) {
+                p.makeMove(moves[j]);
+                sum += p._zobristKey;
+                p.undoMove();
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Generates all pseudo legal moves for all positions.
+     *
+     * @param bh
+     */
+    @Benchmark
+    public void pseudoLegalMoves(Blackhole bh) {
+        for (OmegaBoardPosition p : _positions) {
+            bh.consume(_moveGenerator.getPseudoLegalMoves(p, false).size());
+        }
+    }
+
+    /**
+     * Generates all legal moves for all positions.
+     *
+     * @param bh
+     */
+    @Benchmark
+    public void legalMoves(Blackhole bh) {
+        for (OmegaBoardPosition p : _positions) {
+            bh.consume(_moveGenerator.getLegalMoves(p, false).size());
+        }
+    }
+
+    /**
+     * Evaluates all positions.
+     *
+     * @param bh
+     */
+    @Benchmark
+    public void evaluate(Blackhole bh) {
+        for (OmegaBoardPosition p : _positions) {
+            bh.consume(_evaluation.evaluate(p));
+        }
+    }
+
+    /**
+     * Stores all positions in the transposition table.
+     */
+    @Benchmark
+    public void ttPut() {
+        for (OmegaBoardPosition p : _positions) {
+            _transpositionTable.put(p, 0, OmegaTranspositionTable.TT_EntryType.EXACT, 1, OmegaMove.NOMOVE);
+        }
+    }
+
+    /**
+     * Looks up all positions in the transposition table.
+     *
+     * @param bh
+     */
+    @Benchmark
+    public void ttGet(Blackhole bh) {
+        for (OmegaBoardPosition p : _positions) {
+            bh.consume(_transpositionTable.get(p));
+        }
+    }
+
+    /**
+     * Checks if the king of the side to move is attacked in all positions.
+     *
+     * @param bh
+     */
+    @Benchmark
+    public void isAttacked(Blackhole bh) {
+        for (OmegaBoardPosition p : _positions) {
+            bh.consume(p.isAttacked(p._nextPlayer.getInverseColor(),
+                    p._kingSquares[p._nextPlayer.ordinal()]));
+        }
+    }
+}
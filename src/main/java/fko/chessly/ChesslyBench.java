@@ -0,0 +1,201 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import fko.chessly.player.computer.Omega.OmegaBoardPosition;
+import fko.chessly.player.computer.Omega.OmegaEngine;
+import fko.chessly.player.computer.Omega.OmegaSearch;
+import fko.chessly.util.CmdLineParser;
+
+/**
+ * Deterministic benchmark for the Omega engine.
+ *
+ * <p>Searches a fixed list of positions to a fixed depth with <code>OmegaSearch</code> and prints
+ * the total number of nodes as a signature of the search together with the total time and the
+ * nodes per second.<br>
+ * As the node count does not depend on time it must stay the same from run to run. Any
+ * functional change to the search will very likely change the signature. The NPS number can be
+ * used to compare machines and builds.
+ *
+ * <p>Usage: <code>java fko.chessly.ChesslyBench [-d,--depth n] [-?,--help]</code>
+ */
+public class ChesslyBench {
+
+  /** default search depth for the benchmark */
+  public static final int DEFAULT_DEPTH = 4;
+
+  /** fixed list of positions - do not change or the signature is not comparable any more */
+  static final String[] BENCH_POSITIONS = {
+    "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+    "rq2r1k1/5pp1/p7/4bNP1/1p2P2P/5Q2/PP4K1/5R1R w - - 0 1",
+    "6k1/2b2p1p/ppP3p1/4p3/PP1B4/5PP1/7P/7K w - - 0 1",
+    "5r1k/p1q2pp1/1pb4p/n3R1NQ/7P/3B1P2/2P3P1/7K w - - 0 1",
+    "5r1k/1P4pp/3P1p2/4p3/1P5P/3q2P1/Q2b2K1/B3R3 w - - 0 1",
+    "3B4/8/2B5/1K6/8/8/3p4/3k4 w - - 0 1",
+    "1k1r4/1pp4p/2n5/P6R/2R1p1r1/2P2p2/1PP2B1P/4K3 b - - 0 1",
+    "6k1/p3q2p/1nr3pB/8/3Q1P2/6P1/PP5P/3R2K1 b - - 0 1",
+    "2krr3/1p4pp/p1bRpp1n/2p5/P1B1PP2/8/1PP3PP/R1K3B1 w - - 0 1",
+    "r5k1/pp2p1bp/6p1/n1p1P3/2qP1NP1/2PQB3/P5PP/R4K2 b - - 0 1",
+    "2r3k1/1qr1b1p1/p2pPn2/nppPp3/8/1PP1B2P/P1BQ1P2/5KRR w - - 0 1",
+    "1br3k1/p4p2/2p1r3/3p1b2/3Bn1p1/1P2P1Pq/P3Q1BP/2R1NRK1 b - - 0 1",
+    "8/pp3k2/2p1qp2/2P5/5P2/1R2p1rp/PP2R3/4K2Q b - - 0 1",
+    "2bq3k/2p4p/p2p4/7P/1nBPPQP1/r1p5/8/1K1R2R1 b - - 0 1",
+    "3r1rk1/1p3pnp/p3pBp1/1qPpP3/1P1P2R1/P2Q3R/6PP/6K1 w - - 0 1",
+    "2b1q3/p7/1p1p2kb/nPpN3p/P1P1P2P/6P1/5R1K/5Q2 w - - 0 1",
+    "2krr3/pppb1ppp/3b4/3q4/3P3n/2P2N1P/PP2B1P1/R1BQ1RK1 b - - 0 1",
+    "4r1k1/p1qr1p2/2pb1Bp1/1p5p/3P1n1R/3B1P2/PP3PK1/2Q4R w - - 0 1",
+    "8/4p3/8/3P3p/P2pK3/6P1/7b/3k4 w - - 0 1",
+    "3r2k1/pp4B1/6pp/PP1Np2n/2Pp1p2/3P2Pq/3QPPbP/R4RK1 b - - 0 1",
+    "r4rk1/5p2/1n4pQ/2p5/p5P1/P4N2/1qb1BP1P/R3R1K1 w - - 0 1",
+    "k7/8/PP1b2P1/K2Pn2P/4R3/8/6np/8 w - - 0 1",
+    "rnb1k2r/pp2qppp/3p1n2/2pp2B1/1bP5/2N1P3/PP2NPPP/R2QKB1R w KQkq - 0 1",
+    "8/7p/8/p4p2/5K2/Bpk3P1/4P2P/8 w - - 0 1",
+    "R7/3p3p/8/3P2P1/3k4/1p5p/1P1NKP1P/7q w - - 0 1",
+    "8/8/3k1p2/p2BnP2/4PN2/1P2K1p1/8/5b2 b - - 0 1",
+    "2r3k1/pbr1q2p/1p2pnp1/3p4/3P1P2/1P1BR3/PB1Q2PP/5RK1 w - - 0 1",
+    "3r2k1/p2r2p1/1p1B2Pp/4PQ1P/2b1p3/P3P3/7K/8 w - - 0 1",
+    "rnb1k1nr/p2p1ppp/3B4/1p1N1N1P/4P1P1/3P1Q2/PqP5/R4Kb1 w kq - 0 1",
+    "r1b1kb1r/pp1n1ppp/2q5/2p3B1/Q1B5/2p2N2/PP3PPP/R3K2R w KQkq - 0 1",
+    "2k5/2p3Rp/p1pb4/1p2p3/4P3/PN1P1P2/1P2KP1r/8 w - - 0 1",
+    "r3kb1r/3n1pp1/p6p/2pPp2q/Pp2N3/3B2PP/1PQ2P2/R3K2R w KQkq - 0 1",
+    "1k1r3r/pp2qpp1/3b1n1p/3pNQ2/2pP1P2/2N1P3/PP4PP/1K1RR3 b - - 0 1",
+    "r6k/pp4p1/2p1b3/3pP3/7q/P2B3r/1PP2Q1P/2K1R1R1 w - - 0 1",
+    "1nr5/2rbkppp/p3p3/Np6/2PRPP2/8/PKP1B1PP/3R4 b - - 0 1",
+    "2r2rk1/1p1bq3/p3p2p/3pPpp1/1P1Q4/P7/2P2PPP/2R1RBK1 b - - 0 1",
+    "3r1bk1/p4ppp/Qp2p3/8/1P1B4/Pq2P1P1/2r2P1P/R3R1K1 b - - 0 1",
+    "r1b2r1k/pp2q1pp/2p2p2/2p1n2N/4P3/1PNP2QP/1PP2RP1/5RK1 w - - 0 1",
+    "r2qrnk1/pp3ppb/3b1n1p/1Pp1p3/2P1P2N/P5P1/1B1NQPBP/R4RK1 w - - 0 1",
+    "5nk1/Q4bpp/5p2/8/P1n1PN2/q4P2/6PP/1R4K1 w - - 0 1"
+  };
+
+  /** @return the fixed list of bench positions as FEN */
+  public static List<String> getBenchPositions() {
+    return Collections.unmodifiableList(Arrays.asList(BENCH_POSITIONS));
+  }
+
+  /**
+   * Runs the benchmark and prints the result to System.out.
+   *
+   * @param args command line options
+   */
+  public static void main(final String[] args) {
+
+    CmdLineParser cp = new CmdLineParser();
+    CmdLineParser.Option depthOption = cp.addIntegerOption('d', "depth");
+    CmdLineParser.Option usage = cp.addBooleanOption('?', "help");
+
+    // Parse cmd line args
+    try {
+      cp.parse(args);
+    } catch (CmdLineParser.OptionException e) {
+      System.err.println(e.getMessage());
+      printUsage();
+      System.exit(2);
+    }
+
+    // Usage
+    if ((Boolean) cp.getOptionValue(usage)) {
+      printUsage();
+      System.exit(0);
+    }
+
+    final int depth = (Integer) cp.getOptionValue(depthOption, DEFAULT_DEPTH);
+    if (depth < 1) {
+      System.err.println("Depth must be at least 1");
+      printUsage();
+      System.exit(2);
+    }
+
+    runBench(depth);
+  }
+
+  /**
+   * Searches all bench positions to the given depth and prints the per position and the total
+   * results.
+   *
+   * @param depth fixed search depth
+   * @return total number of nodes (the bench signature)
+   */
+  public static long runBench(int depth) {
+
+    final OmegaSearch search = new OmegaSearch(new OmegaEngine());
+
+    long totalNodes = 0;
+    long totalTime = 0;
+    long totalAllocated = 0;
+
+    for (int i = 0; i < BENCH_POSITIONS.length; i++) {
+      final OmegaBoardPosition position = new OmegaBoardPosition(BENCH_POSITIONS[i]);
+
+      // every position starts with empty caches so the node count is reproducible
+      search.clearCaches();
+      search.configureMaxDepth(depth);
+
+      final long start = System.nanoTime();
+      search.startSearch(position);
+      search.waitWhileSearching();
+      final long time = System.nanoTime() - start;
+
+      final long nodes = search.getNodesVisited();
+      totalNodes += nodes;
+      totalTime += time;
+      totalAllocated += search.getAllocatedBytes();
+
+      System.out.format(
+          "Position %2d/%d: %,12d nodes %,8d ms  %s%n",
+          i + 1, BENCH_POSITIONS.length, nodes, time / 1_000_000L, BENCH_POSITIONS[i]);
+    }
+    search.releaseCacheTables();
+
+    final long totalMillis = totalTime / 1_000_000L;
+    System.out.println("===========================");
+    System.out.format("Depth           : %d%n", depth);
+    System.out.format("Total time (ms) : %d%n", totalMillis);
+    System.out.format("Nodes searched  : %d%n", totalNodes);
+    System.out.format("Nodes/second    : %d%n", (totalNodes * 1000L) / (totalMillis + 1));
+    if (totalAllocated >= 0) {
+      System.out.format("Bytes/node      : %.2f%n", (double) totalAllocated / (totalNodes + 1));
+    }
+
+    return totalNodes;
+  }
+
+  /** Usage message. */
+  private static void printUsage() {
+    System.out.println();
+    System.out.println("Usage: ChesslyBench [-d,--depth n] [-?, --help]");
+    System.out.println("Options:");
+    System.out.println();
+    System.out.println("-d search depth (default " + DEFAULT_DEPTH + ")");
+    System.out.println();
+  }
+}
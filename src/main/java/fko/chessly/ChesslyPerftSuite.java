@@ -0,0 +1,472 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import fko.chessly.game.Chessly_PERFT;
+import fko.chessly.player.computer.Omega.OmegaPERFT;
+import fko.chessly.player.computer.PulseEngine.Perft;
+import fko.chessly.util.CmdLineParser;
+
+/**
+ * Perft regression suite for all move generators of Chessly.
+ *
+ * <p>Reads EPD files with the expected number of leaf nodes per depth (<code>;D1 20 ;D2 400
+ * ...</code>) and runs every position and depth against the Omega, the Pulse and the
+ * <code>GameBoardImpl</code> move generator. Positions are run in parallel. For every mismatch the
+ * perft divide (leaf nodes per root move) of all generators is printed so the wrong move can be
+ * found. At the end the nodes per second of each generator are printed to compare their
+ * throughput.
+ *
+ * <p>Depths above the maximal depth are skipped and counted. An entry which only has counts above
+ * the maximal depth is run with its lowest depth so that no position is left out.
+ *
+ * <p>Usage: <code>java fko.chessly.ChesslyPerftSuite [-d,--depth n] [-j,--threads n] [files...]
+ * </code><br>
+ * Without files <code>src/test/java/chess_test_sets/perftsuite.epd</code> is used. The exit code
+ * is 1 if there was at least one mismatch.
+ */
+public class ChesslyPerftSuite {
+
+  /** default maximal perft depth */
+  public static final int DEFAULT_DEPTH = 4;
+
+  /** default perft suite file */
+  public static final String DEFAULT_FILE = "src/test/java/chess_test_sets/perftsuite.epd";
+
+  /** maximal depth which can be given in an EPD file (D1..D9) */
+  static final int MAX_EPD_DEPTH = 9;
+
+  /** A move generator which can do a perft divide. */
+  @FunctionalInterface
+  public interface PerftGenerator {
+    /**
+     * @param fen position
+     * @param depth perft depth >= 1
+     * @return number of leaf nodes per root move in UCI notation
+     */
+    Map<String, Long> divide(String fen, int depth);
+  }
+
+  /** all generators of Chessly by name */
+  static final Map<String, PerftGenerator> GENERATORS = new LinkedHashMap<>();
+
+  static {
+    GENERATORS.put("Omega", (fen, depth) -> new OmegaPERFT(fen).divide(depth));
+    GENERATORS.put("Pulse", Perft::divide);
+    GENERATORS.put("GameBoard", (fen, depth) -> new Chessly_PERFT(fen).divide(depth));
+  }
+
+  private final int _maxDepth;
+  private final int _threads;
+  private final Map<String, PerftGenerator> _generators;
+
+  /**
+   * @param maxDepth depths of the EPD entries above this are skipped - except the lowest depth of
+   *     an entry
+   * @param threads number of perft runs in parallel
+   */
+  public ChesslyPerftSuite(int maxDepth, int threads) {
+    this(maxDepth, threads, GENERATORS);
+  }
+
+  /**
+   * @param maxDepth depths of the EPD entries above this are skipped - except the lowest depth of
+   *     an entry
+   * @param threads number of perft runs in parallel
+   * @param generators generators to test by name
+   */
+  public ChesslyPerftSuite(int maxDepth, int threads, Map<String, PerftGenerator> generators) {
+    if (maxDepth < 1) throw new IllegalArgumentException("maxDepth must be >= 1");
+    if (threads < 1) throw new IllegalArgumentException("threads must be >= 1");
+    if (generators.isEmpty()) throw new IllegalArgumentException("no generators given");
+    _maxDepth = maxDepth;
+    _threads = threads;
+    _generators = generators;
+  }
+
+  /**
+   * Runs all depths up to the maximal depth of all entries with all generators in parallel and
+   * returns the results ordered by entry, depth and generator. Entries without a depth up to the
+   * maximal depth are run with their lowest depth.
+   *
+   * @param entries
+   * @return list of results
+   */
+  public List<PerftResult> run(List<PerftEntry> entries) {
+    final ExecutorService pool =
+        Executors.newFixedThreadPool(
+            _threads,
+            r -> {
+              Thread t = new Thread(r, "ChesslyPerftSuite");
+              t.setDaemon(true);
+              return t;
+            });
+    try {
+      final List<Future<PerftResult>> futures = new ArrayList<>();
+      for (PerftEntry entry : entries) {
+        for (int depth : getDepths(entry)) {
+          for (Map.Entry<String, PerftGenerator> g : _generators.entrySet()) {
+            futures.add(pool.submit(() -> runPerft(entry, depth, g.getKey(), g.getValue())));
+          }
+        }
+      }
+      final List<PerftResult> results = new ArrayList<>(futures.size());
+      for (Future<PerftResult> f : futures) {
+        results.add(f.get());
+      }
+      return results;
+    } catch (InterruptedException | ExecutionException e) {
+      throw new IllegalStateException("Perft suite run failed", e);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * @param entries
+   * @return number of depths with an expected count which <code>run()</code> skips
+   */
+  public int countSkipped(List<PerftEntry> entries) {
+    int skipped = 0;
+    for (PerftEntry entry : entries) {
+      for (int depth = 1; depth <= MAX_EPD_DEPTH; depth++) {
+        if (entry.expected[depth] >= 0) skipped++;
+      }
+      skipped -= getDepths(entry).size();
+    }
+    return skipped;
+  }
+
+  /** @return depths of the entry to run - the lowest one if none is up to the maximal depth */
+  List<Integer> getDepths(PerftEntry entry) {
+    final List<Integer> depths = new ArrayList<>();
+    for (int depth = 1; depth <= MAX_EPD_DEPTH; depth++) {
+      if (entry.expected[depth] < 0) continue;
+      if (depth <= _maxDepth || depths.isEmpty()) depths.add(depth);
+      if (depth >= _maxDepth) break;
+    }
+    return depths;
+  }
+
+  private static PerftResult runPerft(
+      PerftEntry entry, int depth, String name, PerftGenerator generator) {
+    final PerftResult result = new PerftResult(entry, depth, name);
+    final long start = System.nanoTime();
+    try {
+      result.divide = generator.divide(entry.fen, depth);
+      result.nodes = result.divide.values().stream().mapToLong(Long::longValue).sum();
+    } catch (RuntimeException e) {
+      // a crashing generator is reported like a wrong count
+      result.error = e.toString();
+    }
+    result.nanos = System.nanoTime() - start;
+    return result;
+  }
+
+  /**
+   * Prints mismatches with their divide breakdown, a summary and the nodes per second of each
+   * generator to System.out.
+   *
+   * @param name name of the suite
+   * @param results results as returned by <code>run()</code>
+   * @return number of mismatches
+   */
+  public static int printResults(String name, List<PerftResult> results) {
+    System.out.format("%n%s%n", name);
+
+    final Map<String, long[]> perGenerator = new LinkedHashMap<>(); // nodes, nanos, mismatches
+    int mismatches = 0;
+
+    for (int i = 0; i < results.size(); ) {
+      // results of the same entry and depth are consecutive
+      int j = i;
+      while (j < results.size()
+          && results.get(j).entry == results.get(i).entry
+          && results.get(j).depth == results.get(i).depth) {
+        j++;
+      }
+      final List<PerftResult> group = results.subList(i, j);
+      final PerftResult first = group.get(0);
+
+      boolean ok = true;
+      final StringBuilder line = new StringBuilder();
+      for (PerftResult r : group) {
+        final long[] stats = perGenerator.computeIfAbsent(r.generator, k -> new long[3]);
+        stats[0] += r.nodes;
+        stats[1] += r.nanos;
+        if (!r.isCorrect()) {
+          stats[2]++;
+          mismatches++;
+          ok = false;
+        }
+        line.append(String.format(" %s: %,d", r.generator, r.nodes));
+      }
+      System.out.format(
+          "%-30.30s D%d %-8s expected: %,14d %s%n",
+          first.entry.id, first.depth, ok ? "OK" : "MISMATCH", first.expectedNodes(), line);
+      if (!ok) printDivide(group);
+      i = j;
+    }
+
+    System.out.println("===========================");
+    System.out.format("Mismatches: %d of %d perft runs%n", mismatches, results.size());
+    for (Map.Entry<String, long[]> e : perGenerator.entrySet()) {
+      final long[] stats = e.getValue();
+      final long millis = stats[1] / 1_000_000L;
+      System.out.format(
+          "%-10s nodes: %,14d time: %,8d ms nodes/second: %,12d mismatches: %d%n",
+          e.getKey(), stats[0], millis, (stats[0] * 1000L) / (millis + 1), stats[2]);
+    }
+    return mismatches;
+  }
+
+  /** Prints the leaf nodes per root move of all generators and marks moves they disagree on. */
+  private static void printDivide(List<PerftResult> group) {
+    final PerftResult first = group.get(0);
+    System.out.format("  %s%n", first.entry.fen);
+    for (PerftResult r : group) {
+      if (r.error != null) System.out.format("  %s failed: %s%n", r.generator, r.error);
+    }
+    final Set<String> moves = new LinkedHashSet<>();
+    for (PerftResult r : group) {
+      if (r.divide != null) moves.addAll(r.divide.keySet());
+    }
+    for (String move : moves) {
+      final StringBuilder line = new StringBuilder();
+      Long previous = null;
+      boolean differs = false;
+      for (int i = 0; i < group.size(); i++) {
+        final PerftResult r = group.get(i);
+        if (r.divide == null) continue;
+        final Long nodes = r.divide.get(move);
+        line.append(String.format(" %s: %12s", r.generator, nodes == null ? "-" : nodes));
+        if (i > 0 && !Objects.equals(previous, nodes)) differs = true;
+        previous = nodes;
+      }
+      System.out.format("  %-6s%s%s%n", move, line, differs ? "  <<<" : "");
+    }
+  }
+
+  /**
+   * Reads all positions from a perft EPD file. Lines which are not EPD records are ignored.
+   *
+   * @param file
+   * @return list of perft entries
+   * @throws IOException
+   */
+  public static List<PerftEntry> readEPDFile(Path file) throws IOException {
+    final List<PerftEntry> entries = new ArrayList<>();
+    for (String line : Files.readAllLines(file, StandardCharsets.ISO_8859_1)) {
+      final PerftEntry entry = parseEPDLine(line);
+      if (entry != null) entries.add(entry);
+    }
+    return entries;
+  }
+
+  /**
+   * Parses one perft EPD line, e.g. <code>
+   * rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - ;D1 20 ;D2 400 ;id "start"</code>.
+   *
+   * @param line
+   * @return the perft entry or null if the line is not an EPD record
+   */
+  public static PerftEntry parseEPDLine(String line) {
+    final String trimmed = line.trim();
+    if (trimmed.isEmpty() || trimmed.indexOf('/') < 0) return null;
+
+    final String[] parts = trimmed.split(";");
+    final String[] tokens = parts[0].trim().split("\\s+");
+    if (tokens.length < 4) return null;
+
+    // halfmove clock and move number are optional
+    final String fen =
+        tokens[0]
+            + ' '
+            + tokens[1]
+            + ' '
+            + tokens[2]
+            + ' '
+            + tokens[3]
+            + (tokens.length >= 6 ? ' ' + tokens[4] + ' ' + tokens[5] : " 0 1");
+    final PerftEntry entry = new PerftEntry(fen);
+
+    for (int i = 1; i < parts.length; i++) {
+      final String[] op = parts[i].trim().split("\\s+", 2);
+      if (op.length < 2) continue;
+      if (op[0].equals("id")) {
+        entry.id = op[1].replace("\"", "").trim();
+      } else if (op[0].matches("D[1-9]")) {
+        try {
+          entry.expected[op[0].charAt(1) - '0'] = Long.parseLong(op[1].trim());
+        } catch (NumberFormatException e) {
+          throw new IllegalArgumentException("Invalid perft count in EPD line: " + line, e);
+        }
+      }
+    }
+    if (entry.id.isEmpty()) entry.id = fen;
+    return entry;
+  }
+
+  /**
+   * Runs the given perft EPD files.
+   *
+   * @param args command line options
+   */
+  public static void main(final String[] args) {
+
+    CmdLineParser cp = new CmdLineParser();
+    CmdLineParser.Option depthOption = cp.addIntegerOption('d', "depth");
+    CmdLineParser.Option threadsOption = cp.addIntegerOption('j', "threads");
+    CmdLineParser.Option usage = cp.addBooleanOption('?', "help");
+
+    // Parse cmd line args
+    try {
+      cp.parse(args);
+    } catch (CmdLineParser.OptionException e) {
+      System.err.println(e.getMessage());
+      printUsage();
+      System.exit(2);
+    }
+
+    // Usage
+    if ((Boolean) cp.getOptionValue(usage)) {
+      printUsage();
+      System.exit(0);
+    }
+
+    final int depth = (Integer) cp.getOptionValue(depthOption, DEFAULT_DEPTH);
+    final int threads =
+        (Integer) cp.getOptionValue(threadsOption, Runtime.getRuntime().availableProcessors());
+    if (depth < 1 || threads < 1) {
+      System.err.println("Depth and threads must be at least 1");
+      printUsage();
+      System.exit(2);
+    }
+
+    final List<String> files =
+        cp.getRemainingArgs().length == 0
+            ? Arrays.asList(DEFAULT_FILE)
+            : Arrays.asList(cp.getRemainingArgs());
+
+    final ChesslyPerftSuite suite = new ChesslyPerftSuite(depth, threads);
+    int mismatches = 0;
+    for (String file : files) {
+      try {
+        final List<PerftEntry> entries = readEPDFile(Paths.get(file));
+        mismatches += printResults(file, suite.run(entries));
+        System.out.format(
+            "Skipped: %d depths above the maximal depth %d%n", suite.countSkipped(entries), depth);
+      } catch (IOException e) {
+        System.err.println("Could not read EPD file " + file + ": " + e.getMessage());
+        mismatches++;
+      }
+    }
+    System.exit(mismatches == 0 ? 0 : 1);
+  }
+
+  /** Usage message. */
+  private static void printUsage() {
+    System.out.println();
+    System.out.println("Usage: ChesslyPerftSuite [-d,--depth n] [-j,--threads n] [-?, --help] [files...]");
+    System.out.println("Options:");
+    System.out.println();
+    System.out.println("-d maximal perft depth (default " + DEFAULT_DEPTH + ")");
+    System.out.println("   positions without a count up to it are run with their lowest depth");
+    System.out.println("-j number of perft runs in parallel (default number of cores)");
+    System.out.println();
+    System.out.println("Default file: " + DEFAULT_FILE);
+    System.out.println();
+  }
+
+  /** One position of a perft EPD file. */
+  public static final class PerftEntry {
+    /** position as FEN */
+    public final String fen;
+    /** id of the position */
+    public String id = "";
+    /** expected leaf nodes per depth - -1 if not given */
+    public final long[] expected = new long[MAX_EPD_DEPTH + 1];
+
+    PerftEntry(String fen) {
+      this.fen = fen;
+      Arrays.fill(expected, -1L);
+    }
+  }
+
+  /** Result of one perft run of one generator. */
+  public static final class PerftResult {
+    /** the position */
+    public final PerftEntry entry;
+    /** perft depth */
+    public final int depth;
+    /** name of the generator */
+    public final String generator;
+    /** leaf nodes per root move - null if the generator failed */
+    public Map<String, Long> divide = null;
+    /** number of leaf nodes */
+    public long nodes = 0;
+    /** time used in ns */
+    public long nanos = 0;
+    /** exception of a failed generator */
+    public String error = null;
+
+    PerftResult(PerftEntry entry, int depth, String generator) {
+      this.entry = entry;
+      this.depth = depth;
+      this.generator = generator;
+    }
+
+    /** @return expected number of leaf nodes */
+    public long expectedNodes() {
+      return entry.expected[depth];
+    }
+
+    /** @return true if the generator did not fail and found the expected number of nodes */
+    public boolean isCorrect() {
+      return error == null && nodes == expectedNodes();
+    }
+  }
+}
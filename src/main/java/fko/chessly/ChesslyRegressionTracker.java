@@ -0,0 +1,414 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import fko.chessly.player.computer.Omega.OmegaBoardPosition;
+import fko.chessly.player.computer.Omega.OmegaEngine;
+import fko.chessly.player.computer.Omega.OmegaSearch;
+import fko.chessly.player.computer.Omega.OmegaSearch.IterationStats;
+import fko.chessly.util.CmdLineParser;
+
+/**
+ * Time-to-depth and NPS regression tracker for the Omega engine.
+ *
+ * <p>Searches the fixed positions of <code>ChesslyBench</code> to a fixed depth and records per
+ * iteration depth the time-to-depth, the nodes, the nodes per second, the effective branching
+ * factor (nodes to depth / nodes to depth-1) and the transposition table hit rate. The results
+ * are appended to a CSV history file and compared to a stored baseline. If time-to-depth, EBF,
+ * NPS or TT hit rate of any depth are worse than the baseline by more than the threshold the
+ * exit code is 1.
+ *
+ * <p>If there is no baseline yet the current run is stored as baseline. Use <code>-u</code> to
+ * replace the baseline after an intended change. Runs headless - no Playroom or JavaFX needed.
+ *
+ * <p>Usage: <code>java fko.chessly.ChesslyRegressionTracker [-d,--depth n] [-r,--runs n]
+ * [-t,--threshold percent] [-o,--history file] [-b,--baseline file] [-l,--label text]
+ * [-u,--update] [-?,--help]</code>
+ */
+public class ChesslyRegressionTracker {
+
+  /** default search depth */
+  public static final int DEFAULT_DEPTH = 5;
+
+  /** default allowed regression in percent */
+  public static final int DEFAULT_THRESHOLD = 10;
+
+  /** default history file - every run is appended */
+  public static final String DEFAULT_HISTORY_FILE = "./var/bench_history.csv";
+
+  /** default baseline file - holds exactly one run */
+  public static final String DEFAULT_BASELINE_FILE = "./var/bench_baseline.csv";
+
+  /** header of history and baseline files */
+  static final String CSV_HEADER =
+      "timestamp,label,depth,positions,timeToDepthMs,nodes,nps,ebf,ttHitRate";
+
+  /**
+   * Runs the tracker.
+   *
+   * @param args command line options
+   */
+  public static void main(final String[] args) {
+
+    CmdLineParser cp = new CmdLineParser();
+    CmdLineParser.Option depthOption = cp.addIntegerOption('d', "depth");
+    CmdLineParser.Option runsOption = cp.addIntegerOption('r', "runs");
+    CmdLineParser.Option thresholdOption = cp.addIntegerOption('t', "threshold");
+    CmdLineParser.Option historyOption = cp.addStringOption('o', "history");
+    CmdLineParser.Option baselineOption = cp.addStringOption('b', "baseline");
+    CmdLineParser.Option labelOption = cp.addStringOption('l', "label");
+    CmdLineParser.Option updateOption = cp.addBooleanOption('u', "update");
+    CmdLineParser.Option usage = cp.addBooleanOption('?', "help");
+
+    // Parse cmd line args
+    try {
+      cp.parse(args);
+    } catch (CmdLineParser.OptionException e) {
+      System.err.println(e.getMessage());
+      printUsage();
+      System.exit(2);
+    }
+
+    // Usage
+    if ((Boolean) cp.getOptionValue(usage)) {
+      printUsage();
+      System.exit(0);
+    }
+
+    final int depth = (Integer) cp.getOptionValue(depthOption, DEFAULT_DEPTH);
+    final int runs = (Integer) cp.getOptionValue(runsOption, 1);
+    final int threshold = (Integer) cp.getOptionValue(thresholdOption, DEFAULT_THRESHOLD);
+    final Path history = Paths.get((String) cp.getOptionValue(historyOption, DEFAULT_HISTORY_FILE));
+    final Path baselineFile =
+        Paths.get((String) cp.getOptionValue(baselineOption, DEFAULT_BASELINE_FILE));
+    final String label = (String) cp.getOptionValue(labelOption, "");
+    final boolean update = (Boolean) cp.getOptionValue(updateOption);
+
+    if (depth < 1 || runs < 1 || threshold < 0) {
+      System.err.println("Depth and runs must be at least 1 and threshold must not be negative");
+      printUsage();
+      System.exit(2);
+    }
+
+    final List<DepthResult> results =
+        measure(Arrays.asList(ChesslyBench.BENCH_POSITIONS), depth, runs);
+    printResults(results);
+
+    final String timestamp = Instant.now().toString();
+    int regressions = 0;
+    try {
+      appendCSV(history, timestamp, label, results, true);
+
+      if (update || !Files.exists(baselineFile)) {
+        appendCSV(baselineFile, timestamp, label, results, false);
+        System.out.format("Baseline stored in %s%n", baselineFile);
+      } else {
+        final List<String> messages = compare(readCSV(baselineFile), results, threshold);
+        regressions = messages.size();
+        System.out.format("Compared to baseline %s (threshold %d%%)%n", baselineFile, threshold);
+        messages.forEach(System.out::println);
+        System.out.format(regressions == 0 ? "No regressions%n" : "%d regressions%n", regressions);
+      }
+    } catch (IOException e) {
+      System.err.println("Could not read or write result files: " + e.getMessage());
+      System.exit(2);
+    }
+    System.exit(regressions == 0 ? 0 : 1);
+  }
+
+  /**
+   * Searches all positions to the given depth and sums up the statistics of every iteration depth.
+   * Caches are cleared before every position so node counts are reproducible. With more than one
+   * run the best time per depth is used.
+   *
+   * @param positions FEN of the positions
+   * @param maxDepth search depth
+   * @param runs number of runs
+   * @return one result per iteration depth
+   */
+  public static List<DepthResult> measure(List<String> positions, int maxDepth, int runs) {
+    if (maxDepth < 1 || runs < 1) throw new IllegalArgumentException("maxDepth and runs must be >= 1");
+
+    final OmegaSearch search = new OmegaSearch(new OmegaEngine());
+
+    List<DepthResult> best = null;
+    for (int run = 0; run < runs; run++) {
+      final DepthResult[] results = new DepthResult[maxDepth + 1];
+      final long[] ebfNodes = new long[maxDepth + 1];
+      final long[] ebfPreviousNodes = new long[maxDepth + 1];
+      final long[] hits = new long[maxDepth + 1];
+      final long[] lookups = new long[maxDepth + 1];
+      for (int d = 1; d <= maxDepth; d++) results[d] = new DepthResult(d);
+
+      for (String fen : positions) {
+        search.clearCaches();
+        search.configureIterativeDepth(maxDepth);
+        search.startSearch(new OmegaBoardPosition(fen));
+        search.waitWhileSearching();
+
+        IterationStats previous = null;
+        for (IterationStats s : search.getIterationStats()) {
+          if (s.depth > maxDepth) break;
+          final DepthResult r = results[s.depth];
+          r.positions++;
+          r.timeNanos += s.timeNanos;
+          r.nodes += s.nodes;
+          hits[s.depth] += s.nodeCacheHits;
+          lookups[s.depth] += s.nodeCacheHits + s.nodeCacheMisses;
+          // positions which ended early (e.g. mate found) have no previous iteration
+          if (previous != null && previous.depth == s.depth - 1) {
+            ebfNodes[s.depth] += s.nodes;
+            ebfPreviousNodes[s.depth] += previous.nodes;
+          }
+          previous = s;
+        }
+      }
+
+      final List<DepthResult> list = new ArrayList<>(maxDepth);
+      for (int d = 1; d <= maxDepth; d++) {
+        if (results[d].positions == 0) continue;
+        results[d].ebf = ebfPreviousNodes[d] == 0 ? 0d : (double) ebfNodes[d] / ebfPreviousNodes[d];
+        results[d].ttHitRate = lookups[d] == 0 ? 0d : (double) hits[d] / lookups[d];
+        list.add(results[d]);
+      }
+
+      if (best == null) {
+        best = list;
+      } else {
+        for (int i = 0; i < best.size() && i < list.size(); i++) {
+          best.get(i).timeNanos = Math.min(best.get(i).timeNanos, list.get(i).timeNanos);
+        }
+      }
+    }
+    search.releaseCacheTables();
+    return best;
+  }
+
+  /**
+   * Compares the current results to the baseline.
+   *
+   * @param baseline results of the baseline
+   * @param current results of the current run
+   * @param threshold allowed regression in percent
+   * @return one message per regression - empty if there are none
+   */
+  public static List<String> compare(
+      List<DepthResult> baseline, List<DepthResult> current, int threshold) {
+    final double factor = threshold / 100d;
+    final List<String> regressions = new ArrayList<>();
+    for (DepthResult c : current) {
+      DepthResult b = null;
+      for (DepthResult r : baseline) {
+        if (r.depth == c.depth) b = r;
+      }
+      if (b == null) continue;
+
+      if (b.nodes != c.nodes || b.positions != c.positions) {
+        // not a regression but time-to-depth is not directly comparable any more
+        System.out.format(
+            "Depth %d: search changed - nodes %,d -> %,d (positions %d -> %d)%n",
+            c.depth, b.nodes, c.nodes, b.positions, c.positions);
+      }
+      if (c.getTimeToDepthMs() > b.getTimeToDepthMs() * (1 + factor)) {
+        regressions.add(
+            String.format(
+                "Depth %d: time-to-depth %,d ms -> %,d ms",
+                c.depth, b.getTimeToDepthMs(), c.getTimeToDepthMs()));
+      }
+      if (c.getNps() < b.getNps() * (1 - factor)) {
+        regressions.add(
+            String.format("Depth %d: nps %,d -> %,d", c.depth, b.getNps(), c.getNps()));
+      }
+      if (c.ebf > b.ebf * (1 + factor)) {
+        regressions.add(
+            String.format(Locale.US, "Depth %d: ebf %.2f -> %.2f", c.depth, b.ebf, c.ebf));
+      }
+      if (c.ttHitRate < b.ttHitRate * (1 - factor)) {
+        regressions.add(
+            String.format(
+                Locale.US,
+                "Depth %d: tt hit rate %.1f%% -> %.1f%%",
+                c.depth, b.ttHitRate * 100, c.ttHitRate * 100));
+      }
+    }
+    return regressions;
+  }
+
+  /**
+   * Writes the results as CSV lines. A header is written if the file is new.
+   *
+   * @param file
+   * @param timestamp
+   * @param label
+   * @param results
+   * @param append append to the file or replace it
+   * @throws IOException
+   */
+  static void appendCSV(
+      Path file, String timestamp, String label, List<DepthResult> results, boolean append)
+      throws IOException {
+    if (file.getParent() != null) Files.createDirectories(file.getParent());
+    final boolean writeHeader = !append || !Files.exists(file) || Files.size(file) == 0;
+    try (BufferedWriter writer =
+        Files.newBufferedWriter(
+            file,
+            StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE,
+            append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING)) {
+      if (writeHeader) {
+        writer.write(CSV_HEADER);
+        writer.newLine();
+      }
+      for (DepthResult r : results) {
+        writer.write(r.toCSV(timestamp, label));
+        writer.newLine();
+      }
+    }
+  }
+
+  /**
+   * Reads results from a CSV file. If the file holds several runs only the last run is returned.
+   *
+   * @param file
+   * @return results of the last run in the file
+   * @throws IOException
+   */
+  static List<DepthResult> readCSV(Path file) throws IOException {
+    final List<DepthResult> results = new ArrayList<>();
+    String lastTimestamp = null;
+    for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+      if (line.trim().isEmpty() || line.startsWith(CSV_HEADER)) continue;
+      final String timestamp = line.substring(0, line.indexOf(','));
+      if (!timestamp.equals(lastTimestamp)) {
+        results.clear();
+        lastTimestamp = timestamp;
+      }
+      results.add(DepthResult.fromCSV(line));
+    }
+    return results;
+  }
+
+  /** Prints a table of the results to System.out. */
+  private static void printResults(List<DepthResult> results) {
+    System.out.println("Depth Positions  Time-to-depth(ms)           Nodes    Nodes/second   EBF  TT hits");
+    for (DepthResult r : results) {
+      System.out.format(
+          Locale.US,
+          "%5d %9d %18d %15d %15d %5.2f %7.1f%%%n",
+          r.depth, r.positions, r.getTimeToDepthMs(), r.nodes, r.getNps(), r.ebf,
+          r.ttHitRate * 100);
+    }
+  }
+
+  /** Usage message. */
+  private static void printUsage() {
+    System.out.println();
+    System.out.println(
+        "Usage: ChesslyRegressionTracker [-d,--depth n] [-r,--runs n] [-t,--threshold percent]");
+    System.out.println(
+        "                                [-o,--history file] [-b,--baseline file] [-l,--label text]");
+    System.out.println("                                [-u,--update] [-?, --help]");
+    System.out.println("Options:");
+    System.out.println();
+    System.out.println("-d search depth (default " + DEFAULT_DEPTH + ")");
+    System.out.println("-r number of runs - best time is used (default 1)");
+    System.out.println("-t allowed regression in percent (default " + DEFAULT_THRESHOLD + ")");
+    System.out.println("-o history file (default " + DEFAULT_HISTORY_FILE + ")");
+    System.out.println("-b baseline file (default " + DEFAULT_BASELINE_FILE + ")");
+    System.out.println("-l label for this run (e.g. commit id)");
+    System.out.println("-u store this run as new baseline");
+    System.out.println();
+  }
+
+  /** Statistics of all positions for one iteration depth. */
+  public static final class DepthResult {
+    /** iteration depth */
+    public final int depth;
+    /** number of positions which finished this depth */
+    public int positions = 0;
+    /** summed time-to-depth in ns */
+    public long timeNanos = 0;
+    /** summed nodes to depth */
+    public long nodes = 0;
+    /** effective branching factor */
+    public double ebf = 0d;
+    /** transposition table hit rate 0..1 */
+    public double ttHitRate = 0d;
+
+    DepthResult(int depth) {
+      this.depth = depth;
+    }
+
+    /** @return summed time-to-depth in ms */
+    public long getTimeToDepthMs() {
+      return timeNanos / 1_000_000L;
+    }
+
+    /** @return nodes per second */
+    public long getNps() {
+      return (long) (nodes * 1e9 / (timeNanos + 1)); // in double - nodes * 10^9 overflows long
+    }
+
+    String toCSV(String timestamp, String label) {
+      return String.format(
+          Locale.US,
+          "%s,%s,%d,%d,%d,%d,%d,%.4f,%.4f",
+          timestamp, label.replace(',', ' '), depth, positions, getTimeToDepthMs(), nodes, getNps(),
+          ebf, ttHitRate);
+    }
+
+    static DepthResult fromCSV(String line) {
+      final String[] f = line.split(",", -1);
+      if (f.length != 9) throw new IllegalArgumentException("Invalid result line: " + line);
+      try {
+        final DepthResult r = new DepthResult(Integer.parseInt(f[2]));
+        r.positions = Integer.parseInt(f[3]);
+        r.timeNanos = Long.parseLong(f[4]) * 1_000_000L;
+        r.nodes = Long.parseLong(f[5]);
+        r.ebf = Double.parseDouble(f[7]);
+        r.ttHitRate = Double.parseDouble(f[8]);
+        return r;
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid result line: " + line, e);
+      }
+    }
+  }
+}
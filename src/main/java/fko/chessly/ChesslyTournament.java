@@ -0,0 +1,798 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import fko.chessly.game.Game;
+import fko.chessly.game.GameAdjudication;
+import fko.chessly.game.GameBoard;
+import fko.chessly.game.GameBoardImpl;
+import fko.chessly.game.GameColor;
+import fko.chessly.game.GameMove;
+import fko.chessly.game.IllegalMoveException;
+import fko.chessly.game.InvalidMoveException;
+import fko.chessly.game.NotationHelper;
+import fko.chessly.openingbook.PGN_Reader;
+import fko.chessly.player.ComputerPlayer;
+import fko.chessly.player.PlayerFactory;
+import fko.chessly.util.CmdLineParser;
+import fko.chessly.util.MatchStatistics;
+
+/**
+ * Headless engine vs. engine tournament runner.
+ *
+ * <p>Other than the <code>Playroom</code> which plays one game after the other with the UI
+ * attached this runner plays many <code>Game</code>s concurrently. Every game has its own players,
+ * engines and clocks. Start positions are taken from the opening suites in <code>
+ * book/Openings-PGN</code> (Nunn, Silver, Noomen) or from any PGN file. Each opening is played
+ * twice with reversed colours.
+ *
+ * <p>The result of each finished game is appended to a CSV file immediately so a long match can
+ * be watched and evaluated while it is running.
+ *
+ * <p>After each game the Elo difference with its 95% error margin, the likelihood of superiority
+ * (LOS) and the log likelihood ratio (LLR) of a sequential probability ratio test (SPRT) are
+ * printed. With <code>--sprt</code> the match stops as soon as the SPRT accepts one of the
+ * hypotheses. Games already running are finished, games not started yet are skipped.
+ *
+ * <p>Games which both engines agree to be decided are adjudicated (see {@link GameAdjudication}).
+ * Use <code>--resignMoves 0 --drawMoves 0</code> to play all games to the end.
+ *
+ * <p>Engines which ponder use a second thread while the opponent is thinking. Therefore the
+ * default number of concurrent games is half the number of cores.
+ *
+ * <p>Usage: <code>java fko.chessly.ChesslyTournament [-a,--engineA class] [-b,--engineB class]
+ * [-s,--suites nunn,silver,noomen|file] [-t,--time sec] [-l,--level depth] [-r,--rounds n]
+ * [-j,--threads n] [-o,--output file] [--sprt] [--elo0 elo] [--elo1 elo] [--alpha p] [--beta p]
+ * [--resignScore cp] [--resignMoves n] [--drawScore cp] [--drawMoves n] [--drawMoveNumber n]
+ * [-?,--help]</code>
+ */
+public class ChesslyTournament {
+
+  /** default engine for both sides */
+  public static final String DEFAULT_ENGINE = "fko.chessly.player.computer.Omega.OmegaEngine";
+
+  /** default opening suites */
+  public static final String DEFAULT_SUITES = "nunn,silver,noomen";
+
+  /** default time per side and game in seconds */
+  public static final int DEFAULT_TIME = 60;
+
+  /** default results file - every finished game is appended */
+  public static final String DEFAULT_RESULTS_FILE = "./var/tournament_results.csv";
+
+  /** default Elo difference of the SPRT null hypothesis */
+  public static final double DEFAULT_ELO0 = 0;
+
+  /** default Elo difference of the SPRT alternative hypothesis */
+  public static final double DEFAULT_ELO1 = 5;
+
+  /** default false positive probability of the SPRT */
+  public static final double DEFAULT_ALPHA = 0.05;
+
+  /** default false negative probability of the SPRT */
+  public static final double DEFAULT_BETA = 0.05;
+
+  /** header of the results file */
+  static final String CSV_HEADER = "game,opening,white,black,result,termination,plies,startFen,moves";
+
+  /** folder of the opening suites in the resources */
+  static final String SUITES_FOLDER = "/book/Openings-PGN/";
+
+  /** known opening suites by name */
+  static final Map<String, List<String>> SUITES;
+
+  static {
+    Map<String, List<String>> suites = new LinkedHashMap<>();
+    suites.put("nunn", Collections.singletonList("Nunn_Openings.pgn"));
+    suites.put("silver", Collections.singletonList("Silver_Suite.pgn"));
+    suites.put(
+        "noomen",
+        Arrays.asList("Noomen_Testsuite_2012.pgn", "Noomen_Topical_Testsuite_2012.pgn"));
+    SUITES = Collections.unmodifiableMap(suites);
+  }
+
+  private final String _engineA;
+  private final String _engineB;
+  private final String _nameA;
+  private final String _nameB;
+  private final long _timeMs;
+  private final int _threads;
+  private final Path _resultsFile;
+
+  // guards the results file and the running score
+  private final Object _resultsLock = new Object();
+  private int _finished = 0;
+  private double _scoreA = 0;
+  private MatchStatistics _statistics =
+      new MatchStatistics(DEFAULT_ELO0, DEFAULT_ELO1, DEFAULT_ALPHA, DEFAULT_BETA);
+
+  // null if games are played to the end
+  private volatile GameAdjudication _adjudication = null;
+
+  // stop the match when the SPRT has accepted a hypothesis
+  private boolean _sprtStop = false;
+  private volatile boolean _stopped = false;
+
+  /**
+   * @param engineA fully qualified class name of the first engine
+   * @param engineB fully qualified class name of the second engine
+   * @param timeMs time per side and game in ms - 0 for untimed games (engine level is used)
+   * @param threads number of games played concurrently
+   * @param resultsFile CSV file the results are appended to - null for no file
+   */
+  public ChesslyTournament(
+      String engineA, String engineB, long timeMs, int threads, Path resultsFile) {
+    if (timeMs < 0) throw new IllegalArgumentException("time must be >= 0");
+    if (threads < 1) throw new IllegalArgumentException("threads must be >= 1");
+    _engineA = engineA;
+    _engineB = engineB;
+    _nameA = getEngineName(engineA) + " (A)";
+    _nameB = getEngineName(engineB) + " (B)";
+    _timeMs = timeMs;
+    _threads = threads;
+    _resultsFile = resultsFile;
+  }
+
+  /**
+   * @param adjudication adjudication of decided games - null to play all games to the end
+   */
+  public void setAdjudication(GameAdjudication adjudication) {
+    _adjudication = adjudication;
+  }
+
+  /**
+   * Sets the hypotheses of the SPRT and lets the match stop early when one of them is accepted.
+   *
+   * @param elo0 Elo difference of engine A of the null hypothesis
+   * @param elo1 Elo difference of engine A of the alternative hypothesis - greater than elo0
+   * @param alpha false positive probability
+   * @param beta false negative probability
+   */
+  public void setSPRT(double elo0, double elo1, double alpha, double beta) {
+    synchronized (_resultsLock) {
+      _statistics = new MatchStatistics(elo0, elo1, alpha, beta);
+      _sprtStop = true;
+    }
+  }
+
+  /**
+   * Runs the tournament.
+   *
+   * @param args command line options
+   */
+  public static void main(final String[] args) {
+
+    CmdLineParser cp = new CmdLineParser();
+    CmdLineParser.Option engineAOption = cp.addStringOption('a', "engineA");
+    CmdLineParser.Option engineBOption = cp.addStringOption('b', "engineB");
+    CmdLineParser.Option suitesOption = cp.addStringOption('s', "suites");
+    CmdLineParser.Option timeOption = cp.addIntegerOption('t', "time");
+    CmdLineParser.Option levelOption = cp.addIntegerOption('l', "level");
+    CmdLineParser.Option roundsOption = cp.addIntegerOption('r', "rounds");
+    CmdLineParser.Option threadsOption = cp.addIntegerOption('j', "threads");
+    CmdLineParser.Option outputOption = cp.addStringOption('o', "output");
+    CmdLineParser.Option sprtOption = cp.addBooleanOption("sprt");
+    CmdLineParser.Option elo0Option = cp.addDoubleOption("elo0");
+    CmdLineParser.Option elo1Option = cp.addDoubleOption("elo1");
+    CmdLineParser.Option alphaOption = cp.addDoubleOption("alpha");
+    CmdLineParser.Option betaOption = cp.addDoubleOption("beta");
+    CmdLineParser.Option resignScoreOption = cp.addIntegerOption("resignScore");
+    CmdLineParser.Option resignMovesOption = cp.addIntegerOption("resignMoves");
+    CmdLineParser.Option drawScoreOption = cp.addIntegerOption("drawScore");
+    CmdLineParser.Option drawMovesOption = cp.addIntegerOption("drawMoves");
+    CmdLineParser.Option drawMoveNumberOption = cp.addIntegerOption("drawMoveNumber");
+    CmdLineParser.Option usage = cp.addBooleanOption('?', "help");
+
+    // Parse cmd line args
+    try {
+      cp.parse(args);
+    } catch (CmdLineParser.OptionException e) {
+      System.err.println(e.getMessage());
+      printUsage();
+      System.exit(2);
+    }
+
+    // Usage
+    if ((Boolean) cp.getOptionValue(usage)) {
+      printUsage();
+      System.exit(0);
+    }
+
+    final String engineA = (String) cp.getOptionValue(engineAOption, DEFAULT_ENGINE);
+    final String engineB = (String) cp.getOptionValue(engineBOption, DEFAULT_ENGINE);
+    final String suites = (String) cp.getOptionValue(suitesOption, DEFAULT_SUITES);
+    final int time = (Integer) cp.getOptionValue(timeOption, DEFAULT_TIME);
+    final int level = (Integer) cp.getOptionValue(levelOption, 0);
+    final int rounds = (Integer) cp.getOptionValue(roundsOption, 1);
+    final int threads =
+        (Integer)
+            cp.getOptionValue(
+                threadsOption, Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    final Path output = Paths.get((String) cp.getOptionValue(outputOption, DEFAULT_RESULTS_FILE));
+    final boolean sprt = (Boolean) cp.getOptionValue(sprtOption, Boolean.FALSE);
+    final double elo0 = (Double) cp.getOptionValue(elo0Option, DEFAULT_ELO0);
+    final double elo1 = (Double) cp.getOptionValue(elo1Option, DEFAULT_ELO1);
+    final double alpha = (Double) cp.getOptionValue(alphaOption, DEFAULT_ALPHA);
+    final double beta = (Double) cp.getOptionValue(betaOption, DEFAULT_BETA);
+    final int resignScore =
+        (Integer) cp.getOptionValue(resignScoreOption, GameAdjudication.DEFAULT_RESIGN_SCORE);
+    final int resignMoves =
+        (Integer) cp.getOptionValue(resignMovesOption, GameAdjudication.DEFAULT_RESIGN_MOVES);
+    final int drawScore =
+        (Integer) cp.getOptionValue(drawScoreOption, GameAdjudication.DEFAULT_DRAW_SCORE);
+    final int drawMoves =
+        (Integer) cp.getOptionValue(drawMovesOption, GameAdjudication.DEFAULT_DRAW_MOVES);
+    final int drawMoveNumber =
+        (Integer)
+            cp.getOptionValue(drawMoveNumberOption, GameAdjudication.DEFAULT_DRAW_MOVE_NUMBER);
+
+    if (time < 0 || level < 0 || rounds < 1 || threads < 1 || (time == 0 && level == 0)) {
+      System.err.println(
+          "Time and level must not be negative, rounds and threads must be at least 1 "
+              + "and untimed games need a level");
+      printUsage();
+      System.exit(2);
+    }
+    if (elo1 <= elo0 || alpha <= 0 || alpha >= 1 || beta <= 0 || beta >= 1) {
+      System.err.println("elo1 must be greater than elo0, alpha and beta must be in (0, 1)");
+      printUsage();
+      System.exit(2);
+    }
+    if (resignScore < 0 || resignMoves < 0 || drawScore < 0 || drawMoves < 0 || drawMoveNumber < 0) {
+      System.err.println("Adjudication values must not be negative");
+      printUsage();
+      System.exit(2);
+    }
+
+    // engines read their max search depth from the playroom
+    if (level > 0) {
+      Playroom.getInstance().setCurrentLevelWhite(level);
+      Playroom.getInstance().setCurrentLevelBlack(level);
+    }
+
+    final List<Opening> openings = new ArrayList<>();
+    for (String suite : suites.split(",")) {
+      try {
+        openings.addAll(readOpenings(suite.trim()));
+      } catch (IOException e) {
+        System.err.println("Could not read opening suite " + suite + ": " + e.getMessage());
+        System.exit(2);
+      }
+    }
+    if (openings.isEmpty()) {
+      System.err.println("No openings found in " + suites);
+      System.exit(2);
+    }
+
+    final ChesslyTournament tournament =
+        new ChesslyTournament(engineA, engineB, time * 1000L, threads, output);
+    if (sprt) tournament.setSPRT(elo0, elo1, alpha, beta);
+    if (resignMoves > 0 || drawMoves > 0) {
+      tournament.setAdjudication(
+          new GameAdjudication(resignScore, resignMoves, drawScore, drawMoves, drawMoveNumber));
+    }
+    System.out.format(
+        "Tournament %s vs. %s: %d openings x 2 colours x %d rounds on %d threads%n",
+        tournament._nameA, tournament._nameB, openings.size(), rounds, threads);
+
+    try {
+      final List<GameResult> results = tournament.run(openings, rounds);
+      printSummary(tournament._nameA, tournament._nameB, results, tournament.getStatistics());
+    } catch (IOException e) {
+      System.err.println("Could not write results file " + output + ": " + e.getMessage());
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Plays every opening twice with reversed colours per round. Games are played concurrently and
+   * each result is appended to the results file as soon as the game has finished.
+   *
+   * @param openings start positions
+   * @param rounds how often each opening pair is played
+   * @return results in the order of the schedule - without the games skipped after the SPRT
+   *     has stopped the match
+   * @throws IOException if the results file can't be written
+   */
+  public List<GameResult> run(List<Opening> openings, int rounds) throws IOException {
+    if (rounds < 1) throw new IllegalArgumentException("rounds must be >= 1");
+
+    if (_resultsFile != null && !Files.exists(_resultsFile)) {
+      if (_resultsFile.getParent() != null) Files.createDirectories(_resultsFile.getParent());
+      Files.write(
+          _resultsFile, Collections.singletonList(CSV_HEADER), StandardCharsets.UTF_8);
+    }
+
+    final ExecutorService pool =
+        Executors.newFixedThreadPool(
+            _threads,
+            r -> {
+              Thread t = new Thread(r, "ChesslyTournament");
+              t.setDaemon(true);
+              return t;
+            });
+    try {
+      final int total = openings.size() * 2 * rounds;
+      final List<Future<GameResult>> futures = new ArrayList<>(total);
+      int number = 0;
+      for (int round = 0; round < rounds; round++) {
+        for (Opening opening : openings) {
+          for (boolean reversed : new boolean[] {false, true}) {
+            final int gameNumber = ++number;
+            futures.add(
+                pool.submit(
+                    () -> {
+                      if (_stopped) return null;
+                      final GameResult result = playGame(gameNumber, opening, reversed);
+                      storeResult(result, total);
+                      return result;
+                    }));
+          }
+        }
+      }
+      final List<GameResult> results = new ArrayList<>(total);
+      for (Future<GameResult> f : futures) {
+        final GameResult result = f.get();
+        if (result != null) results.add(result);
+      }
+      return results;
+    } catch (InterruptedException | ExecutionException e) {
+      if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+      throw new IllegalStateException("Tournament failed", e);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Plays one game from the opening position. Engine A is white unless reversed.
+   *
+   * @param number game number
+   * @param opening start position
+   * @param reversed true if engine B plays white
+   * @return the result of the game
+   */
+  GameResult playGame(int number, Opening opening, boolean reversed) {
+    final ComputerPlayer white =
+        PlayerFactory.createComputerPlayer(
+            reversed ? _nameB : _nameA, GameColor.WHITE, reversed ? _engineB : _engineA);
+    final ComputerPlayer black =
+        PlayerFactory.createComputerPlayer(
+            reversed ? _nameA : _nameB, GameColor.BLACK, reversed ? _engineA : _engineB);
+
+    final Game game =
+        new Game(white, black, _timeMs, _timeMs, _timeMs > 0, new GameBoardImpl(opening.fen));
+    game.setMoveDelay(0);
+    game.setAdjudication(_adjudication);
+
+    // same sequence as the Playroom
+    black.startPlayer(game);
+    white.startPlayer(game);
+    game.startGameThread();
+    game.waitUntilRunning();
+    while (game.isRunningOrPaused()) {
+      if (game.isRunning()) game.waitWhileRunning();
+      if (game.isPaused()) game.waitWhileGamePaused();
+    }
+    game.waitUntilGameFinished();
+    black.stopPlayer();
+    white.stopPlayer();
+    black.joinPlayerThread();
+    white.joinPlayerThread();
+    game.waitForThreadTermination();
+
+    final GameBoard board = game.getCurBoard();
+    final String moves =
+        board
+            .getMoveHistory()
+            .stream()
+            .map(GameMove::toSimpleString)
+            .collect(Collectors.joining(" "));
+    return new GameResult(
+        number,
+        opening,
+        white.getName(),
+        black.getName(),
+        getResultString(game.getGameWinnerStatus()),
+        getTermination(game),
+        board.getMoveHistory().size(),
+        moves);
+  }
+
+  /** @return the statistics of the games finished so far */
+  public MatchStatistics getStatistics() {
+    synchronized (_resultsLock) {
+      return _statistics;
+    }
+  }
+
+  /**
+   * Appends the result to the results file, prints the running score and statistics and stops
+   * the match if the SPRT is decided.
+   */
+  private void storeResult(GameResult result, int total) throws IOException {
+    synchronized (_resultsLock) {
+      if (_resultsFile != null) {
+        try (BufferedWriter writer =
+            Files.newBufferedWriter(
+                _resultsFile,
+                StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND)) {
+          writer.write(result.toCSV());
+          writer.newLine();
+        }
+      }
+      _finished++;
+      _scoreA += result.getScore(_nameA);
+      if (!result.result.equals("*")) _statistics.add(result.getScore(_nameA));
+      System.out.format(
+          Locale.US,
+          "Game %4d (%d/%d) %-22s %s - %s %s (%s)  Score %s: %.1f/%d%n",
+          result.number,
+          _finished,
+          total,
+          result.opening.name,
+          result.white,
+          result.black,
+          result.result,
+          result.termination,
+          _nameA,
+          _scoreA,
+          _finished);
+      System.out.println("                " + _statistics);
+      if (_sprtStop
+          && !_stopped
+          && _statistics.getSPRTResult() != MatchStatistics.SPRTResult.CONTINUE) {
+        _stopped = true;
+        System.out.println(
+            "SPRT: " + getSPRTText(_statistics.getSPRTResult()) + " - stopping the match");
+      }
+    }
+  }
+
+  /**
+   * Prints wins, draws and losses of engine A, the score in percent, the Elo difference, LOS and
+   * the state of the SPRT.
+   *
+   * @param nameA name of engine A
+   * @param nameB name of engine B
+   * @param results all results
+   * @param statistics statistics of the match
+   */
+  static void printSummary(
+      String nameA, String nameB, List<GameResult> results, MatchStatistics statistics) {
+    int wins = 0, draws = 0, losses = 0, unfinished = 0;
+    for (GameResult r : results) {
+      final double score = r.getScore(nameA);
+      if (r.result.equals("*")) unfinished++;
+      else if (score == 1) wins++;
+      else if (score == 0) losses++;
+      else draws++;
+    }
+    final int played = wins + draws + losses;
+    System.out.format(
+        Locale.US,
+        "%n%s vs. %s: +%d =%d -%d (%d unfinished)  Score: %.1f/%d (%.1f%%)%n",
+        nameA,
+        nameB,
+        wins,
+        draws,
+        losses,
+        unfinished,
+        wins + draws / 2.0,
+        played,
+        played == 0 ? 0 : 100.0 * (wins + draws / 2.0) / played);
+    System.out.format(
+        Locale.US,
+        "Elo: %.1f +/- %.1f  LOS: %.1f%%  LLR: %.2f [%.2f, %.2f] %s%n",
+        statistics.getElo(),
+        statistics.getEloError(),
+        statistics.getLOS() * 100,
+        statistics.getLLR(),
+        statistics.getLowerBound(),
+        statistics.getUpperBound(),
+        getSPRTText(statistics.getSPRTResult()));
+  }
+
+  private static String getSPRTText(MatchStatistics.SPRTResult result) {
+    switch (result) {
+      case H0:
+        return "H0 accepted";
+      case H1:
+        return "H1 accepted";
+      default:
+        return "undecided";
+    }
+  }
+
+  /**
+   * Reads the start positions of an opening suite. A suite is either the name of one of the
+   * suites in <code>book/Openings-PGN</code> (nunn, silver, noomen) or the path of a PGN file.
+   *
+   * @param suite name of a suite or path of a PGN file
+   * @return the start positions of the suite
+   * @throws IOException
+   */
+  public static List<Opening> readOpenings(String suite) throws IOException {
+    final List<String> files = SUITES.get(suite.toLowerCase(Locale.ROOT));
+    if (files == null) {
+      return parseOpenings(
+          Paths.get(suite).getFileName().toString(),
+          Files.readAllLines(Paths.get(suite), StandardCharsets.ISO_8859_1));
+    }
+    final List<Opening> openings = new ArrayList<>();
+    for (String file : files) {
+      try (InputStream in = ChesslyTournament.class.getResourceAsStream(SUITES_FOLDER + file)) {
+        if (in == null) throw new IOException("Resource not found: " + SUITES_FOLDER + file);
+        final BufferedReader reader =
+            new BufferedReader(new InputStreamReader(in, StandardCharsets.ISO_8859_1));
+        openings.addAll(parseOpenings(file, reader.lines().collect(Collectors.toList())));
+      }
+    }
+    return openings;
+  }
+
+  /**
+   * Plays the moves of each PGN game to get the start position. Games with invalid moves are
+   * skipped.
+   *
+   * @param suite name of the suite
+   * @param lines lines of a PGN file
+   * @return the start positions
+   */
+  static List<Opening> parseOpenings(String suite, List<String> lines) {
+    final PGN_Reader reader = new PGN_Reader(lines);
+    if (!reader.startProcessing()) return Collections.emptyList();
+
+    final List<Opening> openings = new ArrayList<>();
+    int index = 0;
+    for (PGN_Reader.pgnGame pgnGame : reader.getGames()) {
+      index++;
+      final GameBoard board = new GameBoardImpl(NotationHelper.StandardBoardFEN);
+      try {
+        for (String san : pgnGame.getMoves()) {
+          board.makeMove(NotationHelper.createNewMoveFromSANNotation(board, san));
+        }
+      } catch (InvalidMoveException | IllegalMoveException e) {
+        System.err.println("Skipping opening " + index + " of " + suite + ": " + e.getMessage());
+        continue;
+      }
+      if (board.isGameOver()) continue;
+
+      final String eco = pgnGame.getTags().getOrDefault("ECO", "");
+      final String white = pgnGame.getTags().getOrDefault("White", "?");
+      final StringBuilder name = new StringBuilder(suite.replaceAll("\\.pgn$", ""));
+      name.append(' ').append(index);
+      if (!eco.isEmpty() && !eco.equals("?")) name.append(' ').append(eco);
+      if (!white.isEmpty() && !white.equals("?")) name.append(' ').append(white);
+      openings.add(new Opening(name.toString(), board.toFENString()));
+    }
+    return openings;
+  }
+
+  /**
+   * @param winnerStatus one of the Game.WINNER_ constants
+   * @return PGN result string
+   */
+  static String getResultString(int winnerStatus) {
+    switch (winnerStatus) {
+      case Game.WINNER_WHITE:
+        return "1-0";
+      case Game.WINNER_BLACK:
+        return "0-1";
+      case Game.WINNER_DRAW:
+        return "1/2-1/2";
+      default:
+        return "*";
+    }
+  }
+
+  private static String getTermination(Game game) {
+    switch (game.getGameOverCause()) {
+      case Game.GAMEOVER_CHECKMATE:
+        return "checkmate";
+      case Game.GAMEOVER_STALEMATE:
+        return "draw";
+      case Game.GAMEOVER_TIME_IS_UP_FOR_ONE_PLAYER:
+        return "time forfeit";
+      case Game.GAMEOVER_ONE_PLAYER_HAS_RESIGNED:
+        return "resignation";
+      case Game.GAMEOVER_DRAW_ADJUDICATED:
+        return "adjudication";
+      default:
+        return "unterminated";
+    }
+  }
+
+  private static String getEngineName(String engineClass) {
+    return engineClass.substring(engineClass.lastIndexOf('.') + 1);
+  }
+
+  private static void printUsage() {
+    System.out.println();
+    System.out.println(
+        "Usage: java fko.chessly.ChesslyTournament [-a,--engineA class] [-b,--engineB class] "
+            + "[-s,--suites list] [-t,--time sec] [-l,--level depth] [-r,--rounds n] "
+            + "[-j,--threads n] [-o,--output file] [--sprt] [--elo0 elo] [--elo1 elo] "
+            + "[--alpha p] [--beta p] [--resignScore cp] [--resignMoves n] [--drawScore cp] "
+            + "[--drawMoves n] [--drawMoveNumber n] [-?,--help]");
+    System.out.println("Options:");
+    System.out.println();
+    System.out.println("-a engine class of engine A (default " + DEFAULT_ENGINE + ")");
+    System.out.println("-b engine class of engine B (default " + DEFAULT_ENGINE + ")");
+    System.out.println(
+        "-s comma separated opening suites "
+            + SUITES.keySet()
+            + " or PGN files (default "
+            + DEFAULT_SUITES
+            + ")");
+    System.out.println("-t time per side and game in sec - 0 for untimed (default " + DEFAULT_TIME + ")");
+    System.out.println("-l max search depth of the engines - required for untimed games");
+    System.out.println("-r number of rounds - each round plays all openings with both colours");
+    System.out.println("-j number of concurrent games (default number of cores / 2)");
+    System.out.println("-o results file (default " + DEFAULT_RESULTS_FILE + ")");
+    System.out.println("--sprt stop the match as soon as the SPRT accepts a hypothesis");
+    System.out.println("--elo0 Elo difference of the SPRT null hypothesis (default " + DEFAULT_ELO0 + ")");
+    System.out.println("--elo1 Elo difference of the SPRT alternative hypothesis (default " + DEFAULT_ELO1 + ")");
+    System.out.println("--alpha false positive probability of the SPRT (default " + DEFAULT_ALPHA + ")");
+    System.out.println("--beta false negative probability of the SPRT (default " + DEFAULT_BETA + ")");
+    System.out.println("--resignScore resign when both engines report at least this score (default "
+        + GameAdjudication.DEFAULT_RESIGN_SCORE + ")");
+    System.out.println("--resignMoves ... for this number of moves - 0 to disable (default "
+        + GameAdjudication.DEFAULT_RESIGN_MOVES + ")");
+    System.out.println("--drawScore draw when both engines report at most this score (default "
+        + GameAdjudication.DEFAULT_DRAW_SCORE + ")");
+    System.out.println("--drawMoves ... for this number of moves - 0 to disable (default "
+        + GameAdjudication.DEFAULT_DRAW_MOVES + ")");
+    System.out.println("--drawMoveNumber ... after this move number (default "
+        + GameAdjudication.DEFAULT_DRAW_MOVE_NUMBER + ")");
+    System.out.println();
+  }
+
+  /** A start position of an opening suite. */
+  public static final class Opening {
+    /** name of the opening - suite, number, ECO and name if available */
+    public final String name;
+    /** start position */
+    public final String fen;
+
+    /**
+     * @param name
+     * @param fen
+     */
+    public Opening(String name, String fen) {
+      this.name = name;
+      this.fen = fen;
+    }
+
+    @Override
+    public String toString() {
+      return name + " " + fen;
+    }
+  }
+
+  /** Result of one tournament game. */
+  public static final class GameResult {
+    /** game number in the schedule */
+    public final int number;
+    /** the opening the game started from */
+    public final Opening opening;
+    /** name of white player */
+    public final String white;
+    /** name of black player */
+    public final String black;
+    /** PGN result (1-0, 0-1, 1/2-1/2, *) */
+    public final String result;
+    /** how the game ended */
+    public final String termination;
+    /** number of half moves played from the start position */
+    public final int plies;
+    /** moves in simple notation separated by spaces */
+    public final String moves;
+
+    GameResult(
+        int number,
+        Opening opening,
+        String white,
+        String black,
+        String result,
+        String termination,
+        int plies,
+        String moves) {
+      this.number = number;
+      this.opening = opening;
+      this.white = white;
+      this.black = black;
+      this.result = result;
+      this.termination = termination;
+      this.plies = plies;
+      this.moves = moves;
+    }
+
+    /**
+     * @param player name of the player
+     * @return 1, 0.5 or 0 for the player - 0 for unfinished games
+     */
+    public double getScore(String player) {
+      final boolean isWhite = player.equals(white);
+      switch (result) {
+        case "1-0":
+          return isWhite ? 1 : 0;
+        case "0-1":
+          return isWhite ? 0 : 1;
+        case "1/2-1/2":
+          return 0.5;
+        default:
+          return 0;
+      }
+    }
+
+    /** @return the result as CSV line */
+    String toCSV() {
+      return String.join(
+          ",",
+          String.valueOf(number),
+          quote(opening.name),
+          quote(white),
+          quote(black),
+          result,
+          termination,
+          String.valueOf(plies),
+          opening.fen,
+          moves);
+    }
+
+    private static String quote(String s) {
+      return '"' + s.replace("\"", "\"\"") + '"';
+    }
+  }
+}
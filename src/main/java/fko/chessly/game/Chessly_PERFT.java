@@ -26,10 +26,16 @@
  */
 package fko.chessly.game;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
+import fko.chessly.player.computer.Omega.OmegaBoardPosition;
+import fko.chessly.player.computer.Omega.OmegaMove;
+import fko.chessly.player.computer.Omega.OmegaPerftTable;
+
 /**
  * <table class="wiki_table" summary="">
  * <tr>
@@ -249,6 +255,9 @@ public final class Chessly_PERFT {
 
     private static final boolean DIVIDE=false;
 
+    // size in MB of the perft hash table used by perft()
+    private static final int PERFT_TABLE_SIZE = 32;
+
     private LinkedBlockingQueue<Job> fifo = new LinkedBlockingQueue<Job>();
     private final Object _fifoLock = new Object();
 
@@ -279,6 +288,68 @@ public final class Chessly_PERFT {
     }
 
     /**
+     * Fast perft which only counts leaf nodes. Sub tree counts are cached in a hash
+     * table keyed by the zobrist key of the position and the depth and at depth 1 the
+     * generated moves are counted without making them.<br>
+     * Use <code>testSingleThreaded()</code> to also get captures, en passant, checks
+     * and mates.
+     *
+     * @param maxDepth
+     * @return number of leaf nodes
+     */
+    public long perft(int maxDepth) {
+
+        resetCounters();
+
+        System.out.format("Testing hashed perft at depth %d%n", maxDepth);
+
+        GameBoardImpl board = new GameBoardImpl(_fen);
+        OmegaPerftTable table = new OmegaPerftTable(PERFT_TABLE_SIZE);
+
+        long startTime = System.currentTimeMillis();
+        long result = perftHashed(maxDepth, board, new OmegaBoardPosition(board), table);
+        long duration = System.currentTimeMillis() - startTime;
+
+        _nodes = result;
+        printResult(result, duration);
+        return result;
+    }
+
+    /**
+     * Perft divide - the number of leaf nodes for each legal move of the root position.
+     * Moves are given in UCI notation (e.g. e7e8q). Uses bulk counting but no hash table
+     * and prints nothing so the result can be compared to other move generators.
+     *
+     * @param depth
+     * @return map of root move to number of leaf nodes in the order of generation
+     */
+    public Map<String, Long> divide(int depth) {
+        if (depth < 1) throw new IllegalArgumentException("depth must be >= 1");
+
+        resetCounters();
+
+        GameBoardImpl board = new GameBoardImpl(_fen);
+        Map<String, Long> result = new LinkedHashMap<>();
+
+        List<GameMove> moves = board.generateMoves();
+        for (GameMove move : moves) {
+            board.makeMove(move);
+            long nodes = perftHashed(depth - 1, board, null, null);
+            board.undoMove();
+            String key = move.toSimpleString();
+            if (move.getPromotedTo() != null) {
+                key += move.getPromotedTo().getType().toChar().toLowerCase();
+            }
+            result.put(key, nodes);
+            _nodes += nodes;
+        }
+        return result;
+    }
+
+    /**
+     * Perft with statistics (captures, en passant, checks and mates). This makes every
+     * leaf move and is therefore much slower than <code>perft()</code>.
+     *
      * @param maxDepth
      */
     public void testSingleThreaded(int maxDepth) {
@@ -384,6 +455,39 @@ public final class Chessly_PERFT {
         return totalNodes;
     }
 
+    /**
+     * Counts leaf nodes only. If table is null no hashing is done.<br>
+     * The position follows the moves made on the board so that its zobrist key is
+     * updated incrementally. It may be null if table is null.
+     */
+    private long perftHashed(int depthleft, GameBoard board, OmegaBoardPosition position, OmegaPerftTable table) {
+
+        if (depthleft == 0) return 1;
+
+        // bulk counting - no need to make the leaf moves
+        if (depthleft == 1) return board.generateMoves().size();
+
+        long key = 0L;
+        if (table != null) {
+            key = position.getZobristKey();
+            final long cached = table.get(key, depthleft);
+            if (cached >= 0) return cached;
+        }
+
+        long totalNodes = 0L;
+        List<GameMove> moves = board.generateMoves();
+        for (GameMove move : moves) {
+            board.makeMove(move);
+            if (position != null) position.makeMove(OmegaMove.convertFromGameMove(move));
+            totalNodes += perftHashed(depthleft - 1, board, position, table);
+            if (position != null) position.undoMove();
+            board.undoMove();
+        }
+
+        if (table != null) table.put(key, depthleft, totalNodes);
+        return totalNodes;
+    }
+
 
     public class Worker extends Thread {
         long result = 0;
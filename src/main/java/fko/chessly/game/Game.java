@@ -53,7 +53,8 @@ import fko.chessly.util.StatusController;
  * <ol>
  * <li>There are no more moves at all OR </li>
  * <li>Time is up for at least one player OR </li>
- * <li>One User has resigned the game </li>
+ * <li>One User has resigned the game OR </li>
+ * <li>The game has been adjudicated (see {@link GameAdjudication})</li>
  * </ol>
  * When a game is <b>OVER</b> there must be a <b>WINNER</b> or it is a <b>DRAW</b>.
  * <p>
@@ -92,6 +93,12 @@ public class Game extends ModelObservable implements Runnable, Observer {
     private boolean _isTimedGame = false;
     private GameMove _illegalMove = null;
 
+    // pause after each move in ms to let the UI catch up
+    private volatile long _moveDelay = 100;
+
+    // adjudication of decided games - null if games are played to the end
+    private volatile GameAdjudication _adjudication = null;
+
     // saves each board after each move - used for "take back move"
     private final List<GameBoard> _boardHistory = new ArrayList<GameBoard>(256);
 
@@ -111,6 +118,23 @@ public class Game extends ModelObservable implements Runnable, Observer {
      * @throws IllegalArgumentException when invalid arguments has been used.
      */
     public Game(Player whitePlayer, Player blackPlayer, long timeWhite, long timeBlack, boolean timedGame) {
+        this(whitePlayer, blackPlayer, timeWhite, timeBlack, timedGame, new GameBoardImpl());
+    }
+
+    /**
+     * Creates a new game object with given players which starts from the given position
+     * (e.g. the end of an opening line).
+     * @param whitePlayer
+     * @param blackPlayer
+     * @param timeWhite in milliseconds
+     * @param timeBlack in milliseconds
+     * @param timedGame true if game should have time control
+     * @param startBoard position to start the game from - will be copied
+     *
+     * @throws IllegalArgumentException when invalid arguments has been used.
+     */
+    public Game(Player whitePlayer, Player blackPlayer, long timeWhite, long timeBlack, boolean timedGame,
+            GameBoard startBoard) {
 
         // Assert parameter
         if (blackPlayer==null || whitePlayer == null) {
@@ -135,7 +159,7 @@ public class Game extends ModelObservable implements Runnable, Observer {
             _whiteClock.setAlarm(_whiteTime,this);
         }
 
-        _curBoard = new GameBoardImpl();
+        _curBoard = new GameBoardImpl(startBoard);
         _boardHistory.add(new GameBoardImpl(_curBoard));
 
     } // end constructor
@@ -406,6 +430,17 @@ public class Game extends ModelObservable implements Runnable, Observer {
                     } finally {
                         _gameStatus.readLock().lock();
                     }
+                } else if (_adjudication != null) {
+                    // -- check if the engines agree that the game is decided --
+                    int winner = _adjudication.adjudicate(_curBoard);
+                    if (winner != WINNER_NONE_YET) {
+                        _gameStatus.readLock().unlock();
+                        try {
+                            gameOverAdjudicated(winner);
+                        } finally {
+                            _gameStatus.readLock().lock();
+                        }
+                    }
                 }
             }
         } finally {
@@ -416,10 +451,12 @@ public class Game extends ModelObservable implements Runnable, Observer {
                 SIG_GAME_MOVE_MADE));
 
         // Sleep a short while to let the UI catch up (book moves are too fast otherwise)
-        try {
-            Thread.sleep(100);
-        } catch (InterruptedException e) {
-            // ignore
+        if (_moveDelay > 0) {
+            try {
+                Thread.sleep(_moveDelay);
+            } catch (InterruptedException e) {
+                // ignore
+            }
         }
 
     }
@@ -522,6 +559,29 @@ public class Game extends ModelObservable implements Runnable, Observer {
                 SIG_GAME_OVER));
     }
 
+    /**
+     * Is called when the adjudication has decided the game
+     * @param winner one of WINNER_WHITE, WINNER_BLACK or WINNER_DRAW
+     */
+    private void gameOverAdjudicated(int winner) {
+        _gameStatus.writeLock().lock();
+        try {
+            if (winner == WINNER_DRAW) {
+                _gameOverCause.setStatus(Game.GAMEOVER_DRAW_ADJUDICATED);
+            } else {
+                _gameOverCause.setStatus(Game.GAMEOVER_ONE_PLAYER_HAS_RESIGNED);
+            }
+            _gameWinner.setStatus(winner);
+            _gameStatus.setStatus(Game.GAME_OVER);
+            // -- model has changed --
+            setChanged();
+        } finally {
+            _gameStatus.writeLock().unlock();
+        }
+        notifyObservers(new ModelEvent("GAME game over: adjudicated",
+                SIG_GAME_OVER));
+    }
+
     /**
      * Game is an Observer to Clocks (Observable) and this implements the Observer interface.
      * It is only called when the time is up meaning the clock reached the alarm.
@@ -777,6 +837,20 @@ public class Game extends ModelObservable implements Runnable, Observer {
         _gameStatus.waitWhileInState(Game.GAME_PAUSED);
     }
 
+    /**
+     * Lock free check point for search hot paths. Returns immediately when the game is not
+     * paused and otherwise waits until the game is not paused any more.<br>
+     * Searches are meant to poll this every N nodes.
+     *
+     * @return true if the game is still running or paused, false if it has been stopped or is over
+     * @see StatusController#checkpoint(int)
+     */
+    public boolean pauseCheckpoint() {
+        _gameStatus.checkpoint(Game.GAME_PAUSED);
+        final int status = _gameStatus.getStatus();
+        return status == GAME_RUNNING || status == GAME_PAUSED;
+    }
+
     /**
      * Waits while game is in running
      * @see StatusController
@@ -892,6 +966,32 @@ public class Game extends ModelObservable implements Runnable, Observer {
         return _whiteClock;
     }
 
+    /**
+     * Sets the pause after each move which lets the UI catch up.
+     * Headless games (e.g. tournaments) can set this to 0.
+     * @param moveDelay in milliseconds - default is 100
+     */
+    public void setMoveDelay(long moveDelay) {
+        if (moveDelay < 0) throw new IllegalArgumentException("moveDelay must be >= 0");
+        _moveDelay = moveDelay;
+    }
+
+    /**
+     * Sets the adjudication which ends games early when the engines' move values show
+     * that the game is decided.
+     * @param adjudication null to play all games to the end (default)
+     */
+    public void setAdjudication(GameAdjudication adjudication) {
+        _adjudication = adjudication;
+    }
+
+    /**
+     * @return the adjudication or null if games are played to the end
+     */
+    public GameAdjudication getAdjudication() {
+        return _adjudication;
+    }
+
     /**
      * Returns if the current game is a timed game.
      * @return true if setting for timed game is true
@@ -1004,6 +1104,11 @@ public class Game extends ModelObservable implements Runnable, Observer {
      * Query the game over reason with get_gameOverCause()
      */
     public static final int GAMEOVER_ONE_PLAYER_HAS_RESIGNED = 4;
+    /**
+     * Reason for status GAME_OVER: The game has been adjudicated as a draw.
+     * Query the game over reason with get_gameOverCause()
+     */
+    public static final int GAMEOVER_DRAW_ADJUDICATED = 5;
 
     /**
      * If game is GAME_OVER we must have a winner or a draw.
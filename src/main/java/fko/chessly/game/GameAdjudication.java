@@ -0,0 +1,171 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.game;
+
+/**
+ * <p>Adjudication of engine vs. engine games.</p>
+ *
+ * <p>Uses the values the engines store in their moves (<code>GameMove.setValue()</code> - from
+ * the view of the side which made the move) to end games early which are clearly decided:</p>
+ * <ol>
+ * <li><b>Resign:</b> for the last <code>resignMoves</code> moves of each side the winning side reported
+ * at least <code>resignScore</code> and the losing side at most <code>-resignScore</code>.</li>
+ * <li><b>Draw:</b> after full move <code>drawMoveNumber</code> both sides reported a score within
+ * <code>[-drawScore, drawScore]</code> for their last <code>drawMoves</code> moves.</li>
+ * </ol>
+ * <p>Moves without a value (e.g. book moves or moves of human players) interrupt both rules.</p>
+ *
+ * @author Frank Kopp
+ */
+public class GameAdjudication {
+
+    /** default score for resign adjudication */
+    public static final int DEFAULT_RESIGN_SCORE = 1000;
+    /** default number of moves per side for resign adjudication */
+    public static final int DEFAULT_RESIGN_MOVES = 3;
+    /** default score for draw adjudication */
+    public static final int DEFAULT_DRAW_SCORE = 10;
+    /** default number of moves per side for draw adjudication */
+    public static final int DEFAULT_DRAW_MOVES = 8;
+    /** default full move number after which draw adjudication starts */
+    public static final int DEFAULT_DRAW_MOVE_NUMBER = 40;
+
+    private final int _resignScore;
+    private final int _resignMoves;
+    private final int _drawScore;
+    private final int _drawMoves;
+    private final int _drawMoveNumber;
+
+    /**
+     * Creates an adjudication with the default values.
+     */
+    public GameAdjudication() {
+        this(DEFAULT_RESIGN_SCORE, DEFAULT_RESIGN_MOVES,
+                DEFAULT_DRAW_SCORE, DEFAULT_DRAW_MOVES, DEFAULT_DRAW_MOVE_NUMBER);
+    }
+
+    /**
+     * @param resignScore minimal absolute score for resign adjudication
+     * @param resignMoves number of moves per side for resign adjudication - 0 to disable
+     * @param drawScore maximal absolute score for draw adjudication
+     * @param drawMoves number of moves per side for draw adjudication - 0 to disable
+     * @param drawMoveNumber full move number after which draw adjudication starts
+     *
+     * @throws IllegalArgumentException when a parameter is negative
+     */
+    public GameAdjudication(int resignScore, int resignMoves, int drawScore, int drawMoves, int drawMoveNumber) {
+        if (resignScore < 0 || resignMoves < 0 || drawScore < 0 || drawMoves < 0 || drawMoveNumber < 0) {
+            throw new IllegalArgumentException("Adjudication parameters must not be negative");
+        }
+        _resignScore = resignScore;
+        _resignMoves = resignMoves;
+        _drawScore = drawScore;
+        _drawMoves = drawMoves;
+        _drawMoveNumber = drawMoveNumber;
+    }
+
+    /**
+     * Checks if the game on the board can be adjudicated.
+     *
+     * @param board the board after the last move
+     * @return <code>Game.WINNER_WHITE</code>, <code>Game.WINNER_BLACK</code>, <code>Game.WINNER_DRAW</code> or
+     * <code>Game.WINNER_NONE_YET</code> if the game can't be adjudicated
+     */
+    public int adjudicate(GameBoard board) {
+        final GameMoveList history = board.getMoveHistory();
+
+        if (_resignMoves > 0 && isStreak(history, 2 * _resignMoves, _resignScore, Integer.MAX_VALUE)) {
+            return Game.WINNER_WHITE;
+        }
+        if (_resignMoves > 0 && isStreak(history, 2 * _resignMoves, Integer.MIN_VALUE + 1, -_resignScore)) {
+            return Game.WINNER_BLACK;
+        }
+        if (_drawMoves > 0
+                && board.getLastHalfMoveNumber() / 2 + 1 > _drawMoveNumber
+                && isStreak(history, 2 * _drawMoves, -_drawScore, _drawScore)) {
+            return Game.WINNER_DRAW;
+        }
+        return Game.WINNER_NONE_YET;
+    }
+
+    /**
+     * Checks if the values of the last plies - from white's view - are all within [min, max].
+     */
+    private static boolean isStreak(GameMoveList history, int plies, int min, int max) {
+        if (history.size() < plies) return false;
+        for (int i = history.size() - 1; i >= history.size() - plies; i--) {
+            final GameMove move = history.get(i);
+            final int value = move.getValue();
+            if (value == GameMove.VALUE_UNKNOWN) return false;
+            final int whiteValue = move.getMovedPiece().getColor().isWhite() ? value : -value;
+            if (whiteValue < min || whiteValue > max) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return minimal absolute score for resign adjudication
+     */
+    public int getResignScore() {
+        return _resignScore;
+    }
+
+    /**
+     * @return number of moves per side for resign adjudication
+     */
+    public int getResignMoves() {
+        return _resignMoves;
+    }
+
+    /**
+     * @return maximal absolute score for draw adjudication
+     */
+    public int getDrawScore() {
+        return _drawScore;
+    }
+
+    /**
+     * @return number of moves per side for draw adjudication
+     */
+    public int getDrawMoves() {
+        return _drawMoves;
+    }
+
+    /**
+     * @return full move number after which draw adjudication starts
+     */
+    public int getDrawMoveNumber() {
+        return _drawMoveNumber;
+    }
+
+    @Override
+    public String toString() {
+        return "resign " + _resignScore + "/" + _resignMoves
+                + " draw " + _drawScore + "/" + _drawMoves + " after move " + _drawMoveNumber;
+    }
+}
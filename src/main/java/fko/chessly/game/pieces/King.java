@@ -78,7 +78,9 @@ public class King extends PieceAbstractImpl implements GamePiece, Serializable {
             if (board.canMoveTo(fromPos, newPos)) {
                 final GamePiece toField = board.getPiece(newPos);
                 if (!capturingOnly || (capturingOnly && toField != null)) {
-                    allMoves.add(new GameMoveImpl(fromPos, newPos, this));
+                    final GameMoveImpl m = new GameMoveImpl(fromPos, newPos, this);
+                    m.setCapturedPiece(toField);
+                    allMoves.add(m);
                 }
             }
         }
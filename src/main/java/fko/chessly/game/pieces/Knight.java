@@ -85,6 +85,7 @@ public class Knight extends PieceAbstractImpl implements GamePiece, Serializable
                 final GamePiece toField = board.getPiece(newPos);
                 if (!capturingOnly || (capturingOnly && toField != null)) {
                     GameMove m = new GameMoveImpl(pos, newPos, this);
+                    m.setCapturedPiece(toField);
                     allMoves.add(m);
                 }
             }
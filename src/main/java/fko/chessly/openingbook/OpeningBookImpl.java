@@ -37,22 +37,24 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
 import java.nio.channels.ClosedByInterruptException;
 import java.nio.charset.Charset;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import fko.chessly.Chessly;
@@ -86,6 +88,9 @@ public class OpeningBookImpl implements OpeningBook, Serializable {
 	 */
 	private Map<String, OpeningBook_Entry> bookMap = Collections.synchronizedMap(new HashMap<String, OpeningBook_Entry>(10000));
 
+	// memory mapped book file in POLYGLOT mode - bookMap is not used then
+	private transient PolyglotBook _polyglotBook = null;
+
 	private ObservableEngine _engine;
 	private String _path;
 	private boolean _isInitialized = false;
@@ -146,6 +151,8 @@ public class OpeningBookImpl implements OpeningBook, Serializable {
 	@Override
 	public GameMove getBookMove(String fen) {
 
+		if (_polyglotBook != null) return _polyglotBook.getBookMove(fen);
+
 		GameMove move = null;
 
 		if (bookMap.containsKey(fen)) {
@@ -219,6 +226,12 @@ public class OpeningBookImpl implements OpeningBook, Serializable {
 			printInfo(String.format("Opening Book: %s%n", pathString));
 		}
 		
+		// Polyglot books are used directly and need no cache
+		if (_config._mode == Mode.POLYGLOT) {
+			readBookfromPolyglotFile(pathString);
+			return;
+		}
+
 		if (tryFromCache(pathString)) return; 
 
 		// NON CACHE
@@ -256,30 +269,39 @@ public class OpeningBookImpl implements OpeningBook, Serializable {
 	}
 
 	/**
-	 * Reads all lines from a file into list and returns it as a List<String>.
+	 * Opens a Polyglot book file. Book files in the JAR file can't be memory mapped and are
+	 * copied to the cache folder first.
 	 *
-	 * @param bookFileInputStream
-	 * @return List<String> allLines
+	 * @param pathString
 	 */
-	private List<String> readAllLinesFromFile(InputStream bookFileInputStream) {
-
-		long start = System.currentTimeMillis();
-		Charset charset = Charset.forName("ISO-8859-1");
-		List<String> lines = null;
-		
-		if (_config.VERBOSE)
-			printInfo(String.format("Reading Opening Book...%n"));
-		
-		InputStreamReader isr = new InputStreamReader(bookFileInputStream, charset);
-		BufferedReader br = new BufferedReader(isr);
-		lines = br.lines().collect(Collectors.toList());
-		
-		long time = System.currentTimeMillis() - start;
-
-		if (_config.VERBOSE)
-			printInfo(String.format("Finished reading %d lines. (%f sec)%n", lines.size(), (time / 1000f)));
-
-		return lines;
+	private void readBookfromPolyglotFile(String pathString) {
+		try {
+			Path bookFile;
+			URL url = Chessly.class.getResource(pathString);
+			if (url != null && "file".equals(url.getProtocol())) {
+				bookFile = Paths.get(url.toURI());
+			} else if (url != null) {
+				bookFile = createCacheFileName(pathString, PolyglotBook.FILE_EXTENSION);
+				if (!Files.exists(bookFile)) {
+					Files.createDirectories(bookFile.getParent());
+					try (InputStream in = url.openStream()) {
+						Files.copy(in, bookFile);
+					}
+				}
+			} else if (Files.exists(Paths.get(pathString))) {
+				bookFile = Paths.get(pathString);
+			} else {
+				Chessly.criticalError("Book File not found: " + pathString);
+				return;
+			}
+			_polyglotBook = PolyglotBook.open(bookFile);
+			if (_config.VERBOSE) {
+				printInfo(String.format("Opened Polyglot Book with %d entries: %s%n",
+						_polyglotBook.getNumberOfEntries(), bookFile));
+			}
+		} catch (IOException | URISyntaxException e) {
+			Chessly.criticalError("Could not open Polyglot book: " + pathString + " " + e.getMessage());
+		}
 	}
 
 	/**
@@ -310,34 +332,22 @@ public class OpeningBookImpl implements OpeningBook, Serializable {
 
 	private void processBookfromPGNFile(InputStream bookFileInputStream) {
 
-		List<String> lines = readAllLinesFromFile(bookFileInputStream);
-
-		PGN_Reader pgnReader = new PGN_Reader(lines);
-
-		if (!pgnReader.startProcessing()) {
-			Chessly.criticalError("Could not process lines from PGN file: " + FileSystems.getDefault().getPath(_config._folderPath, _config._fileNamePlain));
-			return;
-		}
-
-		List<PGN_Reader.pgnGame> gameList = pgnReader.getGames();
-
-		// give the gc a chance to delete the lines
-		lines = null;
-		pgnReader = null;
-
 		long start = System.currentTimeMillis();
 		if (_config.VERBOSE) {
 			printInfo(String.format("Creating internal book...%n"));
 		}
 
 		synchronized (_counterLock) { _counter = 0; }
+		// games are read one by one so that the file does not need to fit into memory
 		// parallel lambda expression - very fast and cool - needs some synchronizing though
-		gameList.parallelStream().forEach(game -> {
-			//gameList.stream().forEach(game -> {
-			String moves = game.getMoves().toString();
-			moves = moves.replaceAll("[\\[\\],]", "");
-			processLine(moves);
-		});
+		try (Stream<PGN_Reader.pgnGame> games = new PGN_StreamReader(bookFileInputStream).stream()) {
+			games.parallel().forEach(game -> {
+				processLine(String.join(" ", game.getMoves()));
+			});
+		} catch (UncheckedIOException e) {
+			Chessly.criticalError("Could not process lines from PGN file: " + _path + " " + e.getCause());
+			return;
+		}
 
 		long time = System.currentTimeMillis() - start;
 		if (_config.VERBOSE) {
@@ -724,14 +734,34 @@ public class OpeningBookImpl implements OpeningBook, Serializable {
 
 	}
 
+	/**
+	 * Returns the name of a file in the cache folder for this book (e.g. for other formats
+	 * of the same book).
+	 *
+	 * @param extension file extension including the dot
+	 * @return path of the cache file
+	 */
+	public Path getCacheFile(String extension) {
+		return createCacheFileName(_path, extension);
+	}
+
 	/**
 	 * @param pathString
 	 * @return
 	 */
 	private Path createCacheFileName(String pathString) {
+		return createCacheFileName(pathString, ".ser");
+	}
+
+	/**
+	 * @param pathString
+	 * @param extension
+	 * @return
+	 */
+	private Path createCacheFileName(String pathString, String extension) {
 		// remove folder structure and replace by "-" in filename
 		pathString = pathString.substring(0,1) + pathString.substring(1).replaceAll("/", "-");
-		pathString = _config._serPath + pathString + ".ser";
+		pathString = _config._serPath + pathString + extension;
 		Path cacheFile = FileSystems.getDefault().getPath(pathString);
 		return cacheFile;
 	}
@@ -751,7 +781,8 @@ public class OpeningBookImpl implements OpeningBook, Serializable {
 	 * Different possible mode for book files. BIN - will be serialization of
 	 * java SAN - uses a line by line listing of move lists in SAN notation PNG
 	 * - uses a file of at least one PNG game SIMLE - uses a line with full
-	 * from-to description without - or ' '
+	 * from-to description without - or ' ' POLYGLOT - a binary book in the
+	 * Polyglot format (.bin, see PolyglotBook)
 	 *
 	 * @author fkopp
 	 */
@@ -759,7 +790,8 @@ public class OpeningBookImpl implements OpeningBook, Serializable {
 		SER,
 		SAN,
 		PGN,
-		SIMPLE
+		SIMPLE,
+		POLYGLOT
 	}
 
 	/**
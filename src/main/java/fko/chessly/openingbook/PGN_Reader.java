@@ -26,7 +26,9 @@ package fko.chessly.openingbook;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -78,6 +80,11 @@ public class PGN_Reader {
   /** If set to true this object will produce info output to System.out */
   public static boolean VERBOSE = false;
 
+  // complex because of possible escaping characters like "
+  private static final Pattern TAG_PAIR =
+      Pattern.compile(
+          "\\[(\\w+) +\"(([^\\\\\"]+|\\\\([btnfr\"'\\\\]|[0-3]?[0-7]{1,2}|u[0-9a-fA-F]{4}))*)\"\\]");
+
   // holds the original input lines
   private final List<String> _lines;
 
@@ -146,7 +153,7 @@ public class PGN_Reader {
     // loop over all lines - calls subroutine for each game
     int currentLine = 0;
     int c = 0;
-    System.out.format("%n");
+    if (VERBOSE) System.out.format("%n");
     while (currentLine < _lines.size()) {
       currentLine = processOneGame(currentLine);
       if (VERBOSE && ++c % 1000 == 0) {
@@ -190,13 +197,13 @@ public class PGN_Reader {
 
       // tag pair section
       if (line.matches("^\\[\\w+ +\".*\"\\]")) { // handle TAG Pair line
-        // TODO: ignore Tag Pairs for now
-        // currentLine = handleTagPairSection(currentLine, tmpGame);
+        currentLine = handleTagPairSection(currentLine, tmpGame);
         continue;
       }
 
       // move text section
-      if (line.matches("^([1-9]|[a-h]|[KQRBN]).*")) { // handle movetext section line
+      // a comment before the first move also starts the movetext
+      if (line.matches("^([1-9]|[a-h]|[KQRBN]|\\{).*")) { // handle movetext section line
         currentLine = handleMoveSection(currentLine, tmpGame);
         gameEndReached = true;
       }
@@ -214,23 +221,15 @@ public class PGN_Reader {
    * @param currentLine
    * @param tmpGame
    */
-  @SuppressWarnings("unused")
   private int handleTagPairSection(int currentLine, pgnGame tmpGame) {
 
-    // complex because of possible escaping characters like "
-    Pattern pattern =
-        Pattern.compile(
-            "\\[(\\w+) +\"(([^\\\\\"]+|\\\\([btnfr\"'\\\\]|[0-3]?[0-7]{1,2}|u[0-9a-fA-F]{4}))*)\"\\]");
-
     do {
 
       // get next line and trim
       String line = _lines.get(currentLine);
+      // tag values are kept as they are - no cleanup of the line
       line = line.trim();
 
-      // clean up all unnecessary stuff we don't need (yet)
-      line = lineCleanUp(line);
-
       // escape token
       if (line.startsWith("%")) continue;
 
@@ -238,7 +237,7 @@ public class PGN_Reader {
       if (line.isEmpty()) continue;
 
       // get pattern
-      Matcher matcher = pattern.matcher(line);
+      Matcher matcher = TAG_PAIR.matcher(line);
 
       boolean tagpairFound = false;
 
@@ -246,7 +245,7 @@ public class PGN_Reader {
       while (matcher.find()) {
         tagpairFound = true;
         String key = matcher.group(1);
-        String value = matcher.group(2);
+        String value = matcher.group(2).replaceAll("\\\\([\"\\\\])", "$1");
         tmpGame.addTags(key, value);
       }
 
@@ -256,9 +255,9 @@ public class PGN_Reader {
         break;
       }
 
-    } while (currentLine++ <= _lines.size()); // until break or no more lines
+    } while (++currentLine < _lines.size()); // until break or no more lines
 
-    return currentLine;
+    return Math.min(currentLine, _lines.size() - 1);
   }
 
   private int handleMoveSection(int currentLine, pgnGame tmpGame) {
@@ -272,13 +271,12 @@ public class PGN_Reader {
       line = line.trim();
       // add original line to pgnGame
       // tmpGame.setOrigNotation(tmpGame.getOrigNotation()+System.lineSeparator()+line);
-      // remove semicolon comments at end of line
-      line = line.replaceFirst(";.*$", " ");
       // escape token or empty line
       if (line.startsWith("%") || line.isEmpty()) continue;
-      moveSection.append(line).append(" ");
-      // look for end pattern
-      if (line.matches(".*((1-0)|(0-1)|(1/2-1/2)|\\*)$")) {
+      // keep the line end - it ends a semicolon comment
+      moveSection.append(line).append('\n');
+      // look for end pattern (without a semicolon comment at end of line)
+      if (line.replaceFirst(";.*$", "").matches(".*((1-0)|(0-1)|(1/2-1/2)|\\*)$")) {
         break;
       }
     }
@@ -286,9 +284,13 @@ public class PGN_Reader {
     // Concatenated line
     String line = moveSection.toString();
 
+    // bracket and semicolon comments in one pass as they do not nest - a ";"
+    // inside brackets or a "{" in a semicolon comment is just comment text
+    line = line.replaceAll("\\{[^}]*\\}|;[^\n]*", " ");
+    line = line.replace('\n', ' ');
+
     // eliminate unwanted stuff
     line = line.replaceAll("(\\$\\d{1,3})", " "); // no NAG annotation supported
-    line = line.replaceAll("\\{[^{}]*\\}", " "); // bracket comments
     line = line.replaceAll("<[^<>]*>", " "); // reserved symbols < >
 
     // handle nested RAV variation comments
@@ -337,11 +339,17 @@ public class PGN_Reader {
    *
    * @author fkopp
    */
-  public class pgnGame {
+  public static class pgnGame {
 
     private String _origNotation = "";
-    private HashMap<String, String> _tags = new HashMap<>();
+    // in the order of the input
+    private HashMap<String, String> _tags = new LinkedHashMap<>();
     private List<String> _moves = new ArrayList<>();
+    private String _result = "*";
+    // key is the number of moves before the comment, variation or NAG
+    private Map<Integer, String> _comments = new HashMap<>();
+    private Map<Integer, List<String>> _variations = new HashMap<>();
+    private Map<Integer, List<Integer>> _nags = new HashMap<>();
 
     pgnGame() {}
 
@@ -389,6 +397,66 @@ public class PGN_Reader {
     public List<String> getMoves() {
       return _moves;
     }
+
+    /** @return the game termination (1-0, 0-1, 1/2-1/2 or *) */
+    public String getResult() {
+      return _result;
+    }
+
+    @SuppressWarnings("javadoc")
+    public void setResult(String result) {
+      this._result = result;
+    }
+
+    /**
+     * Comments of the main line. The key is the number of moves played before the comment (0
+     * for a comment before the first move).
+     *
+     * @return map of comments
+     */
+    public Map<Integer, String> getComments() {
+      return _comments;
+    }
+
+    /**
+     * Adds a comment after the moves played so far. Several comments at the same place are
+     * joined.
+     *
+     * @param comment
+     */
+    public void addComment(String comment) {
+      _comments.merge(_moves.size(), comment, (a, b) -> a + " " + b);
+    }
+
+    /**
+     * Variations (RAV) of the main line as movetext. The key is the number of moves played
+     * before the variation - the variation is an alternative to the last of these moves.
+     *
+     * @return map of variations
+     */
+    public Map<Integer, List<String>> getVariations() {
+      return _variations;
+    }
+
+    /** @param variation movetext of a variation after the moves played so far */
+    public void addVariation(String variation) {
+      _variations.computeIfAbsent(_moves.size(), k -> new ArrayList<>(1)).add(variation);
+    }
+
+    /**
+     * Numeric annotation glyphs of the main line. The key is the number of moves played before
+     * the NAG - the NAG belongs to the last of these moves.
+     *
+     * @return map of NAGs
+     */
+    public Map<Integer, List<Integer>> getNags() {
+      return _nags;
+    }
+
+    /** @param nag numeric annotation glyph for the last move played so far */
+    public void addNag(int nag) {
+      _nags.computeIfAbsent(_moves.size(), k -> new ArrayList<>(1)).add(nag);
+    }
   }
 
   /**
@@ -0,0 +1,363 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.openingbook;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import fko.chessly.openingbook.PGN_Reader.pgnGame;
+
+/**
+ * Reads PGN games one at a time from a stream. In contrast to {@link PGN_Reader} only the
+ * current game is held in memory so that PGN databases of any size can be processed.
+ *
+ * <p>The movetext is read character by character. Tag pairs, the main line moves, the result,
+ * comments (<code>{...}</code> and <code>;</code>), variations (nested <code>(...)</code>) and
+ * NAGs (<code>$n</code> and the move suffixes <code>! ? !! ?? !? ?!</code>) are stored in the
+ * {@link pgnGame}. Move numbers, escape lines (<code>%</code>) and reserved tokens
+ * (<code>&lt;...&gt;</code>) are skipped. A game ends with its termination marker or when the
+ * tag section of the next game starts.
+ *
+ * <p>Files are read as ISO-8859-1 like the opening book files.
+ */
+public class PGN_StreamReader implements Iterator<pgnGame>, Closeable {
+
+  private static final Pattern MOVE_NUMBER = Pattern.compile("^\\d+\\.+|^\\d+(?![\\d-])");
+  private static final Pattern MOVE_NUMBER_AFTER_SUFFIX = Pattern.compile("(?<=[!?+#])(?=\\d+\\.)");
+
+  private final Reader _reader;
+
+  // one character push back
+  private int _pushedBack = -2;
+  private int _lastChar = '\n';
+
+  private pgnGame _next = null;
+  private long _gamesRead = 0;
+
+  /**
+   * Creates a reader for an ISO-8859-1 input stream.
+   *
+   * @param in
+   */
+  public PGN_StreamReader(InputStream in) {
+    this(new InputStreamReader(in, StandardCharsets.ISO_8859_1));
+  }
+
+  /**
+   * Creates a reader.
+   *
+   * @param reader
+   */
+  public PGN_StreamReader(Reader reader) {
+    _reader = reader instanceof BufferedReader ? reader : new BufferedReader(reader, 1 << 16);
+  }
+
+  /**
+   * Opens a PGN file.
+   *
+   * @param file
+   * @return reader for the file
+   * @throws IOException
+   */
+  public static PGN_StreamReader open(Path file) throws IOException {
+    return new PGN_StreamReader(Files.newInputStream(file));
+  }
+
+  /**
+   * Returns a sequential stream of the remaining games. Closing the stream closes the reader.
+   *
+   * @return stream of games
+   */
+  public Stream<pgnGame> stream() {
+    return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL),
+            false)
+        .onClose(
+            () -> {
+              try {
+                close();
+              } catch (IOException e) {
+                throw new UncheckedIOException(e);
+              }
+            });
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (_next == null) {
+      try {
+        _next = readGame();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return _next != null;
+  }
+
+  @Override
+  public pgnGame next() {
+    if (!hasNext()) throw new NoSuchElementException();
+    final pgnGame game = _next;
+    _next = null;
+    _gamesRead++;
+    return game;
+  }
+
+  /** @return number of games returned so far */
+  public long getGamesRead() {
+    return _gamesRead;
+  }
+
+  @Override
+  public void close() throws IOException {
+    _reader.close();
+  }
+
+  // Internal ------------------
+
+  /**
+   * Reads the next game.
+   *
+   * @return the game or null if there are no more games
+   */
+  private pgnGame readGame() throws IOException {
+    final pgnGame game = new pgnGame();
+    boolean empty = true;
+    boolean inMovetext = false;
+
+    while (true) {
+      final boolean lineStart = _lastChar == '\n' || _lastChar == '\r';
+      final int c = read();
+      if (c == -1) return empty ? null : game;
+      if (Character.isWhitespace(c)) continue;
+
+      if (c == '%' && lineStart) { // escape line
+        readUntil('\n');
+        continue;
+      }
+
+      if (c == '[') {
+        if (inMovetext) { // tag section of the next game
+          unread(c);
+          return game;
+        }
+        readTagPair(game);
+        empty = false;
+        continue;
+      }
+
+      inMovetext = true;
+      empty = false;
+      switch (c) {
+        case '{':
+          game.addComment(clean(readUntil('}')));
+          break;
+        case ';':
+          game.addComment(clean(readUntil('\n')));
+          break;
+        case '(':
+          game.addVariation(clean(readVariation()));
+          break;
+        case ')': // unbalanced - ignore
+        case '}':
+          break;
+        case '<':
+          readUntil('>');
+          break;
+        case '$':
+          final String nag = readToken();
+          if (!nag.isEmpty() && nag.chars().allMatch(Character::isDigit)) {
+            game.addNag(Integer.parseInt(nag));
+          }
+          break;
+        default:
+          unread(c);
+          // a move number might follow an annotated move without space (e.g. d5!!2.c4)
+          for (String token : MOVE_NUMBER_AFTER_SUFFIX.split(readToken())) {
+            if (readMove(game, token)) return game;
+          }
+      }
+    }
+  }
+
+  /**
+   * Handles a movetext token which is not a comment, variation or NAG.
+   *
+   * @return true if the token was the game termination
+   */
+  private static boolean readMove(pgnGame game, String token) {
+    switch (token) {
+      case "1-0":
+      case "0-1":
+      case "1/2-1/2":
+      case "*":
+        game.setResult(token);
+        return true;
+      default:
+        break;
+    }
+
+    // move number indication (e.g. 12. or 12... or 12.e4)
+    String move = MOVE_NUMBER.matcher(token).replaceFirst("");
+    if (move.isEmpty()) return false;
+
+    // castling written with zeros
+    if (move.startsWith("0-0")) move = move.replace('0', 'O');
+
+    // unexpected characters are skipped
+    if ("abcdefghKQRBNO".indexOf(move.charAt(0)) < 0) return false;
+
+    // suffix annotations
+    int end = move.length();
+    while (end > 0 && (move.charAt(end - 1) == '!' || move.charAt(end - 1) == '?')) end--;
+
+    game.getMoves().add(move.substring(0, end));
+
+    final int nag = suffixToNag(move.substring(end));
+    if (nag > 0) game.addNag(nag);
+    return false;
+  }
+
+  /**
+   * @param suffix move suffix annotation
+   * @return the matching NAG or 0 if none
+   */
+  private static int suffixToNag(String suffix) {
+    switch (suffix) {
+      case "!":
+        return 1;
+      case "?":
+        return 2;
+      case "!!":
+        return 3;
+      case "??":
+        return 4;
+      case "!?":
+        return 5;
+      case "?!":
+        return 6;
+      default:
+        return 0;
+    }
+  }
+
+  /** Reads a tag pair after the opening bracket, e.g. <code>Event "Test \"A\""]</code> */
+  private void readTagPair(pgnGame game) throws IOException {
+    final StringBuilder name = new StringBuilder();
+    final StringBuilder value = new StringBuilder();
+    int c;
+    while ((c = read()) != -1 && c != '"' && c != ']') {
+      if (!Character.isWhitespace(c)) name.append((char) c);
+    }
+    if (c == '"') {
+      while ((c = read()) != -1 && c != '"') {
+        if (c == '\\') {
+          c = read();
+          if (c == -1) break;
+        }
+        value.append((char) c);
+      }
+      while (c != -1 && c != ']') c = read();
+    }
+    if (name.length() > 0) game.addTags(name.toString(), value.toString());
+  }
+
+  /** Reads a (nested) variation after the opening parenthesis. */
+  private String readVariation() throws IOException {
+    final StringBuilder variation = new StringBuilder();
+    int depth = 1;
+    int c;
+    while ((c = read()) != -1) {
+      if (c == '{') { // comments may contain parentheses
+        variation.append('{').append(readUntil('}')).append('}');
+        continue;
+      }
+      if (c == '(') depth++;
+      if (c == ')' && --depth == 0) break;
+      variation.append((char) c);
+    }
+    return variation.toString();
+  }
+
+  /** Reads until the end character (which is consumed) or the end of the input. */
+  private String readUntil(int endChar) throws IOException {
+    final StringBuilder s = new StringBuilder();
+    int c;
+    while ((c = read()) != -1 && c != endChar) s.append((char) c);
+    return s.toString();
+  }
+
+  /** Reads until whitespace or the start of a comment, variation or NAG. */
+  private String readToken() throws IOException {
+    final StringBuilder s = new StringBuilder();
+    int c;
+    while ((c = read()) != -1) {
+      if (Character.isWhitespace(c) || "{}();$[".indexOf(c) >= 0) {
+        unread(c);
+        break;
+      }
+      s.append((char) c);
+    }
+    return s.toString();
+  }
+
+  private static String clean(String s) {
+    return s.replaceAll("\\s+", " ").trim();
+  }
+
+  private int read() throws IOException {
+    final int c;
+    if (_pushedBack != -2) {
+      c = _pushedBack;
+      _pushedBack = -2;
+    } else {
+      c = _reader.read();
+    }
+    _lastChar = c;
+    return c;
+  }
+
+  private void unread(int c) {
+    _pushedBack = c;
+  }
+}
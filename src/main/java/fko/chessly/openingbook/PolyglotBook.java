@@ -0,0 +1,499 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.openingbook;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import fko.chessly.Chessly;
+import fko.chessly.game.GameBoard;
+import fko.chessly.game.GameBoardImpl;
+import fko.chessly.game.GameMove;
+import fko.chessly.game.GamePiece;
+import fko.chessly.game.GamePieceType;
+import fko.chessly.game.GamePosition;
+import fko.chessly.game.InvalidMoveException;
+import fko.chessly.game.NotationHelper;
+
+/**
+ * Opening book in the Polyglot format (.bin) which is memory mapped and looked up by binary
+ * search. Opening a book does not read it so even large books are ready immediately.
+ * <p>
+ * A Polyglot book is a list of 16 byte big endian entries sorted by key: the Polyglot hash
+ * of the position (8 bytes, compared unsigned), the move (2 bytes), the weight (2 bytes) and
+ * a learn value (4 bytes) which is not used here. Moves are encoded as
+ * <code>to file | to rank << 3 | from file << 6 | from rank << 9 | promotion << 12</code>
+ * (promotion 1 = knight ... 4 = queen). Castling is written as the king capturing its own
+ * rook (e.g. e1h1).
+ * <p>
+ * The Polyglot hash uses the fixed table of 781 random numbers from the Polyglot sources
+ * (<code>Random64</code>). The table is read from {@link #RANDOM64_RESOURCE} which has to
+ * contain the 781 numbers as hex literals (e.g. a copy of <code>random.cpp</code>). Books
+ * written with another table can be used with {@link #PolyglotBook(Path, long[])}.
+ *
+ * @author fkopp
+ */
+public class PolyglotBook {
+
+	/** file extension of Polyglot books */
+	public static final String FILE_EXTENSION = ".bin";
+
+	/** resource with the Polyglot random numbers */
+	public static final String RANDOM64_RESOURCE = "/book/polyglot_random64.txt";
+
+	/** number of random numbers used by the Polyglot hash */
+	public static final int RANDOM64_SIZE = 781;
+
+	static final int ENTRY_SIZE = 16;
+
+	private static final int CASTLING_OFFSET = 768;
+	private static final int EN_PASSANT_OFFSET = 772;
+	private static final int TURN_OFFSET = 780;
+
+	// index is the Polyglot kind of piece (black pawn = 0, white pawn = 1, ... white king = 11)
+	private static final String PIECES = "pPnNbBrRqQkK";
+	private static final String PROMOTIONS = " nbrq";
+
+	private static final Pattern HEX_NUMBER = Pattern.compile("0x([0-9A-Fa-f]{16})");
+
+	// opened books are shared by all opening books of the process
+	private static final Map<Path, PolyglotBook> _openBooks = new HashMap<>();
+	private static long[] _standardRandom64 = null;
+
+	private final Path _file;
+	private final long[] _random64;
+	private final ByteBuffer _buffer;
+	private final int _entries;
+
+	/**
+	 * Opens a Polyglot book which was written with the given random numbers.
+	 *
+	 * @param file
+	 * @param random64 the 781 random numbers of the hash
+	 * @throws IOException if the file can't be read or is not a Polyglot book
+	 */
+	public PolyglotBook(Path file, long[] random64) throws IOException {
+		if (random64.length != RANDOM64_SIZE) {
+			throw new IllegalArgumentException("random64 must have " + RANDOM64_SIZE + " numbers");
+		}
+		_file = file;
+		_random64 = random64;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			final long size = channel.size();
+			if (size % ENTRY_SIZE != 0 || size > Integer.MAX_VALUE) {
+				throw new IOException("Not a Polyglot book: " + file);
+			}
+			_buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			_entries = (int) (size / ENTRY_SIZE);
+		}
+	}
+
+	/**
+	 * Opens a standard Polyglot book. Books are opened only once per process.
+	 *
+	 * @param file
+	 * @return the book
+	 * @throws IOException if the file or the random numbers can't be read
+	 */
+	public static synchronized PolyglotBook open(Path file) throws IOException {
+		final Path key = file.toAbsolutePath().normalize();
+		PolyglotBook book = _openBooks.get(key);
+		if (book == null) {
+			book = new PolyglotBook(key, getStandardRandom64());
+			_openBooks.put(key, book);
+		}
+		return book;
+	}
+
+	/**
+	 * @return the random numbers of the Polyglot hash read from {@link #RANDOM64_RESOURCE}
+	 * @throws IOException if the resource is missing or invalid
+	 */
+	public static synchronized long[] getStandardRandom64() throws IOException {
+		if (_standardRandom64 == null) {
+			final InputStream in = Chessly.class.getResourceAsStream(RANDOM64_RESOURCE);
+			if (in == null) throw new IOException("Polyglot random numbers not found: " + RANDOM64_RESOURCE);
+			_standardRandom64 = readRandom64(in);
+		}
+		return _standardRandom64;
+	}
+
+	/**
+	 * Reads the 781 random numbers of the Polyglot hash. All hex literals with 16 digits
+	 * (e.g. <code>0x9D39247E33776D41</code>) are read in order. The stream is closed.
+	 *
+	 * @param in
+	 * @return the random numbers
+	 * @throws IOException if the stream can't be read or has not exactly 781 numbers
+	 */
+	public static long[] readRandom64(InputStream in) throws IOException {
+		final long[] random64 = new long[RANDOM64_SIZE];
+		int n = 0;
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.ISO_8859_1))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				final Matcher matcher = HEX_NUMBER.matcher(line);
+				while (matcher.find()) {
+					if (n == RANDOM64_SIZE) throw new IOException("More than " + RANDOM64_SIZE + " random numbers");
+					random64[n++] = Long.parseUnsignedLong(matcher.group(1), 16);
+				}
+			}
+		}
+		if (n != RANDOM64_SIZE) throw new IOException("Expected " + RANDOM64_SIZE + " random numbers but found " + n);
+		return random64;
+	}
+
+	/**
+	 * @param fen
+	 * @return the Polyglot hash of the position with the random numbers of this book
+	 */
+	public long getKey(String fen) {
+		return getKey(fen, _random64);
+	}
+
+	/**
+	 * Computes the Polyglot hash of a position. The en passant square only counts if a pawn
+	 * of the side to move can capture en passant.
+	 *
+	 * @param fen
+	 * @param random64 the 781 random numbers of the hash
+	 * @return the Polyglot hash of the position
+	 */
+	public static long getKey(String fen, long[] random64) {
+		final String[] fields = fen.trim().split("\\s+");
+		if (fields.length < 4) throw new IllegalArgumentException("Not a valid FEN: " + fen);
+
+		// pieces
+		final int[] board = new int[64];
+		Arrays.fill(board, -1);
+		long key = 0L;
+		int rank = 7, file = 0;
+		for (char c : fields[0].toCharArray()) {
+			if (c == '/') {
+				rank--;
+				file = 0;
+			} else if (c >= '1' && c <= '8') {
+				file += c - '0';
+			} else {
+				final int kind = PIECES.indexOf(c);
+				if (kind < 0 || rank < 0 || file > 7) throw new IllegalArgumentException("Not a valid FEN: " + fen);
+				board[8 * rank + file] = kind;
+				key ^= random64[64 * kind + 8 * rank + file];
+				file++;
+			}
+		}
+
+		// castling
+		for (char c : fields[2].toCharArray()) {
+			final int castling = "KQkq".indexOf(c);
+			if (castling >= 0) key ^= random64[CASTLING_OFFSET + castling];
+		}
+
+		// en passant
+		final boolean white = fields[1].equals("w");
+		if (fields[3].length() == 2) {
+			final int epFile = fields[3].charAt(0) - 'a';
+			final int pawnRank = white ? 4 : 3;
+			final int pawn = white ? 1 : 0;
+			if ((epFile > 0 && board[8 * pawnRank + epFile - 1] == pawn)
+					|| (epFile < 7 && board[8 * pawnRank + epFile + 1] == pawn)) {
+				key ^= random64[EN_PASSANT_OFFSET + epFile];
+			}
+		}
+
+		// side to move
+		if (white) key ^= random64[TURN_OFFSET];
+
+		return key;
+	}
+
+	/**
+	 * Encodes a move in from-to notation (e.g. e2e4 or e7e8q) as a Polyglot move. Castling
+	 * must be given as the king capturing its own rook.
+	 *
+	 * @param notation
+	 * @return Polyglot move
+	 */
+	public static int encodeMove(String notation) {
+		if (notation.length() < 4 || notation.length() > 5) {
+			throw new IllegalArgumentException("Not a valid move: " + notation);
+		}
+		final int fromFile = notation.charAt(0) - 'a';
+		final int fromRank = notation.charAt(1) - '1';
+		final int toFile = notation.charAt(2) - 'a';
+		final int toRank = notation.charAt(3) - '1';
+		final int promotion = notation.length() == 5 ? PROMOTIONS.indexOf(Character.toLowerCase(notation.charAt(4))) : 0;
+		if ((fromFile | fromRank | toFile | toRank) >>> 3 != 0 || promotion < 1 && notation.length() == 5) {
+			throw new IllegalArgumentException("Not a valid move: " + notation);
+		}
+		return toFile | toRank << 3 | fromFile << 6 | fromRank << 9 | promotion << 12;
+	}
+
+	/**
+	 * @param move Polyglot move
+	 * @return from-to notation of the move (e.g. e2e4, e7e8Q or e1h1 for castling)
+	 */
+	public static String decodeMove(int move) {
+		final StringBuilder notation = new StringBuilder(5);
+		notation.append((char) ('a' + (move >>> 6 & 7))).append((char) ('1' + (move >>> 9 & 7)));
+		notation.append((char) ('a' + (move & 7))).append((char) ('1' + (move >>> 3 & 7)));
+		final int promotion = move >>> 12 & 7;
+		if (promotion > 0 && promotion < PROMOTIONS.length()) {
+			notation.append(Character.toUpperCase(PROMOTIONS.charAt(promotion)));
+		}
+		return notation.toString();
+	}
+
+	/**
+	 * @param fen
+	 * @return all entries of the position sorted by weight (highest first)
+	 */
+	public List<Entry> getEntries(String fen) {
+		final long key = getKey(fen);
+		final int first = findFirst(key);
+		if (first < 0) return Collections.emptyList();
+		final List<Entry> entries = new ArrayList<>();
+		for (int i = first; i < _entries && _buffer.getLong(i * ENTRY_SIZE) == key; i++) {
+			final int offset = i * ENTRY_SIZE;
+			entries.add(new Entry(key, _buffer.getShort(offset + 8) & 0xFFFF,
+					_buffer.getShort(offset + 10) & 0xFFFF, _buffer.getInt(offset + 12)));
+		}
+		entries.sort((a, b) -> Integer.compare(b._weight, a._weight));
+		return entries;
+	}
+
+	/**
+	 * Selects a move of the position weighted by the weights of the book.
+	 *
+	 * @param fen
+	 * @return book move or null if there is none
+	 */
+	public GameMove getBookMove(String fen) {
+		return getBookMove(fen, ThreadLocalRandom.current());
+	}
+
+	/**
+	 * Selects a move of the position weighted by the weights of the book. Entries which are
+	 * not legal on the position (e.g. hash collisions) are ignored. If all moves have weight
+	 * 0 each move is equally likely.
+	 *
+	 * @param fen
+	 * @param random
+	 * @return book move or null if there is none
+	 */
+	public GameMove getBookMove(String fen, Random random) {
+		final List<Entry> entries = getEntries(fen);
+		if (entries.isEmpty()) return null;
+
+		final GameBoard board = new GameBoardImpl(fen);
+		final List<GameMove> moves = new ArrayList<>(entries.size());
+		final List<Integer> weights = new ArrayList<>(entries.size());
+		long total = 0;
+		for (Entry entry : entries) {
+			try {
+				moves.add(NotationHelper.createNewMoveFromSimpleNotation(board, toBoardNotation(board, entry._move)));
+			} catch (InvalidMoveException | IllegalArgumentException e) {
+				continue;
+			}
+			weights.add(entry._weight);
+			total += entry._weight;
+		}
+		if (moves.isEmpty()) return null;
+		if (total == 0) return moves.get(random.nextInt(moves.size()));
+
+		long r = (long) (random.nextDouble() * total);
+		for (int i = 0; i < moves.size(); i++) {
+			r -= weights.get(i);
+			if (r < 0) return moves.get(i);
+		}
+		return moves.get(moves.size() - 1);
+	}
+
+	/**
+	 * @return number of entries of the book
+	 */
+	public int getNumberOfEntries() {
+		return _entries;
+	}
+
+	/**
+	 * @return the book file
+	 */
+	public Path getFile() {
+		return _file;
+	}
+
+	/**
+	 * Writes a Polyglot book. Equal keys and moves are merged. Counts are scaled down to fit
+	 * into the 16 bit weights if necessary (each move keeps at least weight 1).
+	 *
+	 * @param file
+	 * @param keys Polyglot hash of the positions
+	 * @param moves Polyglot moves (see {@link #encodeMove(String)})
+	 * @param counts number of times each move has been played
+	 * @param size number of entries in the arrays
+	 * @return number of entries written
+	 * @throws IOException
+	 */
+	public static int write(Path file, long[] keys, int[] moves, int[] counts, int size) throws IOException {
+		if (size > keys.length || size > moves.length || size > counts.length) {
+			throw new IllegalArgumentException("size must not be larger than the arrays");
+		}
+
+		// sort by key (unsigned) and move and merge equal entries
+		final Integer[] order = new Integer[size];
+		for (int i = 0; i < size; i++) order[i] = i;
+		Arrays.sort(order, (a, b) -> keys[a] != keys[b]
+				? Long.compareUnsigned(keys[a], keys[b]) : Integer.compare(moves[a], moves[b]));
+		final long[] mergedKeys = new long[size];
+		final int[] mergedMoves = new int[size];
+		final long[] mergedCounts = new long[size];
+		int n = 0;
+		long maxCount = 0;
+		for (int i = 0; i < size; i++) {
+			final int r = order[i];
+			if (n > 0 && mergedKeys[n - 1] == keys[r] && mergedMoves[n - 1] == moves[r]) {
+				mergedCounts[n - 1] += counts[r];
+			} else {
+				mergedKeys[n] = keys[r];
+				mergedMoves[n] = moves[r];
+				mergedCounts[n] = counts[r];
+				n++;
+			}
+			maxCount = Math.max(maxCount, mergedCounts[n - 1]);
+		}
+
+		// highest weight first within each position (few moves per position)
+		for (int i = 1; i < n; i++) {
+			for (int j = i; j > 0 && mergedKeys[j - 1] == mergedKeys[j] && mergedCounts[j - 1] < mergedCounts[j]; j--) {
+				final int move = mergedMoves[j];
+				mergedMoves[j] = mergedMoves[j - 1];
+				mergedMoves[j - 1] = move;
+				final long count = mergedCounts[j];
+				mergedCounts[j] = mergedCounts[j - 1];
+				mergedCounts[j - 1] = count;
+			}
+		}
+
+		if (file.getParent() != null) Files.createDirectories(file.getParent());
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+			for (int i = 0; i < n; i++) {
+				final long weight = maxCount > 0xFFFF
+						? Math.max(1, mergedCounts[i] * 0xFFFF / maxCount) : mergedCounts[i];
+				out.writeLong(mergedKeys[i]);
+				out.writeShort(mergedMoves[i]);
+				out.writeShort((int) weight);
+				out.writeInt(0);
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Converts castling from king captures rook to the notation of the board (e1h1 to e1g1).
+	 */
+	private static String toBoardNotation(GameBoard board, int move) {
+		final String notation = decodeMove(move);
+		final GamePiece piece = board.getPiece(GamePosition.getGamePosition(notation.substring(0, 2)));
+		if (piece != null && piece.getType() == GamePieceType.KING && notation.charAt(0) == 'e') {
+			if (notation.charAt(2) == 'h') return notation.substring(0, 2) + 'g' + notation.charAt(3);
+			if (notation.charAt(2) == 'a') return notation.substring(0, 2) + 'c' + notation.charAt(3);
+		}
+		return notation;
+	}
+
+	private int findFirst(long key) {
+		int low = 0, high = _entries - 1, found = -1;
+		while (low <= high) {
+			final int mid = (low + high) >>> 1;
+			final int cmp = Long.compareUnsigned(_buffer.getLong(mid * ENTRY_SIZE), key);
+			if (cmp < 0) {
+				low = mid + 1;
+			} else {
+				if (cmp == 0) found = mid;
+				high = mid - 1;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * One entry of a Polyglot book.
+	 */
+	public static final class Entry {
+
+		private final long _key;
+		private final int _move;
+		private final int _weight;
+		private final int _learn;
+
+		private Entry(long key, int move, int weight, int learn) {
+			_key = key;
+			_move = move;
+			_weight = weight;
+			_learn = learn;
+		}
+
+		/** @return Polyglot hash of the position */
+		public long getKey() { return _key; }
+
+		/** @return Polyglot move */
+		public int getMove() { return _move; }
+
+		/** @return weight of the move */
+		public int getWeight() { return _weight; }
+
+		/** @return learn value */
+		public int getLearn() { return _learn; }
+
+		@Override
+		public String toString() {
+			return decodeMove(_move) + " (" + _weight + ")";
+		}
+	}
+}
@@ -63,6 +63,18 @@ public class ComputerPlayer extends AbstractPlayer {
         this._engine = EngineFactory.createEngine(this, color);
     }
 
+    /**
+     * This constructor is protected to indicate to use the PlayerFactory to create
+     * a new player of this kind
+     * @param name - the name of the player
+     * @param color - the color the player has in the current game
+     * @param engineClass - fully qualified class name of the engine to use
+     */
+    protected ComputerPlayer(String name, GameColor color, String engineClass) {
+        super(name, color);
+        this._engine = EngineFactory.createEngine(this, engineClass);
+    }
+
     /**
      * Implementation of getMove() for to determine the next move
      * @return return computed move
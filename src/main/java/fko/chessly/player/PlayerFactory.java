@@ -55,6 +55,18 @@ public class PlayerFactory {
         }
     }
 
+    /**
+     * Factory method for a computer player with a given engine independent of the
+     * engine properties (e.g. for engine vs. engine tournaments).<br>
+     * @param name
+     * @param color
+     * @param engineClass fully qualified class name of the engine
+     * @return a new computer player
+     */
+    public static ComputerPlayer createComputerPlayer(String name, GameColor color, String engineClass) {
+        return new ComputerPlayer(name, color, engineClass);
+    }
+
     /**
      * The PlayerCreationException is thrown when a player could not be created.
      */
@@ -63,6 +63,19 @@ public class EngineFactory {
 			System.err.println("Engine class property could not be found: using default: " + engineClass);
 		}
 
+		return createEngine(player, engineClass);
+	}
+
+	/**
+	 * Creates an engine of the given class independent of the engine properties
+	 * (e.g. for engine vs. engine tournaments).
+	 *
+	 * @param player
+	 * @param engineClass fully qualified class name of the engine
+	 * @return Engine
+	 */
+	public static Engine createEngine(Player player, String engineClass) {
+
 		Engine engine = null;
 		try {
 
@@ -0,0 +1,296 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.player.computer.Omega;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+
+import fko.chessly.ChesslyBench;
+import fko.chessly.player.computer.Omega.OmegaEPDRunner.EPDEntry;
+import fko.chessly.player.computer.Omega.OmegaSearch.IterationStats;
+import fko.chessly.util.CmdLineParser;
+
+/**
+ * Ablation benchmark for the search features of <code>OmegaConfiguration</code>.
+ * <p>
+ * Searches a position set with all features switched on (baseline) and then once more for
+ * every feature with only this feature switched off. For each configuration the nodes, the
+ * time-to-depth and the nodes per second are reported together with the difference to the
+ * baseline. This shows the cost and the benefit of each feature.
+ * <p>
+ * Every configuration runs on its own OmegaEngine and OmegaSearch instance and the
+ * configurations are run in parallel. For exact timings use <code>-j 1</code> or not more
+ * threads than cores.
+ * <p>
+ * Usage: <code>java fko.chessly.player.computer.Omega.OmegaAblationBenchmark [-d depth] [-j threads] [epd files...]</code><br>
+ * Without files the positions of <code>ChesslyBench</code> are used.
+ */
+public class OmegaAblationBenchmark {
+
+    /** default search depth */
+    public static final int DEFAULT_DEPTH = 4;
+
+    /**
+     * The search features which can be switched off.
+     */
+    public enum Feature {
+        /** Principal Variation Search */
+        PVS((c, v) -> c._USE_PVS = v),
+        /** Null Move Pruning */
+        NMP((c, v) -> c._USE_NMP = v),
+        /** Verification of Null Move Pruning */
+        VERIFY_NMP((c, v) -> c._USE_VERIFY_NMP = v),
+        /** Mate Distance Pruning */
+        MDP((c, v) -> c._USE_MDP = v),
+        /** Minor Promotion Pruning */
+        MPP((c, v) -> c._USE_MPP = v),
+        /** Best move from transposition table first */
+        MOVE_CACHE((c, v) -> c._USE_MOVE_CACHE = v),
+        /** Cache for evaluations */
+        BOARD_CACHE((c, v) -> c._USE_BOARD_CACHE = v),
+        /** Quiescence search */
+        QUIESCENCE((c, v) -> c._USE_QUIESCENCE = v);
+
+        private final BiConsumer<OmegaConfiguration, Boolean> _setter;
+
+        Feature(BiConsumer<OmegaConfiguration, Boolean> setter) {
+            _setter = setter;
+        }
+
+        void set(OmegaConfiguration configuration, boolean value) {
+            _setter.accept(configuration, value);
+        }
+    }
+
+    private final int _depth;
+    private final int _threads;
+
+    /**
+     * @param depth search depth
+     * @param threads number of configurations searched in parallel
+     */
+    public OmegaAblationBenchmark(int depth, int threads) {
+        if (depth < 1) throw new IllegalArgumentException("depth must be >= 1");
+        if (threads < 1) throw new IllegalArgumentException("threads must be >= 1");
+        _depth = depth;
+        _threads = threads;
+    }
+
+    /**
+     * Runs the baseline and every given feature switched off in parallel.
+     *
+     * @param positions FEN of the positions
+     * @param features features to switch off one by one
+     * @return results - the baseline first followed by one result per feature
+     */
+    public List<AblationResult> run(List<String> positions, List<Feature> features) {
+        final ExecutorService pool = Executors.newFixedThreadPool(_threads, r -> {
+            Thread t = new Thread(r, "OmegaAblationBenchmark");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            final List<Future<AblationResult>> futures = new ArrayList<>(features.size() + 1);
+            futures.add(pool.submit(() -> runConfiguration(positions, null)));
+            for (Feature feature : features) {
+                futures.add(pool.submit(() -> runConfiguration(positions, feature)));
+            }
+            final List<AblationResult> results = new ArrayList<>(futures.size());
+            for (Future<AblationResult> f : futures) {
+                results.add(f.get());
+            }
+            return results;
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException("Ablation run failed", e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Searches all positions with a new engine which has the given feature switched off.
+     *
+     * @param positions
+     * @param disabled feature to switch off or null for the baseline
+     * @return the result of this configuration
+     */
+    AblationResult runConfiguration(List<String> positions, Feature disabled) {
+        final OmegaEngine engine = new OmegaEngine();
+        engine._CONFIGURATION.VERBOSE_STATS = false;
+        // must be set before the search is created as the caches depend on it
+        if (disabled != null) disabled.set(engine._CONFIGURATION, false);
+        final OmegaSearch search = new OmegaSearch(engine);
+
+        final AblationResult result = new AblationResult(disabled);
+        for (String fen : positions) {
+            search.clearCaches();
+            search.configureIterativeDepth(_depth);
+            search.startSearch(new OmegaBoardPosition(fen));
+            search.waitWhileSearching();
+
+            final List<IterationStats> stats = search.getIterationStats();
+            if (!stats.isEmpty()) {
+                final IterationStats last = stats.get(stats.size() - 1);
+                result.timeNanos += last.timeNanos;
+                result.nodes += last.nodes;
+            }
+        }
+        // the next configuration reuses the tables
+        search.releaseCacheTables();
+        return result;
+    }
+
+    /**
+     * Prints the results and the difference to the baseline to System.out.
+     *
+     * @param depth
+     * @param results results as returned by <code>run()</code> - baseline first
+     */
+    public static void printResults(int depth, List<AblationResult> results) {
+        final AblationResult base = results.get(0);
+        System.out.format("%nAblation at depth %d%n", depth);
+        System.out.format("%-14s %15s %8s %12s %8s %12s %8s%n",
+                "Configuration", "Nodes", "Nodes", "Time (ms)", "Time", "Nodes/sec", "NPS");
+        for (AblationResult r : results) {
+            System.out.format("%-14s %,15d %+7.1f%% %,12d %+7.1f%% %,12d %+7.1f%%%n",
+                    r.getName(),
+                    r.nodes, percent(r.nodes, base.nodes),
+                    r.getTimeMs(), percent(r.timeNanos, base.timeNanos),
+                    r.getNps(), percent(r.getNps(), base.getNps()));
+        }
+    }
+
+    private static double percent(long value, long base) {
+        return base == 0 ? 0d : 100d * (value - base) / base;
+    }
+
+    /**
+     * Runs the ablation benchmark.
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        CmdLineParser cp = new CmdLineParser();
+        CmdLineParser.Option depthOption = cp.addIntegerOption('d', "depth");
+        CmdLineParser.Option threadsOption = cp.addIntegerOption('j', "threads");
+        CmdLineParser.Option usage = cp.addBooleanOption('?', "help");
+
+        try {
+            cp.parse(args);
+        } catch (CmdLineParser.OptionException e) {
+            System.err.println(e.getMessage());
+            printUsage();
+            System.exit(2);
+        }
+
+        if ((Boolean) cp.getOptionValue(usage)) {
+            printUsage();
+            System.exit(0);
+        }
+
+        final int depth = (Integer) cp.getOptionValue(depthOption, DEFAULT_DEPTH);
+        final int threads = (Integer) cp.getOptionValue(threadsOption,
+                Runtime.getRuntime().availableProcessors());
+        if (depth < 1 || threads < 1) {
+            System.err.println("Depth and threads must be at least 1");
+            printUsage();
+            System.exit(2);
+        }
+
+        final List<String> positions = new ArrayList<>();
+        if (cp.getRemainingArgs().length == 0) {
+            positions.addAll(ChesslyBench.getBenchPositions());
+        } else {
+            for (String file : cp.getRemainingArgs()) {
+                try {
+                    for (EPDEntry entry : OmegaEPDRunner.readEPDFile(Paths.get(file))) {
+                        positions.add(entry.fen);
+                    }
+                } catch (IOException e) {
+                    System.err.println("Could not read EPD file " + file + ": " + e.getMessage());
+                    System.exit(2);
+                }
+            }
+        }
+
+        final List<Feature> features = new ArrayList<>();
+        for (Feature f : Feature.values()) features.add(f);
+
+        printResults(depth, new OmegaAblationBenchmark(depth, threads).run(positions, features));
+    }
+
+    private static void printUsage() {
+        System.out.println();
+        System.out.println("Usage: OmegaAblationBenchmark [-d,--depth n] [-j,--threads n] [-?, --help] [epd files...]");
+        System.out.println("Options:");
+        System.out.println();
+        System.out.println("-d search depth (default " + DEFAULT_DEPTH + ")");
+        System.out.println("-j number of configurations searched in parallel (default number of cores)");
+        System.out.println();
+        System.out.println("Without EPD files the ChesslyBench positions are used.");
+        System.out.println();
+    }
+
+    /**
+     * Result of one configuration summed over all positions.
+     */
+    public static final class AblationResult {
+        /** feature switched off - null for the baseline */
+        public final Feature disabled;
+        /** summed time-to-depth in ns */
+        public long timeNanos = 0;
+        /** summed nodes */
+        public long nodes = 0;
+
+        AblationResult(Feature disabled) {
+            this.disabled = disabled;
+        }
+
+        /** @return name of the configuration */
+        public String getName() {
+            return disabled == null ? "baseline" : "no " + disabled.name();
+        }
+
+        /** @return summed time-to-depth in ms */
+        public long getTimeMs() {
+            return timeNanos / 1_000_000L;
+        }
+
+        /** @return nodes per second */
+        public long getNps() {
+            return (long) (nodes * 1e9 / (timeNanos + 1)); // in double - nodes * 10^9 overflows long
+        }
+    }
+}
@@ -0,0 +1,521 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.player.computer.Omega;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import fko.chessly.player.computer.Omega.OmegaSearch.SearchResult;
+import fko.chessly.util.CmdLineParser;
+
+/**
+ * A long running analysis server for internal tools. It answers analysis requests for a
+ * position (FEN plus search limits) with the best move, the score and the principal variation.
+ * <p>
+ * The server holds a pool of warmed up workers. Each worker has its own OmegaEngine and
+ * OmegaSearch but all workers share one large transposition table which is never cleared.
+ * Repeated positions (and positions close to earlier ones) are therefore answered from the
+ * hash instead of a cold search.
+ * <p>
+ * Requests are queued by priority (higher first, FIFO for the same priority). A request for a
+ * position and limits which are already queued or searched is not searched again - it gets
+ * the result of the request in flight. If it has a higher priority the queued request is
+ * moved up.
+ * <p>
+ * The server listens for HTTP on the loopback interface:
+ * <pre>
+ * GET /analyse?fen=&lt;fen&gt;[&amp;nodes=n|&amp;movetime=ms|&amp;depth=d][&amp;priority=p]
+ *     -&gt; bestmove e2e4 score cp 25 depth 10 nodes 123456 time 250 pv e2e4 e7e5 ...
+ * GET /status
+ *     -&gt; workers 4 queued 0 inflight 1 requests 12 deduplicated 3 searches 9
+ * </pre>
+ * <p>
+ * Usage: <code>java fko.chessly.player.computer.Omega.OmegaAnalysisServer [-p port] [-j workers] [-m hashMB]</code>
+ */
+public class OmegaAnalysisServer {
+
+    /** default port of the HTTP server */
+    public static final int DEFAULT_PORT = 8765;
+    /** default size of the shared transposition table in MB */
+    public static final int DEFAULT_HASH_SIZE = 256;
+    /** default time per request in ms if no limit is given */
+    public static final long DEFAULT_MOVE_TIME = 1000;
+
+    // nodes searched by each worker before it accepts requests
+    private static final long WARM_UP_NODES = 50_000;
+
+    private final int _numberOfWorkers;
+    private final OmegaTranspositionTable _transpositionTable;
+
+    private final PriorityBlockingQueue<AnalysisRequest> _queue = new PriorityBlockingQueue<>();
+    // requests queued or searched by key - guarded by itself
+    private final Map<String, AnalysisRequest> _inFlight = new HashMap<>();
+    private final AtomicLong _sequence = new AtomicLong();
+
+    private final AtomicLong _requests = new AtomicLong();
+    private final AtomicLong _deduplicated = new AtomicLong();
+    private final AtomicLong _searches = new AtomicLong();
+
+    private final List<Thread> _workers = new ArrayList<>();
+    private HttpServer _httpServer = null;
+    private ExecutorService _httpExecutor = null;
+    private volatile boolean _running = false;
+
+    /**
+     * @param workers number of parallel searches
+     * @param hashSize size of the shared transposition table in MB
+     */
+    public OmegaAnalysisServer(int workers, int hashSize) {
+        if (workers < 1) throw new IllegalArgumentException("workers must be >= 1");
+        if (hashSize < 1) throw new IllegalArgumentException("hashSize must be >= 1");
+        _numberOfWorkers = workers;
+        _transpositionTable = new OmegaTranspositionTable(hashSize, true);
+    }
+
+    /**
+     * Starts and warms up the workers. Returns when all workers accept requests.
+     */
+    public synchronized void startWorkers() {
+        if (_running) throw new IllegalStateException("Server already started");
+        _running = true;
+        final CountDownLatch warmedUp = new CountDownLatch(_numberOfWorkers);
+        for (int i = 0; i < _numberOfWorkers; i++) {
+            final Thread worker = new Thread(() -> work(warmedUp), "OmegaAnalysisServer-" + i);
+            worker.setDaemon(true);
+            _workers.add(worker);
+            worker.start();
+        }
+        try {
+            warmedUp.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Starts the workers and the HTTP server on the loopback interface.
+     *
+     * @param port port of the HTTP server or 0 for any free port
+     * @throws IOException
+     */
+    public synchronized void start(int port) throws IOException {
+        startWorkers();
+        _httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        _httpServer.createContext("/analyse", this::handleAnalyse);
+        _httpServer.createContext("/status", this::handleStatus);
+        // clients wait for their result so each needs its own thread
+        _httpExecutor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "OmegaAnalysisServer-HTTP");
+            t.setDaemon(true);
+            return t;
+        });
+        _httpServer.setExecutor(_httpExecutor);
+        _httpServer.start();
+    }
+
+    /**
+     * Stops the HTTP server and the workers. Requests still queued or searched are cancelled.
+     * Returns when all searches have ended.
+     */
+    public synchronized void stop() {
+        _running = false;
+        if (_httpServer != null) {
+            _httpServer.stop(0);
+            _httpExecutor.shutdownNow();
+            _httpServer = null;
+        }
+        // wakes up waiting workers - a searching worker stops its search itself
+        for (Thread worker : _workers) worker.interrupt();
+        for (Thread worker : _workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        _workers.clear();
+        AnalysisRequest request;
+        while ((request = _queue.poll()) != null) {
+            request.result.cancel(false);
+        }
+    }
+
+    /**
+     * @return the port of the HTTP server or -1 if it is not running
+     */
+    public synchronized int getPort() {
+        return _httpServer == null ? -1 : _httpServer.getAddress().getPort();
+    }
+
+    /**
+     * Queues an analysis request. If the same position with the same limits is already queued
+     * or searched the result of this request is returned.
+     *
+     * @param fen position to analyse
+     * @param nodes nodes limit or 0
+     * @param moveTime time limit in ms or 0
+     * @param depth depth limit or 0
+     * @param priority higher priorities are searched first
+     * @return the future result of the analysis
+     */
+    public CompletableFuture<AnalysisResult> submit(String fen, long nodes, long moveTime, int depth, int priority) {
+        if (!_running) throw new IllegalStateException("Server not started");
+        if (nodes < 0 || moveTime < 0 || depth < 0 || depth > OmegaSearch.MAX_SEARCH_DEPTH)
+            throw new IllegalArgumentException("Invalid search limits");
+        if (nodes == 0 && moveTime == 0 && depth == 0) moveTime = DEFAULT_MOVE_TIME;
+
+        // checks the fen and ignores the move counters for the deduplication
+        final OmegaBoardPosition position;
+        try {
+            position = new OmegaBoardPosition(fen);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid fen: " + fen, e);
+        }
+        final String key = position.toFENString().replaceFirst(" \\d+ \\d+$", "")
+                + " nodes " + nodes + " movetime " + moveTime + " depth " + depth;
+
+        _requests.incrementAndGet();
+        synchronized (_inFlight) {
+            final AnalysisRequest inFlight = _inFlight.get(key);
+            if (inFlight != null) {
+                _deduplicated.incrementAndGet();
+                if (priority > inFlight.priority && _queue.remove(inFlight)) {
+                    inFlight.priority = priority;
+                    _queue.add(inFlight);
+                }
+                return inFlight.result;
+            }
+            final AnalysisRequest request = new AnalysisRequest(key, position, nodes, moveTime, depth,
+                    priority, _sequence.getAndIncrement());
+            _inFlight.put(key, request);
+            _queue.add(request);
+            return request.result;
+        }
+    }
+
+    private void work(CountDownLatch warmedUp) {
+        final OmegaEngine engine = new OmegaEngine();
+        engine._CONFIGURATION.VERBOSE_STATS = false;
+        engine._CONFIGURATION._USE_BOOK = false;
+        engine._CONFIGURATION._USE_PONDERER = false;
+        final OmegaSearch search = new OmegaSearch(engine, _transpositionTable);
+
+        // let the JIT compile the search before the first request
+        search.configureNodesLimit(WARM_UP_NODES);
+        search.startSearch(new OmegaBoardPosition());
+        search.waitWhileSearching();
+        warmedUp.countDown();
+
+        while (_running) {
+            final AnalysisRequest request;
+            try {
+                request = _queue.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            AnalysisResult result = null;
+            RuntimeException exception = null;
+            try {
+                result = analyse(engine, search, request);
+            } catch (RuntimeException e) {
+                exception = e;
+            }
+            // later requests for this position are searched again (from the hash)
+            synchronized (_inFlight) {
+                _inFlight.remove(request.key);
+            }
+            if (exception == null) {
+                request.result.complete(result);
+            } else {
+                request.result.completeExceptionally(exception);
+            }
+        }
+        // the search has ended - the transposition table is owned by the server and only
+        // the evaluation cache is pooled
+        search.releaseCacheTables();
+    }
+
+    private AnalysisResult analyse(OmegaEngine engine, OmegaSearch search, AnalysisRequest request) {
+        if (request.nodes > 0) {
+            search.configureNodesLimit(request.nodes);
+        } else if (request.depth > 0) {
+            search.configureIterativeDepth(request.depth);
+        } else {
+            search.configureTimePerMove(Duration.ofMillis(request.moveTime));
+        }
+        final long start = System.nanoTime();
+        search.startSearch(request.position);
+        // stop() might have missed the search while it was started
+        if (_running) search.waitWhileSearching();
+        if (!_running) {
+            // the result of an aborted search is not an analysis of the position
+            search.stop();
+            throw new CancellationException("Server stopped");
+        }
+        _searches.incrementAndGet();
+
+        final SearchResult searchResult = engine.getSearchResult();
+        final List<String> pv = new ArrayList<>();
+        if (searchResult != null && searchResult.bestMove != OmegaMove.NOMOVE) {
+            final int[] moves = search._principalVariation[0].toArray();
+            if (moves.length > 0 && moves[0] == searchResult.bestMove) {
+                for (int move : moves) {
+                    if (move == OmegaMove.NOMOVE) break;
+                    pv.add(OmegaMove.toUCINotation(move));
+                }
+            } else {
+                pv.add(OmegaMove.toUCINotation(searchResult.bestMove));
+            }
+        }
+        if (searchResult == null || searchResult.bestMove == OmegaMove.NOMOVE) {
+            // mate or stalemate
+            return new AnalysisResult(null,
+                    request.position.hasCheck() ? -OmegaEvaluation.Value.CHECKMATE : OmegaEvaluation.Value.DRAW,
+                    0, 0, (System.nanoTime() - start) / 1_000_000L, pv);
+        }
+        return new AnalysisResult(OmegaMove.toUCINotation(searchResult.bestMove),
+                searchResult.resultValue, searchResult.depth, search.getNodesVisited(),
+                (System.nanoTime() - start) / 1_000_000L, pv);
+    }
+
+    private void handleAnalyse(HttpExchange exchange) throws IOException {
+        try {
+            final Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+            final String fen = parameters.get("fen");
+            if (fen == null) {
+                send(exchange, 400, "Missing parameter fen");
+                return;
+            }
+            final CompletableFuture<AnalysisResult> result = submit(fen,
+                    Long.parseLong(parameters.getOrDefault("nodes", "0")),
+                    Long.parseLong(parameters.getOrDefault("movetime", "0")),
+                    Integer.parseInt(parameters.getOrDefault("depth", "0")),
+                    Integer.parseInt(parameters.getOrDefault("priority", "0")));
+            send(exchange, 200, result.get().toString());
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, e.getMessage());
+        } catch (InterruptedException | ExecutionException | RuntimeException e) {
+            send(exchange, 500, "Analysis failed: " + e);
+        }
+    }
+
+    private void handleStatus(HttpExchange exchange) throws IOException {
+        send(exchange, 200, getStatus());
+    }
+
+    /**
+     * @return status line with the number of workers, queued and in flight requests and
+     * the request counters
+     */
+    public String getStatus() {
+        final int inFlight;
+        synchronized (_inFlight) {
+            inFlight = _inFlight.size();
+        }
+        return String.format("workers %d queued %d inflight %d requests %d deduplicated %d searches %d hashentries %d",
+                _workers.size(), _queue.size(), inFlight, _requests.get(), _deduplicated.get(),
+                _searches.get(), _transpositionTable.getNumberOfEntries());
+    }
+
+    /**
+     * @return number of requests which got the result of a request in flight
+     */
+    public long getDeduplicated() {
+        return _deduplicated.get();
+    }
+
+    /**
+     * @return number of searches done by the workers
+     */
+    public long getSearches() {
+        return _searches.get();
+    }
+
+    private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        if (query == null || query.isEmpty()) return Collections.emptyMap();
+        final Map<String, String> parameters = new HashMap<>();
+        for (String parameter : query.split("&")) {
+            final int i = parameter.indexOf('=');
+            if (i < 0) continue;
+            parameters.put(URLDecoder.decode(parameter.substring(0, i), "UTF-8"),
+                    URLDecoder.decode(parameter.substring(i + 1), "UTF-8"));
+        }
+        return parameters;
+    }
+
+    private static void send(HttpExchange exchange, int status, String text) throws IOException {
+        final byte[] body = (text + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Starts the server and runs until the process is stopped.
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        CmdLineParser cp = new CmdLineParser();
+        CmdLineParser.Option portOption = cp.addIntegerOption('p', "port");
+        CmdLineParser.Option workersOption = cp.addIntegerOption('j', "workers");
+        CmdLineParser.Option hashOption = cp.addIntegerOption('m', "hash");
+        CmdLineParser.Option usage = cp.addBooleanOption('?', "help");
+
+        try {
+            cp.parse(args);
+        } catch (CmdLineParser.OptionException e) {
+            System.err.println(e.getMessage());
+            printUsage();
+            System.exit(2);
+        }
+
+        if ((Boolean) cp.getOptionValue(usage)) {
+            printUsage();
+            System.exit(0);
+        }
+
+        final int port = (Integer) cp.getOptionValue(portOption, DEFAULT_PORT);
+        final int workers = (Integer) cp.getOptionValue(workersOption,
+                Runtime.getRuntime().availableProcessors());
+        final int hash = (Integer) cp.getOptionValue(hashOption, DEFAULT_HASH_SIZE);
+
+        final OmegaAnalysisServer server = new OmegaAnalysisServer(workers, hash);
+        try {
+            server.start(port);
+        } catch (IOException e) {
+            System.err.println("Could not start analysis server on port " + port + ": " + e.getMessage());
+            System.exit(1);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        System.out.format("Analysis server with %d workers listening on http://localhost:%d/analyse%n",
+                workers, server.getPort());
+    }
+
+    private static void printUsage() {
+        System.out.println();
+        System.out.println("Usage: OmegaAnalysisServer [-p,--port port] [-j,--workers n] [-m,--hash MB] [-?, --help]");
+        System.out.println("Options:");
+        System.out.println();
+        System.out.println("-p port on localhost (default " + DEFAULT_PORT + ")");
+        System.out.println("-j number of parallel searches (default number of cores)");
+        System.out.println("-m size of the shared transposition table in MB (default " + DEFAULT_HASH_SIZE + ")");
+        System.out.println();
+    }
+
+    /**
+     * A queued analysis request. Higher priorities first, then in the order of the requests.
+     */
+    private static final class AnalysisRequest implements Comparable<AnalysisRequest> {
+        final String key;
+        final OmegaBoardPosition position;
+        final long nodes;
+        final long moveTime;
+        final int depth;
+        final long sequence;
+        final CompletableFuture<AnalysisResult> result = new CompletableFuture<>();
+        // only changed while the request is not queued
+        volatile int priority;
+
+        AnalysisRequest(String key, OmegaBoardPosition position, long nodes, long moveTime, int depth,
+                int priority, long sequence) {
+            this.key = key;
+            this.position = position;
+            this.nodes = nodes;
+            this.moveTime = moveTime;
+            this.depth = depth;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(AnalysisRequest o) {
+            if (priority != o.priority) return Integer.compare(o.priority, priority);
+            return Long.compare(sequence, o.sequence);
+        }
+    }
+
+    /**
+     * Result of an analysis request.
+     */
+    public static final class AnalysisResult {
+        /** best move in UCI notation or null if there is no legal move */
+        public final String bestMove;
+        /** value from the view of the side to move */
+        public final int value;
+        /** search depth */
+        public final int depth;
+        /** nodes searched */
+        public final long nodes;
+        /** search time in ms */
+        public final long timeMs;
+        /** principal variation in UCI notation */
+        public final List<String> pv;
+
+        AnalysisResult(String bestMove, int value, int depth, long nodes, long timeMs, List<String> pv) {
+            this.bestMove = bestMove;
+            this.value = value;
+            this.depth = depth;
+            this.nodes = nodes;
+            this.timeMs = timeMs;
+            this.pv = Collections.unmodifiableList(pv);
+        }
+
+        @Override
+        public String toString() {
+            return "bestmove " + (bestMove == null ? "0000" : bestMove)
+                    + " score " + OmegaUCI.scoreToUCI(value)
+                    + " depth " + depth + " nodes " + nodes + " time " + timeMs
+                    + (pv.isEmpty() ? "" : " pv " + String.join(" ", pv));
+        }
+    }
+}
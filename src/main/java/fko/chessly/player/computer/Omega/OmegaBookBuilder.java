@@ -0,0 +1,473 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.player.computer.Omega;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import fko.chessly.openingbook.OpeningBookImpl.Mode;
+import fko.chessly.openingbook.PGN_Reader.pgnGame;
+import fko.chessly.openingbook.PGN_StreamReader;
+import fko.chessly.openingbook.PolyglotBook;
+import fko.chessly.util.CmdLineParser;
+
+/**
+ * Builds opening books by replaying games on <code>OmegaBoardPosition</code>.
+ * <p>
+ * Games are read with {@link PGN_StreamReader} (or line by line for SAN and SIMPLE books)
+ * and replayed in parallel. Each thread parses the moves with its own move generator, plays
+ * them with <code>makeMove</code> and counts each position key and move in its own primitive
+ * hash map. The maps of all threads are merged when the book is written. No FEN strings or
+ * <code>GameBoard</code> objects are created.
+ * <p>
+ * The key of a position is its zobrist key by default. Another key function (e.g. the
+ * Polyglot key) can be given to the constructor. Books keyed by the Polyglot hash are
+ * written as Polyglot books with {@link #writePolyglot(Path)}.
+ * <p>
+ * Usage: <code>java fko.chessly.player.computer.Omega.OmegaBookBuilder [-o file] [-p plies] [-b] files or folders...</code>
+ */
+public class OmegaBookBuilder {
+
+    /** maximum number of plies of a game added to the book (limited by the position history) */
+    public static final int MAX_PLY = 200;
+
+    private static final Pattern SIMPLE_MOVE_PATTERN = Pattern.compile("([a-h][1-8][a-h][1-8])");
+
+    private final ToLongFunction<OmegaBoardPosition> _keyFunction;
+    private final int _maxPly;
+
+    // the maps of all threads which added games
+    private final Queue<RecordMap> _maps = new ConcurrentLinkedQueue<>();
+    // replaced after a merge so that the threads start with new maps
+    private volatile ThreadLocal<Replayer> _replayers = createReplayers();
+
+    private final LongAdder _games = new LongAdder();
+    private final LongAdder _plies = new LongAdder();
+    private final LongAdder _invalidGames = new LongAdder();
+
+    /**
+     * Creates a builder for zobrist keyed books with up to {@link #MAX_PLY} plies per game.
+     */
+    public OmegaBookBuilder() {
+        this(OmegaBoardPosition::getZobristKey, MAX_PLY);
+    }
+
+    /**
+     * @param keyFunction computes the key of a position
+     * @param maxPly maximum number of plies of each game added to the book
+     */
+    public OmegaBookBuilder(ToLongFunction<OmegaBoardPosition> keyFunction, int maxPly) {
+        if (maxPly < 1 || maxPly > MAX_PLY) throw new IllegalArgumentException("maxPly must be between 1 and " + MAX_PLY);
+        _keyFunction = keyFunction;
+        _maxPly = maxPly;
+    }
+
+    /**
+     * Adds all games of a book file. The stream is closed.
+     *
+     * @param in
+     * @param mode PGN, SAN (one game per line) or SIMPLE (from-to notation)
+     * @throws IOException
+     */
+    public void addBook(InputStream in, Mode mode) throws IOException {
+        try {
+            switch (mode) {
+                case PGN:
+                    try (Stream<pgnGame> games = new PGN_StreamReader(in).stream()) {
+                        games.parallel().forEach(game -> _replayers.get().addGame(game));
+                    }
+                    break;
+                case SAN:
+                case SIMPLE:
+                    try (BufferedReader reader = new BufferedReader(
+                            new InputStreamReader(in, StandardCharsets.ISO_8859_1))) {
+                        reader.lines().parallel().forEach(line -> _replayers.get().addLine(line, mode));
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Mode not supported for building a book: " + mode);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Adds a PGN file or all PGN files of a folder (including sub folders).
+     *
+     * @param path
+     * @throws IOException
+     */
+    public void addPGN(Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            final List<Path> files;
+            try (Stream<Path> paths = Files.walk(path)) {
+                files = paths.filter(p -> p.toString().toLowerCase().endsWith(".pgn")).sorted()
+                        .collect(Collectors.toList());
+            }
+            for (Path file : files) addBook(Files.newInputStream(file), Mode.PGN);
+        } else {
+            addBook(Files.newInputStream(path), Mode.PGN);
+        }
+    }
+
+    /**
+     * Calls the consumer for each position key and move with the number of times the move
+     * has been played. Merges the maps of all threads first. Must not be called while games
+     * are added.
+     *
+     * @param consumer
+     */
+    public void forEachRecord(RecordConsumer consumer) {
+        final RecordMap records = merge();
+        for (int i = 0; i < records.counts.length; i++) {
+            if (records.counts[i] != 0) consumer.accept(records.keys[i], records.moves[i], records.counts[i]);
+        }
+    }
+
+    /**
+     * Writes the book as a binary book (see {@link OmegaOpeningBook}). The key function must
+     * be the zobrist key.
+     *
+     * @param file
+     * @return number of records written
+     * @throws IOException
+     */
+    public int write(Path file) throws IOException {
+        final RecordMap records = merge();
+        final long[] keys = new long[records.size];
+        final int[] moves = new int[records.size];
+        final int[] counts = new int[records.size];
+        int n = 0;
+        for (int i = 0; i < records.counts.length; i++) {
+            if (records.counts[i] == 0) continue;
+            keys[n] = records.keys[i];
+            moves[n] = records.moves[i];
+            counts[n] = records.counts[i];
+            n++;
+        }
+        OmegaOpeningBook.write(file, keys, moves, counts, n);
+        return n;
+    }
+
+    /**
+     * Writes the book as a Polyglot book (see {@link PolyglotBook}). The key function must
+     * be the Polyglot hash (see {@link #forPolyglot(long[], int)}).
+     *
+     * @param file
+     * @return number of entries written
+     * @throws IOException
+     */
+    public int writePolyglot(Path file) throws IOException {
+        final RecordMap records = merge();
+        final long[] keys = new long[records.size];
+        final int[] moves = new int[records.size];
+        final int[] counts = new int[records.size];
+        int n = 0;
+        for (int i = 0; i < records.counts.length; i++) {
+            if (records.counts[i] == 0) continue;
+            keys[n] = records.keys[i];
+            moves[n] = toPolyglotMove(records.moves[i]);
+            counts[n] = records.counts[i];
+            n++;
+        }
+        return PolyglotBook.write(file, keys, moves, counts, n);
+    }
+
+    /**
+     * Creates a builder which keys the positions by their Polyglot hash.
+     *
+     * @param random64 the random numbers of the Polyglot hash
+     * @param maxPly maximum number of plies of each game added to the book
+     * @return builder for {@link #writePolyglot(Path)}
+     */
+    public static OmegaBookBuilder forPolyglot(long[] random64, int maxPly) {
+        return new OmegaBookBuilder(position -> PolyglotBook.getKey(position.toFENString(), random64), maxPly);
+    }
+
+    /**
+     * Polyglot writes castling as the king capturing its own rook.
+     */
+    private static int toPolyglotMove(int move) {
+        String notation = OmegaMove.toUCINotation(move);
+        if (OmegaMove.getMoveType(move) == OmegaMoveType.CASTLING) {
+            final char rookFile = OmegaMove.getEnd(move).getFile() == OmegaSquare.File.g ? 'h' : 'a';
+            notation = notation.substring(0, 2) + rookFile + notation.substring(3);
+        }
+        return PolyglotBook.encodeMove(notation);
+    }
+
+    private ThreadLocal<Replayer> createReplayers() {
+        return ThreadLocal.withInitial(() -> {
+            final Replayer replayer = new Replayer();
+            _maps.add(replayer.records);
+            return replayer;
+        });
+    }
+
+    /**
+     * Merges the maps of all threads into the largest one.
+     */
+    private RecordMap merge() {
+        RecordMap merged = null;
+        for (RecordMap map : _maps) {
+            if (merged == null || map.size > merged.size) merged = map;
+        }
+        if (merged == null) return new RecordMap();
+        for (RecordMap map : _maps) {
+            if (map == merged) continue;
+            for (int i = 0; i < map.counts.length; i++) {
+                if (map.counts[i] != 0) merged.add(map.keys[i], map.moves[i], map.counts[i]);
+            }
+        }
+        _maps.clear();
+        _maps.add(merged);
+        _replayers = createReplayers();
+        return merged;
+    }
+
+    /**
+     * @return number of games added
+     */
+    public long getGames() {
+        return _games.sum();
+    }
+
+    /**
+     * @return number of plies added
+     */
+    public long getPlies() {
+        return _plies.sum();
+    }
+
+    /**
+     * @return number of games which were cut at an invalid or illegal move
+     */
+    public long getInvalidGames() {
+        return _invalidGames.sum();
+    }
+
+    /**
+     * Receives the records of the book.
+     */
+    @FunctionalInterface
+    public interface RecordConsumer {
+        /**
+         * @param key key of the position
+         * @param move the move played in the position
+         * @param count number of times the move has been played
+         */
+        void accept(long key, int move, int count);
+    }
+
+    /**
+     * Replays games for one thread.
+     */
+    private final class Replayer {
+
+        final RecordMap records = new RecordMap();
+        final OmegaMoveGenerator moveGenerator = new OmegaMoveGenerator();
+
+        void addGame(pgnGame game) {
+            final String fen = game.getTags().get("FEN");
+            final OmegaBoardPosition position;
+            try {
+                position = fen == null ? new OmegaBoardPosition() : new OmegaBoardPosition(fen);
+            } catch (RuntimeException e) {
+                _invalidGames.increment();
+                return;
+            }
+            addMoves(position, game.getMoves());
+        }
+
+        void addLine(String line, Mode mode) {
+            if (mode == Mode.SIMPLE) {
+                // lines starting with a digit are ignored
+                if (line.isEmpty() || Character.isDigit(line.charAt(0))) return;
+                final List<String> moves = new ArrayList<>();
+                final Matcher matcher = SIMPLE_MOVE_PATTERN.matcher(line);
+                while (matcher.find()) moves.add(matcher.group());
+                addMoves(new OmegaBoardPosition(), moves);
+            } else {
+                final List<String> moves = new ArrayList<>();
+                for (String item : line.trim().split("\\s+")) {
+                    // ignore numbering
+                    if (item.isEmpty() || Character.isDigit(item.charAt(0))) continue;
+                    moves.add(item);
+                }
+                addMoves(new OmegaBoardPosition(), moves);
+            }
+        }
+
+        private void addMoves(OmegaBoardPosition position, List<String> moves) {
+            if (moves.isEmpty()) return;
+            _games.increment();
+            int ply = 0;
+            for (String notation : moves) {
+                if (ply == _maxPly) break;
+                final int move = OmegaMove.fromNotation(position, notation, moveGenerator);
+                if (move == OmegaMove.NOMOVE) {
+                    // skip the rest of the game
+                    _invalidGames.increment();
+                    break;
+                }
+                records.add(_keyFunction.applyAsLong(position), move, 1);
+                position.makeMove(move);
+                ply++;
+            }
+            _plies.add(ply);
+        }
+    }
+
+    /**
+     * Open addressing hash map from position key and move to a count.
+     */
+    private static final class RecordMap {
+
+        long[] keys = new long[1 << 12];
+        int[] moves = new int[1 << 12];
+        // 0 for empty slots
+        int[] counts = new int[1 << 12];
+        int size = 0;
+
+        void add(long key, int move, int count) {
+            if (size * 4 >= counts.length * 3) grow();
+            final int mask = counts.length - 1;
+            int i = index(key, move, mask);
+            while (counts[i] != 0) {
+                if (keys[i] == key && moves[i] == move) {
+                    counts[i] += count;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            moves[i] = move;
+            counts[i] = count;
+            size++;
+        }
+
+        private void grow() {
+            final long[] oldKeys = keys;
+            final int[] oldMoves = moves;
+            final int[] oldCounts = counts;
+            keys = new long[oldCounts.length * 2];
+            moves = new int[oldCounts.length * 2];
+            counts = new int[oldCounts.length * 2];
+            final int mask = counts.length - 1;
+            for (int j = 0; j < oldCounts.length; j++) {
+                if (oldCounts[j] == 0) continue;
+                int i = index(oldKeys[j], oldMoves[j], mask);
+                while (counts[i] != 0) i = (i + 1) & mask;
+                keys[i] = oldKeys[j];
+                moves[i] = oldMoves[j];
+                counts[i] = oldCounts[j];
+            }
+        }
+
+        private static int index(long key, int move, int mask) {
+            long h = (key ^ (move * 0x9E3779B97F4A7C15L)) * 0xBF58476D1CE4E5B9L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+
+    /**
+     * Builds a binary opening book from PGN files.
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        CmdLineParser cp = new CmdLineParser();
+        CmdLineParser.Option outputOption = cp.addStringOption('o', "output");
+        CmdLineParser.Option pliesOption = cp.addIntegerOption('p', "plies");
+        CmdLineParser.Option polyglotOption = cp.addBooleanOption('b', "polyglot");
+        CmdLineParser.Option usage = cp.addBooleanOption('?', "help");
+
+        try {
+            cp.parse(args);
+        } catch (CmdLineParser.OptionException e) {
+            System.err.println(e.getMessage());
+            printUsage();
+            System.exit(2);
+        }
+
+        if ((Boolean) cp.getOptionValue(usage) || cp.getRemainingArgs().length == 0) {
+            printUsage();
+            System.exit(0);
+        }
+
+        final boolean polyglot = (Boolean) cp.getOptionValue(polyglotOption, Boolean.FALSE);
+        final String extension = polyglot ? PolyglotBook.FILE_EXTENSION : OmegaOpeningBook.FILE_EXTENSION;
+        final Path output = Paths.get((String) cp.getOptionValue(outputOption, "book" + extension));
+        final int plies = (Integer) cp.getOptionValue(pliesOption, MAX_PLY);
+
+        final long start = System.currentTimeMillis();
+        try {
+            final OmegaBookBuilder builder = polyglot
+                    ? forPolyglot(PolyglotBook.getStandardRandom64(), plies)
+                    : new OmegaBookBuilder(OmegaBoardPosition::getZobristKey, plies);
+            for (String input : cp.getRemainingArgs()) builder.addPGN(Paths.get(input));
+            final int records = polyglot ? builder.writePolyglot(output) : builder.write(output);
+            final long duration = System.currentTimeMillis() - start;
+            System.out.format("%s: %,d games, %,d plies, %,d records (%,d games with invalid moves) in %,d ms%n",
+                    output, builder.getGames(), builder.getPlies(), records, builder.getInvalidGames(), duration);
+        } catch (IOException e) {
+            System.err.println("Could not build opening book: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void printUsage() {
+        System.out.println();
+        System.out.println("Usage: OmegaBookBuilder [-o,--output file] [-p,--plies n] [-b,--polyglot] [-?, --help] files or folders...");
+        System.out.println("Options:");
+        System.out.println();
+        System.out.println("-o binary book file to write (default book" + OmegaOpeningBook.FILE_EXTENSION
+                + " or book" + PolyglotBook.FILE_EXTENSION + ")");
+        System.out.println("-p maximum number of plies per game (default " + MAX_PLY + ")");
+        System.out.println("-b write a Polyglot book (needs " + PolyglotBook.RANDOM64_RESOURCE + ")");
+        System.out.println();
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.player.computer.Omega;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Process wide pool of transposition tables and evaluation caches.
+ * <p>
+ * Creating the tables (including the garbage collection to check the free memory) is
+ * expensive and used to happen for every new engine - i.e. twice per game. The pool hands
+ * out cleared tables of the requested size and takes them back when the engine is done with
+ * them (e.g. at the end of a game). Free tables of other sizes are dropped before a new
+ * table is created so that their memory can be reused.
+ * <p>
+ * The pool can also hand out one shared transposition table which is used by all searches
+ * acquiring it (e.g. both engines when analysing a game with engine against engine). It is
+ * created as a shared table as the searches might run in parallel (pondering) and is
+ * cleared when the last search released it.
+ */
+public final class OmegaCachePool {
+
+    private static final Map<Integer, Deque<OmegaTranspositionTable>> _freeTables = new HashMap<>();
+    private static final Map<Integer, Deque<OmegaEvaluationCache>> _freeCaches = new HashMap<>();
+
+    private static OmegaTranspositionTable _sharedTable = null;
+    private static int _sharedTableSize = 0;
+    private static int _sharedTableUsers = 0;
+
+    private static long _created = 0;
+    private static long _reused = 0;
+
+    private OmegaCachePool() {
+        // static only
+    }
+
+    /**
+     * @param size in MB
+     * @return a cleared transposition table which is only used by the caller
+     */
+    public static synchronized OmegaTranspositionTable acquireTranspositionTable(int size) {
+        OmegaTranspositionTable table = take(_freeTables, size);
+        if (table == null) table = new OmegaTranspositionTable(size);
+        return table;
+    }
+
+    /**
+     * @param size in MB
+     * @return a cleared evaluation cache which is only used by the caller
+     */
+    public static synchronized OmegaEvaluationCache acquireEvaluationCache(int size) {
+        OmegaEvaluationCache cache = take(_freeCaches, size);
+        if (cache == null) cache = new OmegaEvaluationCache(size);
+        return cache;
+    }
+
+    /**
+     * Returns the shared transposition table. It is created if there is none or if the
+     * unused shared table has a different size. While the shared table is in use it is
+     * handed out regardless of the requested size.
+     *
+     * @param size in MB
+     * @return the transposition table shared by all callers
+     */
+    public static synchronized OmegaTranspositionTable acquireSharedTranspositionTable(int size) {
+        if (_sharedTable == null || (_sharedTableUsers == 0 && _sharedTableSize != size)) {
+            _sharedTable = null; // release the old table first
+            _sharedTable = new OmegaTranspositionTable(size, true);
+            _sharedTableSize = size;
+            _created++;
+        } else if (_sharedTableUsers == 0) {
+            _reused++;
+        }
+        _sharedTableUsers++;
+        return _sharedTable;
+    }
+
+    /**
+     * Gives a transposition table back to the pool. The table is cleared and must not be
+     * used by the caller any more. The pool keeps no reference to the tables it hands out
+     * so tables which are never released are simply garbage collected.
+     *
+     * @param table acquired from this pool
+     */
+    public static synchronized void release(OmegaTranspositionTable table) {
+        if (table == _sharedTable && _sharedTableUsers > 0) {
+            if (--_sharedTableUsers == 0) _sharedTable.clear();
+            return;
+        }
+        if (table.isShared()) throw new IllegalArgumentException("Shared table is not in use");
+        put(_freeTables, table, table.getSize());
+        table.clear();
+    }
+
+    /**
+     * Gives an evaluation cache back to the pool. The cache is cleared and must not be used
+     * by the caller any more.
+     *
+     * @param cache acquired from this pool
+     */
+    public static synchronized void release(OmegaEvaluationCache cache) {
+        put(_freeCaches, cache, cache.getSize());
+        cache.clear();
+    }
+
+    /**
+     * Drops all free tables and the shared table if it is not in use.
+     */
+    public static synchronized void clear() {
+        _freeTables.clear();
+        _freeCaches.clear();
+        if (_sharedTableUsers == 0) _sharedTable = null;
+    }
+
+    /**
+     * @return number of tables and caches created by the pool
+     */
+    public static synchronized long getCreated() {
+        return _created;
+    }
+
+    /**
+     * @return number of tables and caches handed out again after they have been released
+     */
+    public static synchronized long getReused() {
+        return _reused;
+    }
+
+    /**
+     * @return number of free tables and caches in the pool
+     */
+    public static synchronized int getNumberOfFreeTables() {
+        int free = 0;
+        for (Deque<OmegaTranspositionTable> tables : _freeTables.values()) free += tables.size();
+        for (Deque<OmegaEvaluationCache> caches : _freeCaches.values()) free += caches.size();
+        return free;
+    }
+
+    /**
+     * Takes a free table of the given size. If there is none the free tables of other sizes
+     * are dropped as a new table will be created.
+     */
+    private static <T> T take(Map<Integer, Deque<T>> free, int size) {
+        final Deque<T> tables = free.get(toBytes(size));
+        if (tables != null && !tables.isEmpty()) {
+            _reused++;
+            return tables.pop();
+        }
+        free.keySet().retainAll(Collections.singleton(toBytes(size)));
+        _created++;
+        return null;
+    }
+
+    /**
+     * Adds a released table to the free tables of its size in bytes.
+     */
+    private static <T> void put(Map<Integer, Deque<T>> free, T table, int bytes) {
+        final Deque<T> tables = free.computeIfAbsent(bytes, k -> new ArrayDeque<>());
+        for (T t : tables) {
+            if (t == table) throw new IllegalArgumentException("Table has already been released");
+        }
+        tables.push(table);
+    }
+
+    /**
+     * The free tables are keyed by their size in bytes as given by getSize() of the tables.
+     */
+    private static int toBytes(int sizeInMB) {
+        return sizeInMB * 1024 * 1024;
+    }
+}
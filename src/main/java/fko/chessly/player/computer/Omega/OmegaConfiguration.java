@@ -65,8 +65,8 @@ public class OmegaConfiguration {
     /** Use Transposition Tables for visited nodes  (needs extra memory) */
     boolean _USE_NODE_CACHE = true;
 
-    /** Use Transposition Tables to store move list (needs extra memory)
-     *  Very expensive as it creates many int[] arrays - worth it?*/
+    /** Search the best move stored in the Transposition Table first
+     *  (no extra memory - the move is part of the node cache entry) */
     boolean _USE_MOVE_CACHE = true;
 
     /** Use Cache for Board evaluations - very expensive, only worth
@@ -92,6 +92,9 @@ public class OmegaConfiguration {
     boolean _USE_NMP = true;
     boolean _USE_VERIFY_NMP = true;
 
+    /** Weights of the evaluation - must be set before the search is created */
+    OmegaEvaluationWeights _EVAL_WEIGHTS = new OmegaEvaluationWeights();
+
 
     /** value for folder to books */
     String _OB_FolderPath = "/book/";
@@ -101,8 +104,11 @@ public class OmegaConfiguration {
     //String _OB_fileNamePlain = "book.txt";
     /** default opening book value */
     Mode _OB_Mode = Mode.PGN;
+    /** use the memory mapped binary version of the opening book (see OmegaOpeningBook) */
+    boolean _OB_Binary = true;
     //Mode _OB_Mode = Mode.SAN;
     //Mode _OB_Mode = Mode.SIMPLE;
+    //Mode _OB_Mode = Mode.POLYGLOT; // e.g. with _OB_fileNamePlain = "book.bin"
 
 
 }
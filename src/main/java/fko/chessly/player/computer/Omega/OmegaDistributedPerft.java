@@ -0,0 +1,347 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.player.computer.Omega;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import fko.chessly.game.NotationHelper;
+import fko.chessly.util.CmdLineParser;
+
+/**
+ * Distributed perft over worker processes ({@link OmegaDistributedWorker}) connected over
+ * sockets.
+ * <p>
+ * The coordinator expands the tree to the split depth with the Omega move generator. Equal
+ * positions at the split depth (transpositions) become one job with a multiplicity. The jobs
+ * (FEN plus remaining depth) are dealt round robin to one queue per worker. Each worker works
+ * through its own queue and steals from the end of the longest other queue when its own is
+ * empty. A job of a failed worker is put back to its queue and stolen by the remaining workers.
+ * The sub tree counts returned by the workers are multiplied with the multiplicity of their
+ * job and summed exactly.
+ * <p>
+ * Usage: <code>java fko.chessly.player.computer.Omega.OmegaDistributedPerft (-w host:port,... | -l n) [-d depth] [-s split] [fen]</code>
+ */
+public class OmegaDistributedPerft implements AutoCloseable {
+
+    /** default number of plies expanded by the coordinator */
+    public static final int DEFAULT_SPLIT_DEPTH = 3;
+
+    private final List<OmegaWorkerConnection> _connections;
+
+    private final AtomicLong _jobs = new AtomicLong();
+    private final AtomicLong _stolen = new AtomicLong();
+    private final AtomicLong _retried = new AtomicLong();
+
+    /**
+     * Connects to the given workers. Workers which can't be reached are skipped.
+     *
+     * @param workers addresses of the workers
+     * @throws IOException if no worker can be reached
+     */
+    public OmegaDistributedPerft(List<InetSocketAddress> workers) throws IOException {
+        _connections = OmegaWorkerConnection.connect(workers);
+    }
+
+    /**
+     * Counts the leaf nodes of the position.
+     *
+     * @param fen
+     * @param depth
+     * @param splitDepth number of plies expanded by the coordinator
+     * @return number of leaf nodes
+     */
+    public long perft(String fen, int depth, int splitDepth) {
+        if (depth < 1 || depth > OmegaSearch.MAX_SEARCH_DEPTH)
+            throw new IllegalArgumentException("depth must be between 1 and " + OmegaSearch.MAX_SEARCH_DEPTH);
+        if (splitDepth < 0) throw new IllegalArgumentException("splitDepth must be >= 0");
+        splitDepth = Math.min(splitDepth, depth);
+
+        final Map<String, Long> positions = new LinkedHashMap<>();
+        final OmegaMoveGenerator[] generators = new OmegaMoveGenerator[splitDepth];
+        for (int i = 0; i < splitDepth; i++) generators[i] = new OmegaMoveGenerator();
+        expand(new OmegaBoardPosition(fen), splitDepth, 0, generators, positions);
+
+        if (splitDepth == depth) {
+            long nodes = 0;
+            for (long count : positions.values()) nodes += count;
+            return nodes;
+        }
+
+        final List<Deque<Job>> queues = new ArrayList<>(_connections.size());
+        for (int i = 0; i < _connections.size(); i++) queues.add(new ConcurrentLinkedDeque<>());
+        int next = 0;
+        for (Map.Entry<String, Long> position : positions.entrySet()) {
+            queues.get(next++ % queues.size()).add(new Job(position.getKey(), position.getValue()));
+        }
+
+        final int remainingDepth = depth - splitDepth;
+        final LongAdder nodes = new LongAdder();
+        final ExecutorService pool = Executors.newFixedThreadPool(_connections.size(), r -> {
+            Thread t = new Thread(r, "OmegaDistributedPerft");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            // repeat while jobs of failed workers are left
+            while (hasJobs(queues)) {
+                final List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < _connections.size(); i++) {
+                    if (!_connections.get(i).alive) continue;
+                    final int index = i;
+                    futures.add(pool.submit(() -> runJobs(index, queues, remainingDepth, nodes)));
+                }
+                if (futures.isEmpty()) throw new IllegalStateException("No worker left");
+                for (Future<?> future : futures) future.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException("Distributed perft failed", e);
+        } finally {
+            pool.shutdownNow();
+        }
+        return nodes.sum();
+    }
+
+    /**
+     * Collects the positions at the split depth with their number of occurrences.
+     */
+    private static void expand(OmegaBoardPosition position, int depthLeft, int ply,
+            OmegaMoveGenerator[] generators, Map<String, Long> positions) {
+        if (depthLeft == 0) {
+            // move counters are irrelevant for perft
+            positions.merge(position.toFENString().replaceFirst(" \\d+ \\d+$", " 0 1"), 1L, Long::sum);
+            return;
+        }
+        final OmegaMoveList moves = generators[ply].getLegalMoves(position, false);
+        for (int i = 0; i < moves.size(); i++) {
+            position.makeMove(moves.get(i));
+            expand(position, depthLeft - 1, ply + 1, generators, positions);
+            position.undoMove();
+        }
+    }
+
+    private void runJobs(int index, List<Deque<Job>> queues, int depth, LongAdder nodes) {
+        final OmegaWorkerConnection connection = _connections.get(index);
+        final Deque<Job> own = queues.get(index);
+        while (true) {
+            Job job = own.pollFirst();
+            if (job == null) {
+                job = steal(index, queues);
+                if (job == null) return;
+                _stolen.incrementAndGet();
+            }
+            try {
+                final String answer = connection.request("perft " + depth + " " + job.fen);
+                if (!answer.startsWith("nodes ")) throw new IOException("Unexpected answer: " + answer);
+                nodes.add(Long.parseLong(answer.substring(6).trim()) * job.count);
+                _jobs.incrementAndGet();
+            } catch (IOException | NumberFormatException e) {
+                own.addFirst(job);
+                _retried.incrementAndGet();
+                connection.close();
+                System.err.println("Worker " + connection.address + " failed: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Takes a job from the end of the longest queue of the other workers (including failed ones).
+     */
+    private static Job steal(int index, List<Deque<Job>> queues) {
+        while (true) {
+            Deque<Job> victim = null;
+            int victimSize = 0;
+            for (int i = 0; i < queues.size(); i++) {
+                if (i == index) continue;
+                final int size = queues.get(i).size();
+                if (size > victimSize) {
+                    victim = queues.get(i);
+                    victimSize = size;
+                }
+            }
+            if (victim == null) return null;
+            final Job job = victim.pollLast();
+            if (job != null) return job;
+            // the queue has been emptied in the meantime - look again
+        }
+    }
+
+    private static boolean hasJobs(List<Deque<Job>> queues) {
+        for (Deque<Job> queue : queues) {
+            if (!queue.isEmpty()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of jobs done by each worker (in the order of the workers)
+     */
+    public List<Integer> getJobsPerWorker() {
+        final List<Integer> jobs = new ArrayList<>(_connections.size());
+        for (OmegaWorkerConnection connection : _connections) jobs.add(connection.requests);
+        return jobs;
+    }
+
+    /**
+     * @return number of finished jobs of all runs
+     */
+    public long getJobs() {
+        return _jobs.get();
+    }
+
+    /**
+     * @return number of jobs taken from the queue of another worker
+     */
+    public long getStolen() {
+        return _stolen.get();
+    }
+
+    /**
+     * @return number of jobs which had to be retried because a worker failed
+     */
+    public long getRetried() {
+        return _retried.get();
+    }
+
+    /**
+     * @return the number of connected workers
+     */
+    public int getNumberOfWorkers() {
+        int alive = 0;
+        for (OmegaWorkerConnection connection : _connections) if (connection.alive) alive++;
+        return alive;
+    }
+
+    /**
+     * Disconnects from all workers.
+     */
+    @Override
+    public void close() {
+        for (OmegaWorkerConnection connection : _connections) connection.quit();
+    }
+
+    /**
+     * Runs a distributed perft.
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        CmdLineParser cp = new CmdLineParser();
+        CmdLineParser.Option workersOption = cp.addStringOption('w', "workers");
+        CmdLineParser.Option localOption = cp.addIntegerOption('l', "local");
+        CmdLineParser.Option depthOption = cp.addIntegerOption('d', "depth");
+        CmdLineParser.Option splitOption = cp.addIntegerOption('s', "split");
+        CmdLineParser.Option usage = cp.addBooleanOption('?', "help");
+
+        try {
+            cp.parse(args);
+        } catch (CmdLineParser.OptionException e) {
+            System.err.println(e.getMessage());
+            printUsage();
+            System.exit(2);
+        }
+
+        final String workers = (String) cp.getOptionValue(workersOption);
+        final int local = (Integer) cp.getOptionValue(localOption, 0);
+        if ((Boolean) cp.getOptionValue(usage) || (workers == null && local <= 0)) {
+            printUsage();
+            System.exit(0);
+        }
+
+        final int depth = (Integer) cp.getOptionValue(depthOption, 6);
+        final int split = (Integer) cp.getOptionValue(splitOption, DEFAULT_SPLIT_DEPTH);
+        final String fen = cp.getRemainingArgs().length == 0
+                ? NotationHelper.StandardBoardFEN : String.join(" ", cp.getRemainingArgs());
+
+        final List<OmegaDistributedWorker.LocalWorker> localWorkers = new ArrayList<>();
+        try {
+            final List<InetSocketAddress> addresses = new ArrayList<>();
+            if (workers != null) addresses.addAll(OmegaWorkerConnection.parseAddresses(workers));
+            for (int i = 0; i < local; i++) {
+                final OmegaDistributedWorker.LocalWorker worker = OmegaDistributedWorker.startLocalWorker();
+                localWorkers.add(worker);
+                addresses.add(worker.address);
+            }
+
+            try (OmegaDistributedPerft perft = new OmegaDistributedPerft(addresses)) {
+                System.out.format("Distributed perft at depth %d (split depth %d, %d workers)%n",
+                        depth, split, perft.getNumberOfWorkers());
+                final long start = System.currentTimeMillis();
+                final long nodes = perft.perft(fen, depth, split);
+                final long duration = System.currentTimeMillis() - start;
+                System.out.format("Leaf Nodes: %,d%nDuration: %,d ms%nn/s: %,d%n", nodes, duration,
+                        nodes * 1000 / (duration + 1));
+                System.out.format("Jobs: %,d  Stolen: %,d  Retried: %,d  Jobs per worker: %s%n",
+                        perft.getJobs(), perft.getStolen(), perft.getRetried(), perft.getJobsPerWorker());
+            }
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } finally {
+            for (OmegaDistributedWorker.LocalWorker worker : localWorkers) worker.stop();
+        }
+    }
+
+    private static void printUsage() {
+        System.out.println();
+        System.out.println("Usage: OmegaDistributedPerft (-w,--workers host:port,... | -l,--local n) [-d,--depth n] [-s,--split n] [-?, --help] [fen]");
+        System.out.println("Options:");
+        System.out.println();
+        System.out.println("-w comma separated list of workers (port default " + OmegaDistributedWorker.DEFAULT_PORT + ")");
+        System.out.println("-l number of worker processes started on this machine");
+        System.out.println("-d perft depth (default 6)");
+        System.out.println("-s number of plies expanded by the coordinator (default " + DEFAULT_SPLIT_DEPTH + ")");
+        System.out.println();
+    }
+
+    /**
+     * A position at the split depth and the number of times it occurs there.
+     */
+    private static final class Job {
+        final String fen;
+        final long count;
+
+        Job(String fen, long count) {
+            this.fen = fen;
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.player.computer.Omega;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import fko.chessly.util.CmdLineParser;
+
+/**
+ * Distributed analysis of one position by splitting the root moves across worker processes
+ * ({@link OmegaDistributedWorker}) connected over sockets.
+ * <p>
+ * The coordinator runs the iterative deepening. In each iteration all root moves are put into a
+ * queue ordered by the values of the last iteration. Every worker takes the next move as soon as
+ * it has finished its last one, so fast workers get more moves. A move of a worker which fails or
+ * disconnects is put back to the head of the queue for the remaining workers.
+ * <p>
+ * Every root move is searched with a full window so the workers need no bounds from each other.
+ * The workers keep their transposition tables between iterations.
+ * <p>
+ * A new iteration is only started while less than half of the time limit is used as the
+ * iteration can't be stopped.
+ * <p>
+ * Usage: <code>java fko.chessly.player.computer.Omega.OmegaDistributedSearch -w host:port,... [-d depth] [-t sec] fen</code>
+ */
+public class OmegaDistributedSearch implements AutoCloseable {
+
+    /** If set to true the result of each iteration is printed to System.out */
+    public static boolean VERBOSE = false;
+
+    private static final int START_DEPTH = 1;
+
+    private final List<OmegaWorkerConnection> _connections;
+
+    /**
+     * Connects to the given workers. Workers which can't be reached are skipped.
+     *
+     * @param workers addresses of the workers
+     * @throws IOException if no worker can be reached
+     */
+    public OmegaDistributedSearch(List<InetSocketAddress> workers) throws IOException {
+        _connections = OmegaWorkerConnection.connect(workers);
+    }
+
+    /**
+     * Searches the position with iterative deepening until the depth or the time limit is
+     * reached or a mate has been found.
+     *
+     * @param fen position to analyse
+     * @param maxDepth depth limit
+     * @param timeLimitMs time limit in ms or 0 for no time limit
+     * @return the result of the last finished iteration
+     */
+    public Result search(String fen, int maxDepth, long timeLimitMs) {
+        if (maxDepth < START_DEPTH || maxDepth > OmegaSearch.MAX_SEARCH_DEPTH)
+            throw new IllegalArgumentException("maxDepth must be between " + START_DEPTH + " and "
+                    + OmegaSearch.MAX_SEARCH_DEPTH);
+
+        final OmegaBoardPosition position = new OmegaBoardPosition(fen);
+        final OmegaMoveList legalMoves = new OmegaMoveGenerator().getLegalMoves(position, false);
+        if (legalMoves.size() == 0) throw new IllegalArgumentException("No legal moves in " + fen);
+
+        List<String> rootMoves = new ArrayList<>(legalMoves.size());
+        for (int i = 0; i < legalMoves.size(); i++) {
+            rootMoves.add(OmegaMove.toUCINotation(legalMoves.get(i)));
+        }
+
+        final long start = System.nanoTime();
+        final ExecutorService pool = Executors.newFixedThreadPool(_connections.size(), r -> {
+            Thread t = new Thread(r, "OmegaDistributedSearch");
+            t.setDaemon(true);
+            return t;
+        });
+        Result result = null;
+        try {
+            for (int depth = START_DEPTH; depth <= maxDepth; depth++) {
+                final MoveResult[] moveResults = searchIteration(pool, position.toFENString(), rootMoves, depth);
+
+                // best first for the result and the move order of the next iteration
+                final List<MoveResult> sorted = new ArrayList<>(Arrays.asList(moveResults));
+                Collections.sort(sorted, (a, b) -> Integer.compare(b.value, a.value));
+                rootMoves = new ArrayList<>(sorted.size());
+                long nodes = 0;
+                for (MoveResult moveResult : sorted) {
+                    rootMoves.add(moveResult.move);
+                    nodes += moveResult.nodes;
+                }
+                result = new Result(sorted.get(0).move, sorted.get(0).value, depth,
+                        (result == null ? 0 : result.nodes) + nodes,
+                        (System.nanoTime() - start) / 1_000_000L, sorted.get(0).pv);
+                if (VERBOSE) System.out.println(result);
+
+                if (Math.abs(result.value) >= OmegaEvaluation.Value.CHECKMATE - depth) break;
+                if (timeLimitMs > 0 && result.timeMs * 2 >= timeLimitMs) break;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return result;
+    }
+
+    private MoveResult[] searchIteration(ExecutorService pool, String fen, List<String> rootMoves, int depth) {
+        final MoveResult[] results = new MoveResult[rootMoves.size()];
+        final ConcurrentLinkedDeque<Integer> queue = new ConcurrentLinkedDeque<>();
+        for (int i = 0; i < rootMoves.size(); i++) queue.add(i);
+
+        // repeat while moves have been put back by failed workers
+        while (!queue.isEmpty()) {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (OmegaWorkerConnection connection : _connections) {
+                if (!connection.alive) continue;
+                futures.add(pool.submit(() -> {
+                    Integer index;
+                    while ((index = queue.poll()) != null) {
+                        try {
+                            results[index] = searchRootMove(connection, fen, rootMoves.get(index), depth);
+                        } catch (IOException e) {
+                            queue.addFirst(index);
+                            connection.close();
+                            System.err.println("Worker " + connection.address + " failed: " + e.getMessage());
+                            return;
+                        }
+                    }
+                }));
+            }
+            if (futures.isEmpty()) throw new IllegalStateException("No worker left");
+            try {
+                for (Future<?> future : futures) future.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException("Distributed search failed", e);
+            }
+        }
+        return results;
+    }
+
+    private static MoveResult searchRootMove(OmegaWorkerConnection connection, String fen, String move, int depth)
+            throws IOException {
+        final String answer = connection.request("search " + depth + " " + move + " " + fen);
+        // score <value> nodes <n> pv <moves...>
+        final String[] tokens = answer.split(" ");
+        if (tokens.length < 6 || !tokens[0].equals("score") || !tokens[2].equals("nodes"))
+            throw new IOException("Unexpected answer: " + answer);
+        return new MoveResult(move, Integer.parseInt(tokens[1]), Long.parseLong(tokens[3]),
+                Arrays.asList(tokens).subList(5, tokens.length));
+    }
+
+    /**
+     * @return the number of root moves searched by each worker (in the order of the workers)
+     */
+    public List<Integer> getMovesPerWorker() {
+        final List<Integer> moves = new ArrayList<>(_connections.size());
+        for (OmegaWorkerConnection connection : _connections) moves.add(connection.requests);
+        return moves;
+    }
+
+    /**
+     * @return the number of connected workers
+     */
+    public int getNumberOfWorkers() {
+        int alive = 0;
+        for (OmegaWorkerConnection connection : _connections) if (connection.alive) alive++;
+        return alive;
+    }
+
+    /**
+     * Disconnects from all workers.
+     */
+    @Override
+    public void close() {
+        for (OmegaWorkerConnection connection : _connections) connection.quit();
+    }
+
+    /**
+     * Runs a distributed search on the given position.
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        CmdLineParser cp = new CmdLineParser();
+        CmdLineParser.Option workersOption = cp.addStringOption('w', "workers");
+        CmdLineParser.Option depthOption = cp.addIntegerOption('d', "depth");
+        CmdLineParser.Option timeOption = cp.addIntegerOption('t', "time");
+        CmdLineParser.Option usage = cp.addBooleanOption('?', "help");
+
+        try {
+            cp.parse(args);
+        } catch (CmdLineParser.OptionException e) {
+            System.err.println(e.getMessage());
+            printUsage();
+            System.exit(2);
+        }
+
+        final String workers = (String) cp.getOptionValue(workersOption);
+        if ((Boolean) cp.getOptionValue(usage) || workers == null || cp.getRemainingArgs().length == 0) {
+            printUsage();
+            System.exit(0);
+        }
+
+        final int depth = (Integer) cp.getOptionValue(depthOption, OmegaSearch.MAX_SEARCH_DEPTH);
+        final int time = (Integer) cp.getOptionValue(timeOption, 0);
+        final String fen = String.join(" ", cp.getRemainingArgs());
+
+        final List<InetSocketAddress> addresses = OmegaWorkerConnection.parseAddresses(workers);
+
+        VERBOSE = true;
+        try (OmegaDistributedSearch search = new OmegaDistributedSearch(addresses)) {
+            final Result result = search.search(fen, depth, time * 1000L);
+            System.out.format("bestmove %s%nMoves per worker: %s%n", result.bestMove, search.getMovesPerWorker());
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void printUsage() {
+        System.out.println();
+        System.out.println("Usage: OmegaDistributedSearch -w,--workers host:port,... [-d,--depth n] [-t,--time sec] [-?, --help] fen");
+        System.out.println("Options:");
+        System.out.println();
+        System.out.println("-w comma separated list of workers (port default " + OmegaDistributedWorker.DEFAULT_PORT + ")");
+        System.out.println("-d maximal search depth");
+        System.out.println("-t time limit in seconds - no new iteration is started after half of it");
+        System.out.println();
+    }
+
+    private static final class MoveResult {
+        final String move;
+        final int value;
+        final long nodes;
+        final List<String> pv;
+
+        MoveResult(String move, int value, long nodes, List<String> pv) {
+            this.move = move;
+            this.value = value;
+            this.nodes = nodes;
+            this.pv = pv;
+        }
+    }
+
+    /**
+     * Result of a finished iteration.
+     */
+    public static final class Result {
+        /** best move in UCI notation */
+        public final String bestMove;
+        /** value from the view of the side to move */
+        public final int value;
+        /** depth of the iteration */
+        public final int depth;
+        /** nodes searched by all workers in all iterations */
+        public final long nodes;
+        /** time since the start of the search in ms */
+        public final long timeMs;
+        /** principal variation in UCI notation */
+        public final List<String> pv;
+
+        Result(String bestMove, int value, int depth, long nodes, long timeMs, List<String> pv) {
+            this.bestMove = bestMove;
+            this.value = value;
+            this.depth = depth;
+            this.nodes = nodes;
+            this.timeMs = timeMs;
+            this.pv = Collections.unmodifiableList(new ArrayList<>(pv));
+        }
+
+        @Override
+        public String toString() {
+            return "info depth " + depth + " score " + OmegaUCI.scoreToUCI(value) + " nodes " + nodes
+                    + " time " + timeMs + " pv " + String.join(" ", pv);
+        }
+    }
+}
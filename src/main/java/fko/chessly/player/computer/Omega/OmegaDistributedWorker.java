@@ -0,0 +1,430 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.player.computer.Omega;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import fko.chessly.player.computer.Omega.OmegaSearch.SearchResult;
+import fko.chessly.util.CmdLineParser;
+
+/**
+ * A worker process for {@link OmegaDistributedSearch} and {@link OmegaDistributedPerft}. It
+ * listens on a socket for coordinators and answers their commands with its own OmegaEngine and
+ * OmegaSearch per connection. The transposition table of a connection is kept between commands
+ * so later iterations of the coordinator profit from the earlier ones.
+ * <p>
+ * The protocol is line based. Every command is answered with exactly one line:
+ * <pre>
+ * search &lt;depth&gt; &lt;move&gt; &lt;fen&gt;
+ *     -&gt; score &lt;value&gt; nodes &lt;n&gt; pv &lt;move&gt; ...
+ * perft &lt;depth&gt; &lt;fen&gt;
+ *     -&gt; nodes &lt;n&gt;
+ * quit
+ * </pre>
+ * <code>search</code> searches the position with the given depth and only the given root move
+ * (UCI notation). The value is the value of the root move from the view of the side to move.
+ * <code>perft</code> counts the leaf nodes of the position in parallel on all cores of the
+ * worker with a perft hash table which is kept for the connection.
+ * Errors are answered with <code>error &lt;message&gt;</code>.
+ * <p>
+ * Usage: <code>java fko.chessly.player.computer.Omega.OmegaDistributedWorker [-p port]</code>
+ */
+public class OmegaDistributedWorker {
+
+    /** default port of a worker */
+    public static final int DEFAULT_PORT = 8766;
+
+    // size in MB of the perft hash table of a connection
+    private static final int PERFT_TABLE_SIZE = 64;
+
+    // time a local worker process gets to end before it is killed
+    private static final long STOP_TIMEOUT_SECONDS = 10;
+
+    private static final Pattern LISTENING_PATTERN = Pattern.compile("Worker listening on port (\\d+)");
+
+    private final ServerSocket _serverSocket;
+    private final List<Socket> _connections = new ArrayList<>();
+    private volatile Thread _acceptThread = null;
+    private volatile boolean _running = false;
+
+    /**
+     * Creates a worker listening on the given address.
+     *
+     * @param address address to listen on (port 0 for any free port)
+     * @throws IOException
+     */
+    public OmegaDistributedWorker(InetSocketAddress address) throws IOException {
+        _serverSocket = new ServerSocket();
+        _serverSocket.bind(address);
+    }
+
+    /**
+     * Starts accepting coordinators. Each connection is served by its own thread.
+     */
+    public synchronized void start() {
+        if (_running) throw new IllegalStateException("Worker already started");
+        _running = true;
+        _acceptThread = new Thread(this::acceptConnections, "OmegaDistributedWorker-" + getPort());
+        _acceptThread.setDaemon(true);
+        _acceptThread.start();
+    }
+
+    /**
+     * Stops the worker and closes all connections. When this returns no further
+     * connection is accepted.
+     */
+    public void stop() {
+        _running = false;
+        // no new connections once the server socket is closed
+        try {
+            _serverSocket.close();
+        } catch (IOException e) {
+            // ignore
+        }
+        synchronized (_connections) {
+            for (Socket socket : _connections) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+            _connections.clear();
+        }
+        final Thread acceptThread = _acceptThread;
+        if (acceptThread != null && acceptThread != Thread.currentThread()) {
+            try {
+                acceptThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return number of open coordinator connections
+     */
+    public int getNumberOfConnections() {
+        synchronized (_connections) {
+            return _connections.size();
+        }
+    }
+
+    /**
+     * @return the port the worker listens on
+     */
+    public int getPort() {
+        return _serverSocket.getLocalPort();
+    }
+
+    private void acceptConnections() {
+        while (_running) {
+            final Socket socket;
+            try {
+                socket = _serverSocket.accept();
+            } catch (IOException e) {
+                break; // closed
+            }
+            synchronized (_connections) {
+                // stop() might have closed the connections while accept() returned
+                if (!_running) {
+                    try {
+                        socket.close();
+                    } catch (IOException e) {
+                        // ignore
+                    }
+                    return;
+                }
+                _connections.add(socket);
+            }
+            final Thread thread = new Thread(() -> serve(socket),
+                    "OmegaDistributedWorker-" + socket.getRemoteSocketAddress());
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private void serve(Socket socket) {
+        final Session session = new Session();
+        try (BufferedReader in = new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                PrintWriter out = new PrintWriter(
+                        new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.trim().equals("quit")) break;
+                String answer;
+                try {
+                    answer = handleCommand(line, session);
+                } catch (RuntimeException e) {
+                    answer = "error " + e;
+                }
+                out.println(answer);
+                out.flush();
+            }
+        } catch (SocketException e) {
+            // connection closed
+        } catch (IOException e) {
+            System.err.println("Worker connection failed: " + e.getMessage());
+        } finally {
+            session.release();
+            synchronized (_connections) {
+                _connections.remove(socket);
+            }
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Handles one command of a coordinator.
+     *
+     * @param line the command line
+     * @param session state of the connection
+     * @return the answer line
+     */
+    String handleCommand(String line, Session session) {
+        final String[] tokens = line.trim().split("\\s+");
+        switch (tokens[0]) {
+            case "search":
+                if (tokens.length < 4) throw new IllegalArgumentException("search <depth> <move> <fen>");
+                return searchRootMove(Integer.parseInt(tokens[1]), tokens[2], join(tokens, 3), session);
+            case "perft":
+                if (tokens.length < 3) throw new IllegalArgumentException("perft <depth> <fen>");
+                return perft(Integer.parseInt(tokens[1]), join(tokens, 2), session);
+            default:
+                throw new IllegalArgumentException("Unknown command " + tokens[0]);
+        }
+    }
+
+    private static String join(String[] tokens, int from) {
+        return String.join(" ", Arrays.asList(tokens).subList(from, tokens.length));
+    }
+
+    private static String perft(int depth, String fen, Session session) {
+        if (depth < 0 || depth > OmegaSearch.MAX_SEARCH_DEPTH)
+            throw new IllegalArgumentException("Invalid depth " + depth);
+        final long nodes = OmegaPERFT.countLeafNodes(new OmegaBoardPosition(fen), depth,
+                session.getPerftTable(), ForkJoinPool.commonPool());
+        return "nodes " + nodes;
+    }
+
+    private static String searchRootMove(int depth, String rootMove, String fen, Session session) {
+        final OmegaEngine engine = session.getEngine();
+        final OmegaSearch search = session.getSearch();
+        if (depth < 1 || depth > OmegaSearch.MAX_SEARCH_DEPTH)
+            throw new IllegalArgumentException("Invalid depth " + depth);
+        final OmegaBoardPosition position = new OmegaBoardPosition(fen);
+        final int move = OmegaMove.fromNotation(position, rootMove);
+        if (move == OmegaMove.NOMOVE) throw new IllegalArgumentException("Illegal move " + rootMove);
+
+        // the root position is searched with only this root move
+        search.configureIterativeDepth(depth);
+        search.configureSearchMoves(move);
+        search.startSearch(position);
+        search.waitWhileSearching();
+        final SearchResult result = engine.getSearchResult();
+
+        final StringBuilder pv = new StringBuilder(OmegaMove.toUCINotation(move));
+        final int[] rootPV = search._principalVariation[0].toArray();
+        if (rootPV.length > 0 && rootPV[0] == move) {
+            for (int i = 1; i < rootPV.length && rootPV[i] != OmegaMove.NOMOVE; i++) {
+                pv.append(' ').append(OmegaMove.toUCINotation(rootPV[i]));
+            }
+        }
+        return "score " + result.resultValue + " nodes " + search.getNodesVisited() + " pv " + pv;
+    }
+
+    /**
+     * Starts a worker in a new JVM on this machine with the class path of the current JVM
+     * and waits until it listens on a free port.
+     *
+     * @return the worker process
+     * @throws IOException
+     */
+    public static LocalWorker startLocalWorker() throws IOException {
+        final String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        final Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                OmegaDistributedWorker.class.getName(), "-p", "0").redirectErrorStream(true).start();
+        final BufferedReader in = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        String line;
+        while ((line = in.readLine()) != null) {
+            final Matcher matcher = LISTENING_PATTERN.matcher(line);
+            if (!matcher.find()) continue;
+            // the output of the worker is read so it never blocks on a full pipe
+            final Thread drain = new Thread(() -> {
+                try {
+                    while (in.readLine() != null) { /* empty */ }
+                } catch (IOException e) {
+                    // process ended
+                }
+            }, "OmegaDistributedWorker-Output");
+            drain.setDaemon(true);
+            drain.start();
+            return new LocalWorker(process,
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(matcher.group(1))));
+        }
+        process.destroy();
+        throw new IOException("Worker process did not start");
+    }
+
+    /**
+     * Starts a worker and runs until the process is stopped.
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        CmdLineParser cp = new CmdLineParser();
+        CmdLineParser.Option portOption = cp.addIntegerOption('p', "port");
+        CmdLineParser.Option usage = cp.addBooleanOption('?', "help");
+
+        try {
+            cp.parse(args);
+        } catch (CmdLineParser.OptionException e) {
+            System.err.println(e.getMessage());
+            printUsage();
+            System.exit(2);
+        }
+
+        if ((Boolean) cp.getOptionValue(usage)) {
+            printUsage();
+            System.exit(0);
+        }
+
+        final int port = (Integer) cp.getOptionValue(portOption, DEFAULT_PORT);
+        try {
+            final OmegaDistributedWorker worker = new OmegaDistributedWorker(new InetSocketAddress(port));
+            worker.start();
+            System.out.format("Worker listening on port %d%n", worker.getPort());
+            System.out.flush();
+            worker._acceptThread.join();
+        } catch (IOException e) {
+            System.err.println("Could not start worker on port " + port + ": " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void printUsage() {
+        System.out.println();
+        System.out.println("Usage: OmegaDistributedWorker [-p,--port port] [-?, --help]");
+        System.out.println("Options:");
+        System.out.println();
+        System.out.println("-p port to listen on for coordinators (default " + DEFAULT_PORT + ")");
+        System.out.println();
+    }
+
+    /**
+     * State of one coordinator connection. Engine, search and tables are created on first use.
+     */
+    static final class Session {
+        private OmegaEngine _engine = null;
+        private OmegaSearch _search = null;
+        private OmegaPerftTable _perftTable = null;
+
+        OmegaEngine getEngine() {
+            if (_engine == null) {
+                _engine = new OmegaEngine();
+                _engine._CONFIGURATION.VERBOSE_STATS = false;
+                _engine._CONFIGURATION._USE_BOOK = false;
+                _engine._CONFIGURATION._USE_PONDERER = false;
+            }
+            return _engine;
+        }
+
+        OmegaSearch getSearch() {
+            if (_search == null) _search = new OmegaSearch(getEngine());
+            return _search;
+        }
+
+        OmegaPerftTable getPerftTable() {
+            if (_perftTable == null) _perftTable = new OmegaPerftTable(PERFT_TABLE_SIZE);
+            return _perftTable;
+        }
+
+        /**
+         * Gives the caches of the search back to the OmegaCachePool.
+         */
+        void release() {
+            if (_search != null) _search.releaseCacheTables();
+        }
+    }
+
+    /**
+     * A worker running in a separate JVM on this machine.
+     */
+    public static final class LocalWorker {
+        /** the worker process */
+        public final Process process;
+        /** the address the worker listens on */
+        public final InetSocketAddress address;
+
+        LocalWorker(Process process, InetSocketAddress address) {
+            this.process = process;
+            this.address = address;
+        }
+
+        /**
+         * Stops the worker process and waits until it has ended.
+         */
+        public void stop() {
+            process.destroy();
+            try {
+                if (!process.waitFor(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    process.destroyForcibly().waitFor();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+}
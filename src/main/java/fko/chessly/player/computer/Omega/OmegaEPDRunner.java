@@ -0,0 +1,421 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.player.computer.Omega;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import fko.chessly.util.CmdLineParser;
+
+/**
+ * Runs EPD test suites (e.g. WAC.EPD, BT2630.EPD in <code>src/test/java/chess_test_sets</code>)
+ * against the Omega engine and reports the solve rate.
+ * <p>
+ * Supported EPD operations are <code>bm</code> (best moves), <code>am</code> (avoid moves)
+ * and <code>id</code>. Moves can be given in SAN or in simple from-to notation.
+ * <p>
+ * Positions are searched in parallel. Each worker thread has its own OmegaEngine and
+ * OmegaSearch instance which is reused (with cleared caches) for all positions of this worker.
+ * For every position the time and the nodes until the search settled on a correct move
+ * are reported.
+ * <p>
+ * Usage: <code>java fko.chessly.player.computer.Omega.OmegaEPDRunner [-t sec] [-n nodes] [-j threads] files...</code>
+ */
+public class OmegaEPDRunner {
+
+    // how often the running search is polled for its current best move
+    private static final long POLL_INTERVAL_MS = 5;
+
+    private final long _timePerPosition;
+    private final long _nodesPerPosition;
+    private final int _threads;
+
+    // each worker thread has its own engine and search
+    private final ThreadLocal<OmegaEngine> _engines = ThreadLocal.withInitial(OmegaEngine::new);
+    // created on first use so that threads without work don't acquire caches
+    private final ThreadLocal<OmegaSearch> _searches = new ThreadLocal<>();
+
+    /**
+     * @param timePerPosition time limit per position in seconds (ignored if nodesPerPosition > 0)
+     * @param nodesPerPosition nodes limit per position or 0 for time limit
+     * @param threads number of positions searched in parallel
+     */
+    public OmegaEPDRunner(long timePerPosition, long nodesPerPosition, int threads) {
+        if (nodesPerPosition <= 0 && timePerPosition <= 0)
+            throw new IllegalArgumentException("Either time or nodes limit must be > 0");
+        if (threads < 1) throw new IllegalArgumentException("threads must be >= 1");
+        _timePerPosition = timePerPosition;
+        _nodesPerPosition = nodesPerPosition;
+        _threads = threads;
+    }
+
+    /**
+     * Searches all entries in parallel and returns the results in the order of the entries.
+     *
+     * @param entries
+     * @return list of results
+     */
+    public List<EPDResult> run(List<EPDEntry> entries) {
+        final ExecutorService pool = Executors.newFixedThreadPool(_threads, r -> {
+            Thread t = new Thread(() -> runAndRelease(r), "OmegaEPDRunner");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            final List<Future<EPDResult>> futures = new ArrayList<>(entries.size());
+            for (EPDEntry entry : entries) {
+                futures.add(pool.submit(() -> runPosition(entry)));
+            }
+            final List<EPDResult> results = new ArrayList<>(entries.size());
+            for (Future<EPDResult> f : futures) {
+                results.add(f.get());
+            }
+            return results;
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException("EPD run failed", e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the search of the current thread
+     */
+    private OmegaSearch getSearch() {
+        OmegaSearch search = _searches.get();
+        if (search == null) {
+            search = new OmegaSearch(_engines.get());
+            _searches.set(search);
+        }
+        return search;
+    }
+
+    /**
+     * Runs a worker thread and gives the caches of its search back to the
+     * OmegaCachePool when the thread ends.
+     */
+    private void runAndRelease(Runnable worker) {
+        try {
+            worker.run();
+        } finally {
+            final OmegaSearch search = _searches.get();
+            if (search != null) {
+                search.releaseCacheTables();
+                _searches.remove();
+            }
+        }
+    }
+
+    /**
+     * Searches one position with the OmegaSearch of the current thread.
+     *
+     * @param entry
+     * @return the result for this position
+     */
+    EPDResult runPosition(EPDEntry entry) {
+        final OmegaBoardPosition position = new OmegaBoardPosition(entry.fen);
+        final List<Integer> bestMoves = resolveMoves(position, entry.bestMoves);
+        final List<Integer> avoidMoves = resolveMoves(position, entry.avoidMoves);
+        // a position with unresolvable best moves can't be solved
+        final boolean requireBestMove = !entry.bestMoves.isEmpty();
+
+        final OmegaSearch search = getSearch();
+        search.clearCaches();
+        if (_nodesPerPosition > 0) {
+            search.configureNodesLimit(_nodesPerPosition);
+        } else {
+            search.configureTimePerMove(_timePerPosition);
+        }
+
+        final EPDResult result = new EPDResult(entry);
+        search._currentBestRootMove = OmegaMove.NOMOVE;
+
+        final long start = System.nanoTime();
+        search.startSearch(position);
+        // poll the search to find the time and nodes when it settled on a correct move
+        while (search.isSearching()) {
+            updateSolution(result, search._currentBestRootMove, requireBestMove, bestMoves, avoidMoves,
+                    System.nanoTime() - start, search.getNodesVisited());
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                search.stop();
+                Thread.currentThread().interrupt();
+            }
+        }
+        search.waitWhileSearching();
+        final long time = System.nanoTime() - start;
+
+        final int bestMove = _engines.get().getSearchResult().bestMove;
+        updateSolution(result, bestMove, requireBestMove, bestMoves, avoidMoves, time, search.getNodesVisited());
+
+        result.bestMove = OmegaMove.toSimpleString(bestMove);
+        result.nodes = search.getNodesVisited();
+        result.timeMs = time / 1_000_000L;
+        result.solved = isSolution(bestMove, requireBestMove, bestMoves, avoidMoves);
+        if (!result.solved) {
+            result.timeToSolutionMs = -1;
+            result.nodesToSolution = -1;
+        }
+        return result;
+    }
+
+    private static void updateSolution(EPDResult result, int move, boolean requireBestMove,
+            List<Integer> bestMoves, List<Integer> avoidMoves, long time, long nodes) {
+        if (move == OmegaMove.NOMOVE) return;
+        if (isSolution(move, requireBestMove, bestMoves, avoidMoves)) {
+            if (result.timeToSolutionMs < 0) {
+                result.timeToSolutionMs = time / 1_000_000L;
+                result.nodesToSolution = nodes;
+            }
+        } else {
+            // the search has left the solution again
+            result.timeToSolutionMs = -1;
+            result.nodesToSolution = -1;
+        }
+    }
+
+    private static boolean isSolution(int move, boolean requireBestMove,
+            List<Integer> bestMoves, List<Integer> avoidMoves) {
+        if (move == OmegaMove.NOMOVE) return false;
+        if (requireBestMove && !bestMoves.contains(move)) return false;
+        return !avoidMoves.contains(move);
+    }
+
+    /**
+     * Resolves moves in SAN or simple notation to the matching legal OmegaMoves of the position.
+     * Moves which can't be resolved are ignored.
+     *
+     * @param position
+     * @param notations
+     * @return list of OmegaMoves
+     */
+    static List<Integer> resolveMoves(OmegaBoardPosition position, List<String> notations) {
+        if (notations.isEmpty()) return Collections.emptyList();
+        final List<Integer> moves = new ArrayList<>(notations.size());
+        for (String notation : notations) {
+            final int move = OmegaMove.fromNotation(position, notation);
+            if (move == OmegaMove.NOMOVE) {
+                System.err.println("EPD: could not resolve move " + notation + " in " + position.toFENString());
+                continue;
+            }
+            moves.add(move);
+        }
+        return moves;
+    }
+
+    /**
+     * Reads all positions from an EPD file. Lines which are not EPD records are ignored.
+     *
+     * @param file
+     * @return list of EPD entries
+     * @throws IOException
+     */
+    public static List<EPDEntry> readEPDFile(Path file) throws IOException {
+        final List<EPDEntry> entries = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.ISO_8859_1)) {
+            final EPDEntry entry = parseEPDLine(line);
+            if (entry != null) entries.add(entry);
+        }
+        return entries;
+    }
+
+    /**
+     * Parses one EPD line.
+     *
+     * @param line
+     * @return the EPD entry or null if the line is not an EPD record
+     */
+    public static EPDEntry parseEPDLine(String line) {
+        final String trimmed = line.trim();
+        if (trimmed.isEmpty() || trimmed.indexOf('/') < 0) return null;
+
+        final String[] tokens = trimmed.split("\\s+", 5);
+        if (tokens.length < 4) return null;
+
+        final EPDEntry entry = new EPDEntry(
+                tokens[0] + ' ' + tokens[1] + ' ' + tokens[2] + ' ' + tokens[3] + " 0 1");
+
+        if (tokens.length < 5) return entry;
+
+        for (String operation : tokens[4].split(";")) {
+            final String op = operation.trim();
+            if (op.isEmpty()) continue;
+            final String[] parts = op.split("\\s+", 2);
+            final String operands = parts.length > 1 ? parts[1].trim() : "";
+            switch (parts[0]) {
+                case "bm":
+                    Collections.addAll(entry.bestMoves, operands.split("\\s+"));
+                    break;
+                case "am":
+                    Collections.addAll(entry.avoidMoves, operands.split("\\s+"));
+                    break;
+                case "id":
+                    entry.id = operands.replace("\"", "");
+                    break;
+                default:
+                    // other operations are not used
+                    break;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Prints the results and a summary to System.out
+     *
+     * @param name
+     * @param results
+     */
+    public static void printResults(String name, List<EPDResult> results) {
+        int solved = 0;
+        long totalTimeToSolution = 0;
+        long totalNodesToSolution = 0;
+        System.out.format("%n%s%n", name);
+        for (EPDResult r : results) {
+            System.out.format("%-30.30s %-7s best: %-6s expected: %-12s time: %,8d ms nodes: %,12d  solved after: %,8d ms %,12d nodes%n",
+                    r.entry.id, r.solved ? "SOLVED" : "FAILED", r.bestMove,
+                    (r.entry.bestMoves.isEmpty() ? "" : "bm " + String.join(" ", r.entry.bestMoves))
+                    + (r.entry.avoidMoves.isEmpty() ? "" : "am " + String.join(" ", r.entry.avoidMoves)),
+                    r.timeMs, r.nodes, r.timeToSolutionMs, r.nodesToSolution);
+            if (r.solved) {
+                solved++;
+                totalTimeToSolution += r.timeToSolutionMs;
+                totalNodesToSolution += r.nodesToSolution;
+            }
+        }
+        System.out.format("Solved: %d/%d (%.1f%%)  avg time-to-solution: %,d ms  avg nodes-to-solution: %,d%n",
+                solved, results.size(), results.isEmpty() ? 0f : (100f * solved / results.size()),
+                solved == 0 ? 0 : totalTimeToSolution / solved,
+                solved == 0 ? 0 : totalNodesToSolution / solved);
+    }
+
+    /**
+     * Runs the given EPD files.
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        CmdLineParser cp = new CmdLineParser();
+        CmdLineParser.Option timeOption = cp.addIntegerOption('t', "time");
+        CmdLineParser.Option nodesOption = cp.addLongOption('n', "nodes");
+        CmdLineParser.Option threadsOption = cp.addIntegerOption('j', "threads");
+        CmdLineParser.Option usage = cp.addBooleanOption('?', "help");
+
+        try {
+            cp.parse(args);
+        } catch (CmdLineParser.OptionException e) {
+            System.err.println(e.getMessage());
+            printUsage();
+            System.exit(2);
+        }
+
+        if ((Boolean) cp.getOptionValue(usage) || cp.getRemainingArgs().length == 0) {
+            printUsage();
+            System.exit(0);
+        }
+
+        final int time = (Integer) cp.getOptionValue(timeOption, 5);
+        final long nodes = (Long) cp.getOptionValue(nodesOption, 0L);
+        final int threads = (Integer) cp.getOptionValue(threadsOption,
+                Runtime.getRuntime().availableProcessors());
+
+        final OmegaEPDRunner runner = new OmegaEPDRunner(time, nodes, threads);
+        for (String file : cp.getRemainingArgs()) {
+            try {
+                final List<EPDEntry> entries = readEPDFile(Paths.get(file));
+                printResults(file, runner.run(entries));
+            } catch (IOException e) {
+                System.err.println("Could not read EPD file " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static void printUsage() {
+        System.out.println();
+        System.out.println("Usage: OmegaEPDRunner [-t,--time sec] [-n,--nodes n] [-j,--threads n] [-?, --help] files...");
+        System.out.println("Options:");
+        System.out.println();
+        System.out.println("-t time per position in seconds (default 5)");
+        System.out.println("-n nodes per position (overrides -t)");
+        System.out.println("-j number of positions searched in parallel (default number of cores)");
+        System.out.println();
+    }
+
+    /**
+     * One position of an EPD file.
+     */
+    public static final class EPDEntry {
+        /** position as FEN */
+        public final String fen;
+        /** id of the position */
+        public String id = "";
+        /** best moves (bm) as given in the EPD file */
+        public final List<String> bestMoves = new ArrayList<>();
+        /** moves to avoid (am) as given in the EPD file */
+        public final List<String> avoidMoves = new ArrayList<>();
+
+        EPDEntry(String fen) {
+            this.fen = fen;
+        }
+    }
+
+    /**
+     * Result for one EPD position.
+     */
+    public static final class EPDResult {
+        /** the position */
+        public final EPDEntry entry;
+        /** true if the final best move was a solution */
+        public boolean solved = false;
+        /** the final best move of the search */
+        public String bestMove = "";
+        /** time of the search in ms */
+        public long timeMs = 0;
+        /** nodes of the search */
+        public long nodes = 0;
+        /** time in ms after which the search settled on a solution or -1 */
+        public long timeToSolutionMs = -1;
+        /** nodes after which the search settled on a solution or -1 */
+        public long nodesToSolution = -1;
+
+        EPDResult(EPDEntry entry) {
+            this.entry = entry;
+        }
+    }
+}
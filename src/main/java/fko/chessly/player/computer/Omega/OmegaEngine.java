@@ -26,6 +26,7 @@
  */
 package fko.chessly.player.computer.Omega;
 
+import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Optional;
@@ -41,6 +42,7 @@ import fko.chessly.game.GameMoveList;
 import fko.chessly.mvc.ModelObservable;
 import fko.chessly.mvc.ModelEvents.PlayerDependendModelEvent;
 import fko.chessly.openingbook.OpeningBookImpl;
+import fko.chessly.openingbook.OpeningBookImpl.Mode;
 import fko.chessly.player.ComputerPlayer;
 import fko.chessly.player.Player;
 import fko.chessly.player.computer.ObservableEngine;
@@ -74,6 +76,8 @@ public class OmegaEngine extends ModelObservable implements ObservableEngine {
 
     // the opening book
     private OpeningBookImpl _openingBook = null;
+    // the binary version of the opening book - shared with other engines
+    private OmegaOpeningBook _binaryBook = null;
 
     // to have a value when the engine is not thinking
     private long _lastUsedTime = 0;
@@ -183,8 +187,13 @@ public class OmegaEngine extends ModelObservable implements ObservableEngine {
         // check for move from opening book
         GameMove bookMove = null;
         if (_CONFIGURATION._USE_BOOK && !ponderHit && _openingBook != null) {
-            _openingBook.initialize();
-            bookMove = _openingBook.getBookMove(gameBoard.toFENString());
+            // Polyglot books are memory mapped already
+            if (_CONFIGURATION._OB_Binary && _CONFIGURATION._OB_Mode != Mode.POLYGLOT) {
+                bookMove = getBinaryBookMove(omegaBoard);
+            } else {
+                _openingBook.initialize();
+                bookMove = _openingBook.getBookMove(gameBoard.toFENString());
+            }
             if (bookMove != null) {
                 // tell the ui and the observers out state
                 _statusInfo = "Book move. Engine waiting.";
@@ -198,7 +207,8 @@ public class OmegaEngine extends ModelObservable implements ObservableEngine {
             }
             // unload opening book if not used any more
             _openingBook = null;
-            System.gc();
+            if (_binaryBook == null) System.gc();
+            _binaryBook = null;
         }
 
         // configure the search
@@ -299,7 +309,8 @@ public class OmegaEngine extends ModelObservable implements ObservableEngine {
      */
     @Override
     public void stopEngine() {
-        _omegaSearch.stop();
+        // the game is over - give the caches back for the next engine
+        _omegaSearch.releaseCacheTables();
     }
 
     /**********************************************************************
@@ -307,6 +318,27 @@ public class OmegaEngine extends ModelObservable implements ObservableEngine {
      **********************************************************************/
 
 
+    /**
+     * Looks up the position in the binary opening book. The binary book is created from the
+     * configured opening book file the first time it is used.
+     *
+     * @param position
+     * @return book move or null if there is none
+     */
+    private GameMove getBinaryBookMove(OmegaBoardPosition position) {
+        if (_binaryBook == null) {
+            String path = _CONFIGURATION._OB_FolderPath + _CONFIGURATION._OB_fileNamePlain;
+            try {
+                _binaryBook = OmegaOpeningBook.forBookFile(path, _CONFIGURATION._OB_Mode);
+            } catch (IOException e) {
+                Chessly.criticalError("Could not open binary opening book for " + path + ": " + e.getMessage());
+                return null;
+            }
+        }
+        final int move = _binaryBook.getBookMove(position);
+        return move == OmegaMove.NOMOVE ? null : OmegaMove.convertToGameMove(move);
+    }
+
     /**
      * @param gameBoard
      * @return
@@ -43,9 +43,24 @@ package fko.chessly.player.computer.Omega;
  *      TODO: Center Distance
  *      TODO: Square Control
  *      TODO: King Protection
+ *
+ * All weights are taken from an <code>OmegaEvaluationWeights</code> parameter vector so they can
+ * be tuned (see <code>OmegaTexelTuner</code>).
  */
 public class OmegaEvaluation {
 
+    // indices into the weights
+    private static final int PAWN_VALUE = OmegaEvaluationWeights.Weight.PAWN_VALUE.ordinal();
+    private static final int KNIGHT_VALUE = OmegaEvaluationWeights.Weight.KNIGHT_VALUE.ordinal();
+    private static final int BISHOP_VALUE = OmegaEvaluationWeights.Weight.BISHOP_VALUE.ordinal();
+    private static final int ROOK_VALUE = OmegaEvaluationWeights.Weight.ROOK_VALUE.ordinal();
+    private static final int QUEEN_VALUE = OmegaEvaluationWeights.Weight.QUEEN_VALUE.ordinal();
+    private static final int BISHOP_PAIR = OmegaEvaluationWeights.Weight.BISHOP_PAIR.ordinal();
+    private static final int KNIGHT_MOBILITY = OmegaEvaluationWeights.Weight.KNIGHT_MOBILITY.ordinal();
+    private static final int BISHOP_MOBILITY = OmegaEvaluationWeights.Weight.BISHOP_MOBILITY.ordinal();
+    private static final int ROOK_MOBILITY = OmegaEvaluationWeights.Weight.ROOK_MOBILITY.ordinal();
+    private static final int QUEEN_MOBILITY = OmegaEvaluationWeights.Weight.QUEEN_MOBILITY.ordinal();
+
     static private final boolean MATERIAL = true;
     static private final boolean MOBILITY = true;
     static private final boolean PIECE_POSITION = false;
@@ -55,22 +70,36 @@ public class OmegaEvaluation {
     @SuppressWarnings("unused")
     private final OmegaEngine _omegaEngine;
 
+    // the weights of the evaluation terms
+    private final int[] _weights;
+
     /**
      * Creates an instance of the OmegaEvaluator using a new Engine
      * and a new Move Generator.
      */
     public OmegaEvaluation() {
-        this._omegaEngine = new OmegaEngine();
-        this._omegaMoveGenerator = new OmegaMoveGenerator();
+        this(new OmegaEngine(), new OmegaMoveGenerator());
     }
 
     /**
+     * Uses the evaluation weights of the engine's configuration.
      * @param omegaEngine
      * @param omegaMoveGenerator
      */
     public OmegaEvaluation(OmegaEngine omegaEngine, OmegaMoveGenerator omegaMoveGenerator) {
         this._omegaEngine = omegaEngine;
         this._omegaMoveGenerator = omegaMoveGenerator;
+        this._weights = omegaEngine._CONFIGURATION._EVAL_WEIGHTS.toArray();
+    }
+
+    /**
+     * Creates an evaluation without an engine (e.g. for tuning).
+     * @param weights the weights are copied
+     */
+    public OmegaEvaluation(OmegaEvaluationWeights weights) {
+        this._omegaEngine = null;
+        this._omegaMoveGenerator = null;
+        this._weights = weights.toArray();
     }
 
     /**
@@ -104,11 +133,19 @@ public class OmegaEvaluation {
      * @return material balance from the view of the active player
      */
     int material(final OmegaBoardPosition board) {
-        int material = board._nextPlayer.factor * (board.getMaterial(OmegaColor.WHITE) - board.getMaterial(OmegaColor.BLACK));
+        final int[] w = _weights;
+        final int active = board._nextPlayer.ordinal();
+        final int passive = board._nextPlayer.getInverseColor().ordinal();
+
+        int material = w[PAWN_VALUE] * (board._pawnSquares[active].size() - board._pawnSquares[passive].size())
+                + w[KNIGHT_VALUE] * (board._knightSquares[active].size() - board._knightSquares[passive].size())
+                + w[BISHOP_VALUE] * (board._bishopSquares[active].size() - board._bishopSquares[passive].size())
+                + w[ROOK_VALUE] * (board._rookSquares[active].size() - board._rookSquares[passive].size())
+                + w[QUEEN_VALUE] * (board._queenSquares[active].size() - board._queenSquares[passive].size());
 
         // bonus/malus for bishop pair
-        if (board._bishopSquares[board._nextPlayer.ordinal()].size() >= 2) material += 50;
-        if (board._bishopSquares[board._nextPlayer.getInverseColor().ordinal()].size() >= 2) material -= 50;
+        if (board._bishopSquares[active].size() >= 2) material += w[BISHOP_PAIR];
+        if (board._bishopSquares[passive].size() >= 2) material -= w[BISHOP_PAIR];
 
         return material;
     }
@@ -122,34 +159,67 @@ public class OmegaEvaluation {
         int mobility = 0;
 
         // to influence the weight of the piece type
-        int factor = 1;
+        int factor;
 
         final OmegaColor activePlayer = board._nextPlayer;
         final OmegaColor passivePlayer = activePlayer.getInverseColor();
 
         // knights
-        factor = 2;
+        factor = _weights[KNIGHT_MOBILITY];
         mobility += factor * mobilityForPieces(board, activePlayer, OmegaPieceType.KNIGHT, board._knightSquares[activePlayer.ordinal()], OmegaSquare.knightDirections);
         mobility -= factor * mobilityForPieces(board, passivePlayer, OmegaPieceType.KNIGHT, board._knightSquares[passivePlayer.ordinal()], OmegaSquare.knightDirections);
 
         // bishops
-        factor = 2;
+        factor = _weights[BISHOP_MOBILITY];
         mobility += factor * mobilityForPieces(board, activePlayer, OmegaPieceType.BISHOP, board._bishopSquares[activePlayer.ordinal()], OmegaSquare.bishopDirections);
         mobility -= factor * mobilityForPieces(board, passivePlayer, OmegaPieceType.BISHOP, board._bishopSquares[passivePlayer.ordinal()], OmegaSquare.bishopDirections);
 
         // rooks
-        factor = 2;
+        factor = _weights[ROOK_MOBILITY];
         mobility += factor * mobilityForPieces(board, activePlayer, OmegaPieceType.ROOK, board._rookSquares[activePlayer.ordinal()], OmegaSquare.rookDirections);
         mobility -= factor * mobilityForPieces(board, passivePlayer, OmegaPieceType.ROOK, board._rookSquares[passivePlayer.ordinal()], OmegaSquare.rookDirections);
 
         // queens
-        factor = 1;
+        factor = _weights[QUEEN_MOBILITY];
         mobility += factor * mobilityForPieces(board, activePlayer, OmegaPieceType.QUEEN, board._queenSquares[activePlayer.ordinal()], OmegaSquare.queenDirections);
         mobility -= factor * mobilityForPieces(board, passivePlayer, OmegaPieceType.QUEEN, board._queenSquares[passivePlayer.ordinal()], OmegaSquare.queenDirections);
 
         return mobility;
     }
 
+    /**
+     * Computes the features of the position from white's view - one per weight in the order of
+     * <code>OmegaEvaluationWeights.Weight</code>. The evaluation from white's view is the sum of
+     * weight times feature.
+     *
+     * @param board
+     * @param features array of size <code>OmegaEvaluationWeights.SIZE</code> which is filled
+     */
+    static void features(final OmegaBoardPosition board, final int[] features) {
+        final OmegaColor white = OmegaColor.WHITE;
+        final OmegaColor black = OmegaColor.BLACK;
+        final int w = white.ordinal();
+        final int b = black.ordinal();
+        features[PAWN_VALUE] = board._pawnSquares[w].size() - board._pawnSquares[b].size();
+        features[KNIGHT_VALUE] = board._knightSquares[w].size() - board._knightSquares[b].size();
+        features[BISHOP_VALUE] = board._bishopSquares[w].size() - board._bishopSquares[b].size();
+        features[ROOK_VALUE] = board._rookSquares[w].size() - board._rookSquares[b].size();
+        features[QUEEN_VALUE] = board._queenSquares[w].size() - board._queenSquares[b].size();
+        features[BISHOP_PAIR] = (board._bishopSquares[w].size() >= 2 ? 1 : 0) - (board._bishopSquares[b].size() >= 2 ? 1 : 0);
+        features[KNIGHT_MOBILITY] =
+                mobilityForPieces(board, white, OmegaPieceType.KNIGHT, board._knightSquares[w], OmegaSquare.knightDirections)
+                - mobilityForPieces(board, black, OmegaPieceType.KNIGHT, board._knightSquares[b], OmegaSquare.knightDirections);
+        features[BISHOP_MOBILITY] =
+                mobilityForPieces(board, white, OmegaPieceType.BISHOP, board._bishopSquares[w], OmegaSquare.bishopDirections)
+                - mobilityForPieces(board, black, OmegaPieceType.BISHOP, board._bishopSquares[b], OmegaSquare.bishopDirections);
+        features[ROOK_MOBILITY] =
+                mobilityForPieces(board, white, OmegaPieceType.ROOK, board._rookSquares[w], OmegaSquare.rookDirections)
+                - mobilityForPieces(board, black, OmegaPieceType.ROOK, board._rookSquares[b], OmegaSquare.rookDirections);
+        features[QUEEN_MOBILITY] =
+                mobilityForPieces(board, white, OmegaPieceType.QUEEN, board._queenSquares[w], OmegaSquare.queenDirections)
+                - mobilityForPieces(board, black, OmegaPieceType.QUEEN, board._queenSquares[b], OmegaSquare.queenDirections);
+    }
+
     /**
      * @param board
      * @param color
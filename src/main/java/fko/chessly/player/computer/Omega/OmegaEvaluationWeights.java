@@ -0,0 +1,197 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.player.computer.Omega;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * The tunable weights of <code>OmegaEvaluation</code> as a parameter vector.
+ * <p>
+ * Every weight is a factor for one feature of a position (e.g. the difference of the number
+ * of knights or of the knight mobility). The evaluation is the sum of weight times feature
+ * which makes it easy to tune the weights (see <code>OmegaTexelTuner</code>).
+ * <p>
+ * Weights can be saved to and loaded from a properties file.
+ */
+public class OmegaEvaluationWeights {
+
+    /**
+     * The weights with their default values.
+     */
+    public enum Weight {
+        /** value of a pawn */
+        PAWN_VALUE(OmegaPieceType.PAWN.getValue()),
+        /** value of a knight */
+        KNIGHT_VALUE(OmegaPieceType.KNIGHT.getValue()),
+        /** value of a bishop */
+        BISHOP_VALUE(OmegaPieceType.BISHOP.getValue()),
+        /** value of a rook */
+        ROOK_VALUE(OmegaPieceType.ROOK.getValue()),
+        /** value of a queen */
+        QUEEN_VALUE(OmegaPieceType.QUEEN.getValue()),
+        /** bonus for two or more bishops */
+        BISHOP_PAIR(50),
+        /** factor per pseudo legal knight move */
+        KNIGHT_MOBILITY(2),
+        /** factor per pseudo legal bishop move */
+        BISHOP_MOBILITY(2),
+        /** factor per pseudo legal rook move */
+        ROOK_MOBILITY(2),
+        /** factor per pseudo legal queen move */
+        QUEEN_MOBILITY(1);
+
+        /** default value of the weight */
+        public final int defaultValue;
+
+        static final Weight[] values = Weight.values();
+
+        Weight(int defaultValue) {
+            this.defaultValue = defaultValue;
+        }
+    }
+
+    /** number of weights */
+    public static final int SIZE = Weight.values.length;
+
+    // accessed directly by the evaluation
+    final int[] _values = new int[SIZE];
+
+    /**
+     * Creates the default weights.
+     */
+    public OmegaEvaluationWeights() {
+        for (Weight w : Weight.values) _values[w.ordinal()] = w.defaultValue;
+    }
+
+    /**
+     * Copy constructor.
+     * @param other
+     */
+    public OmegaEvaluationWeights(OmegaEvaluationWeights other) {
+        System.arraycopy(other._values, 0, _values, 0, SIZE);
+    }
+
+    /**
+     * @param values one value per weight in the order of <code>Weight</code>
+     */
+    public OmegaEvaluationWeights(int[] values) {
+        if (values.length != SIZE)
+            throw new IllegalArgumentException("Expected " + SIZE + " values but got " + values.length);
+        System.arraycopy(values, 0, _values, 0, SIZE);
+    }
+
+    /**
+     * @param weight
+     * @return the value of the weight
+     */
+    public int get(Weight weight) {
+        return _values[weight.ordinal()];
+    }
+
+    /**
+     * @param weight
+     * @param value
+     */
+    public void set(Weight weight, int value) {
+        _values[weight.ordinal()] = value;
+    }
+
+    /**
+     * @return a copy of the values in the order of <code>Weight</code>
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(_values, SIZE);
+    }
+
+    /**
+     * Reads weights from properties (e.g. written by <code>store()</code>). Missing weights keep
+     * their default value.
+     *
+     * @param reader
+     * @return the weights
+     * @throws IOException
+     */
+    public static OmegaEvaluationWeights load(Reader reader) throws IOException {
+        final Properties properties = new Properties();
+        properties.load(reader);
+        final OmegaEvaluationWeights weights = new OmegaEvaluationWeights();
+        for (Weight w : Weight.values) {
+            final String value = properties.getProperty(w.name());
+            if (value == null) continue;
+            try {
+                weights.set(w, Integer.parseInt(value.trim()));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid value for " + w.name() + ": " + value);
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * Writes the weights as properties.
+     *
+     * @param writer
+     * @param comment
+     * @throws IOException
+     */
+    public void store(Writer writer, String comment) throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        if (comment != null) sb.append("# ").append(comment).append(System.lineSeparator());
+        for (Weight w : Weight.values) {
+            sb.append(w.name()).append('=').append(get(w)).append(System.lineSeparator());
+        }
+        writer.write(sb.toString());
+        writer.flush();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof OmegaEvaluationWeights)) return false;
+        return Arrays.equals(_values, ((OmegaEvaluationWeights) obj)._values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(_values);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        for (Weight w : Weight.values) {
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(w.name()).append('=').append(get(w));
+        }
+        return sb.toString();
+    }
+}
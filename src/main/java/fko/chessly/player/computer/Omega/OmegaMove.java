@@ -210,6 +210,21 @@ public class OmegaMove {
         return s;
     }
 
+    /**
+     * UCI String representation of move (e.g. e2e4, e7e8q)
+     *
+     * @param move
+     * @return String for move
+     */
+    public static String toUCINotation(int move) {
+        if (move==NOMOVE) return "0000";
+        String s = toSimpleString(move);
+        if (getPromotion(move) != OmegaPiece.NOPIECE) {
+            s += getPromotion(move).getType().getShortName().toLowerCase();
+        }
+        return s;
+    }
+
     /**
      * Converts move to GameMove. If the move is invalid or NOMOVE
      * it returns null:
@@ -252,7 +267,7 @@ public class OmegaMove {
      * @param gm
      * @return integer representing matching move for the GameMove
      */
-    static int convertFromGameMove(GameMove move) {
+    public static int convertFromGameMove(GameMove move) {
         assert move != null;
 
         if (move.getPromotedTo() != null) {
@@ -334,6 +349,192 @@ public class OmegaMove {
         return true;
     }
 
+    /**
+     * Finds the legal move of the position matching the given SAN notation
+     * (e.g. <code>Nbxd5</code>, <code>exd8=Q+</code>, <code>O-O</code>) or
+     * the simple from-to notation (e.g. <code>e2e4</code>, <code>e7e8q</code>).
+     *
+     * @param position
+     * @param notation
+     * @return the matching legal move or NOMOVE if none or more than one move match
+     */
+    public static int fromNotation(OmegaBoardPosition position, String notation) {
+        return fromNotation(position, notation, new OmegaMoveGenerator());
+    }
+
+    /**
+     * Finds the legal move of the position matching the given SAN or simple from-to
+     * notation. Uses the given move generator so that no objects need to be created
+     * when replaying many games (e.g. building an opening book).
+     *
+     * @param position
+     * @param notation
+     * @param moveGenerator
+     * @return the matching legal move or NOMOVE if none or more than one move match
+     */
+    public static int fromNotation(OmegaBoardPosition position, String notation, OmegaMoveGenerator moveGenerator) {
+        // strip annotations, check signs and separators
+        final int length = notation.length();
+        final char[] c = new char[length];
+        int n = 0;
+        for (int i = 0; i < length; i++) {
+            final char ch = notation.charAt(i);
+            if (ch == '!' || ch == '?' || ch == '+' || ch == '#' || ch == '=' || Character.isWhitespace(ch)) continue;
+            c[n++] = ch;
+        }
+        if (n >= 4 && c[n-4] == 'e' && c[n-3] == '.' && c[n-2] == 'p' && c[n-1] == '.') n -= 4;
+        if (n < 2) return NOMOVE;
+
+        // only moves matching the notation are checked for legality
+        final OmegaMoveList moves = moveGenerator.getPseudoLegalMoves(position, false);
+
+        // castling
+        if (isCastlingChar(c[0]) && c[1] == '-') {
+            if (n != 3 && !(n == 5 && c[3] == '-' && isCastlingChar(c[2]) && isCastlingChar(c[4]))) return NOMOVE;
+            if (!isCastlingChar(c[2])) return NOMOVE;
+            final OmegaSquare.File file = n == 3 ? OmegaSquare.File.g : OmegaSquare.File.c;
+            for (int i = 0; i < moves.size(); i++) {
+                final int move = moves.get(i);
+                if (getMoveType(move) == OmegaMoveType.CASTLING && getEnd(move).getFile() == file) {
+                    return isLegal(position, move) ? move : NOMOVE;
+                }
+            }
+            return NOMOVE;
+        }
+
+        int i = 0;
+        OmegaPieceType pieceType = null;
+        final int piece = "KQRBN".indexOf(c[0]);
+        if (piece >= 0) {
+            pieceType = PIECE_TYPES[piece];
+            i = 1;
+        }
+
+        OmegaPieceType promotion = null;
+        if (n - i >= 3 && isRankChar(c[n-2])) {
+            final int p = "QRBN".indexOf(Character.toUpperCase(c[n-1]));
+            if (p >= 0) {
+                promotion = PIECE_TYPES[p + 1];
+                n--;
+            }
+        }
+
+        if (n - i < 2 || !isFileChar(c[n-2]) || !isRankChar(c[n-1])) return NOMOVE;
+        final OmegaSquare to = OmegaSquare.getSquare(c[n-2] - 'a' + 1, c[n-1] - '0');
+        n -= 2;
+        if (n > i && (c[n-1] == 'x' || c[n-1] == '-')) n--;
+
+        int fromFile = 0, fromRank = 0;
+        for (; i < n; i++) {
+            if (isFileChar(c[i])) fromFile = c[i] - 'a' + 1;
+            else if (isRankChar(c[i])) fromRank = c[i] - '0';
+            else return NOMOVE;
+        }
+        // in from-to notation the piece letter is missing
+        final boolean checkPiece = pieceType != null || fromFile == 0 || fromRank == 0;
+        if (pieceType == null) pieceType = OmegaPieceType.PAWN;
 
+        int found = NOMOVE;
+        for (int m = 0; m < moves.size(); m++) {
+            final int move = moves.get(m);
+            if (getEnd(move) != to) continue;
+            final OmegaSquare start = getStart(move);
+            if (fromFile != 0 && start.getFile().get() != fromFile) continue;
+            if (fromRank != 0 && start.getRank().get() != fromRank) continue;
+            if (checkPiece && getPiece(move).getType() != pieceType) continue;
+            if (promotion == null) {
+                if (getPromotion(move) != OmegaPiece.NOPIECE) continue;
+            } else if (getPromotion(move).getType() != promotion) continue;
+            if (!isLegal(position, move)) continue;
+            if (found != NOMOVE) return NOMOVE; // ambiguous
+            found = move;
+        }
+        return found;
+    }
+
+    /**
+     * @return true if the pseudo legal move does not leave the own king in check
+     */
+    private static boolean isLegal(OmegaBoardPosition position, int move) {
+        final OmegaColor player = position._nextPlayer;
+        position.makeMove(move);
+        final boolean legal = !position.isAttacked(player.getInverseColor(), position._kingSquares[player.ordinal()]);
+        position.undoMove();
+        return legal;
+    }
+
+    // piece types in the order of the SAN letters KQRBN
+    private static final OmegaPieceType[] PIECE_TYPES = {
+            OmegaPieceType.KING, OmegaPieceType.QUEEN, OmegaPieceType.ROOK,
+            OmegaPieceType.BISHOP, OmegaPieceType.KNIGHT };
+
+    private static boolean isCastlingChar(char c) {
+        return c == 'O' || c == 'o' || c == '0';
+    }
+
+    private static boolean isFileChar(char c) {
+        return c >= 'a' && c <= 'h';
+    }
+
+    private static boolean isRankChar(char c) {
+        return c >= '1' && c <= '8';
+    }
+
+    /**
+     * Standard algebraic notation (SAN) of a legal move in the given position
+     * (e.g. <code>Nbxd5</code>, <code>exd8=Q+</code>, <code>O-O</code>).
+     * The position is unchanged after the call.
+     *
+     * @param position
+     * @param move
+     * @return SAN String for move
+     */
+    public static String toSAN(OmegaBoardPosition position, int move) {
+        if (move == NOMOVE) return "NOMOVE";
+        final OmegaMoveGenerator moveGenerator = new OmegaMoveGenerator();
+        final StringBuilder san = new StringBuilder();
+
+        if (getMoveType(move) == OmegaMoveType.CASTLING) {
+            san.append(getEnd(move).getFile() == OmegaSquare.File.g ? "O-O" : "O-O-O");
+        } else {
+            final OmegaSquare start = getStart(move);
+            final OmegaSquare end = getEnd(move);
+            final boolean capture = getTarget(move) != OmegaPiece.NOPIECE
+                    || getMoveType(move) == OmegaMoveType.ENPASSANT;
+
+            if (getPiece(move).getType() == OmegaPieceType.PAWN) {
+                if (capture) san.append(start.getFile());
+            } else {
+                san.append(getPiece(move).getType().getShortName());
+                // disambiguation if another piece of the same type can move to the same square
+                boolean sameFile = false, sameRank = false, ambiguous = false;
+                final OmegaMoveList legalMoves = moveGenerator.getLegalMoves(position, false);
+                for (int i = 0; i < legalMoves.size(); i++) {
+                    final int other = legalMoves.get(i);
+                    if (other == move || getEnd(other) != end || getPiece(other) != getPiece(move)) continue;
+                    ambiguous = true;
+                    if (getStart(other).getFile() == start.getFile()) sameFile = true;
+                    if (getStart(other).getRank() == start.getRank()) sameRank = true;
+                }
+                if (ambiguous) {
+                    if (!sameFile) san.append(start.getFile());
+                    else if (!sameRank) san.append(start.getRank());
+                    else san.append(start.toString());
+                }
+            }
+            if (capture) san.append('x');
+            san.append(end.toString());
+            if (getPromotion(move) != OmegaPiece.NOPIECE) {
+                san.append('=').append(getPromotion(move).getType().getShortName());
+            }
+        }
+
+        position.makeMove(move);
+        if (position.hasCheck()) {
+            san.append(moveGenerator.hasLegalMove(position) ? '+' : '#');
+        }
+        position.undoMove();
+        return san.toString();
+    }
 
 }
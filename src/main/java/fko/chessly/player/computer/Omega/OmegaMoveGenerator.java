@@ -262,7 +262,8 @@ public class OmegaMoveGenerator {
         // filter legal moves
         assert _legalMoves.size() == 0;
         getPseudoLegalMoves(position, capturingOnly);
-        for(int move : _pseudoLegalMoves) {
+        for(int i = 0; i < _pseudoLegalMoves.size(); i++) {
+            final int move = _pseudoLegalMoves.get(i);
             if (isLegalMove(move)) _legalMoves.add(move);
         }
 
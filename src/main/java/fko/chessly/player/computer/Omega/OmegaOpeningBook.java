@@ -0,0 +1,373 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.player.computer.Omega;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+import fko.chessly.Chessly;
+import fko.chessly.openingbook.OpeningBookImpl;
+import fko.chessly.openingbook.OpeningBookImpl.Mode;
+
+/**
+ * Binary opening book for the Omega engine which is memory mapped and looked up by the
+ * zobrist key of an <code>OmegaBoardPosition</code>.
+ * <p>
+ * The file consists of 16 byte records. The first record is the header (magic number and
+ * the zobrist key of the start position to detect books written with different keys).
+ * Each following record holds the zobrist key of a position (long), a move (int) and the
+ * number of times the move has been played in this position (int). The records are sorted
+ * by key and for each key by count (highest first) so that the moves of a position are
+ * found by a binary search.
+ * <p>
+ * Opened books are shared by all engines of the process. As the book is memory mapped it
+ * uses almost no heap and is ready immediately.
+ */
+public final class OmegaOpeningBook {
+
+    /** file extension of binary books */
+    public static final String FILE_EXTENSION = ".omb";
+
+    static final long MAGIC = 0x4348455353424B31L; // "CHESSBK1"
+    static final int RECORD_SIZE = 16;
+
+    // more than the maximum number of legal moves of a position (218)
+    private static final int MAX_MOVES = 256;
+
+    // opened books are shared by all engines
+    private static final Map<Path, OmegaOpeningBook> _openBooks = new HashMap<>();
+
+    private final Path _file;
+    private final ByteBuffer _buffer;
+    private final int _records;
+
+    private OmegaOpeningBook(Path file) throws IOException {
+        _file = file;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size < RECORD_SIZE || size % RECORD_SIZE != 0 || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a binary opening book: " + file);
+            }
+            _buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            _records = (int) (size / RECORD_SIZE) - 1;
+        }
+        if (_buffer.getLong(0) != MAGIC) {
+            throw new IOException("Not a binary opening book: " + file);
+        }
+        if (_buffer.getLong(8) != new OmegaBoardPosition().getZobristKey()) {
+            throw new IOException("Binary opening book uses different zobrist keys: " + file);
+        }
+    }
+
+    /**
+     * Opens a binary book. Books are opened only once per process.
+     *
+     * @param file
+     * @return the book
+     * @throws IOException if the file can't be read or is not a binary book
+     */
+    public static synchronized OmegaOpeningBook open(Path file) throws IOException {
+        final Path key = file.toAbsolutePath().normalize();
+        OmegaOpeningBook book = _openBooks.get(key);
+        if (book == null) {
+            book = new OmegaOpeningBook(key);
+            _openBooks.put(key, book);
+        }
+        return book;
+    }
+
+    /**
+     * Opens the binary version of an opening book file of <code>OpeningBookImpl</code>
+     * (PGN, SAN or SIMPLE). If there is none or the existing one is not a valid binary book
+     * (e.g. truncated) it is built with {@link OmegaBookBuilder} and stored next to the cache
+     * file of the opening book.
+     *
+     * @param pathString book file as used by <code>OpeningBookImpl</code>
+     * @param mode format of the book file
+     * @return the binary book
+     * @throws IOException if the binary book can't be written or read
+     */
+    public static OmegaOpeningBook forBookFile(String pathString, Mode mode) throws IOException {
+        return forBookFile(pathString, mode, new OpeningBookImpl(null, pathString, mode).getCacheFile(FILE_EXTENSION));
+    }
+
+    /**
+     * Opens the binary book stored in the given file. If there is none or the existing one
+     * is not a valid binary book it is built from the opening book file.
+     *
+     * @param pathString book file as used by <code>OpeningBookImpl</code>
+     * @param mode format of the book file
+     * @param file binary book
+     * @return the binary book
+     * @throws IOException if the binary book can't be written or read
+     */
+    static synchronized OmegaOpeningBook forBookFile(String pathString, Mode mode, Path file) throws IOException {
+        if (Files.exists(file)) {
+            try {
+                return open(file);
+            } catch (IOException e) {
+                Chessly.minorError(e.getMessage() + " - building it again");
+            }
+        }
+        final InputStream in = Chessly.class.getResourceAsStream(pathString);
+        if (in == null) throw new IOException("Book file not found: " + pathString);
+        final OmegaBookBuilder builder = new OmegaBookBuilder();
+        builder.addBook(in, mode);
+        builder.write(file);
+        return open(file);
+    }
+
+    /**
+     * Writes a binary book. The records don't need to be sorted and may contain the same
+     * key and move several times - their counts are summed up.
+     * <p>
+     * The book is written to a temporary file which then replaces the file so that other
+     * processes never map a partly written book.
+     *
+     * @param file
+     * @param keys zobrist keys of the positions
+     * @param moves moves played in the positions
+     * @param counts number of times each move has been played
+     * @param size number of records in the arrays
+     * @throws IOException
+     */
+    public static void write(Path file, long[] keys, int[] moves, int[] counts, int size) throws IOException {
+        if (size > keys.length || size > moves.length || size > counts.length) {
+            throw new IllegalArgumentException("size must not be larger than the arrays");
+        }
+        if ((long) (size + 1) * RECORD_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many records for a binary opening book: " + size);
+        }
+
+        // merge equal key and move
+        final Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> keys[a] != keys[b]
+                ? Long.compare(keys[a], keys[b]) : Integer.compare(moves[a], moves[b]));
+        final Records merged = new Records();
+        for (int i = 0; i < size; i++) {
+            final int r = order[i];
+            if (merged.size > 0 && merged.keys[merged.size - 1] == keys[r]
+                    && merged.moves[merged.size - 1] == moves[r]) {
+                merged.counts[merged.size - 1] += counts[r];
+            } else {
+                merged.add(keys[r], moves[r], counts[r]);
+            }
+        }
+
+        // most played moves first
+        final Integer[] sorted = new Integer[merged.size];
+        for (int i = 0; i < merged.size; i++) sorted[i] = i;
+        Arrays.sort(sorted, (a, b) -> merged.keys[a] != merged.keys[b]
+                ? Long.compare(merged.keys[a], merged.keys[b])
+                : Integer.compare(merged.counts[b], merged.counts[a]));
+
+        final Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        final Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeLong(MAGIC);
+                out.writeLong(new OmegaBoardPosition().getZobristKey());
+                for (int r : sorted) {
+                    out.writeLong(merged.keys[r]);
+                    out.writeInt(merged.moves[r]);
+                    out.writeInt(merged.counts[r]);
+                }
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Returns a book move for the position. The move is selected randomly with a probability
+     * according to how often it has been played.
+     *
+     * @param position
+     * @return a legal book move or <code>OmegaMove.NOMOVE</code> if the position is not in the book
+     */
+    public int getBookMove(OmegaBoardPosition position) {
+        return getBookMove(position, ThreadLocalRandom.current());
+    }
+
+    /**
+     * Returns a book move for the position. The move is selected randomly with a probability
+     * according to how often it has been played.
+     *
+     * @param position
+     * @param random
+     * @return a legal book move or <code>OmegaMove.NOMOVE</code> if the position is not in the book
+     */
+    public int getBookMove(OmegaBoardPosition position, Random random) {
+        final OmegaMoveList moves = new OmegaMoveList();
+        final int[] counts = new int[MAX_MOVES];
+        final long total = getMoves(position, moves, counts);
+        if (total == 0) return OmegaMove.NOMOVE;
+        long pick = (long) (random.nextDouble() * total);
+        for (int i = 0; i < moves.size(); i++) {
+            pick -= counts[i];
+            if (pick < 0) return moves.get(i);
+        }
+        return moves.get(moves.size() - 1);
+    }
+
+    /**
+     * @param position
+     * @return the legal book moves of the position - most played first
+     */
+    public OmegaMoveList getMoves(OmegaBoardPosition position) {
+        final OmegaMoveList moves = new OmegaMoveList();
+        getMoves(position, moves, new int[MAX_MOVES]);
+        return moves;
+    }
+
+    /**
+     * @param position
+     * @param move
+     * @return number of times the move has been played in the position
+     */
+    public int getCount(OmegaBoardPosition position, int move) {
+        final long key = position.getZobristKey();
+        for (int r = findFirst(key); r >= 0 && r < _records && keyAt(r) == key; r++) {
+            if (moveAt(r) == move) return countAt(r);
+        }
+        return 0;
+    }
+
+    /**
+     * Collects the legal book moves and their counts. Moves which are not legal in the
+     * position (key collisions) are ignored.
+     *
+     * @return the sum of the counts
+     */
+    private long getMoves(OmegaBoardPosition position, OmegaMoveList moves, int[] counts) {
+        final long key = position.getZobristKey();
+        int r = findFirst(key);
+        if (r < 0) return 0;
+        final OmegaMoveList legalMoves = new OmegaMoveGenerator().getLegalMoves(position, false);
+        long total = 0;
+        for (; r < _records && keyAt(r) == key && moves.size() < counts.length; r++) {
+            final int move = moveAt(r);
+            for (int i = 0; i < legalMoves.size(); i++) {
+                if (legalMoves.get(i) == move) {
+                    counts[moves.size()] = countAt(r);
+                    total += countAt(r);
+                    moves.add(move);
+                    break;
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return index of the first record with the key or -1 if there is none
+     */
+    private int findFirst(long key) {
+        int low = 0, high = _records - 1, found = -1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final long midKey = keyAt(mid);
+            if (midKey < key) {
+                low = mid + 1;
+            } else {
+                if (midKey == key) found = mid;
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private long keyAt(int record) {
+        return _buffer.getLong((record + 1) * RECORD_SIZE);
+    }
+
+    private int moveAt(int record) {
+        return _buffer.getInt((record + 1) * RECORD_SIZE + 8);
+    }
+
+    private int countAt(int record) {
+        return _buffer.getInt((record + 1) * RECORD_SIZE + 12);
+    }
+
+    /**
+     * @return the number of position/move records in the book
+     */
+    public int getNumberOfRecords() {
+        return _records;
+    }
+
+    /**
+     * @return the book file
+     */
+    public Path getFile() {
+        return _file;
+    }
+
+    /**
+     * Growing primitive arrays of records.
+     */
+    private static final class Records {
+        long[] keys = new long[1024];
+        int[] moves = new int[1024];
+        int[] counts = new int[1024];
+        int size = 0;
+
+        void add(long key, int move, int count) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                moves = Arrays.copyOf(moves, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            keys[size] = key;
+            moves[size] = move;
+            counts[size] = count;
+            size++;
+        }
+    }
+}
@@ -27,7 +27,14 @@
 
 package fko.chessly.player.computer.Omega;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import fko.chessly.game.NotationHelper;
 
@@ -39,6 +46,12 @@ public class OmegaPERFT {
 
     private static final boolean DIVIDE=false;
 
+    // default number of plies from the root which are split into parallel tasks
+    private static final int DEFAULT_SPLIT_DEPTH = 2;
+
+    // default size in MB of the perft hash table used by perft()
+    private static final int DEFAULT_TABLE_SIZE = 32;
+
     private long _nodes = 0;
     private long _checkCounter = 0;
     private long _checkMateCounter = 0;
@@ -46,6 +59,9 @@ public class OmegaPERFT {
     private long _enpassantCounter = 0;
     private String _fen = "";
 
+    // hash table for sub tree counts - created on first use and kept between runs
+    private OmegaPerftTable _perftTable = null;
+
     /**
      * @param fen
      */
@@ -61,6 +77,116 @@ public class OmegaPERFT {
     }
 
     /**
+     * Fast perft which only counts leaf nodes. Sub tree counts are cached in a hash
+     * table keyed by zobrist key and depth and at depth 1 the number of legal moves
+     * is counted without making the moves.<br>
+     * Use <code>testPerft()</code> to also get captures, en passant, checks and mates.
+     *
+     * @param maxDepth
+     * @return number of leaf nodes
+     */
+    public long perft(int maxDepth) {
+        resetCounters();
+
+        System.out.format("Testing hashed perft at depth %d%n", maxDepth);
+
+        final PerftWorker worker = new PerftWorker(maxDepth);
+        final OmegaBoardPosition board = new OmegaBoardPosition(_fen);
+
+        long startTime = System.currentTimeMillis();
+        _nodes = worker.perftHashed(maxDepth, board, 0, getPerftTable());
+        long duration = System.currentTimeMillis() - startTime;
+
+        printResult(_nodes, duration, false);
+        return _nodes;
+    }
+
+    /**
+     * Fast perft like <code>perft()</code> but searching in parallel in the common
+     * ForkJoinPool like <code>testPerftParallel()</code>. The hash table is shared by
+     * all tasks.
+     *
+     * @param maxDepth
+     * @return number of leaf nodes
+     */
+    public long perftParallel(int maxDepth) {
+        if (maxDepth < 1) throw new IllegalArgumentException("maxDepth must be >= 1");
+
+        resetCounters();
+
+        final ForkJoinPool pool = ForkJoinPool.commonPool();
+        final int splitDepth = Math.min(DEFAULT_SPLIT_DEPTH, maxDepth - 1);
+        System.out.format("Testing hashed perft at depth %d (parallel: split depth %d, %d threads)%n",
+                maxDepth, splitDepth, pool.getParallelism());
+
+        final PerftCounters counters = new PerftCounters();
+        final OmegaBoardPosition board = new OmegaBoardPosition(_fen);
+
+        long startTime = System.currentTimeMillis();
+        pool.invoke(new PerftTask(board, maxDepth, splitDepth, counters, getPerftTable()));
+        long duration = System.currentTimeMillis() - startTime;
+
+        _nodes = counters.nodes.sum();
+        printResult(_nodes, duration, false);
+        return _nodes;
+    }
+
+    /**
+     * Perft divide - the number of leaf nodes for each legal move of the root position.
+     * Moves are given in UCI notation (e.g. e7e8q). Uses bulk counting but no hash table
+     * and prints nothing so the result can be compared to other move generators.
+     *
+     * @param depth
+     * @return map of root move to number of leaf nodes in the order of generation
+     */
+    public Map<String, Long> divide(int depth) {
+        if (depth < 1) throw new IllegalArgumentException("depth must be >= 1");
+
+        resetCounters();
+
+        final PerftWorker worker = new PerftWorker(depth);
+        final OmegaBoardPosition board = new OmegaBoardPosition(_fen);
+        final Map<String, Long> result = new LinkedHashMap<>();
+
+        OmegaMoveList moves = worker.mg[0].getLegalMoves(board, false);
+        for(int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            board.makeMove(move);
+            long nodes = worker.perftHashed(depth-1, board, 1, null);
+            board.undoMove();
+            result.put(OmegaMove.toUCINotation(move), nodes);
+            _nodes += nodes;
+        }
+        return result;
+    }
+
+    /**
+     * Counts the leaf nodes of the position in the given pool without printing anything.
+     * Used by the workers of a distributed perft.
+     *
+     * @param board
+     * @param depth
+     * @param table hash table for sub tree counts (shared by all tasks)
+     * @param pool
+     * @return number of leaf nodes
+     */
+    static long countLeafNodes(OmegaBoardPosition board, int depth, OmegaPerftTable table, ForkJoinPool pool) {
+        if (depth < 0) throw new IllegalArgumentException("depth must be >= 0");
+        if (depth == 0) return 1;
+        final PerftCounters counters = new PerftCounters();
+        pool.invoke(new PerftTask(board, depth, Math.min(DEFAULT_SPLIT_DEPTH, depth - 1), counters, table));
+        return counters.nodes.sum();
+    }
+
+    private OmegaPerftTable getPerftTable() {
+        if (_perftTable == null) _perftTable = new OmegaPerftTable(DEFAULT_TABLE_SIZE);
+        return _perftTable;
+    }
+
+    /**
+     * Perft with statistics (captures, en passant, checks and mates). This makes every
+     * leaf move and is therefore much slower than <code>perft()</code>.
+     *
      * @param maxDepth
      */
     public void testPerft(int maxDepth) {
@@ -71,87 +197,249 @@ public class OmegaPERFT {
 
         System.out.format("Testing at depth %d%n", depth);
 
-        OmegaMoveGenerator[] mg = new OmegaMoveGenerator[maxDepth];
-        for (int i=0; i<maxDepth; i++) {
-            mg[i] = new OmegaMoveGenerator();
-        }
+        final PerftWorker worker = new PerftWorker(maxDepth);
 
         OmegaBoardPosition board = new OmegaBoardPosition(_fen);
 
         long result = 0;
 
         long startTime = System.currentTimeMillis();
-        result = mg[0]
+        result = worker.mg[0]
                 .streamLegalMoves(board, false)
-                .mapToLong((move) -> dividePerft(depth, mg, board, move))
+                .mapToLong((move) -> dividePerft(depth, worker, board, move))
                 .sum();
         long endTime = System.currentTimeMillis();
         long duration = endTime - startTime;
 
         _nodes = result;
+        _checkCounter = worker.checkCounter;
+        _checkMateCounter = worker.checkMateCounter;
+        _captureCounter = worker.captureCounter;
+        _enpassantCounter = worker.enpassantCounter;
         printResult(result, duration);
     }
 
+    /**
+     * Parallel perft using the common ForkJoinPool and a split depth of
+     * <code>min(DEFAULT_SPLIT_DEPTH, maxDepth-1)</code>.
+     *
+     * @param maxDepth
+     */
+    public void testPerftParallel(int maxDepth) {
+        testPerftParallel(maxDepth, Math.min(DEFAULT_SPLIT_DEPTH, maxDepth - 1), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Parallel perft. The tree is split into sub trees up to <code>splitDepth</code>
+     * plies from the root. Each sub tree is searched as a separate task in the given
+     * ForkJoinPool with its own copy of the board and its own move generators.
+     *
+     * @param maxDepth
+     * @param splitDepth number of plies from the root which are split into tasks
+     * @param pool
+     */
+    public void testPerftParallel(int maxDepth, int splitDepth, ForkJoinPool pool) {
+        if (maxDepth < 1) throw new IllegalArgumentException("maxDepth must be >= 1");
+
+        resetCounters();
+
+        System.out.format("Testing at depth %d (parallel: split depth %d, %d threads)%n",
+                maxDepth, splitDepth, pool.getParallelism());
+
+        final PerftCounters counters = new PerftCounters();
+        final OmegaBoardPosition board = new OmegaBoardPosition(_fen);
+
+        long startTime = System.currentTimeMillis();
+        pool.invoke(new PerftTask(board, maxDepth, Math.max(0, splitDepth), counters, null));
+        long endTime = System.currentTimeMillis();
+        long duration = endTime - startTime;
+
+        _nodes = counters.nodes.sum();
+        _checkCounter = counters.checkCounter.sum();
+        _checkMateCounter = counters.checkMateCounter.sum();
+        _captureCounter = counters.captureCounter.sum();
+        _enpassantCounter = counters.enpassantCounter.sum();
+        printResult(_nodes, duration);
+    }
+
     /**
      * @param depth
-     * @param mg
+     * @param worker
      * @param board
      * @param move
      * @return
      */
-    private long dividePerft(int depth, OmegaMoveGenerator[] mg, OmegaBoardPosition board, int move) {
+    private static long dividePerft(int depth, PerftWorker worker, OmegaBoardPosition board, int move) {
         if (DIVIDE) System.out.print(OmegaMove.toSimpleString(move)+" ");
         board.makeMove(move);
-        long r = miniMax(depth - 1, board, mg, 1);
+        long r = worker.miniMax(depth - 1, board, 1);
         if (DIVIDE) System.out.println(r);
         board.undoMove();
         return r;
     }
 
-    private long miniMax(int depthleft, OmegaBoardPosition board, OmegaMoveGenerator[] mg, int ply) {
+    /**
+     * Holds the move generators for each ply and the counters of one thread.
+     */
+    private static final class PerftWorker {
+
+        final OmegaMoveGenerator[] mg;
+
+        long checkCounter = 0;
+        long checkMateCounter = 0;
+        long captureCounter = 0;
+        long enpassantCounter = 0;
 
-        // PERFT only looks at leaf nodes
-        if (depthleft == 0) {
-            updateCounter(board);
-            return 1;
+        PerftWorker(int maxDepth) {
+            mg = new OmegaMoveGenerator[maxDepth + 1];
+            for (int i = 0; i < mg.length; i++) {
+                mg[i] = new OmegaMoveGenerator();
+            }
         }
 
-        // Iterate over moves
-        long totalNodes = 0L;
+        long miniMax(int depthleft, OmegaBoardPosition board, int ply) {
 
-        // moves to search recursively
-        // some convenience fields
-        OmegaColor _activePlayer = board._nextPlayer;
-        OmegaColor _passivePlayer = board._nextPlayer.getInverseColor();
-        OmegaMoveList moves = mg[ply].getPseudoLegalMoves(board, false);
-        for(int i = 0; i < moves.size(); i++) {
-            int move = moves.get(i);
-            board.makeMove(move);
-            if (!board.isAttacked(_passivePlayer, board._kingSquares[_activePlayer.ordinal()])) {
-                totalNodes += miniMax(depthleft-1, board, mg, ply+1);
+            // PERFT only looks at leaf nodes
+            if (depthleft == 0) {
+                updateCounter(board);
+                return 1;
             }
-            board.undoMove();
+
+            // Iterate over moves
+            long totalNodes = 0L;
+
+            // moves to search recursively
+            // some convenience fields
+            OmegaColor _activePlayer = board._nextPlayer;
+            OmegaColor _passivePlayer = board._nextPlayer.getInverseColor();
+            OmegaMoveList moves = mg[ply].getPseudoLegalMoves(board, false);
+            for(int i = 0; i < moves.size(); i++) {
+                int move = moves.get(i);
+                board.makeMove(move);
+                if (!board.isAttacked(_passivePlayer, board._kingSquares[_activePlayer.ordinal()])) {
+                    totalNodes += miniMax(depthleft-1, board, ply+1);
+                }
+                board.undoMove();
+            }
+
+            return totalNodes;
+        }
+
+        /**
+         * Counts leaf nodes only. If table is null no hashing is done.
+         */
+        long perftHashed(int depthleft, OmegaBoardPosition board, int ply, OmegaPerftTable table) {
+
+            if (depthleft == 0) return 1;
+
+            // bulk counting - no need to make the leaf moves
+            if (depthleft == 1) return mg[ply].getLegalMoves(board, false).size();
+
+            final long key = board._zobristKey;
+            if (table != null) {
+                final long cached = table.get(key, depthleft);
+                if (cached >= 0) return cached;
+            }
+
+            long totalNodes = 0L;
+
+            OmegaColor _activePlayer = board._nextPlayer;
+            OmegaColor _passivePlayer = board._nextPlayer.getInverseColor();
+            OmegaMoveList moves = mg[ply].getPseudoLegalMoves(board, false);
+            for(int i = 0; i < moves.size(); i++) {
+                int move = moves.get(i);
+                board.makeMove(move);
+                if (!board.isAttacked(_passivePlayer, board._kingSquares[_activePlayer.ordinal()])) {
+                    totalNodes += perftHashed(depthleft-1, board, ply+1, table);
+                }
+                board.undoMove();
+            }
+
+            if (table != null) table.put(key, depthleft, totalNodes);
+            return totalNodes;
         }
 
-        return totalNodes;
+        /**
+         * @param board
+         */
+        private void updateCounter(OmegaBoardPosition board) {
+            if (board.hasCheck()) {
+                checkCounter++;
+                if (board.hasCheckMate()) {
+                    checkMateCounter++;
+                }
+            }
+            int lastMove = board.getLastMove();
+            if (OmegaMove.getTarget(lastMove) != OmegaPiece.NOPIECE) {
+                captureCounter++;
+            }
+            if (OmegaMove.getMoveType(lastMove) == OmegaMoveType.ENPASSANT) {
+                enpassantCounter++;
+            }
+        }
     }
 
     /**
-     * @param board
+     * Counters shared by all tasks of a parallel perft.
      */
-    private void updateCounter(OmegaBoardPosition board) {
-        if (board.hasCheck()) {
-            _checkCounter++;
-            if (board.hasCheckMate()) {
-                _checkMateCounter++;
-            }
-        }
-        int lastMove = board.getLastMove();
-        if (OmegaMove.getTarget(lastMove) != OmegaPiece.NOPIECE) {
-            _captureCounter++;
+    private static final class PerftCounters {
+        final LongAdder nodes = new LongAdder();
+        final LongAdder checkCounter = new LongAdder();
+        final LongAdder checkMateCounter = new LongAdder();
+        final LongAdder captureCounter = new LongAdder();
+        final LongAdder enpassantCounter = new LongAdder();
+    }
+
+    /**
+     * A sub tree of a parallel perft. Splits into one task per legal move while
+     * splitDepth is > 0. Otherwise searches the sub tree sequentially and adds its
+     * counters to the shared counters. If a perft table is given only leaf nodes are
+     * counted using the hashed perft.
+     */
+    private static final class PerftTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final OmegaBoardPosition board;
+        private final int depthLeft;
+        private final int splitDepth;
+        private final PerftCounters counters;
+        private final OmegaPerftTable table;
+
+        PerftTask(OmegaBoardPosition board, int depthLeft, int splitDepth,
+                PerftCounters counters, OmegaPerftTable table) {
+            this.board = board;
+            this.depthLeft = depthLeft;
+            this.splitDepth = splitDepth;
+            this.counters = counters;
+            this.table = table;
         }
-        if (OmegaMove.getMoveType(lastMove) == OmegaMoveType.ENPASSANT) {
-            _enpassantCounter++;
+
+        @Override
+        protected void compute() {
+            if (splitDepth > 0 && depthLeft > 1) {
+                final OmegaMoveList moves = new OmegaMoveGenerator().getLegalMoves(board, false);
+                final List<PerftTask> tasks = new ArrayList<>(moves.size());
+                for (int i = 0; i < moves.size(); i++) {
+                    board.makeMove(moves.get(i));
+                    tasks.add(new PerftTask(new OmegaBoardPosition(board),
+                            depthLeft - 1, splitDepth - 1, counters, table));
+                    board.undoMove();
+                }
+                invokeAll(tasks);
+                return;
+            }
+
+            final PerftWorker worker = new PerftWorker(depthLeft);
+            if (table != null) {
+                counters.nodes.add(worker.perftHashed(depthLeft, board, 0, table));
+                return;
+            }
+            counters.nodes.add(worker.miniMax(depthLeft, board, 0));
+            counters.checkCounter.add(worker.checkCounter);
+            counters.checkMateCounter.add(worker.checkMateCounter);
+            counters.captureCounter.add(worker.captureCounter);
+            counters.enpassantCounter.add(worker.enpassantCounter);
         }
     }
 
@@ -171,8 +459,21 @@ public class OmegaPERFT {
      * @param duration
      */
     private void printResult(final long result, final long duration) {
-        System.out.format("Leaf Nodes: %,d Captures: %,d EnPassant: %,d Checks: %,d Checkmates: %,d %n",
-                result, _captureCounter, _enpassantCounter, _checkCounter, _checkMateCounter);
+        printResult(result, duration, true);
+    }
+
+    /**
+     * @param result
+     * @param duration
+     * @param statistics
+     */
+    private void printResult(final long result, final long duration, boolean statistics) {
+        if (statistics) {
+            System.out.format("Leaf Nodes: %,d Captures: %,d EnPassant: %,d Checks: %,d Checkmates: %,d %n",
+                    result, _captureCounter, _enpassantCounter, _checkCounter, _checkMateCounter);
+        } else {
+            System.out.format("Leaf Nodes: %,d%n", result);
+        }
         System.out.format("Duration: %02d:%02d:%02d.%03d%n",
                 TimeUnit.MILLISECONDS.toHours(duration),
                 TimeUnit.MILLISECONDS.toMinutes(duration)
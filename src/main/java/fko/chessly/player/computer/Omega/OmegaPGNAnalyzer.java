@@ -0,0 +1,530 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.player.computer.Omega;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import fko.chessly.openingbook.PGN_Reader.pgnGame;
+import fko.chessly.openingbook.PGN_StreamReader;
+import fko.chessly.player.computer.Omega.OmegaSearch.SearchResult;
+import fko.chessly.util.CmdLineParser;
+
+/**
+ * Analyses archives of games in PGN format with the Omega engine and writes them as
+ * annotated PGN.
+ * <p>
+ * The PGN file is read game by game with {@link PGN_StreamReader} which also provides the tag
+ * pairs and the result of every game. Games are analysed in parallel. Each worker thread has its own OmegaEngine
+ * and OmegaSearch which searches every position of a game with a time or node budget.
+ * <p>
+ * Every move of the annotated game gets a comment with the evaluation after the move (in pawns
+ * from white's view) and the search depth. If the engine prefers another move the best move and
+ * its evaluation are added. Moves which lose at least the blunder threshold are marked with
+ * <code>$4</code> (??), moves which lose half of it with <code>$2</code> (?) and moves which lose
+ * a quarter of it with <code>$6</code> (?!).
+ * <p>
+ * Games are written in the order of the input file. Only a few games per worker are in flight
+ * at a time so archives of any size can be analysed.
+ * <p>
+ * Usage: <code>java fko.chessly.player.computer.Omega.OmegaPGNAnalyzer [-t ms] [-n nodes] [-j threads] [-b cp] [-o file] file</code>
+ */
+public class OmegaPGNAnalyzer {
+
+    /** default loss in centipawns for a move to be a blunder */
+    public static final int DEFAULT_BLUNDER_THRESHOLD = 200;
+
+    /** NAG for a blunder (??) */
+    public static final int NAG_BLUNDER = 4;
+    /** NAG for a mistake (?) */
+    public static final int NAG_MISTAKE = 2;
+    /** NAG for a dubious move (?!) */
+    public static final int NAG_DUBIOUS = 6;
+
+    // games in flight per worker thread
+    private static final int GAMES_PER_THREAD = 2;
+
+    // the loss of a move is computed with clamped scores so a slower win is no blunder
+    private static final int LOSS_SCORE_LIMIT = 1000;
+
+    // longer games are continued on a new position from FEN as the position history is limited
+    private static final int HISTORY_RESET = 200;
+
+    private static final int MAX_LINE_LENGTH = 79;
+
+    private final long _timePerPosition;
+    private final long _nodesPerPosition;
+    private final int _threads;
+    private final int _blunderThreshold;
+
+    // each worker thread has its own engine and search
+    private final ThreadLocal<OmegaEngine> _engines = ThreadLocal.withInitial(() -> {
+        final OmegaEngine engine = new OmegaEngine();
+        engine._CONFIGURATION.VERBOSE_STATS = false;
+        engine._CONFIGURATION._USE_BOOK = false;
+        engine._CONFIGURATION._USE_PONDERER = false;
+        return engine;
+    });
+    // created on first use so that threads without work don't acquire caches
+    private final ThreadLocal<OmegaSearch> _searches = new ThreadLocal<>();
+
+    /**
+     * @param timePerPosition time limit per position in milliseconds (ignored if nodesPerPosition > 0)
+     * @param nodesPerPosition nodes limit per position or 0 for time limit
+     * @param threads number of games analysed in parallel
+     * @param blunderThreshold loss in centipawns for a move to be a blunder
+     */
+    public OmegaPGNAnalyzer(long timePerPosition, long nodesPerPosition, int threads, int blunderThreshold) {
+        if (nodesPerPosition <= 0 && timePerPosition <= 0)
+            throw new IllegalArgumentException("Either time or nodes limit must be > 0");
+        if (threads < 1) throw new IllegalArgumentException("threads must be >= 1");
+        if (blunderThreshold < 4) throw new IllegalArgumentException("blunderThreshold must be >= 4");
+        _timePerPosition = timePerPosition;
+        _nodesPerPosition = nodesPerPosition;
+        _threads = threads;
+        _blunderThreshold = blunderThreshold;
+    }
+
+    /**
+     * Analyses all games read from the reader and writes them as annotated PGN to the writer
+     * in the order of the input.
+     *
+     * @param in
+     * @param out
+     * @return the statistics of the analysis
+     * @throws IOException
+     */
+    public AnalysisStatistics run(BufferedReader in, Writer out) throws IOException {
+        final AnalysisStatistics statistics = new AnalysisStatistics();
+        final ExecutorService pool = Executors.newFixedThreadPool(_threads, r -> {
+            Thread t = new Thread(() -> runAndRelease(r), "OmegaPGNAnalyzer");
+            t.setDaemon(true);
+            return t;
+        });
+        final long start = System.nanoTime();
+        try {
+            final PGN_StreamReader games = new PGN_StreamReader(in);
+            final Deque<Future<AnalysedGame>> pending = new ArrayDeque<>();
+            while (games.hasNext()) {
+                final pgnGame pgnGame = games.next();
+                pending.add(pool.submit(() -> analyseGame(pgnGame)));
+                if (pending.size() >= GAMES_PER_THREAD * _threads) {
+                    write(pending.poll().get(), out, statistics);
+                }
+            }
+            while (!pending.isEmpty()) {
+                write(pending.poll().get(), out, statistics);
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException("PGN analysis failed", e);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdownNow();
+        }
+        out.flush();
+        statistics.timeMs = (System.nanoTime() - start) / 1_000_000L;
+        return statistics;
+    }
+
+    /**
+     * @return the search of the current thread
+     */
+    private OmegaSearch getSearch() {
+        OmegaSearch search = _searches.get();
+        if (search == null) {
+            search = new OmegaSearch(_engines.get());
+            _searches.set(search);
+        }
+        return search;
+    }
+
+    /**
+     * Runs a worker thread and gives the caches of its search back to the
+     * OmegaCachePool when the thread ends.
+     */
+    private void runAndRelease(Runnable worker) {
+        try {
+            worker.run();
+        } finally {
+            final OmegaSearch search = _searches.get();
+            if (search != null) {
+                search.releaseCacheTables();
+                _searches.remove();
+            }
+        }
+    }
+
+    private void write(AnalysedGame game, Writer out, AnalysisStatistics statistics) throws IOException {
+        out.write(toPGN(game));
+        out.write(System.lineSeparator());
+        statistics.games++;
+        statistics.positions += game.positions;
+        statistics.nodes += game.nodes;
+        for (AnalysedMove move : game.moves) {
+            switch (move.nag) {
+                case NAG_BLUNDER: statistics.blunders++; break;
+                case NAG_MISTAKE: statistics.mistakes++; break;
+                case NAG_DUBIOUS: statistics.dubious++; break;
+                default: break;
+            }
+        }
+    }
+
+    /**
+     * Analyses one game with the OmegaSearch of the current thread.
+     *
+     * @param pgnGame the game as read from the PGN input
+     * @return the analysed game
+     */
+    AnalysedGame analyseGame(pgnGame pgnGame) {
+        final AnalysedGame game = new AnalysedGame();
+        game.tags.putAll(pgnGame.getTags());
+        game.result = pgnGame.getResult();
+        if (game.tags.containsKey("Result") && "*".equals(game.result)) {
+            game.result = game.tags.get("Result");
+        }
+        final List<String> notations = pgnGame.getMoves();
+
+        OmegaBoardPosition position = game.tags.containsKey("FEN")
+                ? new OmegaBoardPosition(game.tags.get("FEN")) : new OmegaBoardPosition();
+
+        final OmegaSearch search = getSearch();
+        search.clearCaches();
+
+        // evaluation of the position before each move from the view of the side to move
+        Evaluation before = evaluate(position, game);
+        for (String notation : notations) {
+            if (notation.isEmpty()) continue;
+            final int move = OmegaMove.fromNotation(position, notation);
+            if (move == OmegaMove.NOMOVE) {
+                game.error = "could not resolve move " + notation;
+                break;
+            }
+
+            final AnalysedMove analysedMove = new AnalysedMove();
+            analysedMove.white = position._nextPlayer.isWhite();
+            analysedMove.moveNumber = (position._nextHalfMoveNumber + 1) / 2;
+            analysedMove.san = OmegaMove.toSAN(position, move);
+            if (before.bestMove != OmegaMove.NOMOVE && before.bestMove != move) {
+                analysedMove.bestMove = OmegaMove.toSAN(position, before.bestMove);
+                analysedMove.bestValue = analysedMove.white ? before.value : -before.value;
+            }
+
+            position.makeMove(move);
+            if (position._historyCounter >= HISTORY_RESET) {
+                position = new OmegaBoardPosition(position.toFENString());
+            }
+
+            final Evaluation after = evaluate(position, game);
+            analysedMove.value = analysedMove.white ? -after.value : after.value;
+            analysedMove.depth = after.depth;
+            if (analysedMove.bestMove != null) {
+                final int loss = clamp(before.value) - clamp(-after.value);
+                analysedMove.nag = getNAG(loss);
+            }
+            game.moves.add(analysedMove);
+            before = after;
+        }
+        return game;
+    }
+
+    private Evaluation evaluate(OmegaBoardPosition position, AnalysedGame game) {
+        final Evaluation evaluation = new Evaluation();
+        if (!new OmegaMoveGenerator().hasLegalMove(position)) {
+            evaluation.value = position.hasCheck()
+                    ? -OmegaEvaluation.Value.CHECKMATE : OmegaEvaluation.Value.DRAW;
+            return evaluation;
+        }
+
+        final OmegaSearch search = getSearch();
+        if (_nodesPerPosition > 0) {
+            search.configureNodesLimit(_nodesPerPosition);
+        } else {
+            search.configureTimePerMove(Duration.ofMillis(_timePerPosition));
+        }
+        search.startSearch(position);
+        search.waitWhileSearching();
+        game.positions++;
+        game.nodes += search.getNodesVisited();
+
+        final SearchResult result = _engines.get().getSearchResult();
+        if (result != null) {
+            evaluation.bestMove = result.bestMove;
+            evaluation.value = result.resultValue;
+            evaluation.depth = result.depth;
+        }
+        return evaluation;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(-LOSS_SCORE_LIMIT, Math.min(LOSS_SCORE_LIMIT, value));
+    }
+
+    /**
+     * @param loss loss of a move in centipawns
+     * @return the NAG for the loss or 0 if the move is good enough
+     */
+    int getNAG(int loss) {
+        if (loss >= _blunderThreshold) return NAG_BLUNDER;
+        if (loss >= _blunderThreshold / 2) return NAG_MISTAKE;
+        if (loss >= _blunderThreshold / 4) return NAG_DUBIOUS;
+        return 0;
+    }
+
+    /**
+     * Creates the annotated PGN of an analysed game.
+     *
+     * @param game
+     * @return the game in PGN format
+     */
+    static String toPGN(AnalysedGame game) {
+        final String nl = System.lineSeparator();
+        final StringBuilder pgn = new StringBuilder();
+        final Map<String, String> tags = new LinkedHashMap<>(game.tags);
+        tags.put("Annotator", "Chessly Omega");
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            pgn.append('[').append(tag.getKey()).append(" \"").append(tag.getValue()).append("\"]").append(nl);
+        }
+        pgn.append(nl);
+
+        final List<String> tokens = new ArrayList<>();
+        boolean afterComment = true;
+        for (AnalysedMove move : game.moves) {
+            if (move.white) {
+                tokens.add(move.moveNumber + ".");
+            } else if (afterComment) {
+                tokens.add(move.moveNumber + "...");
+            }
+            tokens.add(move.san);
+            if (move.nag != 0) tokens.add("$" + move.nag);
+            afterComment = move.depth > 0;
+            if (afterComment) {
+                String comment = "{" + formatValue(move.value) + "/" + move.depth;
+                if (move.bestMove != null) {
+                    comment += " best: " + move.bestMove + " " + formatValue(move.bestValue);
+                }
+                tokens.add(comment + "}");
+            }
+        }
+        if (game.error != null) tokens.add("{" + game.error + "}");
+        tokens.add(game.result);
+
+        // comments are split into words to wrap the lines
+        int lineLength = 0;
+        for (String token : tokens) {
+            for (String word : token.split(" ")) {
+                if (lineLength > 0 && lineLength + 1 + word.length() > MAX_LINE_LENGTH) {
+                    pgn.append(nl);
+                    lineLength = 0;
+                } else if (lineLength > 0) {
+                    pgn.append(' ');
+                    lineLength++;
+                }
+                pgn.append(word);
+                lineLength += word.length();
+            }
+        }
+        pgn.append(nl);
+        return pgn.toString();
+    }
+
+    /**
+     * @param value value from white's view
+     * @return value in pawns (e.g. +0.35) or as mate distance in moves (e.g. #3, #-2)
+     */
+    static String formatValue(int value) {
+        final int mateThreshold = OmegaEvaluation.Value.CHECKMATE - OmegaSearch.MAX_SEARCH_DEPTH;
+        if (value >= mateThreshold) {
+            return "#" + (OmegaEvaluation.Value.CHECKMATE - value + 1) / 2;
+        }
+        if (value <= -mateThreshold) {
+            return "#-" + (OmegaEvaluation.Value.CHECKMATE + value + 1) / 2;
+        }
+        return String.format("%+.2f", value / 100.0);
+    }
+
+    /**
+     * Analyses the given PGN file.
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        CmdLineParser cp = new CmdLineParser();
+        CmdLineParser.Option timeOption = cp.addLongOption('t', "time");
+        CmdLineParser.Option nodesOption = cp.addLongOption('n', "nodes");
+        CmdLineParser.Option threadsOption = cp.addIntegerOption('j', "threads");
+        CmdLineParser.Option blunderOption = cp.addIntegerOption('b', "blunder");
+        CmdLineParser.Option outputOption = cp.addStringOption('o', "output");
+        CmdLineParser.Option usage = cp.addBooleanOption('?', "help");
+
+        try {
+            cp.parse(args);
+        } catch (CmdLineParser.OptionException e) {
+            System.err.println(e.getMessage());
+            printUsage();
+            System.exit(2);
+        }
+
+        if ((Boolean) cp.getOptionValue(usage) || cp.getRemainingArgs().length != 1) {
+            printUsage();
+            System.exit(0);
+        }
+
+        final long time = (Long) cp.getOptionValue(timeOption, 1000L);
+        final long nodes = (Long) cp.getOptionValue(nodesOption, 0L);
+        final int threads = (Integer) cp.getOptionValue(threadsOption,
+                Runtime.getRuntime().availableProcessors());
+        final int blunder = (Integer) cp.getOptionValue(blunderOption, DEFAULT_BLUNDER_THRESHOLD);
+        final Path input = Paths.get(cp.getRemainingArgs()[0]);
+        final Path output = Paths.get((String) cp.getOptionValue(outputOption,
+                input.toString().replaceFirst("(\\.pgn)?$", "_analysed.pgn")));
+
+        final OmegaPGNAnalyzer analyzer = new OmegaPGNAnalyzer(time, nodes, threads, blunder);
+        try (BufferedReader in = Files.newBufferedReader(input, StandardCharsets.ISO_8859_1);
+                Writer out = Files.newBufferedWriter(output, StandardCharsets.ISO_8859_1)) {
+            final AnalysisStatistics statistics = analyzer.run(in, out);
+            System.out.format("%s -> %s%n%s%n", input, output, statistics);
+        } catch (IOException e) {
+            System.err.println("Could not analyse PGN file " + input + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void printUsage() {
+        System.out.println();
+        System.out.println("Usage: OmegaPGNAnalyzer [-t,--time ms] [-n,--nodes n] [-j,--threads n] [-b,--blunder cp] [-o,--output file] [-?, --help] file");
+        System.out.println("Options:");
+        System.out.println();
+        System.out.println("-t time per position in milliseconds (default 1000)");
+        System.out.println("-n nodes per position (overrides -t)");
+        System.out.println("-j number of games analysed in parallel (default number of cores)");
+        System.out.println("-b loss in centipawns for a blunder (default " + DEFAULT_BLUNDER_THRESHOLD + ")");
+        System.out.println("-o annotated PGN file (default <file>_analysed.pgn)");
+        System.out.println();
+    }
+
+    private static final class Evaluation {
+        int bestMove = OmegaMove.NOMOVE;
+        int value = 0;
+        int depth = 0;
+    }
+
+    /**
+     * One analysed game.
+     */
+    static final class AnalysedGame {
+        /** tag pairs in the order of the input */
+        final Map<String, String> tags = new LinkedHashMap<>();
+        /** analysed moves */
+        final List<AnalysedMove> moves = new ArrayList<>();
+        /** game result */
+        String result = "*";
+        /** reason why the analysis stopped before the end of the game or null */
+        String error = null;
+        /** number of searched positions */
+        int positions = 0;
+        /** number of searched nodes */
+        long nodes = 0;
+    }
+
+    /**
+     * One analysed move.
+     */
+    static final class AnalysedMove {
+        /** the played move in SAN */
+        String san;
+        /** true if white played the move */
+        boolean white;
+        /** full move number */
+        int moveNumber;
+        /** value after the move from white's view */
+        int value;
+        /** search depth of the value or 0 if the game ended with this move */
+        int depth;
+        /** best move in SAN if the engine prefers another move or null */
+        String bestMove = null;
+        /** value of the best move from white's view */
+        int bestValue;
+        /** NAG of the move or 0 */
+        int nag = 0;
+    }
+
+    /**
+     * Statistics of an analysis run.
+     */
+    public static final class AnalysisStatistics {
+        /** analysed games */
+        public int games = 0;
+        /** searched positions */
+        public long positions = 0;
+        /** searched nodes */
+        public long nodes = 0;
+        /** moves marked as blunder */
+        public int blunders = 0;
+        /** moves marked as mistake */
+        public int mistakes = 0;
+        /** moves marked as dubious */
+        public int dubious = 0;
+        /** duration of the analysis in ms */
+        public long timeMs = 0;
+
+        /**
+         * @return searched positions per second across all worker threads
+         */
+        public double getPositionsPerSecond() {
+            return timeMs == 0 ? 0 : 1000.0 * positions / timeMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "Games: %,d  Positions: %,d  Nodes: %,d  Time: %,d ms  Positions/sec: %,.1f  Nodes/sec: %,d%n"
+                    + "Blunders: %,d  Mistakes: %,d  Dubious: %,d",
+                    games, positions, nodes, timeMs, getPositionsPerSecond(),
+                    timeMs == 0 ? 0 : 1000L * nodes / timeMs, blunders, mistakes, dubious);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.player.computer.Omega;
+
+import java.util.Arrays;
+
+/**
+ * A hash table for perft sub tree node counts keyed by zobrist key and depth.
+ * Implementation uses two primitive arrays (no entry objects) and a power of two
+ * number of entries so that the index is <code>key & (maxEntries-1)</code>.
+ * Entries are always replaced.
+ * <p>
+ * The table is safe to be shared between threads without locking. Each entry stores
+ * <code>key ^ data</code> next to <code>data</code> so a torn entry written by two
+ * threads at the same time fails the key check and is treated as a miss.
+ */
+public class OmegaPerftTable {
+
+    static private final int MB = 1024;
+
+    // bits of data used for the depth
+    private static final int DEPTH_BITS = 8;
+    private static final long DEPTH_MASK = (1L << DEPTH_BITS) - 1;
+
+    private final int _maxEntries;
+    private final int _indexMask;
+
+    private final long[] _keys;
+    private final long[] _data;
+
+    /**
+     * Creates a perft table using about the given size in MB.
+     *
+     * @param size in MB (1024^2)
+     */
+    public OmegaPerftTable(int size) {
+        if (size < 1) throw new IllegalArgumentException("size must be >= 1 MB");
+        // two longs per entry - round down to power of two
+        final long entries = ((long) size * MB * MB) / (2 * Long.BYTES);
+        _maxEntries = Integer.highestOneBit((int) Math.min(entries, 1 << 30));
+        _indexMask = _maxEntries - 1;
+        _keys = new long[_maxEntries];
+        _data = new long[_maxEntries];
+    }
+
+    /**
+     * Stores the number of leaf nodes of a sub tree.
+     *
+     * @param key zobrist key of the position
+     * @param depth remaining depth of the sub tree
+     * @param nodes number of leaf nodes
+     */
+    public void put(long key, int depth, long nodes) {
+        final int index = (int) (key & _indexMask);
+        final long data = (nodes << DEPTH_BITS) | (depth & DEPTH_MASK);
+        _data[index] = data;
+        _keys[index] = key ^ data;
+    }
+
+    /**
+     * Looks up the number of leaf nodes of a sub tree.
+     *
+     * @param key zobrist key of the position
+     * @param depth remaining depth of the sub tree
+     * @return number of leaf nodes or -1 if not in the table
+     */
+    public long get(long key, int depth) {
+        final int index = (int) (key & _indexMask);
+        final long data = _data[index];
+        if ((_keys[index] ^ data) != key || (data & DEPTH_MASK) != depth) return -1;
+        return data >>> DEPTH_BITS;
+    }
+
+    /**
+     * Clears the table.
+     */
+    public void clear() {
+        Arrays.fill(_keys, 0L);
+        Arrays.fill(_data, 0L);
+    }
+
+    /**
+     * @return the number of entries this table can hold
+     */
+    public int getMaxEntries() {
+        return _maxEntries;
+    }
+}
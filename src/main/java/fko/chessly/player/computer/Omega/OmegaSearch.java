@@ -29,8 +29,13 @@ package fko.chessly.player.computer.Omega;
 
 import static java.lang.Integer.parseInt;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 
 import fko.chessly.Chessly;
@@ -76,7 +81,10 @@ import fko.chessly.player.computer.Omega.OmegaTranspositionTable.TT_EntryType;
  */
 public class OmegaSearch implements Runnable {
 
-    private static final int MAX_SEARCH_DEPTH = 99;
+    static final int MAX_SEARCH_DEPTH = 99;
+
+    // the game pause state is only polled every (CHECKPOINT_MASK+1) nodes
+    private static final int CHECKPOINT_MASK = 0x3FF;
 
     private final int NULLMOVE_DEPTH = 3;
     private final int NULLMOVE_REDUCTION;
@@ -106,7 +114,7 @@ public class OmegaSearch implements Runnable {
     private boolean _isConfigured = false;
 
     // flag to indicate to stop the search - can be called externally or via the timer clock.
-    private boolean _stopSearch = true;
+    private volatile boolean _stopSearch = true;
 
     /*
      * Search configuration (with defaults)
@@ -116,8 +124,13 @@ public class OmegaSearch implements Runnable {
      */
     private TimeControlMode _timedControlMode = TimeControlMode.TIME_PER_MOVE;
     private Duration _remainingTime = Duration.ofSeconds(0);
+    private Duration _increment = Duration.ZERO;
+    private int _movesToGo = 0;
     private Duration _timePerMove = Duration.ofSeconds(5);
     private int _currentEngineLevel = 0;
+    private long _nodesLimit = 0;
+    // restriction of the root moves for the next search or null
+    private int[] _searchMoves = null;
     private boolean _softTimeLimitReached = false;
     private boolean _hardTimeLimitReached = false;
     TimeKeeper _timer = null;
@@ -142,14 +155,15 @@ public class OmegaSearch implements Runnable {
     int _maxIterativeDepth = MAX_SEARCH_DEPTH;
 
     // engine watcher fields - not private for easy access from engine
-    int _currentBestRootMove= OmegaMove.NOMOVE; // current best move found by search
-    int _currentBestRootValue = OmegaEvaluation.Value.NOVALUE; // value of the current best move
+    // the best move and value are polled by other threads (e.g. OmegaEPDRunner, OmegaUCI)
+    volatile int _currentBestRootMove= OmegaMove.NOMOVE; // current best move found by search
+    volatile int _currentBestRootValue = OmegaEvaluation.Value.NOVALUE; // value of the current best move
     int _currentIterationDepth = 0; // how deep will the search go in the current iteration
     int _currentSearchDepth = 0; // how deep did the search go this iteration
     int _currentExtraSearchDepth = 0; // how deep did we search including quiescence depth this iteration
     int _currentRootMove = 0; // current root move that is searched
     int _currentRootMoveNumber = 0; // number of the current root move in the list of root moves
-    int _nodesVisited = 0; // how many times a node has been visited (negamax calls)
+    long _nodesVisited = 0; // how many times a node has been visited (negamax calls)
     int _boardsEvaluated = 0; // how many times a node has been visited (= boards evaluated)
     int _boardsNonQuiet = 0; // board/nodes evaluated in quiescence search
     int _prunings = 0;
@@ -160,6 +174,14 @@ public class OmegaSearch implements Runnable {
     long _nodeCache_Misses = 0;
     int  _MovesFromCache=0;
     int  _MovesGenerated=0;
+
+    // statistics of each finished iteration of the current or last search
+    private final List<IterationStats> _iterationStats = new ArrayList<>();
+
+    // bytes allocated by the search thread during the last search - -1 if not supported by the JVM
+    volatile long _allocatedBytes = 0;
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
     private void resetCounter() {
         _currentIterationDepth = 0;
         _currentSearchDepth = 0;
@@ -185,6 +207,12 @@ public class OmegaSearch implements Runnable {
     Boolean _cacheEnabled;
     OmegaEvaluationCache _evalCache;
     OmegaTranspositionTable _transpositionTable;
+    // true if the transposition table has been acquired from the OmegaCachePool
+    private boolean _pooledTranspositionTable = false;
+    // size of the transposition table in MB - 0 to use the property engine.nodesCacheSize
+    private final int _nodesCacheSize;
+    // copy of a TT entry when the transposition table is shared with other searches
+    private final TT_Entry _ttEntry = new TT_Entry();
 
     /**
      * Creates a search object and stores a back reference to the engine object.<br>
@@ -193,7 +221,38 @@ public class OmegaSearch implements Runnable {
      * @param omegaEngine
      */
     public OmegaSearch(OmegaEngine omegaEngine) {
+        this(omegaEngine, null);
+    }
+
+    /**
+     * Creates a search object which uses the given transposition table instead of
+     * creating its own. The table must be created as shared if several searches
+     * use it in parallel. Caches are always enabled for this search.<br>
+     * Before using the search you need to configure it through <code>configure(...)</code><br>
+     *
+     * @param omegaEngine
+     * @param transpositionTable the transposition table or null to create one
+     */
+    public OmegaSearch(OmegaEngine omegaEngine, OmegaTranspositionTable transpositionTable) {
+        this(omegaEngine, transpositionTable, 0);
+    }
+
+    /**
+     * Creates a search object with its own transposition table size instead of the
+     * property <code>engine.nodesCacheSize</code> (e.g. the UCI option Hash).<br>
+     * Before using the search you need to configure it through <code>configure(...)</code><br>
+     *
+     * @param omegaEngine
+     * @param nodesCacheSize size of the transposition table in MB
+     */
+    public OmegaSearch(OmegaEngine omegaEngine, int nodesCacheSize) {
+        this(omegaEngine, null, checkNodesCacheSize(nodesCacheSize));
+    }
+
+    private OmegaSearch(OmegaEngine omegaEngine, OmegaTranspositionTable transpositionTable, int nodesCacheSize) {
         _omegaEngine = omegaEngine;
+        _transpositionTable = transpositionTable;
+        _nodesCacheSize = nodesCacheSize;
 
 //        _log.setLevel(Level.OFF);
 
@@ -211,7 +270,8 @@ public class OmegaSearch implements Runnable {
         _omegaEvaluation = new OmegaEvaluation(_omegaEngine, new OmegaMoveGenerator());
 
         // cache setup
-        _cacheEnabled = Boolean.valueOf(Chessly.getProperties().getProperty("engine.cacheEnabled"));
+        _cacheEnabled = transpositionTable != null
+                || Boolean.valueOf(Chessly.getProperties().getProperty("engine.cacheEnabled"));
         if (_cacheEnabled) {
             initializeCacheTables(); // create a cache
         }
@@ -232,17 +292,49 @@ public class OmegaSearch implements Runnable {
     public void configureRemainingTime(long remainingTime, int maxDepth) {
         _timedControlMode = TimeControlMode.REMAINING_TIME;
         _remainingTime = Duration.ofSeconds(remainingTime);
+        _increment = Duration.ZERO;
+        _movesToGo = 0;
+        _nodesLimit = 0;
         updateSearchDepth();
         _isConfigured = true;
     }
 
+    /**
+     * Setup the Search for time based game with remaining time, increment and
+     * moves to the next time control (e.g. from an UCI <code>go</code> command).
+     *
+     * @param remainingTime remaining time of the player to move
+     * @param increment increment per move
+     * @param movesToGo moves to the next time control - 0 if unknown
+     * @param maxDepth max depth - 0 for no limit
+     */
+    public void configureRemainingTime(Duration remainingTime, Duration increment, int movesToGo, int maxDepth) {
+        if (movesToGo < 0) throw new IllegalArgumentException("movesToGo must be >= 0");
+        _timedControlMode = TimeControlMode.REMAINING_TIME;
+        _remainingTime = remainingTime;
+        _increment = increment;
+        _movesToGo = movesToGo;
+        _currentEngineLevel = maxDepth > 0 ? maxDepth : MAX_SEARCH_DEPTH;
+        _nodesLimit = 0;
+        _isConfigured = true;
+    }
+
     /**
      * Setup the Search for time based game with time per move per player.
      * @param time time for white in seconds
      */
     public void configureTimePerMove(long time) {
+        configureTimePerMove(Duration.ofSeconds(time));
+    }
+
+    /**
+     * Setup the Search for time based game with time per move per player.
+     * @param time time per move
+     */
+    public void configureTimePerMove(Duration time) {
         _timedControlMode = TimeControlMode.TIME_PER_MOVE;
-        _timePerMove = Duration.ofSeconds(time);
+        _timePerMove = time;
+        _nodesLimit = 0;
         _currentEngineLevel = MAX_SEARCH_DEPTH;
         _isConfigured = true;
     }
@@ -255,15 +347,57 @@ public class OmegaSearch implements Runnable {
         _timedControlMode = TimeControlMode.NO_TIMECONTROL;
         _remainingTime = Duration.ofSeconds(0);
         _currentEngineLevel = currentEngineLevel;
+        _nodesLimit = 0;
         _isConfigured = true;
     }
 
+    /**
+     * Setup the Search for iterative deepening up to a fixed depth. Other than
+     * <code>configureMaxDepth()</code> all depths from 1 to maxDepth are searched
+     * (e.g. to measure time to depth).
+     * @param maxDepth
+     */
+    public void configureIterativeDepth(int maxDepth) {
+        if (maxDepth < 1) throw new IllegalArgumentException("maxDepth must be >= 1");
+        _timedControlMode = TimeControlMode.ITERATIVE_DEPTH;
+        _remainingTime = Duration.ofSeconds(0);
+        _currentEngineLevel = maxDepth;
+        _nodesLimit = 0;
+        _isConfigured = true;
+    }
+
+    /**
+     * Setup the Search for a fixed number of nodes. The search iterates
+     * up to max depth and stops as soon as the nodes limit has been reached.
+     * @param nodesLimit
+     */
+    public void configureNodesLimit(long nodesLimit) {
+        if (nodesLimit <= 0) throw new IllegalArgumentException("nodesLimit must be > 0");
+        _timedControlMode = TimeControlMode.NODES;
+        _remainingTime = Duration.ofSeconds(0);
+        _currentEngineLevel = MAX_SEARCH_DEPTH;
+        _nodesLimit = nodesLimit;
+        _isConfigured = true;
+    }
+
+    /**
+     * Restricts the root moves of the next search to the given moves (like UCI <code>go searchmoves</code>).
+     * Moves which are not legal in the searched position are ignored and all moves are searched
+     * if none of them is legal. The restriction is reset after the search.
+     * Has to be called after the configuration of the time control.
+     * @param moves moves to search or null for all moves
+     */
+    public void configureSearchMoves(int... moves) {
+        _searchMoves = moves == null || moves.length == 0 ? null : moves.clone();
+    }
+
     /**
      * Setup the Search for pondering
      */
     public void configurePondering() {
         _timedControlMode = TimeControlMode.PONDERING;
         _currentEngineLevel = MAX_SEARCH_DEPTH;
+        _nodesLimit = 0;
         _isConfigured = true;
     }
 
@@ -300,6 +434,9 @@ public class OmegaSearch implements Runnable {
         // make copy of the board to avoid concurrent access
         _currentPosition = new OmegaBoardPosition(position);
 
+        // caches might have been given back to the pool after an earlier search
+        if (_cacheEnabled) initializeCacheTables();
+
         // has OmegaSearch.configure been called?
         if (!_isConfigured) {
             System.err.println("Search started without configuration - using defaults");
@@ -337,9 +474,14 @@ public class OmegaSearch implements Runnable {
         // return if no search is running
         if (_searchThread == null) return;
 
-        // Wait for the thread to die
-        try { this._searchThread.join();
-        } catch (InterruptedException e) { /* empty*/ }
+        // Wait for the thread to die - the search stops soon after the stop flag is set and
+        // must not run on when the caller gives back the caches
+        boolean interrupted = false;
+        while (_searchThread.isAlive()) {
+            try { this._searchThread.join();
+            } catch (InterruptedException e) { interrupted = true; }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
 
         // clear thread
         _searchThread=null;
@@ -362,7 +504,9 @@ public class OmegaSearch implements Runnable {
         _waitForInitializaitonLatch.countDown();
 
         // run the search itself
+        final long allocatedAtStart = getThreadAllocatedBytes();
         SearchResult searchResult = iterativeSearch(_currentPosition);
+        _allocatedBytes = allocatedAtStart < 0 ? -1 : getThreadAllocatedBytes() - allocatedAtStart;
 
         if (_omegaEngine._CONFIGURATION.VERBOSE_STATS) {
             _omegaEngine.printVerboseInfo(String.format("Evaluations in total: %,15d ", _boardsEvaluated));
@@ -371,6 +515,7 @@ public class OmegaSearch implements Runnable {
                     (_boardsEvaluated*1000L)/(Duration.between(_startTime,Instant.now()).toMillis()+1)));
             _omegaEngine.printVerboseInfo(String.format("\tNodes/sec: %,10d",
                     (_nodesVisited*1000L)/(Duration.between(_startTime,Instant.now()).toMillis()+1)));
+            _omegaEngine.printVerboseInfo(String.format("\tBytes/node: %,.2f", getAllocatedBytesPerNode()));
             _omegaEngine.printVerboseInfo("\tMove: "+OmegaMove.toString(searchResult.bestMove)+" ("+searchResult.resultValue+")  ");
             _omegaEngine.printVerboseInfo("\tPV: "+_principalVariation[0].toNotationString()+"\n");
         }
@@ -380,6 +525,7 @@ public class OmegaSearch implements Runnable {
 
         // reset configuration flag
         _isConfigured = false;
+        _searchMoves = null;
     }
 
     /**
@@ -392,6 +538,7 @@ public class OmegaSearch implements Runnable {
         // remember the start of the search
         _startTime = Instant.now();
         _ponderStartTime = Instant.now();
+        _iterationStats.clear();
 
         // generate all root moves
         OmegaMoveList rootMoves = _omegaMoveGenerator[0].getLegalMoves(position, false);
@@ -408,7 +555,14 @@ public class OmegaSearch implements Runnable {
         // create _rootMoves list
         _rootMoves.clear();
         for (int i=0; i< rootMoves.size(); i++) {
-            _rootMoves.add(rootMoves.get(i), OmegaEvaluation.Value.NOVALUE);
+            if (isSearchMove(rootMoves.get(i))) {
+                _rootMoves.add(rootMoves.get(i), OmegaEvaluation.Value.NOVALUE);
+            }
+        }
+        if (_rootMoves.size() == 0) { // none of the search moves is legal
+            for (int i=0; i< rootMoves.size(); i++) {
+                _rootMoves.add(rootMoves.get(i), OmegaEvaluation.Value.NOVALUE);
+            }
         }
 
         // temporary best move - take the first move available
@@ -433,6 +587,13 @@ public class OmegaSearch implements Runnable {
             // do search
             rootMovesSearch(position, depth);
 
+            // keep statistics of finished iterations
+            if (!_stopSearch && !_hardTimeLimitReached) {
+                _iterationStats.add(new IterationStats(depth,
+                        Duration.between(_startTime, Instant.now()).toNanos(),
+                        _nodesVisited, _nodeCache_Hits, _nodeCache_Misses));
+            }
+
             // sure mate value found?
             if (_currentBestRootValue >= OmegaEvaluation.Value.CHECKMATE - depth
                     || _currentBestRootValue <= -OmegaEvaluation.Value.CHECKMATE + depth) {
@@ -467,6 +628,14 @@ public class OmegaSearch implements Runnable {
         return searchResult;
     }
 
+    private boolean isSearchMove(int move) {
+        if (_searchMoves == null) return true;
+        for (int searchMove : _searchMoves) {
+            if (searchMove == move) return true;
+        }
+        return false;
+    }
+
     /**
      * @param position
      * @param depth
@@ -632,18 +801,17 @@ public class OmegaSearch implements Runnable {
         }
         // ## ENDOF Mate Distance Pruning
 
-        // check for game paused
-        if (_omegaEngine.getGame().isPresent())
-            _omegaEngine.getGame().get().waitWhileGamePaused();
+        // check for game paused - a stopped search has no value for this node
+        if (checkpoint()) return OmegaEvaluation.Value.NOVALUE;
 
         // *****************************************************
         // TT Lookup
-        OmegaMoveList tt_moves = null;
+        int tt_move = OmegaMove.NOMOVE;
         if (_cacheEnabled
                 && _omegaEngine._CONFIGURATION._USE_NODE_CACHE
                 && !OmegaConfiguration.PERFT) {
 
-            final TT_Entry entry = _transpositionTable.get(position);
+            final TT_Entry entry = _transpositionTable.get(position, _ttEntry);
 
             if (entry != null) { // possible TT Hit
                 if (entry.depth >= depthLeft) { // only if tt depth was equal or deeper
@@ -667,8 +835,8 @@ public class OmegaSearch implements Runnable {
                             break;
                     }
                 }
-                // move list is independent from depth
-                tt_moves = entry.move_list; //.get();
+                // best move is independent from depth
+                tt_move = entry.move;
             } else {
                 _nodeCache_Misses++;
             }
@@ -723,14 +891,12 @@ public class OmegaSearch implements Runnable {
         // needed to remember if we even had a legal move
         boolean hadLegaMove = false;
 
-        // generate moves or get them from cache
-        OmegaMoveList moves;
-        if (_omegaEngine._CONFIGURATION._USE_MOVE_CACHE && tt_moves != null) {
-            moves = tt_moves;
+        // generate moves and search the best move from the cache first
+        OmegaMoveList moves = _omegaMoveGenerator[ply].getPseudoLegalMoves(position, false);
+        _MovesGenerated++;
+        if (_omegaEngine._CONFIGURATION._USE_MOVE_CACHE && tt_move != OmegaMove.NOMOVE) {
+            moves.pushToHead(tt_move);
             _MovesFromCache++;
-        } else {
-            moves = _omegaMoveGenerator[ply].getPseudoLegalMoves(position, false);
-            _MovesGenerated++;
         }
 
         // moves to search recursively
@@ -827,29 +993,20 @@ public class OmegaSearch implements Runnable {
             }
         }
 
-        // TT Store
+        // TT Store - not the value of an incomplete search
         if (_cacheEnabled
+                && !_stopSearch
                 && _omegaEngine._CONFIGURATION._USE_NODE_CACHE
                 && !OmegaConfiguration.PERFT) {
 
-            // Stores the list of moves for this node and pushes the bestMovee to the front.
-            // We create a minimal copy of the list to not waste space - list will not change any more
-            // Still this creates a lot of new objects in the tree search and will use much memory and
-            // causes lots of GC activity.
-            OmegaMoveList m = null;
-            if (_omegaEngine._CONFIGURATION._USE_MOVE_CACHE) {
-                m = new OmegaMoveList(moves.size());
-                m.add(moves);
-                m.pushToHead(bestMove);
-            }
-
-            // now store to tt
+            // Stores only the best move for this node - copying the move list here
+            // would allocate a new list for every node and cause lots of GC activity.
             _transpositionTable.put(
                     position,
                     bestValue,
                     tt_Type,
                     depthLeft,
-                    m);
+                    bestMove);
         }
 
         return bestValue;
@@ -904,15 +1061,14 @@ public class OmegaSearch implements Runnable {
             }
             // ## ENDOF Mate Distance Pruning
 
-            // check for game paused
-            if (_omegaEngine.getGame().isPresent())
-                _omegaEngine.getGame().get().waitWhileGamePaused();
+            // check for game paused - a stopped search has no value for this node
+            if (checkpoint()) return OmegaEvaluation.Value.NOVALUE;
 
             // *****************************************************
             // TT Lookup
             if (_cacheEnabled && _omegaEngine._CONFIGURATION._USE_NODE_CACHE) {
 
-                final TT_Entry entry = _transpositionTable.get(position);
+                final TT_Entry entry = _transpositionTable.get(position, _ttEntry);
 
                 if (entry != null) { // possible TT Hit
                     switch (entry.type) {
@@ -947,7 +1103,7 @@ public class OmegaSearch implements Runnable {
                 tt_Type = TT_EntryType.BETA;
                 // TT Store
                 if (_cacheEnabled && _omegaEngine._CONFIGURATION._USE_NODE_CACHE) {
-                    _transpositionTable.put(position, alpha, tt_Type, 0, null);
+                    _transpositionTable.put(position, alpha, tt_Type, 0, OmegaMove.NOMOVE);
                 }
                 return beta;
             }
@@ -1024,9 +1180,9 @@ public class OmegaSearch implements Runnable {
             }
         }
 
-        // TT Store
-        if (_cacheEnabled && _omegaEngine._CONFIGURATION._USE_NODE_CACHE) {
-            _transpositionTable.put(position, alpha, tt_Type, 0, null);
+        // TT Store - not the value of an incomplete search
+        if (_cacheEnabled && !_stopSearch && _omegaEngine._CONFIGURATION._USE_NODE_CACHE) {
+            _transpositionTable.put(position, alpha, tt_Type, 0, OmegaMove.NOMOVE);
         }
 
         return alpha;
@@ -1125,6 +1281,23 @@ public class OmegaSearch implements Runnable {
         return startIterativeDepth;
     }
 
+    /**
+     * Cheap pause/stop check point for the search hot paths. Only every
+     * (CHECKPOINT_MASK+1) nodes the game's pause state is polled (lock free) and
+     * the search waits while the game is paused. Also stops the search when a
+     * configured nodes limit has been reached.
+     *
+     * @return true if the search has been stopped - the caller then returns
+     *         {@link OmegaEvaluation.Value#NOVALUE} which is ignored at the root
+     */
+    private boolean checkpoint() {
+        if (_nodesLimit > 0 && _nodesVisited >= _nodesLimit) _stopSearch = true;
+        if ((_nodesVisited & CHECKPOINT_MASK) == 0 && _omegaEngine.getGame().isPresent()) {
+            _omegaEngine.getGame().get().pauseCheckpoint();
+        }
+        return _stopSearch;
+    }
+
     /**
      * Called to update the current search depth for the player.
      * This makes sure we can change the maximum search depth of a player
@@ -1159,10 +1332,14 @@ public class OmegaSearch implements Runnable {
         long timeLeft = _remainingTime.toMillis();
 
         // Give some overhead time so that in games with very low available time we do not run out of time
-        timeLeft -= 1000; // this should do
+        timeLeft -= Math.min(1000, timeLeft / 10); // this should do
+
+        // assume 40 moves to go if not known
+        int movesToGo = _movesToGo > 0 ? _movesToGo : 40;
+        long timePerMove = timeLeft/movesToGo + _increment.toMillis();
 
-        // simple for now - assume 40 moves to go
-        _timePerMove = Duration.ofMillis((long) ((timeLeft/40) * 1.0f));
+        // never use more than what is left
+        _timePerMove = Duration.ofMillis(Math.max(0, Math.min(timePerMove, timeLeft)));
 
     }
 
@@ -1225,20 +1402,144 @@ public class OmegaSearch implements Runnable {
         return (_searchThread != null && _searchThread.isAlive());
     }
 
+    /**
+     * Blocks until a running search has finished on its own (depth or time reached)
+     * and clears the search thread so the search can be started again.
+     * If no search is running it returns immediately.<br>
+     * If the calling thread is interrupted it returns with the interrupt flag set and the
+     * search still running - <code>isSearching()</code> is true and <code>stop()</code>
+     * stops it.
+     */
+    public void waitWhileSearching() {
+        if (_searchThread == null) return;
+        try { this._searchThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        _searchThread=null;
+    }
+
+    /**
+     * Clears the transposition table and the evaluation cache so that the next
+     * search does not depend on earlier searches (e.g. for reproducible node counts).
+     */
+    public void clearCaches() {
+        if (_transpositionTable != null) _transpositionTable.clear();
+        if (_evalCache != null) _evalCache.clear();
+    }
+
+    /**
+     * @return number of nodes visited by the current or last search
+     */
+    public long getNodesVisited() {
+        return _nodesVisited;
+    }
+
+    /**
+     * @return bytes allocated by the search thread during the last search or -1 if the JVM
+     * does not support measuring thread allocation
+     */
+    public long getAllocatedBytes() {
+        return _allocatedBytes;
+    }
+
+    /**
+     * @return bytes allocated by the search thread per node visited during the last search
+     * or -1 if the JVM does not support measuring thread allocation
+     */
+    public double getAllocatedBytesPerNode() {
+        if (_allocatedBytes < 0) return -1d;
+        return (double) _allocatedBytes / Math.max(1, _nodesVisited);
+    }
+
+    /**
+     * @return bytes allocated by the current thread so far or -1 if not supported
+     */
+    private static long getThreadAllocatedBytes() {
+        if (THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean) {
+            final com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) THREAD_MX_BEAN;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return statistics of each finished iteration of the last search
+     */
+    public List<IterationStats> getIterationStats() {
+        return Collections.unmodifiableList(new ArrayList<>(_iterationStats));
+    }
+
+    private static int checkNodesCacheSize(int nodesCacheSize) {
+        if (nodesCacheSize <= 0) throw new IllegalArgumentException("nodesCacheSize must be > 0");
+        return nodesCacheSize;
+    }
+
     /**
      * Initialize the transposition table so that we do not need to create
      * new objects in the recursion.
      */
     private void initializeCacheTables() {
-        if (_omegaEngine._CONFIGURATION._USE_NODE_CACHE) {
-            _transpositionTable = new OmegaTranspositionTable(
-                    parseInt(Chessly.getProperties().getProperty("engine.nodesCacheSize", "2")));
+        if (_omegaEngine._CONFIGURATION._USE_NODE_CACHE && _transpositionTable == null) {
+            final int size = _nodesCacheSize > 0 ? _nodesCacheSize
+                    : parseInt(Chessly.getProperties().getProperty("engine.nodesCacheSize", "2"));
+            if (Boolean.valueOf(Chessly.getProperties().getProperty("engine.sharedNodesCache"))) {
+                _transpositionTable = OmegaCachePool.acquireSharedTranspositionTable(size);
+            } else {
+                _transpositionTable = OmegaCachePool.acquireTranspositionTable(size);
+            }
+            _pooledTranspositionTable = true;
         }
-        if (_omegaEngine._CONFIGURATION._USE_BOARD_CACHE) {
-            _evalCache = new OmegaEvaluationCache(
+        if (_omegaEngine._CONFIGURATION._USE_BOARD_CACHE && _evalCache == null) {
+            _evalCache = OmegaCachePool.acquireEvaluationCache(
                     parseInt(Chessly.getProperties().getProperty("engine.boardsCacheSize", "2")));
         }
-        System.gc();
+    }
+
+    /**
+     * Stops a running search and gives the transposition table and the evaluation cache
+     * back to the {@link OmegaCachePool} (e.g. at the end of a game). A transposition table
+     * given to the constructor is kept. The next search acquires new tables from the pool.
+     */
+    public void releaseCacheTables() {
+        stop();
+        if (_pooledTranspositionTable) {
+            OmegaCachePool.release(_transpositionTable);
+            _transpositionTable = null;
+            _pooledTranspositionTable = false;
+        }
+        if (_evalCache != null) {
+            OmegaCachePool.release(_evalCache);
+            _evalCache = null;
+        }
+    }
+
+    /**
+     * Statistics of a finished iteration. All values are counted from the start of
+     * the search.
+     */
+    public static final class IterationStats {
+        /** depth of the iteration */
+        public final int depth;
+        /** time since start of the search in ns */
+        public final long timeNanos;
+        /** nodes visited since start of the search */
+        public final long nodes;
+        /** transposition table hits since start of the search */
+        public final long nodeCacheHits;
+        /** transposition table misses since start of the search */
+        public final long nodeCacheMisses;
+
+        IterationStats(int depth, long timeNanos, long nodes, long nodeCacheHits, long nodeCacheMisses) {
+            this.depth = depth;
+            this.timeNanos = timeNanos;
+            this.nodes = nodes;
+            this.nodeCacheHits = nodeCacheHits;
+            this.nodeCacheMisses = nodeCacheMisses;
+        }
     }
 
     /**
@@ -1281,7 +1582,15 @@ public class OmegaSearch implements Runnable {
         /**
          * Search is configured to not do time control but use max depth setting
          */
-        PONDERING
+        PONDERING,
+        /**
+         * Search is configured to not do time control but stop after a number of nodes
+         */
+        NODES,
+        /**
+         * Search is configured to not do time control but iterate from depth 1 up to the depth setting
+         */
+        ITERATIVE_DEPTH
     }
 
     class TimeKeeper implements Runnable {
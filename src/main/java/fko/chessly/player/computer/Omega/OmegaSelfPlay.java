@@ -0,0 +1,500 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.player.computer.Omega;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import fko.chessly.ChesslyTournament;
+import fko.chessly.ChesslyTournament.Opening;
+import fko.chessly.game.GameAdjudication;
+import fko.chessly.player.computer.Omega.OmegaSearch.SearchResult;
+import fko.chessly.util.CmdLineParser;
+
+/**
+ * Headless self-play generator for training data (e.g. to tune <code>OmegaEvaluation</code>).
+ * <p>
+ * Plays OmegaEngine against itself with a fixed number of nodes per move. Each game starts from a
+ * random opening of the tournament opening suites followed by a few random moves so that games
+ * differ. For every quiet position (no check, best move is no capture or promotion and no mate
+ * score) the position, the search score and the final result of the game are written as a
+ * {@link OmegaTrainingRecord}.
+ * <p>
+ * Games are played in parallel. Each worker thread has its own OmegaEngine and OmegaSearch
+ * instance. Records are appended to shard files <code>selfplay_00000.bin, selfplay_00001.bin,
+ * ...</code> which each hold a fixed number of records. A new run in the same directory resumes:
+ * existing records count towards the target and an incompletely written record at the end of
+ * the last shard is cut off.
+ * <p>
+ * Usage: <code>java fko.chessly.player.computer.Omega.OmegaSelfPlay [-n nodes] [-p positions]
+ * [-j threads] [-s suites] [-r plies] [-m records] [-o dir] [--seed n]</code>
+ */
+public class OmegaSelfPlay {
+
+    /** default nodes per move */
+    public static final long DEFAULT_NODES = 5000;
+    /** default number of positions to generate */
+    public static final long DEFAULT_POSITIONS = 1_000_000;
+    /** default number of random moves after the opening */
+    public static final int DEFAULT_RANDOM_PLIES = 4;
+    /** default number of records per shard file */
+    public static final int DEFAULT_SHARD_SIZE = 1_000_000;
+    /** default output folder */
+    public static final String DEFAULT_OUTPUT = "./var/selfplay";
+
+    /** prefix of the shard files */
+    static final String SHARD_PREFIX = "selfplay_";
+    /** suffix of the shard files */
+    static final String SHARD_SUFFIX = ".bin";
+
+    // games are adjudicated as a draw after this many plies
+    private static final int MAX_GAME_PLIES = 400;
+    // OmegaBoardPosition keeps a limited history - positions are recreated from FEN before
+    private static final int HISTORY_RESET = 200;
+
+    private final long _nodes;
+    private final int _threads;
+    private final int _randomPlies;
+    private final List<String> _openings;
+    private final ShardWriter _writer;
+    private final long _seed;
+
+    // each worker thread has its own engine and search
+    private final ThreadLocal<OmegaEngine> _engines = ThreadLocal.withInitial(() -> {
+        OmegaEngine engine = new OmegaEngine();
+        engine._CONFIGURATION.VERBOSE_STATS = false;
+        engine._CONFIGURATION._USE_BOOK = false;
+        engine._CONFIGURATION._USE_PONDERER = false;
+        return engine;
+    });
+    // created on first use so that threads without work don't acquire caches
+    private final ThreadLocal<OmegaSearch> _searches = new ThreadLocal<>();
+
+    // guards the progress output
+    private final Object _progressLock = new Object();
+    private long _games = 0;
+    private long _startTime;
+
+    /**
+     * @param nodes nodes per move
+     * @param threads number of games played in parallel
+     * @param randomPlies number of random moves played after the opening
+     * @param openings start positions as FEN
+     * @param outputDir folder of the shard files - existing shards are resumed
+     * @param shardSize number of records per shard file
+     * @param seed seed for the random openings and moves
+     * @throws IOException if the output folder can't be created or read
+     */
+    public OmegaSelfPlay(long nodes, int threads, int randomPlies, List<String> openings,
+            Path outputDir, int shardSize, long seed) throws IOException {
+        if (nodes <= 0) throw new IllegalArgumentException("nodes must be > 0");
+        if (threads < 1) throw new IllegalArgumentException("threads must be >= 1");
+        if (randomPlies < 0) throw new IllegalArgumentException("randomPlies must be >= 0");
+        if (openings.isEmpty()) throw new IllegalArgumentException("openings must not be empty");
+        _nodes = nodes;
+        _threads = threads;
+        _randomPlies = randomPlies;
+        _openings = new ArrayList<>(openings);
+        _writer = new ShardWriter(outputDir, shardSize);
+        _seed = seed;
+    }
+
+    /**
+     * Plays games in parallel until the output holds at least the given number of positions
+     * (including the positions of earlier runs).
+     *
+     * @param positions number of positions in the output
+     * @return number of positions written by this run
+     * @throws IOException if a shard can't be written
+     */
+    public long run(long positions) throws IOException {
+        final long before = _writer.getRecords();
+        _startTime = System.nanoTime();
+        final ExecutorService pool = Executors.newFixedThreadPool(_threads, r -> {
+            Thread t = new Thread(() -> runAndRelease(r), "OmegaSelfPlay");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            final List<Future<?>> futures = new ArrayList<>(_threads);
+            for (int i = 0; i < _threads; i++) {
+                final Random random = new Random(_seed + i * 0x9E3779B97F4A7C15L + before);
+                futures.add(pool.submit(() -> {
+                    while (_writer.getRecords() < positions) {
+                        _writer.write(playGame(random));
+                        printProgress();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IllegalStateException("Self play failed", e);
+        } finally {
+            pool.shutdownNow();
+            _writer.close();
+        }
+        return _writer.getRecords() - before;
+    }
+
+    /**
+     * @return the search of the current thread
+     */
+    private OmegaSearch getSearch() {
+        OmegaSearch search = _searches.get();
+        if (search == null) {
+            search = new OmegaSearch(_engines.get());
+            _searches.set(search);
+        }
+        return search;
+    }
+
+    /**
+     * Runs a worker thread and gives the caches of its search back to the
+     * OmegaCachePool when the thread ends.
+     */
+    private void runAndRelease(Runnable worker) {
+        try {
+            worker.run();
+        } finally {
+            final OmegaSearch search = _searches.get();
+            if (search != null) {
+                search.releaseCacheTables();
+                _searches.remove();
+            }
+        }
+    }
+
+    /**
+     * Plays one game with the engine and search of the current thread.
+     *
+     * @param random
+     * @return buffer (ready to read) with the records of all quiet positions of the game
+     */
+    ByteBuffer playGame(Random random) {
+        final OmegaEngine engine = _engines.get();
+        final OmegaSearch search = getSearch();
+        final OmegaMoveGenerator moveGenerator = new OmegaMoveGenerator();
+        search.clearCaches();
+
+        OmegaBoardPosition position = new OmegaBoardPosition(_openings.get(random.nextInt(_openings.size())));
+        for (int i = 0; i < _randomPlies; i++) {
+            final OmegaMoveList moves = moveGenerator.getLegalMoves(position, false);
+            if (moves.size() == 0) break;
+            position.makeMove(moves.get(random.nextInt(moves.size())));
+        }
+
+        final ByteBuffer records = ByteBuffer.allocate(MAX_GAME_PLIES * OmegaTrainingRecord.RECORD_SIZE);
+        final int resignScore = GameAdjudication.DEFAULT_RESIGN_SCORE;
+        final int resignPlies = 2 * GameAdjudication.DEFAULT_RESIGN_MOVES;
+        int resignCounter = 0;
+        int result = OmegaTrainingRecord.RESULT_DRAW;
+
+        for (int ply = 0; ply < MAX_GAME_PLIES; ply++) {
+            if (!moveGenerator.hasLegalMove(position)) {
+                if (position.hasCheck()) {
+                    result = position._nextPlayer.isWhite()
+                            ? OmegaTrainingRecord.RESULT_BLACK_WINS : OmegaTrainingRecord.RESULT_WHITE_WINS;
+                }
+                break;
+            }
+            if (position.check50Moves() || position.check3Repetitions() || position.checkInsufficientMaterial()) {
+                break;
+            }
+
+            search.configureNodesLimit(_nodes);
+            search.startSearch(position);
+            search.waitWhileSearching();
+            final SearchResult searchResult = engine.getSearchResult();
+            if (searchResult == null || !OmegaMove.isValid(searchResult.bestMove)) break;
+
+            final int move = searchResult.bestMove;
+            final int value = searchResult.resultValue;
+            final int whiteValue = position._nextPlayer.isWhite() ? value : -value;
+
+            if (isQuiet(position, move, value)) {
+                // the result is set when the game is over
+                OmegaTrainingRecord.write(position, whiteValue, OmegaTrainingRecord.RESULT_DRAW, records);
+            }
+
+            // resign adjudication - both sides agree on a decisive score
+            if (Math.abs(whiteValue) >= resignScore) {
+                resignCounter = resignCounter != 0 && Integer.signum(resignCounter) == Integer.signum(whiteValue)
+                        ? resignCounter + Integer.signum(whiteValue) : Integer.signum(whiteValue);
+            } else {
+                resignCounter = 0;
+            }
+            if (Math.abs(resignCounter) >= resignPlies) {
+                result = resignCounter > 0
+                        ? OmegaTrainingRecord.RESULT_WHITE_WINS : OmegaTrainingRecord.RESULT_BLACK_WINS;
+                break;
+            }
+
+            position.makeMove(move);
+            if (position._historyCounter >= HISTORY_RESET) {
+                position = new OmegaBoardPosition(position.toFENString());
+            }
+        }
+
+        for (int offset = 0; offset < records.position(); offset += OmegaTrainingRecord.RECORD_SIZE) {
+            records.put(offset + OmegaTrainingRecord.RESULT_OFFSET, (byte) result);
+        }
+        records.flip();
+        return records;
+    }
+
+    /**
+     * A position is quiet if there is no check, the best move is no capture or promotion and
+     * the score is no mate score.
+     */
+    private static boolean isQuiet(OmegaBoardPosition position, int move, int value) {
+        return !position.hasCheck()
+                && OmegaMove.getTarget(move) == OmegaPiece.NOPIECE
+                && OmegaMove.getMoveType(move) != OmegaMoveType.PROMOTION
+                && OmegaMove.getMoveType(move) != OmegaMoveType.ENPASSANT
+                && Math.abs(value) < OmegaEvaluation.Value.CHECKMATE - OmegaSearch.MAX_SEARCH_DEPTH;
+    }
+
+    private void printProgress() {
+        synchronized (_progressLock) {
+            _games++;
+            if (_games % 10 != 0) return;
+            final double seconds = (System.nanoTime() - _startTime) / 1e9;
+            System.out.format("Games: %,d  Positions: %,d  Games/sec: %.2f%n",
+                    _games, _writer.getRecords(), _games / seconds);
+        }
+    }
+
+    /**
+     * @return number of records in all shards
+     */
+    public long getRecords() {
+        return _writer.getRecords();
+    }
+
+    /**
+     * Lists the shard files of a folder in the order they were written.
+     *
+     * @param outputDir
+     * @return shard files - empty if the folder does not exist
+     * @throws IOException
+     */
+    public static List<Path> listShards(Path outputDir) throws IOException {
+        final List<Path> shards = new ArrayList<>();
+        if (!Files.isDirectory(outputDir)) return shards;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(outputDir, SHARD_PREFIX + "*" + SHARD_SUFFIX)) {
+            for (Path p : stream) shards.add(p);
+        }
+        shards.sort(null);
+        return shards;
+    }
+
+    /**
+     * Appends records to shard files with a fixed number of records each. Resumes the last
+     * shard of an earlier run.
+     */
+    private static final class ShardWriter {
+
+        private final Path _outputDir;
+        private final int _shardSize;
+        private int _shardNumber;
+        private int _shardRecords;
+        private FileChannel _channel = null;
+        private volatile long _records = 0;
+
+        ShardWriter(Path outputDir, int shardSize) throws IOException {
+            if (shardSize < 1) throw new IllegalArgumentException("shardSize must be >= 1");
+            _outputDir = outputDir;
+            _shardSize = shardSize;
+            Files.createDirectories(outputDir);
+
+            final List<Path> shards = listShards(outputDir);
+            // number of the next new shard
+            _shardNumber = shards.size();
+            _shardRecords = _shardSize;
+            for (Path shard : shards) {
+                final long size = Files.size(shard);
+                final long complete = size - size % OmegaTrainingRecord.RECORD_SIZE;
+                if (complete != size) {
+                    // cut off a record which was not completely written
+                    try (FileChannel channel = FileChannel.open(shard, StandardOpenOption.WRITE)) {
+                        channel.truncate(complete);
+                    }
+                }
+                _records += complete / OmegaTrainingRecord.RECORD_SIZE;
+            }
+            if (!shards.isEmpty()) {
+                final Path last = shards.get(shards.size() - 1);
+                final int lastRecords = (int) (Files.size(last) / OmegaTrainingRecord.RECORD_SIZE);
+                if (lastRecords < _shardSize) {
+                    _shardRecords = lastRecords;
+                    _channel = FileChannel.open(last, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                }
+            }
+        }
+
+        long getRecords() {
+            return _records;
+        }
+
+        synchronized void write(ByteBuffer records) throws IOException {
+            while (records.hasRemaining()) {
+                if (_shardRecords >= _shardSize) nextShard();
+                final int count = Math.min(_shardSize - _shardRecords,
+                        records.remaining() / OmegaTrainingRecord.RECORD_SIZE);
+                final ByteBuffer slice = records.duplicate();
+                slice.limit(records.position() + count * OmegaTrainingRecord.RECORD_SIZE);
+                while (slice.hasRemaining()) _channel.write(slice);
+                records.position(slice.limit());
+                _shardRecords += count;
+                _records += count;
+            }
+        }
+
+        private void nextShard() throws IOException {
+            if (_channel != null) _channel.close();
+            final Path shard = _outputDir.resolve(String.format("%s%05d%s", SHARD_PREFIX, _shardNumber++, SHARD_SUFFIX));
+            _channel = FileChannel.open(shard,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            _shardRecords = 0;
+        }
+
+        synchronized void close() throws IOException {
+            if (_channel != null) _channel.close();
+            _channel = null;
+            // a new run continues with the last shard
+            _shardRecords = _shardSize;
+        }
+    }
+
+    /**
+     * Runs the self play generator.
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        CmdLineParser cp = new CmdLineParser();
+        CmdLineParser.Option nodesOption = cp.addLongOption('n', "nodes");
+        CmdLineParser.Option positionsOption = cp.addLongOption('p', "positions");
+        CmdLineParser.Option threadsOption = cp.addIntegerOption('j', "threads");
+        CmdLineParser.Option suitesOption = cp.addStringOption('s', "suites");
+        CmdLineParser.Option randomOption = cp.addIntegerOption('r', "random");
+        CmdLineParser.Option shardOption = cp.addIntegerOption('m', "shardSize");
+        CmdLineParser.Option outputOption = cp.addStringOption('o', "output");
+        CmdLineParser.Option seedOption = cp.addLongOption("seed");
+        CmdLineParser.Option usage = cp.addBooleanOption('?', "help");
+
+        try {
+            cp.parse(args);
+        } catch (CmdLineParser.OptionException e) {
+            System.err.println(e.getMessage());
+            printUsage();
+            System.exit(2);
+        }
+
+        if ((Boolean) cp.getOptionValue(usage)) {
+            printUsage();
+            System.exit(0);
+        }
+
+        final long nodes = (Long) cp.getOptionValue(nodesOption, DEFAULT_NODES);
+        final long positions = (Long) cp.getOptionValue(positionsOption, DEFAULT_POSITIONS);
+        final int threads = (Integer) cp.getOptionValue(threadsOption,
+                Runtime.getRuntime().availableProcessors());
+        final String suites = (String) cp.getOptionValue(suitesOption, ChesslyTournament.DEFAULT_SUITES);
+        final int randomPlies = (Integer) cp.getOptionValue(randomOption, DEFAULT_RANDOM_PLIES);
+        final int shardSize = (Integer) cp.getOptionValue(shardOption, DEFAULT_SHARD_SIZE);
+        final Path output = Paths.get((String) cp.getOptionValue(outputOption, DEFAULT_OUTPUT));
+        final long seed = (Long) cp.getOptionValue(seedOption, System.nanoTime());
+        if (nodes < 1 || positions < 1 || threads < 1 || randomPlies < 0 || shardSize < 1) {
+            System.err.println("Nodes, positions, threads and shard size must be at least 1");
+            printUsage();
+            System.exit(2);
+        }
+
+        final List<String> openings = new ArrayList<>();
+        for (String suite : suites.split(",")) {
+            try {
+                for (Opening opening : ChesslyTournament.readOpenings(suite.trim())) {
+                    openings.add(opening.fen);
+                }
+            } catch (IOException e) {
+                System.err.println("Could not read opening suite " + suite + ": " + e.getMessage());
+                System.exit(2);
+            }
+        }
+        if (openings.isEmpty()) {
+            System.err.println("No openings found in " + suites);
+            System.exit(2);
+        }
+
+        try {
+            final OmegaSelfPlay selfPlay = new OmegaSelfPlay(nodes, threads, randomPlies, openings,
+                    output, shardSize, seed);
+            System.out.format("Self play with %,d nodes per move on %d threads: %,d of %,d positions in %s%n",
+                    nodes, threads, selfPlay.getRecords(), positions, output);
+            final long written = selfPlay.run(positions);
+            System.out.format("Done: %,d new positions, %,d in total%n", written, selfPlay.getRecords());
+        } catch (IOException e) {
+            System.err.println("Could not write to " + output + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void printUsage() {
+        System.out.println();
+        System.out.println("Usage: OmegaSelfPlay [-n,--nodes n] [-p,--positions n] [-j,--threads n] "
+                + "[-s,--suites list] [-r,--random plies] [-m,--shardSize n] [-o,--output dir] [--seed n] [-?, --help]");
+        System.out.println("Options:");
+        System.out.println();
+        System.out.println("-n nodes per move (default " + DEFAULT_NODES + ")");
+        System.out.println("-p number of positions to generate - existing shards count (default " + DEFAULT_POSITIONS + ")");
+        System.out.println("-j number of games played in parallel (default number of cores)");
+        System.out.println("-s comma separated opening suites or PGN files (default " + ChesslyTournament.DEFAULT_SUITES + ")");
+        System.out.println("-r random moves after the opening (default " + DEFAULT_RANDOM_PLIES + ")");
+        System.out.println("-m records per shard file (default " + DEFAULT_SHARD_SIZE + ")");
+        System.out.println("-o output folder - existing shards are resumed (default " + DEFAULT_OUTPUT + ")");
+        System.out.println();
+    }
+}
@@ -0,0 +1,464 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.player.computer.Omega;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import fko.chessly.player.computer.Omega.OmegaEvaluationWeights.Weight;
+import fko.chessly.util.CmdLineParser;
+
+/**
+ * Texel style tuner for the <code>OmegaEvaluationWeights</code>.
+ * <p>
+ * Minimises the mean squared error between the game results of a set of positions and the
+ * sigmoid of their quiescence scores:<br>
+ * <code>E = 1/N * sum (result - 1 / (1 + 10^(-K * score / 400)))^2</code>
+ * <p>
+ * The evaluation is linear in its weights (sum of weight times feature). Therefore the
+ * quiescence search is done only once when loading the positions (with the start weights) and
+ * only the features of the leaf of the quiescence search are kept - a few shorts per position.
+ * Every error computation is then just a dot product per position which is computed in
+ * parallel with a fork/join pool. This way millions of positions can be tuned in minutes.
+ * <p>
+ * First K is fitted to the start weights. Then local search passes change each weight by +/-1
+ * as long as the error gets smaller.
+ * <p>
+ * Positions are read from the shard files of <code>OmegaSelfPlay</code>.
+ * <p>
+ * Usage: <code>java fko.chessly.player.computer.Omega.OmegaTexelTuner [-j threads] [-p passes]
+ * [-k K] [-w weights] [-o weights] files or folders...</code>
+ */
+public class OmegaTexelTuner {
+
+    /** default maximal number of local search passes */
+    public static final int DEFAULT_PASSES = 100;
+    /** default output file for the tuned weights */
+    public static final String DEFAULT_OUTPUT = "./var/tuned_weights.properties";
+
+    // maximal depth of the quiescence search when loading
+    private static final int MAX_QUIESCENCE_PLY = 16;
+    // positions per fork/join task
+    private static final int TASK_SIZE = 4096;
+
+    private final ForkJoinPool _pool;
+
+    // features of the quiescence leaf of each position (white's view) - SIZE per position
+    private short[] _features = new short[0];
+    // results from white's view in half points (0, 1, 2)
+    private byte[] _results = new byte[0];
+    private int _size = 0;
+
+    /**
+     * @param threads number of threads of the fork/join pool
+     */
+    public OmegaTexelTuner(int threads) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be >= 1");
+        _pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Loads all positions of the given shard files (or folders with shard files) and computes
+     * the features of their quiescence leaves with the given weights.
+     *
+     * @param files shard files of <code>OmegaSelfPlay</code> or folders with shard files
+     * @param weights weights for the quiescence search
+     * @throws IOException
+     */
+    public void load(List<Path> files, OmegaEvaluationWeights weights) throws IOException {
+        final List<Path> shards = new ArrayList<>();
+        for (Path p : files) {
+            if (Files.isDirectory(p)) shards.addAll(OmegaSelfPlay.listShards(p));
+            else shards.add(p);
+        }
+        long total = _size;
+        for (Path shard : shards) total += Files.size(shard) / OmegaTrainingRecord.RECORD_SIZE;
+        if (total * OmegaEvaluationWeights.SIZE > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Too many positions: " + total);
+
+        final short[] features = new short[(int) total * OmegaEvaluationWeights.SIZE];
+        final byte[] results = new byte[(int) total];
+        System.arraycopy(_features, 0, features, 0, _size * OmegaEvaluationWeights.SIZE);
+        System.arraycopy(_results, 0, results, 0, _size);
+
+        int offset = _size;
+        for (Path shard : shards) {
+            try (FileChannel channel = FileChannel.open(shard, StandardOpenOption.READ)) {
+                final int records = (int) (channel.size() / OmegaTrainingRecord.RECORD_SIZE);
+                if (records == 0) continue;
+                final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                        (long) records * OmegaTrainingRecord.RECORD_SIZE);
+                _pool.invoke(new LoadTask(buffer, 0, records, offset, features, results, weights));
+                offset += records;
+            }
+        }
+        _features = features;
+        _results = results;
+        _size = offset;
+    }
+
+    /**
+     * Adds a single position (e.g. for tests).
+     *
+     * @param fen
+     * @param result result from white's view - one of the <code>OmegaTrainingRecord.RESULT_</code> constants
+     * @param weights weights for the quiescence search
+     */
+    public void add(String fen, int result, OmegaEvaluationWeights weights) {
+        final ByteBuffer buffer = ByteBuffer.allocate(OmegaTrainingRecord.RECORD_SIZE);
+        OmegaTrainingRecord.write(new OmegaBoardPosition(fen), 0, result, buffer);
+        buffer.flip();
+        final short[] features = new short[(_size + 1) * OmegaEvaluationWeights.SIZE];
+        final byte[] results = new byte[_size + 1];
+        System.arraycopy(_features, 0, features, 0, _size * OmegaEvaluationWeights.SIZE);
+        System.arraycopy(_results, 0, results, 0, _size);
+        new LoadTask(buffer, 0, 1, _size, features, results, weights).compute();
+        _features = features;
+        _results = results;
+        _size++;
+    }
+
+    /**
+     * @return number of loaded positions
+     */
+    public int getSize() {
+        return _size;
+    }
+
+    /**
+     * Computes the mean squared error of the loaded positions in parallel.
+     *
+     * @param weights
+     * @param k scaling constant of the sigmoid
+     * @return the mean squared error
+     */
+    public double computeError(OmegaEvaluationWeights weights, double k) {
+        if (_size == 0) return 0;
+        return _pool.invoke(new ErrorTask(weights.toArray(), k, 0, _size)) / _size;
+    }
+
+    /**
+     * Finds the K with the smallest error for the given weights (ternary search).
+     *
+     * @param weights
+     * @return K
+     */
+    public double fitK(OmegaEvaluationWeights weights) {
+        double low = 0.01;
+        double high = 5.0;
+        for (int i = 0; i < 50; i++) {
+            final double m1 = low + (high - low) / 3;
+            final double m2 = high - (high - low) / 3;
+            if (computeError(weights, m1) < computeError(weights, m2)) high = m2;
+            else low = m1;
+        }
+        return (low + high) / 2;
+    }
+
+    /**
+     * Local search: changes each weight by +1 or -1 and keeps the change if the error gets
+     * smaller. Stops when a pass does not improve any weight or after maxPasses.
+     *
+     * @param start start weights - not changed
+     * @param k scaling constant of the sigmoid
+     * @param maxPasses maximal number of passes
+     * @param fixed weights which are not tuned
+     * @return the tuned weights
+     */
+    public OmegaEvaluationWeights tune(OmegaEvaluationWeights start, double k, int maxPasses, List<Weight> fixed) {
+        final OmegaEvaluationWeights best = new OmegaEvaluationWeights(start);
+        double bestError = computeError(best, k);
+        System.out.format("Start error: %.8f (K=%.4f, %,d positions)%n", bestError, k, _size);
+
+        for (int pass = 1; pass <= maxPasses; pass++) {
+            final long startTime = System.nanoTime();
+            boolean improved = false;
+            for (Weight w : Weight.values) {
+                if (fixed.contains(w)) continue;
+                final int value = best.get(w);
+                for (int delta : new int[] { 1, -1 }) {
+                    best.set(w, value + delta);
+                    final double error = computeError(best, k);
+                    if (error < bestError) {
+                        bestError = error;
+                        improved = true;
+                        break;
+                    }
+                    best.set(w, value);
+                }
+            }
+            System.out.format("Pass %d: error %.8f (%,d ms) %s%n",
+                    pass, bestError, (System.nanoTime() - startTime) / 1_000_000L, best);
+            if (!improved) break;
+        }
+        return best;
+    }
+
+    /**
+     * Sum of the squared errors for a range of positions - split in parallel tasks.
+     */
+    private final class ErrorTask extends RecursiveTask<Double> {
+        private static final long serialVersionUID = 1L;
+        private final int[] _weights;
+        private final double _k;
+        private final int _from;
+        private final int _to;
+
+        ErrorTask(int[] weights, double k, int from, int to) {
+            _weights = weights;
+            _k = k;
+            _from = from;
+            _to = to;
+        }
+
+        @Override
+        protected Double compute() {
+            if (_to - _from > TASK_SIZE) {
+                final int middle = (_from + _to) >>> 1;
+                final ErrorTask left = new ErrorTask(_weights, _k, _from, middle);
+                left.fork();
+                final double right = new ErrorTask(_weights, _k, middle, _to).compute();
+                return right + left.join();
+            }
+            final short[] features = _features;
+            final int size = OmegaEvaluationWeights.SIZE;
+            double sum = 0;
+            for (int i = _from; i < _to; i++) {
+                int score = 0;
+                final int base = i * size;
+                for (int j = 0; j < size; j++) {
+                    score += _weights[j] * features[base + j];
+                }
+                final double error = _results[i] / 2.0 - sigmoid(score, _k);
+                sum += error * error;
+            }
+            return sum;
+        }
+    }
+
+    /**
+     * @param score
+     * @param k
+     * @return expected result for the score
+     */
+    static double sigmoid(int score, double k) {
+        return 1.0 / (1.0 + Math.pow(10, -k * score / 400.0));
+    }
+
+    /**
+     * Decodes a range of records, runs the quiescence search and stores the leaf features.
+     */
+    private static final class LoadTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final ByteBuffer _buffer;
+        private final int _from;
+        private final int _to;
+        private final int _offset;
+        private final short[] _features;
+        private final byte[] _results;
+        private final OmegaEvaluationWeights _weights;
+
+        LoadTask(ByteBuffer buffer, int from, int to, int offset, short[] features, byte[] results,
+                OmegaEvaluationWeights weights) {
+            _buffer = buffer;
+            _from = from;
+            _to = to;
+            _offset = offset;
+            _features = features;
+            _results = results;
+            _weights = weights;
+        }
+
+        @Override
+        protected void compute() {
+            if (_to - _from > TASK_SIZE) {
+                final int middle = (_from + _to) >>> 1;
+                invokeAll(new LoadTask(_buffer, _from, middle, _offset, _features, _results, _weights),
+                        new LoadTask(_buffer, middle, _to, _offset, _features, _results, _weights));
+                return;
+            }
+            final ByteBuffer buffer = _buffer.duplicate();
+            final Quiescence quiescence = new Quiescence(_weights);
+            final int size = OmegaEvaluationWeights.SIZE;
+            for (int i = _from; i < _to; i++) {
+                buffer.position(i * OmegaTrainingRecord.RECORD_SIZE);
+                final OmegaTrainingRecord record = OmegaTrainingRecord.read(buffer);
+                final int[] leaf = quiescence.leafFeatures(new OmegaBoardPosition(record.fen));
+                final int index = _offset + i;
+                for (int j = 0; j < size; j++) {
+                    _features[index * size + j] = (short) leaf[j];
+                }
+                _results[index] = (byte) record.result;
+            }
+        }
+    }
+
+    /**
+     * Capture-only quiescence search which remembers the features of the leaf of the principal
+     * variation.
+     */
+    static final class Quiescence {
+        private final OmegaEvaluation _evaluation;
+        private final OmegaMoveGenerator[] _moveGenerators = new OmegaMoveGenerator[MAX_QUIESCENCE_PLY + 1];
+        private final int[][] _leafFeatures = new int[MAX_QUIESCENCE_PLY + 1][OmegaEvaluationWeights.SIZE];
+
+        Quiescence(OmegaEvaluationWeights weights) {
+            _evaluation = new OmegaEvaluation(weights);
+            for (int i = 0; i <= MAX_QUIESCENCE_PLY; i++) _moveGenerators[i] = new OmegaMoveGenerator();
+        }
+
+        /**
+         * @param position
+         * @return features of the quiescence leaf from white's view - valid until the next call
+         */
+        int[] leafFeatures(OmegaBoardPosition position) {
+            search(position, -OmegaEvaluation.Value.CHECKMATE, OmegaEvaluation.Value.CHECKMATE, 0);
+            return _leafFeatures[0];
+        }
+
+        private int search(OmegaBoardPosition position, int alpha, int beta, int ply) {
+            final int standPat = _evaluation.evaluate(position);
+            OmegaEvaluation.features(position, _leafFeatures[ply]);
+            if (standPat >= beta || ply >= MAX_QUIESCENCE_PLY) return standPat;
+            if (standPat > alpha) alpha = standPat;
+
+            final OmegaMoveList moves = _moveGenerators[ply].getLegalMoves(position, true);
+            for (int i = 0; i < moves.size(); i++) {
+                position.makeMove(moves.get(i));
+                final int value = -search(position, -beta, -alpha, ply + 1);
+                position.undoMove();
+                if (value > alpha) {
+                    alpha = value;
+                    System.arraycopy(_leafFeatures[ply + 1], 0, _leafFeatures[ply], 0, OmegaEvaluationWeights.SIZE);
+                    if (value >= beta) break;
+                }
+            }
+            return alpha;
+        }
+    }
+
+    /**
+     * Runs the tuner.
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        CmdLineParser cp = new CmdLineParser();
+        CmdLineParser.Option threadsOption = cp.addIntegerOption('j', "threads");
+        CmdLineParser.Option passesOption = cp.addIntegerOption('p', "passes");
+        CmdLineParser.Option kOption = cp.addDoubleOption('k', "K");
+        CmdLineParser.Option weightsOption = cp.addStringOption('w', "weights");
+        CmdLineParser.Option outputOption = cp.addStringOption('o', "output");
+        CmdLineParser.Option usage = cp.addBooleanOption('?', "help");
+
+        try {
+            cp.parse(args);
+        } catch (CmdLineParser.OptionException e) {
+            System.err.println(e.getMessage());
+            printUsage();
+            System.exit(2);
+        }
+
+        if ((Boolean) cp.getOptionValue(usage) || cp.getRemainingArgs().length == 0) {
+            printUsage();
+            System.exit(0);
+        }
+
+        final int threads = (Integer) cp.getOptionValue(threadsOption, Runtime.getRuntime().availableProcessors());
+        final int passes = (Integer) cp.getOptionValue(passesOption, DEFAULT_PASSES);
+        final Double fixedK = (Double) cp.getOptionValue(kOption);
+        final String weightsFile = (String) cp.getOptionValue(weightsOption);
+        final Path output = Paths.get((String) cp.getOptionValue(outputOption, DEFAULT_OUTPUT));
+        if (threads < 1 || passes < 1) {
+            System.err.println("Threads and passes must be at least 1");
+            printUsage();
+            System.exit(2);
+        }
+
+        try {
+            OmegaEvaluationWeights start = new OmegaEvaluationWeights();
+            if (weightsFile != null) {
+                try (Reader reader = Files.newBufferedReader(Paths.get(weightsFile), StandardCharsets.UTF_8)) {
+                    start = OmegaEvaluationWeights.load(reader);
+                }
+            }
+
+            final List<Path> files = new ArrayList<>();
+            for (String f : cp.getRemainingArgs()) files.add(Paths.get(f));
+
+            final OmegaTexelTuner tuner = new OmegaTexelTuner(threads);
+            long time = System.nanoTime();
+            tuner.load(files, start);
+            System.out.format("Loaded %,d positions in %,d ms%n", tuner.getSize(), (System.nanoTime() - time) / 1_000_000L);
+
+            final double k = fixedK != null ? fixedK : tuner.fitK(start);
+            time = System.nanoTime();
+            final OmegaEvaluationWeights tuned = tuner.tune(start, k, passes, new ArrayList<>());
+            System.out.format("Tuned in %,d ms: %s%n", (System.nanoTime() - time) / 1_000_000L, tuned);
+
+            if (output.getParent() != null) Files.createDirectories(output.getParent());
+            try (BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+                tuned.store(writer, String.format("Texel tuned on %,d positions with K=%.4f", tuner.getSize(), k));
+            }
+            System.out.println("Weights written to " + output);
+        } catch (IOException e) {
+            System.err.println("Tuning failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void printUsage() {
+        System.out.println();
+        System.out.println("Usage: OmegaTexelTuner [-j,--threads n] [-p,--passes n] [-k,--K k] "
+                + "[-w,--weights file] [-o,--output file] [-?, --help] files or folders...");
+        System.out.println("Options:");
+        System.out.println();
+        System.out.println("-j number of threads (default number of cores)");
+        System.out.println("-p maximal number of local search passes (default " + DEFAULT_PASSES + ")");
+        System.out.println("-k scaling constant of the sigmoid (default fitted to the start weights)");
+        System.out.println("-w start weights as properties file (default built-in weights)");
+        System.out.println("-o output file for the tuned weights (default " + DEFAULT_OUTPUT + ")");
+        System.out.println();
+        System.out.println("Files are shard files written by OmegaSelfPlay or folders with shard files.");
+        System.out.println();
+    }
+}
@@ -0,0 +1,206 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.player.computer.Omega;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A labelled training position in a fixed-size packed binary format.
+ * <p>
+ * Each record has exactly {@link #RECORD_SIZE} bytes (big endian):
+ * <pre>
+ *  0 -  7  occupancy - one bit per occupied square (a1 = bit 0, h8 = bit 63)
+ *  8 - 23  pieces - one nibble (OmegaPiece ordinal) per occupied square in square order
+ * 24       flags - bit 0 black to move, bit 1-4 castling rights K, Q, k, q
+ * 25       en passant square (0-63) or 0xFF for none
+ * 26       half move clock (max 255)
+ * 27 - 28  full move number
+ * 29 - 30  search score from white's view in centipawns
+ * 31       game result from white's view - 0 loss, 1 draw, 2 win
+ * </pre>
+ * Records can be read and written directly with a <code>ByteBuffer</code> so that millions of
+ * positions can be stored and read without parsing FEN text.
+ */
+public final class OmegaTrainingRecord {
+
+    /** size of a record in bytes */
+    public static final int RECORD_SIZE = 32;
+
+    /** result of the game from white's view */
+    public static final int RESULT_BLACK_WINS = 0;
+    /** result of the game from white's view */
+    public static final int RESULT_DRAW = 1;
+    /** result of the game from white's view */
+    public static final int RESULT_WHITE_WINS = 2;
+
+    /** offset of the result - written after the game has ended */
+    static final int RESULT_OFFSET = 31;
+
+    private static final int NO_EP_SQUARE = 0xFF;
+
+    /** the position as FEN */
+    public final String fen;
+    /** search score from white's view */
+    public final int score;
+    /** game result from white's view - one of the RESULT_ constants */
+    public final int result;
+
+    /**
+     * @param fen
+     * @param score search score from white's view
+     * @param result game result from white's view - one of the RESULT_ constants
+     */
+    public OmegaTrainingRecord(String fen, int score, int result) {
+        if (result < RESULT_BLACK_WINS || result > RESULT_WHITE_WINS)
+            throw new IllegalArgumentException("invalid result " + result);
+        this.fen = fen;
+        this.score = score;
+        this.result = result;
+    }
+
+    /**
+     * @return the result as points for white (0, 0.5 or 1)
+     */
+    public double getWhitePoints() {
+        return result / 2.0;
+    }
+
+    /**
+     * Writes a position as a record at the current position of the buffer.
+     *
+     * @param position
+     * @param score search score from white's view - clamped to a short
+     * @param result game result from white's view - one of the RESULT_ constants
+     * @param buffer buffer with at least RECORD_SIZE bytes remaining
+     */
+    public static void write(OmegaBoardPosition position, int score, int result, ByteBuffer buffer) {
+        long occupancy = 0L;
+        final byte[] pieces = new byte[16];
+        int count = 0;
+        for (int index = 0; index < 64; index++) {
+            final OmegaPiece piece = position._x88Board[toX88(index)];
+            if (piece == OmegaPiece.NOPIECE) continue;
+            occupancy |= 1L << index;
+            // a legal position has at most 32 pieces
+            pieces[count >>> 1] |= (count & 1) == 0 ? piece.ordinal() << 4 : piece.ordinal();
+            count++;
+        }
+
+        int flags = position._nextPlayer.isWhite() ? 0 : 1;
+        if (position._castlingWK) flags |= 1 << 1;
+        if (position._castlingWQ) flags |= 1 << 2;
+        if (position._castlingBK) flags |= 1 << 3;
+        if (position._castlingBQ) flags |= 1 << 4;
+
+        final OmegaSquare ep = position._enPassantSquare;
+        final int epIndex = ep == OmegaSquare.NOSQUARE
+                ? NO_EP_SQUARE
+                : (ep.getRank().get() - 1) * 8 + ep.getFile().get() - 1;
+
+        buffer.putLong(occupancy);
+        buffer.put(pieces);
+        buffer.put((byte) flags);
+        buffer.put((byte) epIndex);
+        buffer.put((byte) Math.min(position._halfMoveClock, 255));
+        buffer.putShort((short) Math.min((position._nextHalfMoveNumber + 1) / 2, Short.MAX_VALUE));
+        buffer.putShort((short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, score)));
+        buffer.put((byte) result);
+    }
+
+    /**
+     * Reads a record at the current position of the buffer.
+     *
+     * @param buffer buffer with at least RECORD_SIZE bytes remaining
+     * @return the record
+     */
+    public static OmegaTrainingRecord read(ByteBuffer buffer) {
+        final long occupancy = buffer.getLong();
+        final byte[] pieces = new byte[16];
+        buffer.get(pieces);
+        final int flags = buffer.get() & 0xFF;
+        final int epIndex = buffer.get() & 0xFF;
+        final int halfMoveClock = buffer.get() & 0xFF;
+        final int fullMoveNumber = buffer.getShort();
+        final int score = buffer.getShort();
+        final int result = buffer.get();
+
+        final OmegaPiece[] board = new OmegaPiece[64];
+        int count = 0;
+        for (int index = 0; index < 64; index++) {
+            if ((occupancy & (1L << index)) == 0) continue;
+            final int nibble = (count & 1) == 0 ? (pieces[count >>> 1] >>> 4) & 0xF : pieces[count >>> 1] & 0xF;
+            if (nibble == 0 || nibble >= OmegaPiece.values.length)
+                throw new IllegalArgumentException("invalid piece " + nibble + " in record");
+            board[index] = OmegaPiece.values[nibble];
+            count++;
+        }
+
+        final StringBuilder fen = new StringBuilder(90);
+        for (int rank = 7; rank >= 0; rank--) {
+            int empty = 0;
+            for (int file = 0; file < 8; file++) {
+                final OmegaPiece piece = board[rank * 8 + file];
+                if (piece == null) {
+                    empty++;
+                } else {
+                    if (empty > 0) fen.append(empty);
+                    empty = 0;
+                    fen.append(piece.getShortName());
+                }
+            }
+            if (empty > 0) fen.append(empty);
+            if (rank > 0) fen.append('/');
+        }
+        fen.append((flags & 1) == 0 ? " w " : " b ");
+        if ((flags & 0x1E) == 0) fen.append('-');
+        if ((flags & (1 << 1)) != 0) fen.append('K');
+        if ((flags & (1 << 2)) != 0) fen.append('Q');
+        if ((flags & (1 << 3)) != 0) fen.append('k');
+        if ((flags & (1 << 4)) != 0) fen.append('q');
+        fen.append(' ');
+        if (epIndex == NO_EP_SQUARE) {
+            fen.append('-');
+        } else {
+            fen.append((char) ('a' + epIndex % 8)).append(epIndex / 8 + 1);
+        }
+        fen.append(' ').append(halfMoveClock).append(' ').append(fullMoveNumber);
+
+        return new OmegaTrainingRecord(fen.toString(), score, result);
+    }
+
+    // index 0-63 to the index of the 0x88 board
+    private static int toX88(int index) {
+        return (index >>> 3) * 16 + (index & 7);
+    }
+
+    @Override
+    public String toString() {
+        return fen + " score " + score + " result " + (result == RESULT_WHITE_WINS ? "1-0"
+                : result == RESULT_BLACK_WINS ? "0-1" : "1/2-1/2");
+    }
+}
@@ -40,6 +40,7 @@ public class OmegaTranspositionTable {
 
     private int _size;
     private final int _max_entries;
+    private final boolean _shared;
 
     private int _numberOfEntries = 0;
     private long _numberOfCollisions = 0L;
@@ -53,6 +54,20 @@ public class OmegaTranspositionTable {
      * @param size in MB (1024^2)
      */
     public OmegaTranspositionTable(int size) {
+        this(size, false);
+    }
+
+    /**
+     * Creates a hash table with a approximated number of entries calculated by
+     * the size in MB divided by the entry size.<br>
+     * A shared table can be used by several searches in parallel. Each entry is locked
+     * while it is written or copied by {@link #get(OmegaBoardPosition, TT_Entry)}.
+     * The statistics of a shared table are approximations.
+     * @param size in MB (1024^2)
+     * @param shared true if the table is used by several threads
+     */
+    public OmegaTranspositionTable(int size, boolean shared) {
+        _shared = shared;
         _size = size*MB*MB;
 
         // check available mem - add some head room
@@ -81,12 +96,23 @@ public class OmegaTranspositionTable {
      * @param value
      * @param type
      * @param depth
-     * @param moveList
+     * @param move best move of this node or <code>OmegaMove.NOMOVE</code>
      */
     public void put(OmegaBoardPosition position,
-            int value, TT_EntryType type, int depth, OmegaMoveList moveList) {
+            int value, TT_EntryType type, int depth, int move) {
 
         final int hash = getHash(position._zobristKey);
+        if (_shared) {
+            synchronized (entries[hash]) {
+                put(hash, position, value, type, depth, move);
+            }
+        } else {
+            put(hash, position, value, type, depth, move);
+        }
+    }
+
+    private void put(int hash, OmegaBoardPosition position,
+            int value, TT_EntryType type, int depth, int move) {
 
         // new value
         if (entries[hash].key == 0) {
@@ -96,8 +122,7 @@ public class OmegaTranspositionTable {
             entries[hash].value = value;
             entries[hash].type = type;
             entries[hash].depth = depth;
-            entries[hash].move_list = moveList;
-            //entries[hash].move_list = new SoftReference<OmegaMoveList>(moveList);
+            entries[hash].move = move;
 
         }
         // different position - overwrite
@@ -109,8 +134,7 @@ public class OmegaTranspositionTable {
             entries[hash].value = value;
             entries[hash].type = type;
             entries[hash].depth = depth;
-            entries[hash].move_list = moveList;
-            //entries[hash].move_list = new SoftReference<OmegaMoveList>(moveList);
+            entries[hash].move = move;
         }
         // Collision or update
         else if (position._zobristKey == entries[hash].key  // same position
@@ -135,8 +159,7 @@ public class OmegaTranspositionTable {
             entries[hash].value = value;
             entries[hash].type = type;
             entries[hash].depth = depth;
-            entries[hash].move_list = moveList;
-            //entries[hash].move_list = new SoftReference<OmegaMoveList>(moveList);
+            entries[hash].move = move;
         }
         // ignore new values for cache
     }
@@ -158,6 +181,35 @@ public class OmegaTranspositionTable {
         return null;
     }
 
+    /**
+     * Same as {@link #get(OmegaBoardPosition)} but for a shared table the entry is
+     * copied to the given entry so it can't be changed by other threads while it is used.
+     * @param position
+     * @param copy entry the values are copied to for a shared table
+     *
+     * @return the entry for the position (or its copy) or <tt>null</tt> if not found
+     */
+    public TT_Entry get(OmegaBoardPosition position, TT_Entry copy) {
+        if (!_shared) return get(position);
+        final TT_Entry entry = entries[getHash(position._zobristKey)];
+        synchronized (entry) {
+            if (entry.key != position._zobristKey) return null;
+            copy.key = entry.key;
+            copy.value = entry.value;
+            copy.depth = entry.depth;
+            copy.type = entry.type;
+            copy.move = entry.move;
+        }
+        return copy;
+    }
+
+    /**
+     * @return true if the table can be used by several threads
+     */
+    public boolean isShared() {
+        return _shared;
+    }
+
 
     private int getHash(long key) {
         return (int) (key%_max_entries);
@@ -175,6 +227,7 @@ public class OmegaTranspositionTable {
             entries[i].value = Integer.MIN_VALUE;
             entries[i].depth = 0;
             entries[i].type = TT_EntryType.ALPHA;
+            entries[i].move = OmegaMove.NOMOVE;
         }
         _numberOfEntries = 0;
         _numberOfCollisions = 0;
@@ -225,8 +278,7 @@ public class OmegaTranspositionTable {
         int  value = Integer.MIN_VALUE;
         int  depth = 0;
         TT_EntryType type = TT_EntryType.ALPHA;
-        OmegaMoveList move_list = null;
-        //SoftReference<OmegaMoveList> move_list = new SoftReference<OmegaMoveList>(null);
+        int move = OmegaMove.NOMOVE;
     }
 
     /**
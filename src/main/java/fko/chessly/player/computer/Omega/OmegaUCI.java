@@ -0,0 +1,608 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.player.computer.Omega;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import fko.chessly.Chessly;
+import fko.chessly.player.computer.Omega.OmegaSearch.SearchResult;
+
+/**
+ * Headless UCI protocol front-end for the Omega engine.
+ * <p>
+ * Reads UCI commands from stdin and drives an <code>OmegaSearch</code> directly without
+ * Playroom, Game or any UI so it can be used by external tournament managers. Supported are
+ * <code>uci, isready, ucinewgame, setoption, position, go, stop, ponderhit</code> and
+ * <code>quit</code>.
+ * <p>
+ * Options are <code>Hash</code> (transposition table size in MB), <code>Threads</code>,
+ * <code>Ponder</code>, <code>Clear Hash</code>, <code>InfoInterval</code> and a check option
+ * for each <code>_USE_...</code> search flag of <code>OmegaConfiguration</code> (without
+ * the leading underscore, e.g. <code>USE_NMP</code>). Changed options are applied before the
+ * next search by creating a new <code>OmegaSearch</code> as caches are set up in its constructor.
+ * <p>
+ * While searching <code>info</code> lines are sent every <code>InfoInterval</code> ms and once
+ * more with the final result before <code>bestmove</code>.
+ * <p>
+ * Usage: <code>java fko.chessly.player.computer.Omega.OmegaUCI</code>
+ */
+public class OmegaUCI {
+
+    /** engine name sent with <code>id name</code> */
+    public static final String ENGINE_NAME = "Chessly Omega " + Chessly.VERSION;
+    /** engine author sent with <code>id author</code> */
+    public static final String ENGINE_AUTHOR = "Frank Kopp";
+
+    private static final int MIN_HASH = 1;
+    private static final int MAX_HASH = 1024;
+    private static final int MAX_THREADS = 128;
+    private static final int MIN_INFO_INTERVAL = 50;
+    private static final int MAX_INFO_INTERVAL = 10000;
+    private static final int DEFAULT_INFO_INTERVAL = 1000;
+
+    // the search flags of OmegaConfiguration which are offered as UCI options
+    private static final Map<String, Field> FLAG_OPTIONS = getFlagOptions();
+
+    private final PrintStream _out;
+
+    private final OmegaEngine _engine;
+    private OmegaSearch _search = null;
+    // set when an option changed which needs a new OmegaSearch
+    private boolean _searchDirty = true;
+
+    private OmegaBoardPosition _position = new OmegaBoardPosition();
+
+    // options
+    private int _hashSize;
+    private int _threads = 1;
+    private boolean _ponder = false;
+    private long _infoInterval = DEFAULT_INFO_INTERVAL;
+
+    // guards the fields below which are shared with the search thread
+    private final Object _lock = new Object();
+    // while pondering or searching infinite the bestmove must not be sent before stop or ponderhit
+    private boolean _holdBestMove = false;
+    // info and bestmove lines of a held back result
+    private List<String> _pendingResult = null;
+    // the go command of a ponder search - used to configure the time control at ponderhit
+    private GoCommand _ponderGo = null;
+
+    // throttled info output
+    private final ScheduledExecutorService _infoTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "OmegaUCI Info");
+        t.setDaemon(true);
+        return t;
+    });
+    private ScheduledFuture<?> _infoTask = null;
+
+    /**
+     * @param out stream for the UCI output
+     */
+    public OmegaUCI(PrintStream out) {
+        _out = out;
+        _engine = new OmegaEngine() {
+            @Override
+            public void storeResult(SearchResult searchResult) {
+                super.storeResult(searchResult);
+                onSearchResult(searchResult);
+            }
+        };
+        // no book and no statistics - the front-end reads the search directly
+        _engine._CONFIGURATION._USE_BOOK = false;
+        _engine._CONFIGURATION._USE_PONDERER = false;
+        _engine._CONFIGURATION.VERBOSE_STATS = false;
+        _hashSize = Integer.parseInt(Chessly.getProperties().getProperty("engine.nodesCacheSize", "2"));
+    }
+
+    /**
+     * Reads and handles commands until <code>quit</code> or end of input.
+     *
+     * @param in
+     * @throws IOException
+     */
+    public void loop(BufferedReader in) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (!handleCommand(line)) break;
+        }
+        quit();
+    }
+
+    /**
+     * Handles one UCI command line.
+     *
+     * @param line
+     * @return false if the engine should quit
+     */
+    public boolean handleCommand(String line) {
+        final String[] tokens = line.trim().split("\\s+");
+        if (tokens[0].isEmpty()) return true;
+        switch (tokens[0]) {
+            case "uci":
+                sendUCI();
+                break;
+            case "isready":
+                applyOptions();
+                send("readyok");
+                break;
+            case "ucinewgame":
+                stopSearch();
+                applyOptions();
+                _search.clearCaches();
+                _position = new OmegaBoardPosition();
+                break;
+            case "setoption":
+                setOption(line);
+                break;
+            case "position":
+                stopSearch();
+                setPosition(tokens);
+                break;
+            case "go":
+                go(tokens);
+                break;
+            case "stop":
+                stopSearch();
+                break;
+            case "ponderhit":
+                ponderHit();
+                break;
+            case "quit":
+                return false;
+            case "debug":
+            case "register":
+                // not supported
+                break;
+            default:
+                send("info string unknown command: " + line.trim());
+        }
+        return true;
+    }
+
+    /**
+     * Blocks until a running search has finished and its bestmove has been sent.
+     * Returns immediately when the bestmove is held back (pondering or infinite).
+     */
+    void waitWhileSearching() {
+        if (_search != null) _search.waitWhileSearching();
+    }
+
+    private void quit() {
+        stopSearch();
+        _infoTimer.shutdownNow();
+    }
+
+    private void sendUCI() {
+        send("id name " + ENGINE_NAME);
+        send("id author " + ENGINE_AUTHOR);
+        send(String.format("option name Hash type spin default %d min %d max %d", _hashSize, MIN_HASH, MAX_HASH));
+        send(String.format("option name Threads type spin default 1 min 1 max %d", MAX_THREADS));
+        send("option name Ponder type check default false");
+        send("option name Clear Hash type button");
+        send(String.format("option name InfoInterval type spin default %d min %d max %d",
+                DEFAULT_INFO_INTERVAL, MIN_INFO_INTERVAL, MAX_INFO_INTERVAL));
+        for (Map.Entry<String, Field> e : FLAG_OPTIONS.entrySet()) {
+            send("option name " + e.getKey() + " type check default " + getFlag(e.getValue()));
+        }
+        send("uciok");
+    }
+
+    /**
+     * Parses <code>setoption name &lt;id&gt; [value &lt;x&gt;]</code>. Names may contain spaces
+     * and are not case sensitive.
+     */
+    private void setOption(String line) {
+        final String l = line.trim();
+        final int nameIdx = l.indexOf(" name ");
+        if (nameIdx < 0) {
+            send("info string invalid setoption: " + l);
+            return;
+        }
+        final int valueIdx = l.indexOf(" value ", nameIdx);
+        final String name = (valueIdx < 0 ? l.substring(nameIdx + 6) : l.substring(nameIdx + 6, valueIdx)).trim();
+        final String value = valueIdx < 0 ? "" : l.substring(valueIdx + 7).trim();
+
+        try {
+            if (name.equalsIgnoreCase("Hash")) {
+                _hashSize = parseSpin(value, MIN_HASH, MAX_HASH);
+                _searchDirty = true;
+            } else if (name.equalsIgnoreCase("Threads")) {
+                _threads = parseSpin(value, 1, MAX_THREADS);
+                _engine.setNumberOfThreads(_threads);
+                if (_threads > 1) send("info string OmegaSearch is single threaded - Threads is ignored");
+            } else if (name.equalsIgnoreCase("Ponder")) {
+                _ponder = Boolean.parseBoolean(value);
+            } else if (name.equalsIgnoreCase("Clear Hash")) {
+                stopSearch();
+                if (_search != null) _search.clearCaches();
+            } else if (name.equalsIgnoreCase("InfoInterval")) {
+                _infoInterval = parseSpin(value, MIN_INFO_INTERVAL, MAX_INFO_INTERVAL);
+            } else {
+                final Field flag = FLAG_OPTIONS.get(name.toUpperCase(Locale.ROOT));
+                if (flag == null) {
+                    send("info string unknown option: " + name);
+                    return;
+                }
+                setFlag(flag, Boolean.parseBoolean(value));
+                _searchDirty = true;
+            }
+        } catch (IllegalArgumentException e) {
+            send("info string invalid value for option " + name + ": " + e.getMessage());
+        }
+    }
+
+    private static int parseSpin(String value, int min, int max) {
+        final int v = Integer.parseInt(value);
+        if (v < min || v > max)
+            throw new IllegalArgumentException(String.format("%d not in [%d, %d]", v, min, max));
+        return v;
+    }
+
+    /**
+     * Creates a new OmegaSearch if options have been changed which are only read when the
+     * search is constructed (cache sizes and flags).
+     */
+    private void applyOptions() {
+        if (!_searchDirty && _search != null) return;
+        if (_search != null && _search.isSearching()) return;
+        if (_search != null) _search.releaseCacheTables();
+        _search = new OmegaSearch(_engine, _hashSize);
+        _searchDirty = false;
+    }
+
+    /**
+     * Parses <code>position [startpos | fen &lt;fen&gt;] [moves &lt;m1&gt; ... ]</code>
+     */
+    private void setPosition(String[] tokens) {
+        int i = 1;
+        final OmegaBoardPosition position;
+        try {
+            if (i < tokens.length && tokens[i].equals("startpos")) {
+                position = new OmegaBoardPosition();
+                i++;
+            } else if (i < tokens.length && tokens[i].equals("fen")) {
+                final StringBuilder fen = new StringBuilder();
+                i++;
+                while (i < tokens.length && !tokens[i].equals("moves")) {
+                    fen.append(tokens[i++]).append(' ');
+                }
+                position = new OmegaBoardPosition(fen.toString().trim());
+            } else {
+                send("info string invalid position command");
+                return;
+            }
+        } catch (RuntimeException e) {
+            send("info string invalid fen: " + e.getMessage());
+            return;
+        }
+
+        if (i < tokens.length && tokens[i].equals("moves")) {
+            final OmegaMoveGenerator moveGenerator = new OmegaMoveGenerator();
+            for (i++; i < tokens.length; i++) {
+                final int move = findMove(moveGenerator, position, tokens[i]);
+                if (move == OmegaMove.NOMOVE) {
+                    send("info string illegal move: " + tokens[i]);
+                    break;
+                }
+                position.makeMove(move);
+            }
+        }
+        _position = position;
+    }
+
+    /**
+     * @return the legal move matching the UCI notation or NOMOVE
+     */
+    static int findMove(OmegaMoveGenerator moveGenerator, OmegaBoardPosition position, String uciMove) {
+        final OmegaMoveList moves = moveGenerator.getLegalMoves(position, false);
+        for (int i = 0; i < moves.size(); i++) {
+            if (OmegaMove.toUCINotation(moves.get(i)).equals(uciMove)) return moves.get(i);
+        }
+        return OmegaMove.NOMOVE;
+    }
+
+    /**
+     * Starts a search for the current position.
+     */
+    private void go(String[] tokens) {
+        stopSearch();
+        applyOptions();
+
+        final GoCommand go = GoCommand.parse(tokens);
+        configureSearch(go, go.ponder || go.infinite);
+
+        synchronized (_lock) {
+            _holdBestMove = go.ponder || go.infinite;
+            _pendingResult = null;
+            _ponderGo = go.ponder ? go : null;
+            _infoTask = _infoTimer.scheduleAtFixedRate(this::sendInfo,
+                    _infoInterval, _infoInterval, TimeUnit.MILLISECONDS);
+        }
+        _search.startSearch(_position);
+    }
+
+    /**
+     * Configures the search for the limits of a go command.
+     *
+     * @param go
+     * @param noLimits when pondering or infinite search
+     */
+    private void configureSearch(GoCommand go, boolean noLimits) {
+        final boolean white = _position._nextPlayer.isWhite();
+        final long time = white ? go.wtime : go.btime;
+        final long inc = white ? go.winc : go.binc;
+        if (noLimits) {
+            _search.configurePondering();
+        } else if (go.movetime > 0) {
+            _search.configureTimePerMove(Duration.ofMillis(go.movetime));
+        } else if (time > 0) {
+            _search.configureRemainingTime(Duration.ofMillis(time), Duration.ofMillis(inc),
+                    go.movestogo, go.depth);
+        } else if (go.depth > 0) {
+            _search.configureIterativeDepth(go.depth);
+        } else if (go.nodes > 0) {
+            _search.configureNodesLimit(go.nodes);
+        } else {
+            _search.configurePondering();
+        }
+    }
+
+    /**
+     * Stops a running search. Sends the bestmove of the search or a held back result.
+     */
+    private void stopSearch() {
+        final List<String> pending;
+        synchronized (_lock) {
+            _holdBestMove = false;
+            _ponderGo = null;
+            pending = _pendingResult;
+            _pendingResult = null;
+        }
+        if (pending != null) pending.forEach(this::send);
+        // search sends its result through the callback when stopped
+        if (_search != null) _search.stop();
+    }
+
+    /**
+     * The opponent played the expected move - continue the ponder search with the
+     * time control of the go command.
+     */
+    private void ponderHit() {
+        final List<String> pending;
+        synchronized (_lock) {
+            if (_ponderGo == null) return;
+            final GoCommand go = _ponderGo;
+            _ponderGo = null;
+            _holdBestMove = false;
+            pending = _pendingResult;
+            _pendingResult = null;
+            if (pending == null) {
+                configureSearch(go, false);
+                _search.ponderHit();
+            }
+        }
+        // search already finished while pondering
+        if (pending != null) pending.forEach(this::send);
+    }
+
+    /**
+     * Called from the search thread when the search has a result.
+     */
+    private void onSearchResult(SearchResult searchResult) {
+        final List<String> result = getResultLines(searchResult);
+        synchronized (_lock) {
+            if (_infoTask != null) {
+                _infoTask.cancel(false);
+                _infoTask = null;
+            }
+            if (_holdBestMove) {
+                _pendingResult = result;
+                return;
+            }
+        }
+        result.forEach(this::send);
+    }
+
+    /**
+     * @return the final info line and the bestmove line for a search result
+     */
+    private List<String> getResultLines(SearchResult result) {
+        final long time = Duration.between(_search._startTime, Instant.now()).toMillis();
+        final long nodes = _search.getNodesVisited();
+        final StringBuilder info = new StringBuilder("info depth ").append(result.depth);
+        appendScore(info, result.resultValue);
+        info.append(" nodes ").append(nodes)
+        .append(" nps ").append(nodes * 1000L / (time + 1))
+        .append(" time ").append(time);
+        appendPV(info);
+
+        final StringBuilder bestmove = new StringBuilder("bestmove ").append(OmegaMove.toUCINotation(result.bestMove));
+        if (_ponder && result.bestMove != OmegaMove.NOMOVE && result.ponderMove != OmegaMove.NOMOVE) {
+            bestmove.append(" ponder ").append(OmegaMove.toUCINotation(result.ponderMove));
+        }
+        return Arrays.asList(info.toString(), bestmove.toString());
+    }
+
+    /**
+     * Sends the current state of the running search - called by the info timer.
+     */
+    private void sendInfo() {
+        final OmegaSearch search = _search;
+        if (search == null || !search.isSearching() || search._currentIterationDepth == 0) return;
+        final long time = Duration.between(search._startTime, Instant.now()).toMillis();
+        final long nodes = search.getNodesVisited();
+        final StringBuilder info = new StringBuilder("info depth ").append(search._currentIterationDepth)
+                .append(" seldepth ").append(Math.max(search._currentIterationDepth, search._currentExtraSearchDepth));
+        appendScore(info, search._currentBestRootValue);
+        info.append(" nodes ").append(nodes)
+        .append(" nps ").append(nodes * 1000L / (time + 1))
+        .append(" time ").append(time);
+        if (OmegaMove.isValid(search._currentRootMove)) {
+            info.append(" currmove ").append(OmegaMove.toUCINotation(search._currentRootMove))
+            .append(" currmovenumber ").append(search._currentRootMoveNumber);
+        }
+        appendPV(info);
+        send(info.toString());
+    }
+
+    private static void appendScore(StringBuilder info, int value) {
+        if (value == OmegaEvaluation.Value.NOVALUE) return;
+        info.append(" score ").append(scoreToUCI(value));
+    }
+
+    /**
+     * @param value value of the search from the view of the side to move
+     * @return <code>cp x</code> or <code>mate y</code> (moves - negative if the engine is mated)
+     */
+    static String scoreToUCI(int value) {
+        final int plies = OmegaEvaluation.Value.CHECKMATE - Math.abs(value);
+        if (plies <= OmegaSearch.MAX_SEARCH_DEPTH) {
+            final int moves = (plies + 1) / 2;
+            return "mate " + (value > 0 ? moves : -moves);
+        }
+        return "cp " + value;
+    }
+
+    private void appendPV(StringBuilder info) {
+        int[] pv;
+        try {
+            // the search changes the pv concurrently
+            pv = _search._principalVariation[0].toArray();
+        } catch (RuntimeException e) {
+            return;
+        }
+        if (pv.length == 0 || pv[0] == OmegaMove.NOMOVE) return;
+        info.append(" pv");
+        for (int move : pv) {
+            if (move == OmegaMove.NOMOVE) break;
+            info.append(' ').append(OmegaMove.toUCINotation(move));
+        }
+    }
+
+    private void send(String s) {
+        synchronized (_out) {
+            _out.println(s);
+            _out.flush();
+        }
+    }
+
+    private boolean getFlag(Field flag) {
+        try {
+            return flag.getBoolean(_engine._CONFIGURATION);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void setFlag(Field flag, boolean value) {
+        try {
+            flag.setBoolean(_engine._CONFIGURATION, value);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the <code>_USE_...</code> flags of OmegaConfiguration by option name
+     */
+    private static Map<String, Field> getFlagOptions() {
+        final List<String> excluded = Arrays.asList("_USE_BOOK", "_USE_PONDERER");
+        final Map<String, Field> flags = new LinkedHashMap<>();
+        for (Field f : OmegaConfiguration.class.getDeclaredFields()) {
+            if (Modifier.isStatic(f.getModifiers()) || f.getType() != boolean.class) continue;
+            if (!f.getName().startsWith("_USE_") || excluded.contains(f.getName())) continue;
+            flags.put(f.getName().substring(1), f);
+        }
+        return flags;
+    }
+
+    /**
+     * The parameters of a <code>go</code> command. Times are in ms.
+     */
+    static final class GoCommand {
+        long wtime = 0, btime = 0, winc = 0, binc = 0, movetime = 0, nodes = 0;
+        int movestogo = 0, depth = 0;
+        boolean ponder = false, infinite = false;
+
+        static GoCommand parse(String[] tokens) {
+            final GoCommand go = new GoCommand();
+            for (int i = 1; i < tokens.length; i++) {
+                try {
+                    switch (tokens[i]) {
+                        case "wtime": go.wtime = Long.parseLong(tokens[++i]); break;
+                        case "btime": go.btime = Long.parseLong(tokens[++i]); break;
+                        case "winc": go.winc = Long.parseLong(tokens[++i]); break;
+                        case "binc": go.binc = Long.parseLong(tokens[++i]); break;
+                        case "movestogo": go.movestogo = Integer.parseInt(tokens[++i]); break;
+                        case "depth": go.depth = Integer.parseInt(tokens[++i]); break;
+                        case "nodes": go.nodes = Long.parseLong(tokens[++i]); break;
+                        case "movetime": go.movetime = Long.parseLong(tokens[++i]); break;
+                        case "ponder": go.ponder = true; break;
+                        case "infinite": go.infinite = true; break;
+                        default: // e.g. searchmoves or mate - not supported
+                    }
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    // ignore invalid values
+                }
+            }
+            // time can be negative in some GUIs when the clock ran out
+            go.wtime = Math.max(go.wtime, 0);
+            go.btime = Math.max(go.btime, 0);
+            go.movestogo = Math.max(go.movestogo, 0);
+            return go;
+        }
+    }
+
+    /**
+     * Starts the UCI loop on stdin/stdout.
+     *
+     * @param args not used
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        final OmegaUCI uci = new OmegaUCI(System.out);
+        uci.loop(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.player.computer.Omega;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Connection of a coordinator to an {@link OmegaDistributedWorker}. A connection is used by
+ * one thread at a time. It is closed when the worker fails and stays closed.
+ */
+final class OmegaWorkerConnection {
+
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+
+    final InetSocketAddress address;
+    private final Socket _socket;
+    private final BufferedReader _in;
+    private final PrintWriter _out;
+
+    volatile boolean alive = true;
+    // number of answered requests
+    volatile int requests = 0;
+
+    OmegaWorkerConnection(InetSocketAddress address) throws IOException {
+        this.address = address;
+        _socket = new Socket();
+        _socket.connect(address, CONNECT_TIMEOUT_MS);
+        _in = new BufferedReader(new InputStreamReader(_socket.getInputStream(), StandardCharsets.UTF_8));
+        _out = new PrintWriter(new OutputStreamWriter(_socket.getOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Connects to the given workers. Workers which can't be reached are skipped.
+     *
+     * @param workers
+     * @return the connections
+     * @throws IOException if no worker can be reached
+     */
+    static List<OmegaWorkerConnection> connect(List<InetSocketAddress> workers) throws IOException {
+        final List<OmegaWorkerConnection> connections = new ArrayList<>(workers.size());
+        for (InetSocketAddress address : workers) {
+            try {
+                connections.add(new OmegaWorkerConnection(address));
+            } catch (IOException e) {
+                System.err.println("Could not connect to worker " + address + ": " + e.getMessage());
+            }
+        }
+        if (connections.isEmpty()) throw new IOException("No worker reachable");
+        return connections;
+    }
+
+    /**
+     * Parses a comma separated list of <code>host[:port]</code>.
+     *
+     * @param workers
+     * @return the addresses
+     */
+    static List<InetSocketAddress> parseAddresses(String workers) {
+        final List<InetSocketAddress> addresses = new ArrayList<>();
+        for (String worker : workers.split(",")) {
+            final int colon = worker.lastIndexOf(':');
+            addresses.add(colon < 0
+                    ? new InetSocketAddress(worker.trim(), OmegaDistributedWorker.DEFAULT_PORT)
+                    : new InetSocketAddress(worker.substring(0, colon).trim(),
+                            Integer.parseInt(worker.substring(colon + 1).trim())));
+        }
+        return addresses;
+    }
+
+    /**
+     * Sends a command and waits for the answer.
+     *
+     * @param command
+     * @return the answer of the worker
+     * @throws IOException if the worker failed or answered with an error
+     */
+    String request(String command) throws IOException {
+        _out.println(command);
+        _out.flush();
+        if (_out.checkError()) throw new IOException("Could not send to worker");
+        final String answer = _in.readLine();
+        if (answer == null) throw new IOException("Connection closed by worker");
+        if (answer.startsWith("error")) throw new IOException("Worker answered " + answer);
+        requests++;
+        return answer;
+    }
+
+    /**
+     * Ends the session with the worker and closes the connection.
+     */
+    void quit() {
+        if (alive) {
+            _out.println("quit");
+            _out.flush();
+        }
+        close();
+    }
+
+    /**
+     * Closes the connection without ending the session.
+     */
+    void close() {
+        alive = false;
+        try {
+            _socket.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+}
@@ -307,6 +307,24 @@ final class Move {
 
     }
 
+    /**
+     * Returns the move in UCI notation (e.g. e2e4, e7e8q).
+     * @param move
+     * @return string representing the move
+     */
+    static String toUCINotation(int move) {
+
+        if (move == Move.NOMOVE)
+            return "0000";
+
+        String s = Square.toString(Move.getOriginSquare(move))
+                + Square.toString(Move.getTargetSquare(move));
+        if (Move.getType(move) == MoveType.PAWNPROMOTION) {
+            s += PieceType.toChar(Move.getPromotion(move)).toLowerCase();
+        }
+        return s;
+    }
+
     /**
      * Returns a string showing the move.
      * @param move
@@ -31,6 +31,8 @@
  */
 package fko.chessly.player.computer.PulseEngine;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import fko.chessly.game.GameBoard;
@@ -251,7 +253,7 @@ import fko.chessly.game.GameBoardImpl;
  * @author Frank
  *
  */
-final class Perft {
+public final class Perft {
 
     private static final int MAX_DEPTH = 4;
 
@@ -301,6 +303,56 @@ final class Perft {
         System.out.format("Nodes: %d checks=%d mates=%d captures=%d enpassant=%d castlings=%d %n", result, checks, mates, captures, enpassant, castles);
     }
 
+    /**
+     * Perft divide - the number of leaf nodes for each legal move of the root position.
+     * Moves are given in UCI notation (e.g. e7e8q). Uses bulk counting and prints nothing
+     * so the result can be compared to other move generators.
+     *
+     * @param fen
+     * @param depth
+     * @return map of root move to number of leaf nodes in the order of generation
+     */
+    public static Map<String, Long> divide(String fen, int depth) {
+        if (depth < 1) throw new IllegalArgumentException("depth must be >= 1");
+
+        final Board board = new Board(new GameBoardImpl(fen));
+        final MoveGenerator[] generators = new MoveGenerator[depth + 1];
+        for (int i = 0; i < generators.length; ++i) {
+            generators[i] = new MoveGenerator();
+        }
+
+        final Map<String, Long> result = new LinkedHashMap<>();
+        MoveList moves = generators[0].getLegalMoves(board, depth, board.isCheck());
+        for (int i = 0; i < moves.size; ++i) {
+            int move = moves.entries[i].move;
+            board.makeMove(move);
+            long nodes = bulkCount(depth - 1, board, 1, generators);
+            board.undoMove();
+            result.put(Move.toUCINotation(move), nodes);
+        }
+        return result;
+    }
+
+    private static long bulkCount(int depth, Board board, int ply, MoveGenerator[] generators) {
+
+        if (depth == 0) return 1;
+
+        // no need to make the leaf moves
+        if (depth == 1) return generators[ply].getLegalMoves(board, depth, board.isCheck()).size;
+
+        long totalNodes = 0;
+        MoveList moves = generators[ply].getPseudoLegalMoves(board, depth, board.isCheck());
+        for (int i = 0; i < moves.size; ++i) {
+            int move = moves.entries[i].move;
+            board.makeMove(move);
+            if (!board.isAttacked(Bitboard.next(board.kings[Color.opposite(board.activeColor)].squares), board.activeColor)) {
+                totalNodes += bulkCount(depth-1, board, ply+1, generators);
+            }
+            board.undoMove();
+        }
+        return totalNodes;
+    }
+
     private long miniMax(int depth, Board board, int ply) {
 
         if (depth == 0) {
@@ -112,6 +112,9 @@ public class PulseEngine_v2 extends ModelObservable implements ObservableEngine
      */
     public Configuration _config = new Configuration();
 
+    // the game pause state is only polled every (CHECKPOINT_MASK+1) nodes
+    private static final long CHECKPOINT_MASK = 0x3FF;
+
     /** Will store the VERBOSE info until the EngineWatcher collects it. */
     private static final int _engineInfoTextMaxSize = 10000;
     private final StringBuilder _engineInfoText = new StringBuilder(_engineInfoTextMaxSize);
@@ -960,8 +963,8 @@ public class PulseEngine_v2 extends ModelObservable implements ObservableEngine
             _boardsCacheMiss.getAndIncrement();
         }
 
-        // Check for game paused
-        _game.waitWhileGamePaused();
+        // Check for game paused - only polled every (CHECKPOINT_MASK+1) nodes
+        if ((_nodesVisited.get() & CHECKPOINT_MASK) == 0) _game.pauseCheckpoint();
 
         MoveList moves = null;
 
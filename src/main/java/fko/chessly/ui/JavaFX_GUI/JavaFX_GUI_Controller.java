@@ -1176,6 +1176,8 @@ public class JavaFX_GUI_Controller implements Observer {
                 printToInfoln("Out of time!");
             } else if (game.getGameOverCause() == Game.GAMEOVER_ONE_PLAYER_HAS_RESIGNED) {
                 printToInfoln("Resign!");
+            } else if (game.getGameOverCause() == Game.GAMEOVER_DRAW_ADJUDICATED) {
+                printToInfoln("Draw adjudicated!");
             } else {
                 Chessly.fatalError(this.getClass().toString() + "Game Over without a valid reason!"+game.getGameOverCause());
             }
@@ -35,7 +35,6 @@ package fko.chessly.util;
 import java.text.NumberFormat;
 import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -561,7 +560,7 @@ public class CmdLineParser {
         }
 
         this.remainingArgs = new String[otherArgs.size()];
-        otherArgs.addAll(Arrays.asList(remainingArgs));
+        otherArgs.toArray(remainingArgs);
     }
 
 
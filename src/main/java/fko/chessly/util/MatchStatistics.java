@@ -0,0 +1,224 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.util;
+
+import java.util.Locale;
+
+/**
+ * <p>Statistics of an engine vs. engine match from the view of the first engine.</p>
+ *
+ * Calculates the Elo difference with a 95% confidence interval, the likelihood of
+ * superiority (LOS) and the log likelihood ratio (LLR) of a sequential probability ratio
+ * test (SPRT) for the hypotheses H0: elo = elo0 and H1: elo = elo1.<br>
+ * The SPRT uses the normal approximation of the trinomial (win/draw/loss) score
+ * distribution. A match can be stopped as soon as the LLR leaves the bounds
+ * <code>[ln(beta/(1-alpha)), ln((1-beta)/alpha)]</code>.
+ *
+ * <strong>This class is not thread safe (synchronized)</strong>
+ */
+public class MatchStatistics {
+
+    /** quantile of the normal distribution for a 95% confidence interval */
+    private static final double Z_95 = 1.959963984540054;
+
+    /** result of the SPRT */
+    public enum SPRTResult {
+        /** no decision yet */
+        CONTINUE,
+        /** H0 accepted - the first engine is not stronger by elo1 */
+        H0,
+        /** H1 accepted - the first engine is stronger by at least elo1 */
+        H1
+    }
+
+    private final double _elo0;
+    private final double _elo1;
+    private final double _lowerBound;
+    private final double _upperBound;
+
+    private int _wins = 0;
+    private int _draws = 0;
+    private int _losses = 0;
+
+    /**
+     * Creates statistics with a SPRT for the given hypotheses and error probabilities.
+     *
+     * @param elo0 Elo difference of H0
+     * @param elo1 Elo difference of H1 - must be greater than elo0
+     * @param alpha probability of a false positive (accepting H1 when H0 is true)
+     * @param beta probability of a false negative (accepting H0 when H1 is true)
+     */
+    public MatchStatistics(double elo0, double elo1, double alpha, double beta) {
+        if (elo1 <= elo0) throw new IllegalArgumentException("elo1 must be greater than elo0");
+        if (alpha <= 0 || alpha >= 1 || beta <= 0 || beta >= 1)
+            throw new IllegalArgumentException("alpha and beta must be in (0, 1)");
+        _elo0 = elo0;
+        _elo1 = elo1;
+        _lowerBound = Math.log(beta / (1 - alpha));
+        _upperBound = Math.log((1 - beta) / alpha);
+    }
+
+    /**
+     * Adds the result of one game.
+     *
+     * @param score 1 for a win, 0.5 for a draw and 0 for a loss of the first engine
+     */
+    public void add(double score) {
+        if (score == 1) _wins++;
+        else if (score == 0.5) _draws++;
+        else if (score == 0) _losses++;
+        else throw new IllegalArgumentException("score must be 1, 0.5 or 0. Was " + score);
+    }
+
+    /** @return number of games */
+    public int getGames() {
+        return _wins + _draws + _losses;
+    }
+
+    /** @return wins of the first engine */
+    public int getWins() {
+        return _wins;
+    }
+
+    /** @return draws */
+    public int getDraws() {
+        return _draws;
+    }
+
+    /** @return losses of the first engine */
+    public int getLosses() {
+        return _losses;
+    }
+
+    /** @return points of the first engine */
+    public double getPoints() {
+        return _wins + _draws / 2.0;
+    }
+
+    /** @return score of the first engine in [0, 1] - 0.5 if there are no games */
+    public double getScore() {
+        return getGames() == 0 ? 0.5 : getPoints() / getGames();
+    }
+
+    /** @return Elo difference between the first and the second engine */
+    public double getElo() {
+        return scoreToElo(getScore());
+    }
+
+    /**
+     * @return half the width of the 95% confidence interval of the Elo difference - infinite
+     * while there are too few games or only wins or only losses
+     */
+    public double getEloError() {
+        final double stdDev = Math.sqrt(getScoreVariance() / getGames());
+        if (getGames() < 2 || stdDev == 0) return Double.POSITIVE_INFINITY;
+        final double high = scoreToElo(getScore() + Z_95 * stdDev);
+        final double low = scoreToElo(getScore() - Z_95 * stdDev);
+        return (high - low) / 2;
+    }
+
+    /** @return likelihood of superiority of the first engine in [0, 1] - draws are ignored */
+    public double getLOS() {
+        final int decisive = _wins + _losses;
+        if (decisive == 0) return 0.5;
+        return 0.5 * (1 + erf((_wins - _losses) / Math.sqrt(2.0 * decisive)));
+    }
+
+    /** @return log likelihood ratio of H1 vs. H0 - 0 while there are too few games */
+    public double getLLR() {
+        final double variance = getScoreVariance();
+        if (getGames() < 2 || variance == 0) return 0;
+        final double s0 = eloToScore(_elo0);
+        final double s1 = eloToScore(_elo1);
+        return (s1 - s0) * (2 * getScore() - s0 - s1) / (2 * variance / getGames());
+    }
+
+    /** @return lower LLR bound - H0 is accepted below */
+    public double getLowerBound() {
+        return _lowerBound;
+    }
+
+    /** @return upper LLR bound - H1 is accepted above */
+    public double getUpperBound() {
+        return _upperBound;
+    }
+
+    /** @return the current result of the SPRT */
+    public SPRTResult getSPRTResult() {
+        final double llr = getLLR();
+        if (llr >= _upperBound) return SPRTResult.H1;
+        if (llr <= _lowerBound) return SPRTResult.H0;
+        return SPRTResult.CONTINUE;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "+%d =%d -%d  Elo: %.1f +/- %.1f  LOS: %.1f%%  LLR: %.2f [%.2f, %.2f]",
+                _wins, _draws, _losses, getElo(), getEloError(), getLOS() * 100,
+                getLLR(), _lowerBound, _upperBound);
+    }
+
+    // variance of the result of a single game
+    private double getScoreVariance() {
+        if (getGames() == 0) return 0;
+        final double s = getScore();
+        return (_wins * (1 - s) * (1 - s) + _draws * (0.5 - s) * (0.5 - s) + _losses * s * s) / getGames();
+    }
+
+    /**
+     * @param score in [0, 1]
+     * @return Elo difference for the score - infinite for 0 and 1
+     */
+    public static double scoreToElo(double score) {
+        if (score <= 0) return Double.NEGATIVE_INFINITY;
+        if (score >= 1) return Double.POSITIVE_INFINITY;
+        return -400 * Math.log10(1 / score - 1) + 0.0; // avoid -0.0
+    }
+
+    /**
+     * @param elo Elo difference
+     * @return expected score
+     */
+    public static double eloToScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    /**
+     * Error function (Abramowitz and Stegun 7.1.26 - maximal error 1.5e-7).
+     *
+     * @param x
+     * @return erf(x)
+     */
+    static double erf(double x) {
+        final double t = 1 / (1 + 0.3275911 * Math.abs(x));
+        final double y = 1 - t * (0.254829592 + t * (-0.284496736 + t * (1.421413741
+                + t * (-1.453152027 + t * 1.061405429)))) * Math.exp(-x * x);
+        return x >= 0 ? y : -y;
+    }
+}
@@ -239,10 +239,15 @@ public class StatusController {
 
     /**
      * Waits in a certain state
+     * <p>
+     * If the object is not in the given state this returns immediately after a single
+     * volatile read without taking any lock.
      *
      * @param waitingState
      */
     public void waitWhileInState(int waitingState) {
+        // fast path - no locking when we are not in the waiting state
+        if (waitingState != state.get()) return;
         while (waitingState == state.get()) {
             try {
                 synchronized (_stateWatchLock) {
@@ -259,6 +264,20 @@ public class StatusController {
         }
     }
 
+    /**
+     * Cheap check point for hot loops (e.g. a search polling every N nodes).<br>
+     * Returns immediately without locking if the object is not in the waiting state.
+     * Otherwise blocks until the state changes like <code>waitWhileInState()</code>.
+     *
+     * @param waitingState
+     * @return true if the caller had to wait, false otherwise
+     */
+    public boolean checkpoint(int waitingState) {
+        if (waitingState != state.get()) return false;
+        waitWhileInState(waitingState);
+        return true;
+    }
+
     /**
      * If transition check is turned on every transition via <code>setState(int state)</code>
      * will be checked by calling the <code>checkTransition</code> method. <br>
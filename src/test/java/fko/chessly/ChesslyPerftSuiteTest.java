@@ -0,0 +1,110 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import fko.chessly.ChesslyPerftSuite.PerftEntry;
+import fko.chessly.ChesslyPerftSuite.PerftGenerator;
+import fko.chessly.ChesslyPerftSuite.PerftResult;
+import fko.chessly.player.computer.Omega.OmegaPERFT;
+
+/** @author Frank */
+public class ChesslyPerftSuiteTest {
+
+  @Test
+  public void testParseEPDLine() {
+    PerftEntry entry =
+        ChesslyPerftSuite.parseEPDLine(
+            "8/8/1k6/2b5/2pP4/8/5K2/8 b - d3 ;D1 15 ;D6 1440467 ;id \"ep check\"");
+    assertEquals("8/8/1k6/2b5/2pP4/8/5K2/8 b - d3 0 1", entry.fen);
+    assertEquals("ep check", entry.id);
+    assertEquals(15, entry.expected[1]);
+    assertEquals(-1, entry.expected[2]);
+    assertEquals(1440467, entry.expected[6]);
+
+    assertNull(ChesslyPerftSuite.parseEPDLine("# no position"));
+  }
+
+  @Test
+  public void testDepths() {
+    ChesslyPerftSuite suite = new ChesslyPerftSuite(4, 1);
+    PerftEntry low = ChesslyPerftSuite.parseEPDLine("8/8/8/8/8/8/8/K6k w - - ;D1 3 ;D2 9 ;D5 100");
+    PerftEntry high = ChesslyPerftSuite.parseEPDLine("8/8/8/8/8/8/8/K6k w - - ;D6 1000 ;D7 5000");
+    assertEquals(Arrays.asList(1, 2), suite.getDepths(low));
+    // only counts above the maximal depth - the lowest one is run
+    assertEquals(Arrays.asList(6), suite.getDepths(high));
+    assertEquals(1 + 1, suite.countSkipped(Arrays.asList(low, high)));
+  }
+
+  @Test
+  public void testSuite() throws IOException {
+    List<PerftEntry> entries =
+        ChesslyPerftSuite.readEPDFile(Paths.get(ChesslyPerftSuite.DEFAULT_FILE));
+    assertTrue(entries.size() > 0);
+
+    List<PerftResult> results = new ChesslyPerftSuite(2, 2).run(entries);
+    assertEquals(0, ChesslyPerftSuite.printResults("perftsuite", results));
+  }
+
+  @Test
+  public void testMismatch() {
+    Map<String, PerftGenerator> generators = new LinkedHashMap<>();
+    generators.put("Omega", (fen, depth) -> new OmegaPERFT(fen).divide(depth));
+    // drops the first root move
+    generators.put(
+        "Broken",
+        (fen, depth) -> {
+          Map<String, Long> divide = new OmegaPERFT(fen).divide(depth);
+          divide.remove(divide.keySet().iterator().next());
+          return divide;
+        });
+
+    List<PerftResult> results =
+        new ChesslyPerftSuite(2, 1, generators)
+            .run(
+                Collections.singletonList(
+                    ChesslyPerftSuite.parseEPDLine(
+                        "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - ;D2 400")));
+    assertEquals(2, results.size());
+    assertTrue(results.get(0).isCorrect());
+    assertEquals(1, ChesslyPerftSuite.printResults("broken", results));
+  }
+}
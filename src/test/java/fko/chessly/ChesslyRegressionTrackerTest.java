@@ -0,0 +1,102 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import fko.chessly.ChesslyRegressionTracker.DepthResult;
+
+/** @author Frank */
+public class ChesslyRegressionTrackerTest {
+
+  @Test
+  public void testMeasure() {
+    List<DepthResult> results =
+        ChesslyRegressionTracker.measure(
+            Arrays.asList(ChesslyBench.BENCH_POSITIONS[0], ChesslyBench.BENCH_POSITIONS[1]), 3, 1);
+
+    assertEquals(3, results.size());
+    for (int i = 0; i < results.size(); i++) {
+      assertEquals(i + 1, results.get(i).depth);
+      assertEquals(2, results.get(i).positions);
+      assertTrue(results.get(i).nodes > 0);
+    }
+    assertTrue(results.get(2).nodes > results.get(1).nodes);
+    assertTrue(results.get(2).ebf > 1d);
+    assertEquals(0d, results.get(0).ebf);
+  }
+
+  @Test
+  public void testCompareAndCSV() throws IOException {
+    DepthResult base = DepthResult.fromCSV("t0,base,4,40,1000,500000,500000,5.0000,0.1000");
+
+    // same values - no regressions
+    assertTrue(ChesslyRegressionTracker.compare(Arrays.asList(base), Arrays.asList(base), 10).isEmpty());
+
+    // slower but within threshold
+    DepthResult current = DepthResult.fromCSV("t1,cur,4,40,1050,500000,476190,5.0000,0.1000");
+    assertTrue(
+        ChesslyRegressionTracker.compare(Arrays.asList(base), Arrays.asList(current), 10).isEmpty());
+
+    // slower, worse ebf and hit rate beyond threshold
+    current = DepthResult.fromCSV("t1,cur,4,40,1200,500000,416666,5.6000,0.0800");
+    assertEquals(
+        4, ChesslyRegressionTracker.compare(Arrays.asList(base), Arrays.asList(current), 10).size());
+
+    // history keeps all runs - reading returns the last run
+    Path file = Files.createTempFile("bench_history", ".csv");
+    try {
+      Files.delete(file);
+      ChesslyRegressionTracker.appendCSV(file, "t0", "base", Arrays.asList(base), true);
+      ChesslyRegressionTracker.appendCSV(file, "t1", "cur", Arrays.asList(current), true);
+      assertEquals(1 + 2, Files.readAllLines(file).size());
+      List<DepthResult> read = ChesslyRegressionTracker.readCSV(file);
+      assertEquals(1, read.size());
+      assertEquals(1200, read.get(0).getTimeToDepthMs());
+      assertEquals(5.6d, read.get(0).ebf, 0.0001);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  public void testNpsLargeNodeCount() {
+    // nodes * 10^9 would overflow long from about 9.2 billion nodes
+    DepthResult r = DepthResult.fromCSV("t0,base,12,40,100000,20000000000,0,5.0000,0.1000");
+    assertEquals(200_000_000L, r.getNps(), 1);
+  }
+}
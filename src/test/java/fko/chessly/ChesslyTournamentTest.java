@@ -0,0 +1,131 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import fko.chessly.ChesslyTournament.GameResult;
+import fko.chessly.ChesslyTournament.Opening;
+import fko.chessly.game.Game;
+import fko.chessly.game.GameBoardImpl;
+import fko.chessly.util.MatchStatistics;
+
+/** @author Frank */
+public class ChesslyTournamentTest {
+
+  @Test
+  public void testReadOpenings() throws IOException {
+    List<Opening> openings = ChesslyTournament.readOpenings("nunn");
+    assertFalse(openings.isEmpty());
+    for (Opening o : openings) {
+      assertTrue(o.name.startsWith("Nunn_Openings"));
+      // must be a valid position which is not over yet
+      assertFalse(new GameBoardImpl(o.fen).isGameOver());
+    }
+  }
+
+  @Test
+  public void testParseOpenings() {
+    List<String> lines =
+        Arrays.asList(
+            "[Event \"?\"]",
+            "[Result \"*\"]",
+            "",
+            "1. e4 c5 2. Nf3 d6 3. d4 cxd4 4. Nxd4 Nf6 5. Nc3 a6 *",
+            "");
+    List<Opening> openings = ChesslyTournament.parseOpenings("test.pgn", lines);
+    assertEquals(1, openings.size());
+    assertEquals("test 1", openings.get(0).name);
+    assertEquals(
+        "rnbqkb1r/1p2pppp/p2p1n2/8/3NP3/2N5/PPP2PPP/R1BQKB1R w KQkq - 0 6", openings.get(0).fen);
+  }
+
+  @Test
+  public void testRun() throws IOException {
+    Path results = Files.createTempFile("tournament", ".csv");
+    Files.delete(results);
+
+    // white mates in one - both engines should win with white
+    Opening mateInOne = new Opening("mate", "6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+    ChesslyTournament tournament =
+        new ChesslyTournament(
+            ChesslyTournament.DEFAULT_ENGINE, ChesslyTournament.DEFAULT_ENGINE, 10000, 2, results);
+    List<GameResult> games = tournament.run(Collections.singletonList(mateInOne), 1);
+
+    assertEquals(2, games.size());
+    assertEquals(games.get(0).white, games.get(1).black);
+    for (GameResult g : games) {
+      assertEquals("1-0", g.result);
+      assertEquals("checkmate", g.termination);
+      assertEquals(1, g.plies);
+      assertEquals("a1a8", g.moves);
+    }
+    assertEquals(1.0, games.get(0).getScore(games.get(0).white));
+    assertEquals(0.0, games.get(1).getScore(games.get(0).white));
+
+    List<String> lines = Files.readAllLines(results, StandardCharsets.UTF_8);
+    assertEquals(3, lines.size());
+    assertEquals(ChesslyTournament.CSV_HEADER, lines.get(0));
+    Files.delete(results);
+  }
+
+  @Test
+  public void testSPRTStop() throws IOException {
+    Opening mateInOne = new Opening("mate", "6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+    ChesslyTournament tournament =
+        new ChesslyTournament(
+            ChesslyTournament.DEFAULT_ENGINE, ChesslyTournament.DEFAULT_ENGINE, 10000, 1, null);
+    // each pair is 1:1 - with very loose bounds H0 is accepted after the first pair
+    tournament.setSPRT(0, 400, 0.45, 0.45);
+    List<GameResult> games = tournament.run(Collections.singletonList(mateInOne), 3);
+
+    assertEquals(2, games.size());
+    assertEquals(2, tournament.getStatistics().getGames());
+    assertEquals(MatchStatistics.SPRTResult.H0, tournament.getStatistics().getSPRTResult());
+  }
+
+  @Test
+  public void testResultString() {
+    assertEquals("1-0", ChesslyTournament.getResultString(Game.WINNER_WHITE));
+    assertEquals("0-1", ChesslyTournament.getResultString(Game.WINNER_BLACK));
+    assertEquals("1/2-1/2", ChesslyTournament.getResultString(Game.WINNER_DRAW));
+    assertEquals("*", ChesslyTournament.getResultString(Game.WINNER_NONE_YET));
+  }
+}
@@ -6,6 +6,7 @@ package fko.chessly.game;
 
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -51,6 +52,31 @@ public class Chessly_PERFT_Test {
         System.out.println("==============================");
     }
 
+    /**
+     * Hashed Perft Test - only leaf nodes are counted
+     * https://chessprogramming.wikispaces.com/Perft+Results
+     */
+    @Test
+    public void testHashedPerft() {
+
+        System.out.println("Hashed PERFT Test");
+        System.out.println("==============================");
+
+        long[] results = { 1, 20, 400, 8902, 197281, 4865609 };
+
+        Chessly_PERFT perftTest = new Chessly_PERFT();
+
+        for (int i=1;i<results.length;i++) {
+            assertEquals(results[i], perftTest.perft(i));
+        }
+
+        // castling and en passant change the hash key
+        perftTest = new Chessly_PERFT("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -");
+        assertEquals(97862, perftTest.perft(3));
+        assertEquals(4085603, perftTest.perft(4));
+        System.out.println("==============================");
+    }
+
     /**
      * Perft Test
      * https://chessprogramming.wikispaces.com/Perft+Results
@@ -0,0 +1,92 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Frank Kopp
+ */
+public class GameAdjudicationTest {
+
+    private static final String[] KNIGHT_MOVES = { "g1f3", "g8f6", "f3g1", "f6g8" };
+
+    /**
+     * Plays knight moves from the start position and stores the given values
+     * (from the view of the side to move) in the moves.
+     */
+    private static GameBoard play(int whiteValue, int blackValue, int plies) throws InvalidMoveException {
+        GameBoard board = new GameBoardImpl();
+        for (int i = 0; i < plies; i++) {
+            GameMove move = NotationHelper.createNewMoveFromSimpleNotation(board, KNIGHT_MOVES[i % 4]);
+            move.setValue(i % 2 == 0 ? whiteValue : blackValue);
+            board.makeMove(move);
+        }
+        return board;
+    }
+
+    @Test
+    public void testResign() throws InvalidMoveException {
+        GameAdjudication adjudication = new GameAdjudication(500, 3, 10, 0, 0);
+
+        // white is winning and black agrees
+        assertEquals(Game.WINNER_WHITE, adjudication.adjudicate(play(600, -600, 6)));
+        // black is winning and white agrees
+        assertEquals(Game.WINNER_BLACK, adjudication.adjudicate(play(-600, 600, 6)));
+        // not enough moves
+        assertEquals(Game.WINNER_NONE_YET, adjudication.adjudicate(play(600, -600, 5)));
+        // black does not agree
+        assertEquals(Game.WINNER_NONE_YET, adjudication.adjudicate(play(600, -400, 6)));
+        // both think they are winning
+        assertEquals(Game.WINNER_NONE_YET, adjudication.adjudicate(play(600, 600, 6)));
+    }
+
+    @Test
+    public void testDraw() throws InvalidMoveException {
+        GameAdjudication adjudication = new GameAdjudication(500, 0, 10, 2, 0);
+        assertEquals(Game.WINNER_DRAW, adjudication.adjudicate(play(5, -10, 4)));
+        assertEquals(Game.WINNER_NONE_YET, adjudication.adjudicate(play(5, 20, 4)));
+        assertEquals(Game.WINNER_NONE_YET, adjudication.adjudicate(play(5, 5, 3)));
+
+        // only after move 10
+        adjudication = new GameAdjudication(500, 0, 10, 2, 10);
+        assertEquals(Game.WINNER_NONE_YET, adjudication.adjudicate(play(0, 0, 16)));
+        assertEquals(Game.WINNER_DRAW, adjudication.adjudicate(play(0, 0, 20)));
+    }
+
+    @Test
+    public void testUnknownValues() throws InvalidMoveException {
+        GameAdjudication adjudication = new GameAdjudication();
+        assertEquals(Game.WINNER_NONE_YET,
+                adjudication.adjudicate(play(GameMove.VALUE_UNKNOWN, GameMove.VALUE_UNKNOWN, 100)));
+        assertThrows(IllegalArgumentException.class, () -> new GameAdjudication(-1, 3, 10, 8, 40));
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.openingbook;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import fko.chessly.Chessly;
+import fko.chessly.openingbook.PGN_Reader.pgnGame;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** @author fkopp */
+public class PGN_StreamReader_Test {
+
+  private static final String PGN =
+      "[Event \"Test \\\"quoted\\\"\"]\n"
+          + "[White \"A\"][Black \"B\"]\n"
+          + "\n"
+          + "{Start} 1.e4 e5!? 2. Nf3 $1 (2. f4 {King's (gambit)} exf4 (2... d5) 3. Nf3) 2... Nc6\n"
+          + "% escape line 1-0\n"
+          + "3Bb5 a6 ; end of line comment\n"
+          + "4.0-0 d5!!5.exd5 <reserved> 1-0\n"
+          + "\n"
+          + "[Event \"No result\"]\n"
+          + "1. d4 d5\n"
+          + "[Event \"Third\"]\n"
+          + "1. c4 *\n";
+
+  @Test
+  public void testGameElements() {
+    final List<pgnGame> games =
+        new PGN_StreamReader(new StringReader(PGN)).stream().collect(Collectors.toList());
+    assertEquals(3, games.size());
+
+    final pgnGame game = games.get(0);
+    assertEquals("Test \"quoted\"", game.getTags().get("Event"));
+    assertEquals("B", game.getTags().get("Black"));
+    assertEquals("1-0", game.getResult());
+    assertEquals(
+        Arrays.asList("e4", "e5", "Nf3", "Nc6", "Bb5", "a6", "O-O", "d5", "exd5"), game.getMoves());
+
+    assertEquals("Start", game.getComments().get(0));
+    assertEquals("end of line comment", game.getComments().get(6));
+
+    assertEquals(Collections.singletonList(5), game.getNags().get(2));
+    assertEquals(Collections.singletonList(1), game.getNags().get(3));
+    assertEquals(Collections.singletonList(3), game.getNags().get(8));
+
+    assertEquals(
+        Collections.singletonList("2. f4 {King's (gambit)} exf4 (2... d5) 3. Nf3"),
+        game.getVariations().get(3));
+
+    assertEquals(Arrays.asList("d4", "d5"), games.get(1).getMoves());
+    assertEquals("*", games.get(1).getResult());
+    assertEquals("No result", games.get(1).getTags().get("Event"));
+    assertEquals("Third", games.get(2).getTags().get("Event"));
+    assertEquals(Collections.singletonList("c4"), games.get(2).getMoves());
+  }
+
+  @Test
+  public void testSameGamesAsPGN_Reader() throws IOException {
+    final String file = "/book/Test_PGN/perle.pgn";
+
+    final List<String> lines;
+    try (InputStream in = Chessly.class.getResourceAsStream(file)) {
+      lines =
+          new java.io.BufferedReader(new java.io.InputStreamReader(in, "ISO-8859-1"))
+              .lines()
+              .collect(Collectors.toList());
+    }
+    final PGN_Reader reader = new PGN_Reader(lines);
+    assertTrue(reader.startProcessing());
+
+    final PGN_StreamReader streamReader =
+        new PGN_StreamReader(Chessly.class.getResourceAsStream(file));
+    final List<pgnGame> streamed;
+    try (Stream<pgnGame> games = streamReader.stream()) {
+      streamed = games.collect(Collectors.toList());
+    }
+    assertEquals(reader.getGames().size(), streamed.size());
+    assertEquals(reader.getGames().size(), streamReader.getGamesRead());
+
+    // same moves and tags for every game
+    for (int i = 0; i < streamed.size(); i++) {
+      final pgnGame expected = reader.getGames().get(i);
+      assertEquals(expected.getMoves(), streamed.get(i).getMoves(), "moves of game " + i);
+      assertEquals(expected.getTags(), streamed.get(i).getTags(), "tags of game " + i);
+    }
+  }
+}
@@ -0,0 +1,159 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.openingbook;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import fko.chessly.game.GameMove;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** @author fkopp */
+public class PolyglotBook_Test {
+
+  private static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+  private static final String CASTLING = "r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1";
+
+  @Test
+  public void testKey() throws IOException {
+    final long[] random64 = createRandom64();
+
+    // side to move and castling rights change the key
+    final long start = PolyglotBook.getKey(START, random64);
+    assertEquals(start ^ random64[780], PolyglotBook.getKey(START.replace(" w ", " b "), random64));
+    assertEquals(start ^ random64[768] ^ random64[769],
+        PolyglotBook.getKey(START.replace("KQkq", "kq"), random64));
+
+    // white pawn on e2 (kind 1) moves to e4
+    final String e4 = "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1";
+    assertEquals(start ^ random64[780] ^ random64[64 + 12] ^ random64[64 + 28], PolyglotBook.getKey(e4, random64));
+
+    // en passant only counts if it can be captured
+    final String ep = "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3";
+    assertEquals(PolyglotBook.getKey(ep.replace("f6", "-"), random64) ^ random64[772 + 5],
+        PolyglotBook.getKey(ep, random64));
+    final String noEp = "rnbqkbnr/ppp1pppp/8/3p4/8/8/PPPPPPPP/RNBQKBNR w KQkq d6 0 2";
+    assertEquals(PolyglotBook.getKey(noEp.replace("d6", "-"), random64), PolyglotBook.getKey(noEp, random64));
+
+    // the random numbers can be read from a copy of the Polyglot sources
+    final StringBuilder source = new StringBuilder("const uint64 Random64[781] = {\n");
+    for (long r : random64) source.append(String.format("   U64(0x%016X),%n", r));
+    source.append("};\n");
+    assertArrayEquals(random64, PolyglotBook.readRandom64(
+        new ByteArrayInputStream(source.toString().getBytes(StandardCharsets.ISO_8859_1))));
+    assertThrows(IOException.class, () -> PolyglotBook.readRandom64(
+        new ByteArrayInputStream("0x9D39247E33776D41".getBytes(StandardCharsets.ISO_8859_1))));
+  }
+
+  @Test
+  public void testStandardKeys() throws IOException {
+    final long[] random64 = PolyglotBook.getStandardRandom64();
+
+    // keys from the Polyglot book format specification
+    final String[][] keys = {
+        { "463B96181691FC9C", START },
+        { "823C9B50FD114196", "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1" },
+        { "0756B94461C50FB0", "rnbqkbnr/ppp1pppp/8/3p4/4P3/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 2" },
+        { "662FAFB965DB29D4", "rnbqkbnr/ppp1pppp/8/3pP3/8/8/PPPP1PPP/RNBQKBNR b KQkq - 0 2" },
+        { "22A48B5A8E47FF78", "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3" },
+        { "652A607CA3F242C1", "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPPKPPP/RNBQ1BNR b kq - 0 3" },
+        { "00FDD303C946BDD9", "rnbq1bnr/ppp1pkpp/8/3pPp2/8/8/PPPPKPPP/RNBQ1BNR w - - 0 4" },
+        { "3C8123EA7B067637", "rnbqkbnr/p1pppppp/8/8/PpP4P/8/1P1PPPP1/RNBQKBNR b KQkq c3 0 3" },
+        { "5C3F9B829B279560", "rnbqkbnr/p1pppppp/8/8/P6P/R1p5/1P1PPPP1/1NBQKBNR b Kkq - 0 4" } };
+    for (String[] key : keys) {
+      assertEquals(Long.parseUnsignedLong(key[0], 16), PolyglotBook.getKey(key[1], random64), key[1]);
+    }
+  }
+
+  @Test
+  public void testMoveEncoding() {
+    assertEquals(4 | 3 << 3 | 4 << 6 | 1 << 9, PolyglotBook.encodeMove("e2e4"));
+    assertEquals("e2e4", PolyglotBook.decodeMove(PolyglotBook.encodeMove("e2e4")));
+    assertEquals("e7e8Q", PolyglotBook.decodeMove(PolyglotBook.encodeMove("e7e8q")));
+    assertEquals("b2a1N", PolyglotBook.decodeMove(PolyglotBook.encodeMove("b2a1N")));
+    assertEquals(4 << 12, PolyglotBook.encodeMove("e7e8q") & 0x7000);
+    assertThrows(IllegalArgumentException.class, () -> PolyglotBook.encodeMove("e7e9"));
+    assertThrows(IllegalArgumentException.class, () -> PolyglotBook.encodeMove("e7e8k"));
+  }
+
+  @Test
+  public void testWriteAndRead() throws IOException {
+    final long[] random64 = createRandom64();
+    final long start = PolyglotBook.getKey(START, random64);
+    final long castling = PolyglotBook.getKey(CASTLING, random64);
+
+    final long[] keys = { start, castling, start, start, start };
+    final int[] moves = {
+        PolyglotBook.encodeMove("d2d4"), PolyglotBook.encodeMove("e1h1"), PolyglotBook.encodeMove("e2e4"),
+        PolyglotBook.encodeMove("d2d4"), PolyglotBook.encodeMove("e2e5") };
+    final int[] counts = { 1, 1, 3, 1, 100000 };
+
+    final Path file = Files.createTempDirectory("book").resolve("test" + PolyglotBook.FILE_EXTENSION);
+    assertEquals(4, PolyglotBook.write(file, keys, moves, counts, keys.length));
+    assertEquals(4 * 16, Files.size(file));
+
+    final PolyglotBook book = new PolyglotBook(file, random64);
+    assertEquals(4, book.getNumberOfEntries());
+
+    // weights are scaled to 16 bit
+    final List<PolyglotBook.Entry> entries = book.getEntries(START);
+    assertEquals(3, entries.size());
+    assertEquals("e2e5", PolyglotBook.decodeMove(entries.get(0).getMove()));
+    assertEquals(0xFFFF, entries.get(0).getWeight());
+    assertEquals(1, entries.get(1).getWeight());
+    assertEquals(1, entries.get(2).getWeight());
+
+    // e2e5 is not a legal move
+    final Random random = new Random(0);
+    for (int i = 0; i < 20; i++) {
+      final String move = book.getBookMove(START, random).toSimpleString();
+      assertTrue(move.equals("e2e4") || move.equals("d2d4"), move);
+    }
+
+    // castling is stored as the king capturing the rook
+    final GameMove move = book.getBookMove(CASTLING, random);
+    assertEquals("g1", move.getToField().getName());
+
+    assertNull(book.getBookMove("4k3/8/8/8/8/8/8/4K3 w - - 0 1", random));
+  }
+
+  private static long[] createRandom64() {
+    final Random random = new Random(42);
+    final long[] random64 = new long[PolyglotBook.RANDOM64_SIZE];
+    for (int i = 0; i < random64.length; i++) random64[i] = random.nextLong();
+    return random64;
+  }
+}
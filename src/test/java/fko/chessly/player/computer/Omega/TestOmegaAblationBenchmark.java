@@ -0,0 +1,91 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.player.computer.Omega;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import fko.chessly.player.computer.Omega.OmegaAblationBenchmark.AblationResult;
+import fko.chessly.player.computer.Omega.OmegaAblationBenchmark.Feature;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the ablation benchmark
+ */
+public class TestOmegaAblationBenchmark {
+
+    private static final List<String> POSITIONS = Arrays.asList(
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+
+    /**
+     * Baseline first, one result per feature and switching off quiescence
+     * must reduce the node count.
+     */
+    @Test
+    public void testRun() {
+        OmegaAblationBenchmark bench = new OmegaAblationBenchmark(3, 2);
+        List<AblationResult> results = bench.run(POSITIONS, Arrays.asList(Feature.QUIESCENCE, Feature.PVS));
+        OmegaAblationBenchmark.printResults(3, results);
+
+        assertEquals(3, results.size());
+        assertNull(results.get(0).disabled);
+        assertEquals(Feature.QUIESCENCE, results.get(1).disabled);
+        assertEquals(Feature.PVS, results.get(2).disabled);
+        for (AblationResult r : results) {
+            assertTrue(r.nodes > 0);
+            assertTrue(r.timeNanos > 0);
+        }
+        assertTrue(results.get(1).nodes < results.get(0).nodes);
+    }
+
+    /**
+     * Same configuration must search the same number of nodes on separate engines.
+     */
+    @Test
+    public void testDeterministic() {
+        OmegaAblationBenchmark bench = new OmegaAblationBenchmark(3, 1);
+        assertEquals(bench.runConfiguration(POSITIONS, Feature.MDP).nodes,
+                bench.runConfiguration(POSITIONS, Feature.MDP).nodes);
+    }
+
+    /**
+     * Invalid arguments
+     */
+    @Test
+    public void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new OmegaAblationBenchmark(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new OmegaAblationBenchmark(1, 0));
+    }
+}
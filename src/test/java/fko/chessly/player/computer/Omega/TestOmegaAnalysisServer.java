@@ -0,0 +1,171 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.player.computer.Omega;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import fko.chessly.player.computer.Omega.OmegaAnalysisServer.AnalysisResult;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Frank
+ */
+public class TestOmegaAnalysisServer {
+
+    private static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    private static final String KIWIPETE_FEN = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+    private static final String MATE_FEN = "6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1";
+
+    @Test
+    public void testDeduplicationAndPriority() throws Exception {
+        final OmegaAnalysisServer server = new OmegaAnalysisServer(1, 16);
+        server.startWorkers();
+        try {
+            // keeps the only worker busy while the other requests are queued
+            final CompletableFuture<AnalysisResult> busy = server.submit(KIWIPETE_FEN, 0, 500, 0, 0);
+
+            final List<String> order = new CopyOnWriteArrayList<>();
+            final CompletableFuture<AnalysisResult> low = server.submit(START_FEN, 5000, 0, 0, 0);
+            low.thenRun(() -> order.add("low"));
+            final CompletableFuture<AnalysisResult> high = server.submit(MATE_FEN, 5000, 0, 0, 10);
+            high.thenRun(() -> order.add("high"));
+            // same position with other move counters and a higher priority
+            final CompletableFuture<AnalysisResult> duplicate =
+                    server.submit(START_FEN.replace(" 0 1", " 3 7"), 5000, 0, 0, 5);
+
+            assertSame(low, duplicate);
+            assertEquals(1, server.getDeduplicated());
+
+            low.get();
+            high.get();
+            busy.get();
+            assertEquals(3, server.getSearches());
+            // the duplicate moved the low request up but not above the high one
+            assertEquals(Arrays.asList("high", "low"), order);
+            assertEquals("a1a8", high.get().bestMove);
+            assertEquals("mate 1", OmegaUCI.scoreToUCI(high.get().value));
+            assertEquals(Collections.singletonList("a1a8"), high.get().pv.subList(0, 1));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testRepeatedPositionFromHash() throws Exception {
+        final OmegaAnalysisServer server = new OmegaAnalysisServer(2, 16);
+        server.startWorkers();
+        try {
+            final AnalysisResult first = server.submit(KIWIPETE_FEN, 0, 0, 4, 0).get();
+            final AnalysisResult second = server.submit(KIWIPETE_FEN, 0, 0, 4, 0).get();
+            assertEquals(0, server.getDeduplicated());
+            assertEquals(4, second.depth);
+            assertTrue(second.nodes < first.nodes / 2,
+                    "first: " + first.nodes + " second: " + second.nodes);
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testStopWhileSearching() throws Exception {
+        final Set<Thread> searchThreads = getSearchThreads();
+        final OmegaAnalysisServer server = new OmegaAnalysisServer(1, 16);
+        server.startWorkers();
+        final CompletableFuture<AnalysisResult> searched = server.submit(KIWIPETE_FEN, 0, 60_000, 0, 0);
+        final CompletableFuture<AnalysisResult> queued = server.submit(START_FEN, 0, 60_000, 0, 0);
+        // wait until the worker has taken the first request
+        while (!server.getStatus().contains(" queued 1 ")) Thread.sleep(10);
+        Thread.sleep(100);
+
+        final long start = System.currentTimeMillis();
+        server.stop();
+        assertTrue(System.currentTimeMillis() - start < 10_000);
+
+        // no result of the aborted search
+        assertTrue(searched.isCancelled());
+        assertThrows(CancellationException.class, searched::get);
+        assertTrue(queued.isCancelled());
+
+        // the search has ended before its caches were given back
+        final Set<Thread> running = getSearchThreads();
+        running.removeAll(searchThreads);
+        assertTrue(running.isEmpty(), running.toString());
+    }
+
+    @Test
+    public void testHttp() throws Exception {
+        final OmegaAnalysisServer server = new OmegaAnalysisServer(1, 16);
+        server.start(0);
+        try {
+            final String base = "http://localhost:" + server.getPort();
+            final String response = get(base + "/analyse?nodes=5000&fen="
+                    + URLEncoder.encode(MATE_FEN, "UTF-8"));
+            assertTrue(response.startsWith("bestmove a1a8 score mate 1 "), response);
+            assertTrue(get(base + "/status").startsWith("workers 1 queued 0 inflight 0 requests 1"));
+
+            final HttpURLConnection connection =
+                    (HttpURLConnection) new URL(base + "/analyse?nodes=1").openConnection();
+            assertEquals(400, connection.getResponseCode());
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static Set<Thread> getSearchThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.isAlive() && t.getName().startsWith("OmegaEngine"))
+                .collect(Collectors.toCollection(HashSet::new));
+    }
+
+    private static String get(String url) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        assertEquals(200, connection.getResponseCode());
+        try (BufferedReader in = new BufferedReader(
+                new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            return in.readLine();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.player.computer.Omega;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import fko.chessly.openingbook.OpeningBookImpl.Mode;
+import fko.chessly.openingbook.PolyglotBook;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Frank
+ */
+public class TestOmegaBookBuilder {
+
+    private static final String PGN =
+            "[Event \"1\"]\n1. e4 e5 2. Nf3 {comment} Nc6 (2... d6) 1-0\n\n"
+            + "[Event \"2\"]\n1. e4 c5 0-1\n\n"
+            + "[Event \"3\"]\n1. d4 d5 2. Zz9 Nf6 *\n";
+
+    @Test
+    public void testBuildFromPGN() throws IOException {
+        final OmegaBookBuilder builder = new OmegaBookBuilder();
+        builder.addBook(stream(PGN), Mode.PGN);
+        assertEquals(3, builder.getGames());
+        assertEquals(8, builder.getPlies());
+        assertEquals(1, builder.getInvalidGames());
+
+        final OmegaBoardPosition start = new OmegaBoardPosition();
+        final int e4 = OmegaMove.fromNotation(start, "e4");
+        final int d4 = OmegaMove.fromNotation(start, "d4");
+        final Map<Integer, Integer> startCounts = new HashMap<>();
+        builder.forEachRecord((key, move, count) -> {
+            if (key == start.getZobristKey()) startCounts.put(move, count);
+        });
+        assertEquals(2, startCounts.size());
+        assertEquals(2, (int) startCounts.get(e4));
+        assertEquals(1, (int) startCounts.get(d4));
+
+        final Path file = Files.createTempDirectory("book").resolve("test" + OmegaOpeningBook.FILE_EXTENSION);
+        assertEquals(7, builder.write(file));
+        final OmegaOpeningBook book = OmegaOpeningBook.open(file);
+        assertEquals(2, book.getCount(start, e4));
+        assertEquals(e4, book.getMoves(start).get(0));
+
+        final OmegaBoardPosition position = new OmegaBoardPosition(start);
+        position.makeMove(e4);
+        assertEquals(2, book.getMoves(position).size());
+    }
+
+    @Test
+    public void testLinesAndMaxPly() throws IOException {
+        final OmegaBookBuilder builder = new OmegaBookBuilder(OmegaBoardPosition::getZobristKey, 2);
+        builder.addBook(stream("1. e4 e5 2. Nf3\ne4 c5\n"), Mode.SAN);
+        builder.addBook(stream("e2e4e7e5g1f3\n1 ignored\n"), Mode.SIMPLE);
+        assertEquals(3, builder.getGames());
+        assertEquals(6, builder.getPlies());
+
+        final OmegaBoardPosition position = new OmegaBoardPosition();
+        final int e4 = OmegaMove.fromNotation(position, "e4");
+        position.makeMove(e4);
+        final int e5 = OmegaMove.fromNotation(position, "e5");
+        position.makeMove(e5);
+        final long afterE5 = position.getZobristKey();
+
+        final int[] startCount = new int[1];
+        final int[] e5Count = new int[1];
+        builder.forEachRecord((key, move, count) -> {
+            if (key == new OmegaBoardPosition().getZobristKey() && move == e4) startCount[0] = count;
+            if (move == e5) e5Count[0] = count;
+            assertNotEquals(afterE5, key); // third ply is not added
+        });
+        assertEquals(3, startCount[0]);
+        assertEquals(2, e5Count[0]);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new OmegaBookBuilder(OmegaBoardPosition::getZobristKey, 0));
+    }
+
+    @Test
+    public void testWritePolyglot() throws IOException {
+        final Random random = new Random(42);
+        final long[] random64 = new long[PolyglotBook.RANDOM64_SIZE];
+        for (int i = 0; i < random64.length; i++) random64[i] = random.nextLong();
+
+        final OmegaBookBuilder builder = OmegaBookBuilder.forPolyglot(random64, OmegaBookBuilder.MAX_PLY);
+        builder.addBook(stream(PGN + "\n1. e4 e5 2. Nf3 Nf6 3. Be2 Be7 4. O-O O-O *\n"), Mode.PGN);
+
+        final Path file = Files.createTempDirectory("book").resolve("test" + PolyglotBook.FILE_EXTENSION);
+        assertEquals(12, builder.writePolyglot(file));
+        final PolyglotBook book = new PolyglotBook(file, random64);
+
+        final String start = new OmegaBoardPosition().toFENString();
+        final List<PolyglotBook.Entry> entries = book.getEntries(start);
+        assertEquals(2, entries.size());
+        assertEquals("e2e4", PolyglotBook.decodeMove(entries.get(0).getMove()));
+        assertEquals(3, entries.get(0).getWeight());
+
+        // castling is written as king captures rook and read back as castling
+        final OmegaBoardPosition position = new OmegaBoardPosition(
+                "rnbqk2r/ppppbppp/5n2/4p3/4P3/5N2/PPPPBPPP/RNBQK2R w KQkq - 4 4");
+        assertEquals("e1h1", PolyglotBook.decodeMove(book.getEntries(position.toFENString()).get(0).getMove()));
+        assertEquals("g1", book.getBookMove(position.toFENString(), random).getToField().getName());
+    }
+
+    private static ByteArrayInputStream stream(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.player.computer.Omega;
+
+import org.junit.jupiter.api.Test;
+
+import fko.chessly.player.computer.Omega.OmegaTranspositionTable.TT_EntryType;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Frank
+ */
+public class TestOmegaCachePool {
+
+    @Test
+    public void testAcquireAndRelease() {
+        final OmegaBoardPosition position = new OmegaBoardPosition();
+
+        final OmegaTranspositionTable table = OmegaCachePool.acquireTranspositionTable(1);
+        final OmegaTranspositionTable other = OmegaCachePool.acquireTranspositionTable(1);
+        assertNotSame(table, other);
+        table.put(position, 42, TT_EntryType.EXACT, 3, OmegaMove.NOMOVE);
+        assertEquals(1, table.getNumberOfEntries());
+        OmegaCachePool.release(table);
+        OmegaCachePool.release(other);
+
+        // released tables are reused and cleared
+        final long reused = OmegaCachePool.getReused();
+        final OmegaTranspositionTable again = OmegaCachePool.acquireTranspositionTable(1);
+        assertTrue(again == table || again == other);
+        assertEquals(0, again.getNumberOfEntries());
+        assertNull(again.get(position));
+        assertEquals(reused + 1, OmegaCachePool.getReused());
+        OmegaCachePool.release(again);
+
+        final OmegaEvaluationCache cache = OmegaCachePool.acquireEvaluationCache(1);
+        cache.put(position.getZobristKey(), 42);
+        OmegaCachePool.release(cache);
+        assertSame(cache, OmegaCachePool.acquireEvaluationCache(1));
+        assertEquals(Integer.MIN_VALUE, cache.get(position.getZobristKey()));
+        OmegaCachePool.release(cache);
+
+        // tables of other sizes are dropped when a new table is created
+        final long created = OmegaCachePool.getCreated();
+        final OmegaTranspositionTable bigger = OmegaCachePool.acquireTranspositionTable(2);
+        assertNotSame(table, bigger);
+        assertNotSame(other, bigger);
+        assertEquals(created + 1, OmegaCachePool.getCreated());
+        OmegaCachePool.release(bigger);
+        assertSame(bigger, OmegaCachePool.acquireTranspositionTable(2));
+        OmegaCachePool.release(bigger);
+
+        assertThrows(IllegalArgumentException.class, () -> OmegaCachePool.release(bigger));
+
+        OmegaCachePool.clear();
+        assertEquals(0, OmegaCachePool.getNumberOfFreeTables());
+    }
+
+    @Test
+    public void testSharedTable() {
+        final OmegaBoardPosition position = new OmegaBoardPosition();
+
+        final OmegaTranspositionTable white = OmegaCachePool.acquireSharedTranspositionTable(1);
+        final OmegaTranspositionTable black = OmegaCachePool.acquireSharedTranspositionTable(1);
+        assertSame(white, black);
+        assertTrue(white.isShared());
+
+        white.put(position, 42, TT_EntryType.EXACT, 3, OmegaMove.NOMOVE);
+        OmegaCachePool.release(white);
+        // still used by the other side
+        assertEquals(42, black.get(position).value);
+        OmegaCachePool.release(black);
+        assertEquals(0, black.getNumberOfEntries());
+
+        assertSame(white, OmegaCachePool.acquireSharedTranspositionTable(1));
+        OmegaCachePool.release(white);
+    }
+
+    @Test
+    public void testSearchReleasesCaches() {
+        OmegaEngine omegaEngine = new OmegaEngine();
+        omegaEngine._CONFIGURATION.VERBOSE_STATS = false;
+        OmegaSearch omegaSearch = new OmegaSearch(omegaEngine);
+        final OmegaTranspositionTable table = omegaSearch._transpositionTable;
+        assertNotNull(table);
+
+        omegaSearch.configureIterativeDepth(3);
+        omegaSearch.startSearch(new OmegaBoardPosition());
+        omegaSearch.waitWhileSearching();
+        assertTrue(table.getNumberOfEntries() > 0);
+
+        omegaSearch.releaseCacheTables();
+        assertNull(omegaSearch._transpositionTable);
+        assertNull(omegaSearch._evalCache);
+        assertEquals(0, table.getNumberOfEntries());
+
+        // the next search (or engine) gets the table back from the pool
+        assertSame(table, new OmegaSearch(new OmegaEngine())._transpositionTable);
+
+        // searching after the release acquires new tables
+        omegaSearch.configureIterativeDepth(2);
+        omegaSearch.startSearch(new OmegaBoardPosition());
+        omegaSearch.waitWhileSearching();
+        assertNotNull(omegaSearch._transpositionTable);
+        assertNotNull(omegaSearch._evalCache);
+        omegaSearch.releaseCacheTables();
+    }
+}
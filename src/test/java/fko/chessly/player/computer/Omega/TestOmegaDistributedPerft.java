@@ -0,0 +1,132 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.player.computer.Omega;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import fko.chessly.game.NotationHelper;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Frank
+ */
+public class TestOmegaDistributedPerft {
+
+    private static final String KIWIPETE_FEN = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    @Test
+    public void testPerftWithWorkers() throws IOException {
+        final List<OmegaDistributedWorker> workers = startWorkers(3);
+        try (OmegaDistributedPerft perft = new OmegaDistributedPerft(addresses(workers))) {
+            assertEquals(197281, perft.perft(NotationHelper.StandardBoardFEN, 4, 2));
+            assertEquals(97862, perft.perft(KIWIPETE_FEN, 3, 1));
+            // split depth at or beyond the depth is counted by the coordinator alone
+            assertEquals(400, perft.perft(NotationHelper.StandardBoardFEN, 2, 3));
+
+            int active = 0;
+            for (int jobs : perft.getJobsPerWorker()) if (jobs > 0) active++;
+            assertEquals(3, active);
+            assertEquals(0, perft.getRetried());
+        } finally {
+            for (OmegaDistributedWorker worker : workers) worker.stop();
+        }
+    }
+
+    @Test
+    public void testLocalWorkerProcess() throws IOException {
+        final OmegaDistributedWorker.LocalWorker worker = OmegaDistributedWorker.startLocalWorker();
+        try {
+            assertTrue(worker.process.isAlive());
+            try (OmegaDistributedPerft perft = new OmegaDistributedPerft(Collections.singletonList(worker.address))) {
+                assertEquals(8902, perft.perft(NotationHelper.StandardBoardFEN, 3, 1));
+                // all jobs have been counted by the worker process
+                assertEquals(20, perft.getJobs());
+                assertEquals(20, (int) perft.getJobsPerWorker().get(0));
+                assertEquals(1, perft.getNumberOfWorkers());
+                assertEquals(0, perft.getRetried());
+            }
+        } finally {
+            worker.stop();
+        }
+        assertFalse(worker.process.isAlive());
+    }
+
+    @Test
+    public void testWorkerFailure() throws IOException, InterruptedException {
+        final List<OmegaDistributedWorker> workers = startWorkers(2);
+        try (OmegaDistributedPerft perft = new OmegaDistributedPerft(addresses(workers))) {
+            workers.get(0).stop();
+            awaitClosed(workers.get(0));
+            assertEquals(197281, perft.perft(NotationHelper.StandardBoardFEN, 4, 2));
+            assertEquals(1, perft.getNumberOfWorkers());
+            assertEquals(1, perft.getRetried());
+            assertTrue(perft.getStolen() > 0);
+        } finally {
+            for (OmegaDistributedWorker worker : workers) worker.stop();
+        }
+    }
+
+    /**
+     * Waits until the worker has closed all connections so that the coordinator
+     * is certain to lose it on the first job.
+     */
+    private static void awaitClosed(OmegaDistributedWorker worker) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (worker.getNumberOfConnections() > 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "worker connection not closed");
+            Thread.sleep(10);
+        }
+    }
+
+    private static List<OmegaDistributedWorker> startWorkers(int n) throws IOException {
+        final List<OmegaDistributedWorker> workers = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            final OmegaDistributedWorker worker =
+                    new OmegaDistributedWorker(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            worker.start();
+            workers.add(worker);
+        }
+        return workers;
+    }
+
+    private static List<InetSocketAddress> addresses(List<OmegaDistributedWorker> workers) {
+        final List<InetSocketAddress> addresses = new ArrayList<>();
+        for (OmegaDistributedWorker worker : workers) {
+            addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), worker.getPort()));
+        }
+        return addresses;
+    }
+}
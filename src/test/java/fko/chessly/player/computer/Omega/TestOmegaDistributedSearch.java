@@ -0,0 +1,113 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.player.computer.Omega;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import fko.chessly.player.computer.Omega.OmegaDistributedSearch.Result;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Frank
+ */
+public class TestOmegaDistributedSearch {
+
+    private static final String KIWIPETE_FEN = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+    private static final String MATE_FEN = "r1bqkb1r/pppp1ppp/2n2n2/4p2Q/2B1P3/8/PPPP1PPP/RNB1K1NR w KQkq - 4 4";
+
+    @Test
+    public void testSearchWithWorkers() throws IOException {
+        final List<OmegaDistributedWorker> workers = startWorkers(3);
+        try (OmegaDistributedSearch search = new OmegaDistributedSearch(addresses(workers))) {
+            assertEquals(3, search.getNumberOfWorkers());
+
+            final Result result = search.search(KIWIPETE_FEN, 3, 0);
+            assertEquals(3, result.depth);
+            assertTrue(result.nodes > 0);
+            assertEquals(result.bestMove, result.pv.get(0));
+
+            // 48 root moves in 3 iterations
+            int moves = 0, activeWorkers = 0;
+            for (int m : search.getMovesPerWorker()) {
+                moves += m;
+                if (m > 0) activeWorkers++;
+            }
+            assertEquals(3 * 48, moves);
+            assertTrue(activeWorkers > 1);
+
+            // stops when the mate is found
+            final Result mate = search.search(MATE_FEN, 10, 0);
+            assertEquals("h5f7", mate.bestMove);
+            assertEquals("mate 1", OmegaUCI.scoreToUCI(mate.value));
+            assertEquals(1, mate.depth);
+        } finally {
+            for (OmegaDistributedWorker worker : workers) worker.stop();
+        }
+    }
+
+    @Test
+    public void testWorkerFailure() throws IOException {
+        final List<OmegaDistributedWorker> workers = startWorkers(2);
+        try (OmegaDistributedSearch search = new OmegaDistributedSearch(addresses(workers))) {
+            workers.get(0).stop();
+            assertEquals(0, workers.get(0).getNumberOfConnections());
+            final Result result = search.search(KIWIPETE_FEN, 3, 0);
+            assertEquals(3, result.depth);
+            assertEquals(1, search.getNumberOfWorkers());
+            assertEquals(3 * 48, (int) search.getMovesPerWorker().get(1));
+        } finally {
+            for (OmegaDistributedWorker worker : workers) worker.stop();
+        }
+    }
+
+    private static List<OmegaDistributedWorker> startWorkers(int n) throws IOException {
+        final List<OmegaDistributedWorker> workers = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            final OmegaDistributedWorker worker =
+                    new OmegaDistributedWorker(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            worker.start();
+            workers.add(worker);
+        }
+        return workers;
+    }
+
+    private static List<InetSocketAddress> addresses(List<OmegaDistributedWorker> workers) {
+        final List<InetSocketAddress> addresses = new ArrayList<>();
+        for (OmegaDistributedWorker worker : workers) {
+            addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), worker.getPort()));
+        }
+        return addresses;
+    }
+}
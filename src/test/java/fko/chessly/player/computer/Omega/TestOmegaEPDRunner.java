@@ -0,0 +1,77 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.player.computer.Omega;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import fko.chessly.player.computer.Omega.OmegaEPDRunner.EPDEntry;
+import fko.chessly.player.computer.Omega.OmegaEPDRunner.EPDResult;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Frank
+ */
+public class TestOmegaEPDRunner {
+
+    @Test
+    public void testParseEPDLine() {
+        EPDEntry entry = OmegaEPDRunner.parseEPDLine(
+                "2r3k1/4Bppp/p7/1p1bP3/8/2n5/P1PR2PP/R5K1 b - - am Bxa2; id \"arasan4.1\";");
+        assertNotNull(entry);
+        assertEquals("2r3k1/4Bppp/p7/1p1bP3/8/2n5/P1PR2PP/R5K1 b - - 0 1", entry.fen);
+        assertEquals("arasan4.1", entry.id);
+        assertTrue(entry.bestMoves.isEmpty());
+        assertEquals(Collections.singletonList("Bxa2"), entry.avoidMoves);
+
+        entry = OmegaEPDRunner.parseEPDLine(
+                "6k1/2b2p1p/ppP3p1/4p3/PP1B4/5PP1/7P/7K w - - id Bt02 - Bd4xb6; bm d4b6;");
+        assertNotNull(entry);
+        assertEquals("Bt02 - Bd4xb6", entry.id);
+        assertEquals(Collections.singletonList("d4b6"), entry.bestMoves);
+
+        assertNull(OmegaEPDRunner.parseEPDLine("TIME=15:00"));
+        assertNull(OmegaEPDRunner.parseEPDLine(""));
+    }
+
+    @Test
+    public void testRunMateInOne() {
+        List<EPDEntry> entries = Collections.singletonList(
+                OmegaEPDRunner.parseEPDLine("6k1/5ppp/8/8/8/8/5PPP/1R4K1 w - - bm Rb8#; id \"mate1\";"));
+        OmegaEPDRunner runner = new OmegaEPDRunner(0, 50000, 1);
+        List<EPDResult> results = runner.run(entries);
+        OmegaEPDRunner.printResults("mate1", results);
+        assertEquals(1, results.size());
+        assertTrue(results.get(0).solved);
+        assertEquals("b1b8", results.get(0).bestMove);
+        assertTrue(results.get(0).nodesToSolution >= 0);
+    }
+}
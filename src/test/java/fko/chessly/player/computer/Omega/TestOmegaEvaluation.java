@@ -148,6 +148,30 @@ public class TestOmegaEvaluation {
         assertEquals(-4, value);
     }
 
+    /**
+     * The evaluation must be the sum of weight times feature and use the given weights.
+     */
+    @Test
+    public void testFeaturesMatchEvaluation() {
+        String[] fens = {
+                _fenStandard,
+                "r3k2r/1ppn3p/2q1q1n1/8/2q1Pp2/6R1/p1p2PPP/1R4K1 b kq e3 0 113",
+                "k6n/7p/6P1/7K/8/8/8/8 w - - 0 1",
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1" };
+        OmegaEvaluationWeights weights = new OmegaEvaluationWeights();
+        weights.set(OmegaEvaluationWeights.Weight.KNIGHT_VALUE, 300);
+        weights.set(OmegaEvaluationWeights.Weight.ROOK_MOBILITY, 3);
+        OmegaEvaluation evaluation = new OmegaEvaluation(weights);
+        int[] features = new int[OmegaEvaluationWeights.SIZE];
+        for (String fen : fens) {
+            OmegaBoardPosition position = new OmegaBoardPosition(fen);
+            OmegaEvaluation.features(position, features);
+            int white = 0;
+            for (int i = 0; i < features.length; i++) white += weights.toArray()[i] * features[i];
+            assertEquals(position._nextPlayer.factor * white, evaluation.evaluate(position), fen);
+        }
+    }
+
     @Test
     public void testTiming() {
 
@@ -33,6 +33,7 @@ import fko.chessly.game.GameMove;
 import fko.chessly.game.NotationHelper;
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -127,4 +128,76 @@ public class TestOmegaMove {
 
     }
 
+    @Test
+    public void testFromNotation() {
+        OmegaBoardPosition position = new OmegaBoardPosition(
+                "1rb1r1k1/p1p1qppp/2pb4/8/2P3n1/4P1P1/PB2BP1P/R1QN1RK1 b - - 0 1");
+        assertEquals("g4h2", OmegaMove.toSimpleString(OmegaMove.fromNotation(position, "Nxh2")));
+        assertEquals("g4h2", OmegaMove.toSimpleString(OmegaMove.fromNotation(position, "g4h2")));
+        assertEquals("d6g3", OmegaMove.toSimpleString(OmegaMove.fromNotation(position, "Bxg3")));
+        assertEquals(OmegaMove.NOMOVE, OmegaMove.fromNotation(position, "Nc3"));
+
+        // castling and promotion
+        position = new OmegaBoardPosition("r3k2r/1P6/8/8/8/8/8/R3K2R w KQkq - 0 1");
+        assertEquals("e1g1", OmegaMove.toSimpleString(OmegaMove.fromNotation(position, "O-O")));
+        assertEquals("e1c1", OmegaMove.toSimpleString(OmegaMove.fromNotation(position, "O-O-O")));
+        int move = OmegaMove.fromNotation(position, "bxa8=N");
+        assertEquals("b7a8", OmegaMove.toSimpleString(move));
+        assertEquals(OmegaPieceType.KNIGHT, OmegaMove.getPromotion(move).getType());
+        move = OmegaMove.fromNotation(position, "b7b8q");
+        assertEquals(OmegaPieceType.QUEEN, OmegaMove.getPromotion(move).getType());
+        // ambiguous
+        position = new OmegaBoardPosition("4k3/8/8/8/8/8/8/N1N1K3 w - - 0 1");
+        assertEquals(OmegaMove.NOMOVE, OmegaMove.fromNotation(position, "Nb3"));
+        assertEquals("a1b3", OmegaMove.toSimpleString(OmegaMove.fromNotation(position, "Nab3")));
+
+        // annotations, castling with zeros and en passant with a reused move generator
+        final OmegaMoveGenerator moveGenerator = new OmegaMoveGenerator();
+        position = new OmegaBoardPosition("r3k2r/8/8/3pP3/8/8/8/R3K2R w KQkq d6 0 1");
+        assertEquals("e1g1", OmegaMove.toSimpleString(OmegaMove.fromNotation(position, "0-0!?", moveGenerator)));
+        assertEquals("e1c1", OmegaMove.toSimpleString(OmegaMove.fromNotation(position, "0-0-0+", moveGenerator)));
+        move = OmegaMove.fromNotation(position, "exd6 e.p.", moveGenerator);
+        assertEquals(OmegaMoveType.ENPASSANT, OmegaMove.getMoveType(move));
+        assertEquals(OmegaMove.NOMOVE, OmegaMove.fromNotation(position, "O-O-O-O", moveGenerator));
+        assertEquals(OmegaMove.NOMOVE, OmegaMove.fromNotation(position, "Zz9", moveGenerator));
+
+        // a pinned knight does not make the notation ambiguous
+        position = new OmegaBoardPosition("4r1k1/8/8/8/8/8/4N3/1N2K3 w - - 0 1");
+        assertEquals("b1c3", OmegaMove.toSimpleString(OmegaMove.fromNotation(position, "Nc3", moveGenerator)));
+    }
+
+    @Test
+    public void testToSAN() {
+        OmegaBoardPosition position = new OmegaBoardPosition(
+                "1rb1r1k1/p1p1qppp/2pb4/8/2P3n1/4P1P1/PB2BP1P/R1QN1RK1 b - - 0 1");
+        assertEquals("Nxh2", OmegaMove.toSAN(position, OmegaMove.fromNotation(position, "g4h2")));
+        assertEquals("Bxg3", OmegaMove.toSAN(position, OmegaMove.fromNotation(position, "d6g3")));
+        assertEquals("Qxe3", OmegaMove.toSAN(position, OmegaMove.fromNotation(position, "e7e3")));
+
+        // castling, promotion and check
+        position = new OmegaBoardPosition("r3k2r/1P6/8/8/8/8/8/R3K2R w KQkq - 0 1");
+        assertEquals("O-O", OmegaMove.toSAN(position, OmegaMove.fromNotation(position, "e1g1")));
+        assertEquals("O-O-O", OmegaMove.toSAN(position, OmegaMove.fromNotation(position, "e1c1")));
+        assertEquals("bxa8=Q+", OmegaMove.toSAN(position, OmegaMove.fromNotation(position, "b7a8q")));
+        assertEquals("b8=N", OmegaMove.toSAN(position, OmegaMove.fromNotation(position, "b7b8n")));
+
+        // ambiguous
+        position = new OmegaBoardPosition("4k3/8/8/8/8/8/8/N1N1K3 w - - 0 1");
+        assertEquals("Nab3", OmegaMove.toSAN(position, OmegaMove.fromNotation(position, "a1b3")));
+        position = new OmegaBoardPosition("4k3/8/8/8/R7/8/8/R3K3 w - - 0 1");
+        assertEquals("R1a2", OmegaMove.toSAN(position, OmegaMove.fromNotation(position, "a1a2")));
+
+        // mate
+        position = new OmegaBoardPosition("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+        assertEquals("Ra8#", OmegaMove.toSAN(position, OmegaMove.fromNotation(position, "a1a8")));
+
+        // all SAN moves are resolved to the same move again
+        position = new OmegaBoardPosition();
+        final OmegaMoveList moves = new OmegaMoveGenerator().getLegalMoves(position, false);
+        for (int i = 0; i < moves.size(); i++) {
+            assertEquals(moves.get(i), OmegaMove.fromNotation(position, OmegaMove.toSAN(position, moves.get(i))));
+        }
+        assertEquals(new OmegaBoardPosition().toFENString(), position.toFENString());
+    }
+
 }
@@ -0,0 +1,135 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.player.computer.Omega;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import fko.chessly.openingbook.OpeningBookImpl.Mode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Frank
+ */
+public class TestOmegaOpeningBook {
+
+    @Test
+    public void testWriteAndLookup() throws IOException {
+        final OmegaBoardPosition start = new OmegaBoardPosition();
+        final int e4 = OmegaMove.fromNotation(start, "e4");
+        final int d4 = OmegaMove.fromNotation(start, "d4");
+        final OmegaBoardPosition afterE4 = new OmegaBoardPosition(start);
+        afterE4.makeMove(e4);
+        final int e5 = OmegaMove.fromNotation(afterE4, "e5");
+
+        final long[] keys = { start.getZobristKey(), afterE4.getZobristKey(), start.getZobristKey(),
+                start.getZobristKey(), start.getZobristKey() };
+        final int[] moves = { d4, e5, e4, e4, e5 };
+        final int[] counts = { 5, 3, 10, 2, 7 };
+
+        final Path file = Files.createTempDirectory("book").resolve("test" + OmegaOpeningBook.FILE_EXTENSION);
+        OmegaOpeningBook.write(file, keys, moves, counts, keys.length);
+        final OmegaOpeningBook book = OmegaOpeningBook.open(file);
+        assertSame(book, OmegaOpeningBook.open(file));
+
+        // equal moves are merged
+        assertEquals(4, book.getNumberOfRecords());
+        assertEquals(12, book.getCount(start, e4));
+        assertEquals(5, book.getCount(start, d4));
+        assertEquals(3, book.getCount(afterE4, e5));
+
+        // most played first and moves which are not legal in the position are ignored
+        final OmegaMoveList startMoves = book.getMoves(start);
+        assertEquals(2, startMoves.size());
+        assertEquals(e4, startMoves.get(0));
+        assertEquals(d4, startMoves.get(1));
+        assertEquals(e5, book.getBookMove(afterE4));
+
+        // weighted selection
+        final Random random = new Random(42);
+        int e4Selected = 0;
+        for (int i = 0; i < 1000; i++) {
+            final int move = book.getBookMove(start, random);
+            assertTrue(move == e4 || move == d4);
+            if (move == e4) e4Selected++;
+        }
+        assertTrue(e4Selected > 600 && e4Selected < 800, "e4 selected " + e4Selected);
+
+        final OmegaBoardPosition unknown = new OmegaBoardPosition(start);
+        unknown.makeMove(d4);
+        assertEquals(OmegaMove.NOMOVE, book.getBookMove(unknown));
+        assertEquals(0, book.getMoves(unknown).size());
+    }
+
+    @Test
+    public void testInvalidFile() throws IOException {
+        final Path file = Files.createTempFile("book", OmegaOpeningBook.FILE_EXTENSION);
+        Files.write(file, new byte[64]);
+        assertThrows(IOException.class, () -> OmegaOpeningBook.open(file));
+    }
+
+    @Test
+    public void testForBookFile() throws IOException {
+        final OmegaOpeningBook book = OmegaOpeningBook.forBookFile("/book/pgn_test.pgn", Mode.PGN);
+        assertTrue(Files.exists(book.getFile()));
+        assertTrue(book.getNumberOfRecords() > 0);
+
+        final OmegaBoardPosition position = new OmegaBoardPosition();
+        int plies = 0;
+        int move;
+        while ((move = book.getBookMove(position)) != OmegaMove.NOMOVE) {
+            position.makeMove(move);
+            plies++;
+        }
+        assertTrue(plies >= 2);
+    }
+
+    @Test
+    public void testForBookFileRebuildsInvalidFile() throws IOException {
+        final Path file = Files.createTempDirectory("book").resolve("test" + OmegaOpeningBook.FILE_EXTENSION);
+        // a book which has not been written completely
+        Files.write(file, new byte[OmegaOpeningBook.RECORD_SIZE * 3 + 5]);
+
+        final OmegaOpeningBook book = OmegaOpeningBook.forBookFile("/book/book_smalltest.txt", Mode.SIMPLE, file);
+        assertTrue(book.getNumberOfRecords() > 0);
+        assertEquals((book.getNumberOfRecords() + 1L) * OmegaOpeningBook.RECORD_SIZE, Files.size(file));
+        assertTrue(book.getMoves(new OmegaBoardPosition()).size() > 0);
+
+        // the temporary file has been moved
+        final String prefix = file.getFileName().toString();
+        try (Stream<Path> files = Files.list(file.getParent())) {
+            assertFalse(files.anyMatch(f -> f.getFileName().toString().startsWith(prefix) && !f.equals(file)));
+        }
+    }
+}
@@ -31,6 +31,7 @@ package fko.chessly.player.computer.Omega;
 import jdk.nashorn.internal.ir.annotations.Ignore;
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -112,6 +113,72 @@ public class TestOmegaPERFT {
         System.out.println("==============================");
     }
 
+    /**
+     * Parallel Perft Test - must produce the same counters as the sequential perft
+     * https://chessprogramming.wikispaces.com/Perft+Results
+     */
+    @Test
+    public void testKiwipetePerftParallel() {
+
+        System.out.println("Kiwipete parallel PERFT Test");
+        System.out.println("==============================");
+
+        long[][] results = {
+                //N  Nodes      Captures EP     Checks  Mates
+                { 0, 0,         0,       0,     0,      0},
+                { 1, 48,        8,       0,     0,      0},
+                { 2, 2039,      351,     1,     3,      0},
+                { 3, 97862,     17102,   45,    993,    1},
+                { 4, 4085603,   757163,  1929,  25523,  43},
+        };
+
+        int maxDepth = 4;
+
+        OmegaPERFT perftTest = new OmegaPERFT("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -");
+
+        for (int i=1;i<=maxDepth;i++) {
+            perftTest.testPerftParallel(i);
+
+            assertTrue(perftTest.get_nodes() == results[i][1]);
+            assertTrue(perftTest.get_captureCounter() == results[i][2]);
+            assertTrue(perftTest.get_enpassantCounter() == results[i][3]);
+            assertTrue(perftTest.get_checkCounter() == results[i][4]);
+            assertTrue(perftTest.get_checkMateCounter() == results[i][5]);
+        }
+        System.out.println("==============================");
+    }
+
+    /**
+     * Hashed Perft Test - only leaf nodes are counted
+     * https://chessprogramming.wikispaces.com/Perft+Results
+     */
+    @Test
+    public void testHashedPerft() {
+
+        System.out.println("Hashed PERFT Test");
+        System.out.println("==============================");
+
+        long[] standard = { 1, 20, 400, 8902, 197281, 4865609 };
+        long[] kiwipete = { 1, 48, 2039, 97862, 4085603 };
+
+        OmegaPERFT perftTest = new OmegaPERFT();
+        for (int i=1;i<standard.length;i++) {
+            assertEquals(standard[i], perftTest.perft(i));
+            assertEquals(standard[i], perftTest.get_nodes());
+        }
+
+        perftTest = new OmegaPERFT("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -");
+        for (int i=1;i<kiwipete.length;i++) {
+            assertEquals(kiwipete[i], perftTest.perft(i));
+        }
+
+        perftTest = new OmegaPERFT("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -");
+        for (int i=1;i<kiwipete.length;i++) {
+            assertEquals(kiwipete[i], perftTest.perftParallel(i));
+        }
+        System.out.println("==============================");
+    }
+
     /**
      * Perft Test
      * http://www.albert.nu/programs/sharper/perft/
@@ -0,0 +1,124 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.player.computer.Omega;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Test;
+
+import fko.chessly.openingbook.PGN_StreamReader;
+import fko.chessly.player.computer.Omega.OmegaPGNAnalyzer.AnalysedGame;
+import fko.chessly.player.computer.Omega.OmegaPGNAnalyzer.AnalysedMove;
+import fko.chessly.player.computer.Omega.OmegaPGNAnalyzer.AnalysisStatistics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Frank
+ */
+public class TestOmegaPGNAnalyzer {
+
+    private static final String SCHOLARS_MATE =
+            "[Event \"Test\"]\n"
+            + "[White \"A\"]\n"
+            + "[Black \"B\"]\n"
+            + "[Result \"1-0\"]\n"
+            + "\n"
+            + "1. e4 e5 2. Qh5 Nc6 3. Bc4 {comment} Nf6 4. Qxf7# 1-0\n"
+            + "\n";
+
+    private static final String FOOLS_MATE =
+            "[Event \"Test 2\"]\n"
+            + "\n"
+            + "1. f3 e5 2. g4 Qh4# 0-1\n";
+
+    @Test
+    public void testAnalyseGame() {
+        final OmegaPGNAnalyzer analyzer = new OmegaPGNAnalyzer(0, 20000, 1, 200);
+        final AnalysedGame game = analyzer.analyseGame(new PGN_StreamReader(new StringReader(SCHOLARS_MATE)).next());
+
+        assertNull(game.error);
+        assertEquals("1-0", game.result);
+        assertEquals("A", game.tags.get("White"));
+        assertEquals(7, game.moves.size());
+        // the last position is mate and not searched
+        assertEquals(7, game.positions);
+
+        final AnalysedMove blunder = game.moves.get(5);
+        assertEquals("Nf6", blunder.san);
+        assertFalse(blunder.white);
+        assertEquals(3, blunder.moveNumber);
+        assertEquals(OmegaPGNAnalyzer.NAG_BLUNDER, blunder.nag);
+        assertNotNull(blunder.bestMove);
+
+        final AnalysedMove mate = game.moves.get(6);
+        assertEquals("Qxf7#", mate.san);
+        assertEquals(0, mate.depth);
+        assertEquals(OmegaEvaluation.Value.CHECKMATE, mate.value);
+        assertEquals(0, mate.nag);
+
+        final String pgn = OmegaPGNAnalyzer.toPGN(game);
+        assertTrue(pgn.startsWith("[Event \"Test\"]"));
+        assertTrue(pgn.contains("[Annotator \"Chessly Omega\"]"));
+        assertTrue(pgn.contains("3... Nf6 $4 {"));
+        assertTrue(pgn.contains("4. Qxf7# 1-0"));
+    }
+
+    @Test
+    public void testRun() throws IOException {
+        final OmegaPGNAnalyzer analyzer = new OmegaPGNAnalyzer(0, 5000, 2, 200);
+        final StringWriter out = new StringWriter();
+        final AnalysisStatistics statistics = analyzer.run(
+                new BufferedReader(new StringReader(SCHOLARS_MATE + FOOLS_MATE + "\n[Event \"Illegal\"]\n\n1. e5 *\n")), out);
+
+        assertEquals(3, statistics.games);
+        // the illegal game searches the start position only
+        assertEquals(7 + 4 + 1, statistics.positions);
+        assertTrue(statistics.nodes > 0);
+        assertTrue(statistics.blunders >= 2);
+
+        // games are written in the order of the input
+        final String pgn = out.toString();
+        assertTrue(pgn.indexOf("[Event \"Test\"]") < pgn.indexOf("[Event \"Test 2\"]"));
+        assertTrue(pgn.indexOf("[Event \"Test 2\"]") < pgn.indexOf("[Event \"Illegal\"]"));
+        assertTrue(pgn.contains("2... Qh4# 0-1"));
+        assertTrue(pgn.contains("{could not resolve move e5} *"));
+    }
+
+    @Test
+    public void testFormatValue() {
+        assertEquals("+0.35", OmegaPGNAnalyzer.formatValue(35));
+        assertEquals("-1.20", OmegaPGNAnalyzer.formatValue(-120));
+        assertEquals("+0.00", OmegaPGNAnalyzer.formatValue(0));
+        assertEquals("#3", OmegaPGNAnalyzer.formatValue(OmegaEvaluation.Value.CHECKMATE - 5));
+        assertEquals("#-2", OmegaPGNAnalyzer.formatValue(-OmegaEvaluation.Value.CHECKMATE + 4));
+    }
+}
@@ -40,6 +40,7 @@ import fko.chessly.player.PlayerType;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * @author Frank
@@ -187,6 +188,29 @@ public class TestOmegaSearch {
 
     }
 
+    @Test
+    public void testSearchMoves() {
+        OmegaEngine omegaEngine = new OmegaEngine();
+        omegaEngine._CONFIGURATION.VERBOSE_STATS = false;
+        OmegaSearch omegaSearch = new OmegaSearch(omegaEngine);
+
+        // Qxf7# is not searched
+        OmegaBoardPosition position = new OmegaBoardPosition(
+                "r1bqkb1r/pppp1ppp/2n2n2/4p2Q/2B1P3/8/PPPP1PPP/RNB1K1NR w KQkq - 4 4");
+        int move = OmegaMove.fromNotation(position, "Qxe5+");
+        omegaSearch.configureIterativeDepth(3);
+        omegaSearch.configureSearchMoves(move);
+        omegaSearch.startSearch(position);
+        omegaSearch.waitWhileSearching();
+        assertEquals(move, omegaEngine.getSearchResult().bestMove);
+
+        // the restriction is reset after the search
+        omegaSearch.configureIterativeDepth(3);
+        omegaSearch.startSearch(position);
+        omegaSearch.waitWhileSearching();
+        assertEquals("h5f7", OmegaMove.toSimpleString(omegaEngine.getSearchResult().bestMove));
+    }
+
     @Test
     public void testSearch() {
 
@@ -221,6 +245,36 @@ public class TestOmegaSearch {
     }
 
 
+    /**
+     * A warmed up search should not allocate memory in the tree search.
+     */
+    @Test
+    public void testSteadyStateAllocation() {
+
+        OmegaSearch _omegaSearch = new OmegaSearch(new OmegaEngine());
+        OmegaBoardPosition _omegaPosition = new OmegaBoardPosition(
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -");
+
+        // warm up
+        _omegaSearch.configureMaxDepth(4);
+        _omegaSearch.startSearch(_omegaPosition);
+        _omegaSearch.waitWhileSearching();
+
+        // measure
+        _omegaSearch.clearCaches();
+        _omegaSearch.configureMaxDepth(5);
+        _omegaSearch.startSearch(_omegaPosition);
+        _omegaSearch.waitWhileSearching();
+
+        // JVM does not support measuring allocations
+        if (_omegaSearch.getAllocatedBytes() < 0) return;
+
+        System.out.format("Nodes: %,d Bytes allocated: %,d Bytes/node: %.4f%n",
+                _omegaSearch.getNodesVisited(), _omegaSearch.getAllocatedBytes(),
+                _omegaSearch.getAllocatedBytesPerNode());
+        assertTrue(_omegaSearch.getAllocatedBytesPerNode() < 1.0);
+    }
+
     @Test
     public void testMulitpleStartAndStopSearch() {
 
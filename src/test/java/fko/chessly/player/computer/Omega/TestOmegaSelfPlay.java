@@ -0,0 +1,143 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.player.computer.Omega;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the self play generator and the packed training records
+ */
+public class TestOmegaSelfPlay {
+
+    private static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    /**
+     * Positions must survive the packing unchanged.
+     */
+    @Test
+    public void testRecordRoundTrip() {
+        List<String> fens = Arrays.asList(
+                START_FEN,
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R b Kq - 3 17",
+                "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3",
+                "8/8/8/8/8/8/k7/7K w - - 99 250");
+        ByteBuffer buffer = ByteBuffer.allocate(fens.size() * OmegaTrainingRecord.RECORD_SIZE);
+        int score = -40000;
+        for (String fen : fens) {
+            OmegaTrainingRecord.write(new OmegaBoardPosition(fen), score, OmegaTrainingRecord.RESULT_WHITE_WINS, buffer);
+            score += 20000;
+        }
+        assertFalse(buffer.hasRemaining());
+        buffer.flip();
+        score = -40000;
+        for (String fen : fens) {
+            OmegaTrainingRecord record = OmegaTrainingRecord.read(buffer);
+            assertEquals(fen, record.fen);
+            assertEquals(new OmegaBoardPosition(fen).toFENString(), new OmegaBoardPosition(record.fen).toFENString());
+            // scores are clamped to a short
+            assertEquals(Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, score)), record.score);
+            assertEquals(1.0, record.getWhitePoints());
+            score += 20000;
+        }
+    }
+
+    /**
+     * A game must only write quiet positions with the same result.
+     */
+    @Test
+    public void testPlayGame() throws IOException {
+        Path dir = Files.createTempDirectory("selfplay");
+        OmegaSelfPlay selfPlay = new OmegaSelfPlay(500, 1, 2, Collections.singletonList(START_FEN), dir, 100, 1);
+        ByteBuffer records = selfPlay.playGame(new Random(1));
+        assertTrue(records.remaining() > 0);
+        assertEquals(0, records.remaining() % OmegaTrainingRecord.RECORD_SIZE);
+        int result = -1;
+        while (records.hasRemaining()) {
+            OmegaTrainingRecord record = OmegaTrainingRecord.read(records);
+            if (result < 0) result = record.result;
+            assertEquals(result, record.result);
+            assertFalse(new OmegaBoardPosition(record.fen).hasCheck());
+        }
+        deleteAll(dir);
+    }
+
+    /**
+     * Shards have a fixed number of records and a second run resumes.
+     */
+    @Test
+    public void testShardsAndResume() throws IOException {
+        Path dir = Files.createTempDirectory("selfplay");
+        OmegaSelfPlay selfPlay = new OmegaSelfPlay(200, 2, 4, Collections.singletonList(START_FEN), dir, 20, 1);
+        long written = selfPlay.run(30);
+        assertTrue(written >= 30);
+
+        List<Path> shards = OmegaSelfPlay.listShards(dir);
+        assertTrue(shards.size() >= 2);
+        for (int i = 0; i < shards.size() - 1; i++) {
+            assertEquals(20 * OmegaTrainingRecord.RECORD_SIZE, Files.size(shards.get(i)));
+        }
+
+        // simulate an interrupted write
+        Path last = shards.get(shards.size() - 1);
+        Files.write(last, new byte[] { 1, 2, 3 }, StandardOpenOption.APPEND);
+
+        OmegaSelfPlay resumed = new OmegaSelfPlay(200, 1, 4, Collections.singletonList(START_FEN), dir, 20, 2);
+        assertEquals(written, resumed.getRecords());
+        assertEquals(0, resumed.run(written));
+        long more = resumed.run(written + 10);
+        assertTrue(more >= 10);
+
+        long total = 0;
+        for (Path shard : OmegaSelfPlay.listShards(dir)) {
+            assertEquals(0, Files.size(shard) % OmegaTrainingRecord.RECORD_SIZE);
+            assertTrue(Files.size(shard) <= 20 * OmegaTrainingRecord.RECORD_SIZE);
+            total += Files.size(shard) / OmegaTrainingRecord.RECORD_SIZE;
+        }
+        assertEquals(written + more, total);
+        deleteAll(dir);
+    }
+
+    private static void deleteAll(Path dir) throws IOException {
+        for (Path p : OmegaSelfPlay.listShards(dir)) Files.delete(p);
+        Files.delete(dir);
+    }
+}
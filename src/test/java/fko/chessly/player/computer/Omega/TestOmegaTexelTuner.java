@@ -0,0 +1,133 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.player.computer.Omega;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+import fko.chessly.player.computer.Omega.OmegaEvaluationWeights.Weight;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the Texel tuner and the evaluation weights
+ */
+public class TestOmegaTexelTuner {
+
+    /**
+     * Quiescence leaf must be used - white wins a hanging queen.
+     */
+    @Test
+    public void testQuiescenceLeaf() {
+        OmegaEvaluationWeights weights = new OmegaEvaluationWeights();
+        OmegaTexelTuner.Quiescence quiescence = new OmegaTexelTuner.Quiescence(weights);
+        int[] leaf = quiescence.leafFeatures(new OmegaBoardPosition("4k3/8/8/3q4/8/8/8/3RK3 w - - 0 1"));
+        assertEquals(0, leaf[Weight.QUEEN_VALUE.ordinal()]);
+        assertEquals(1, leaf[Weight.ROOK_VALUE.ordinal()]);
+    }
+
+    /**
+     * Error must be the same with one and many threads and tuning must not increase it.
+     */
+    @Test
+    public void testTune() throws IOException {
+        OmegaEvaluationWeights start = new OmegaEvaluationWeights();
+        // undervalue the knight
+        start.set(Weight.KNIGHT_VALUE, 100);
+
+        // positions where the side with the extra knight wins
+        Path file = Files.createTempFile("texel", ".bin");
+        String[] wins = {
+                "4k3/pppp4/8/8/8/8/PPPP4/1N2K3 w - - 0 1",
+                "4k3/pppp4/8/8/8/8/PPPP4/2N1K3 b - - 0 1",
+                "4k3/pppp4/8/8/8/2N5/PPPP4/4K3 w - - 0 1",
+                "4k3/pppp4/8/8/8/8/PPPP1N2/4K3 b - - 0 1" };
+        ByteBuffer buffer = ByteBuffer.allocate(2 * wins.length * OmegaTrainingRecord.RECORD_SIZE);
+        for (String fen : wins) {
+            OmegaTrainingRecord.write(new OmegaBoardPosition(fen), 0, OmegaTrainingRecord.RESULT_WHITE_WINS, buffer);
+            // equal material is a draw
+            OmegaTrainingRecord.write(new OmegaBoardPosition(fen.replace("N", "")),
+                    0, OmegaTrainingRecord.RESULT_DRAW, buffer);
+        }
+        Files.write(file, buffer.array());
+
+        OmegaTexelTuner single = new OmegaTexelTuner(1);
+        single.load(Collections.singletonList(file), start);
+        OmegaTexelTuner parallel = new OmegaTexelTuner(4);
+        parallel.load(Arrays.asList(file, file), start);
+        assertEquals(8, single.getSize());
+        assertEquals(16, parallel.getSize());
+        assertEquals(single.computeError(start, 1.0), parallel.computeError(start, 1.0), 1e-12);
+
+        double before = single.computeError(start, 1.0);
+        OmegaEvaluationWeights tuned = single.tune(start, 1.0, 500,
+                Arrays.asList(Weight.PAWN_VALUE, Weight.BISHOP_VALUE, Weight.ROOK_VALUE, Weight.QUEEN_VALUE));
+        assertTrue(single.computeError(tuned, 1.0) < before);
+        assertTrue(tuned.get(Weight.KNIGHT_VALUE) > 100);
+        assertEquals(start.get(Weight.PAWN_VALUE), tuned.get(Weight.PAWN_VALUE));
+        Files.delete(file);
+    }
+
+    /**
+     * K must be positive and the sigmoid must be 0.5 at score 0.
+     */
+    @Test
+    public void testFitK() {
+        OmegaEvaluationWeights weights = new OmegaEvaluationWeights();
+        OmegaTexelTuner tuner = new OmegaTexelTuner(2);
+        tuner.add("4k3/pppp4/8/8/8/8/PPPP4/1N2K3 w - - 0 1", OmegaTrainingRecord.RESULT_WHITE_WINS, weights);
+        tuner.add("4k3/pppp4/8/8/8/8/PPPP4/4K3 w - - 0 1", OmegaTrainingRecord.RESULT_DRAW, weights);
+        tuner.add("1n2k3/pppp4/8/8/8/8/PPPP4/4K3 w - - 0 1", OmegaTrainingRecord.RESULT_DRAW, weights);
+        assertEquals(3, tuner.getSize());
+        assertTrue(tuner.fitK(weights) > 0);
+        assertEquals(0.5, OmegaTexelTuner.sigmoid(0, 1.3), 1e-12);
+    }
+
+    /**
+     * Weights must survive storing and loading.
+     */
+    @Test
+    public void testStoreLoadWeights() throws IOException {
+        OmegaEvaluationWeights weights = new OmegaEvaluationWeights();
+        weights.set(Weight.BISHOP_PAIR, 42);
+        StringWriter writer = new StringWriter();
+        weights.store(writer, "test");
+        assertEquals(weights, OmegaEvaluationWeights.load(new StringReader(writer.toString())));
+        // missing weights keep their defaults
+        assertEquals(new OmegaEvaluationWeights(), OmegaEvaluationWeights.load(new StringReader("")));
+    }
+}
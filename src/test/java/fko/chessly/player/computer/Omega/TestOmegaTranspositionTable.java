@@ -55,11 +55,11 @@ public class TestOmegaTranspositionTable {
         OmegaBoardPosition position = new OmegaBoardPosition();
         assertEquals(762600, cache.getMaxEntries());
         assertEquals(32*1024*1024, cache.getSize());
-        cache.put(position, 999, TT_EntryType.EXACT, 5, null);
+        cache.put(position, 999, TT_EntryType.EXACT, 5, OmegaMove.NOMOVE);
         assertEquals(1, cache.getNumberOfEntries());
         assertEquals(999,cache.get(position).value);
         assertEquals(999,cache.get(position).value);
-        cache.put(position, 1111, TT_EntryType.EXACT, 15, null);
+        cache.put(position, 1111, TT_EntryType.EXACT, 15, OmegaMove.NOMOVE);
         assertEquals(1111,cache.get(position).value);
         assertEquals(1, cache.getNumberOfEntries());
         cache.clear();
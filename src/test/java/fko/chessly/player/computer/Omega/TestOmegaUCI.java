@@ -0,0 +1,144 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.player.computer.Omega;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fko.chessly.Chessly;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the headless UCI front-end
+ */
+public class TestOmegaUCI {
+
+    private ByteArrayOutputStream _buffer;
+    private OmegaUCI _uci;
+
+    @BeforeEach
+    public void setUp() {
+        _buffer = new ByteArrayOutputStream();
+        _uci = new OmegaUCI(new PrintStream(_buffer, true));
+    }
+
+    private List<String> output() {
+        return Arrays.asList(new String(_buffer.toByteArray(), StandardCharsets.UTF_8).split("\\R"));
+    }
+
+    private String lastLine() {
+        List<String> lines = output();
+        return lines.get(lines.size() - 1);
+    }
+
+    /**
+     * uci and isready handshake
+     */
+    @Test
+    public void testHandshake() {
+        assertTrue(_uci.handleCommand("uci"));
+        assertTrue(output().get(0).startsWith("id name "));
+        assertTrue(output().contains("option name USE_NMP type check default true"));
+        assertEquals("uciok", lastLine());
+        _uci.handleCommand("isready");
+        assertEquals("readyok", lastLine());
+        assertFalse(_uci.handleCommand("quit"));
+    }
+
+    /**
+     * Changed flags are reported with their new value
+     */
+    @Test
+    public void testSetOption() {
+        _uci.handleCommand("setoption name use_nmp value false");
+        _uci.handleCommand("setoption name Hash value 4");
+        _uci.handleCommand("uci");
+        assertTrue(output().contains("option name USE_NMP type check default false"));
+        assertTrue(output().contains("option name Hash type spin default 4 min 1 max 1024"));
+        _uci.handleCommand("setoption name Hash value 0");
+        assertTrue(lastLine().startsWith("info string invalid value"));
+
+        // the hash size is only used by this session
+        final String nodesCacheSize = Chessly.getProperties().getProperty("engine.nodesCacheSize");
+        _uci.handleCommand("isready");
+        assertEquals(nodesCacheSize, Chessly.getProperties().getProperty("engine.nodesCacheSize"));
+    }
+
+    /**
+     * Searches to a fixed depth after moves and checks the best move is legal
+     */
+    @Test
+    public void testGoDepth() {
+        _uci.handleCommand("position startpos moves e2e4 e7e5 g1f3");
+        _uci.handleCommand("go depth 3");
+        _uci.waitWhileSearching();
+
+        String bestmove = lastLine();
+        assertTrue(bestmove.startsWith("bestmove "), bestmove);
+        OmegaBoardPosition position = new OmegaBoardPosition(
+                "rnbqkbnr/pppp1ppp/8/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R b KQkq - 1 2");
+        assertNotEquals(OmegaMove.NOMOVE,
+                OmegaUCI.findMove(new OmegaMoveGenerator(), position, bestmove.split(" ")[1]));
+        assertTrue(output().get(output().size() - 2).startsWith("info depth 3 score cp "));
+    }
+
+    /**
+     * Infinite search must not send a bestmove before stop - even if it found a mate
+     */
+    @Test
+    public void testInfiniteHoldsBestMove() throws InterruptedException {
+        _uci.handleCommand("position fen 6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+        _uci.handleCommand("go infinite");
+        Thread.sleep(200);
+        assertFalse(output().stream().anyMatch(l -> l.startsWith("bestmove")));
+        _uci.handleCommand("stop");
+        assertEquals("bestmove a1a8", lastLine());
+    }
+
+    /**
+     * Mate and centipawn scores
+     */
+    @Test
+    public void testScoreToUCI() {
+        assertEquals("cp 35", OmegaUCI.scoreToUCI(35));
+        assertEquals("cp -120", OmegaUCI.scoreToUCI(-120));
+        assertEquals("mate 1", OmegaUCI.scoreToUCI(OmegaEvaluation.Value.CHECKMATE - 1));
+        assertEquals("mate 2", OmegaUCI.scoreToUCI(OmegaEvaluation.Value.CHECKMATE - 3));
+        assertEquals("mate -1", OmegaUCI.scoreToUCI(-OmegaEvaluation.Value.CHECKMATE + 2));
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Frank
+ *
+ */
+public class TestMatchStatistics {
+
+    @Test
+    public void testEvenMatch() {
+        MatchStatistics stats = new MatchStatistics(0, 5, 0.05, 0.05);
+        assertEquals(0.5, stats.getScore());
+        assertEquals(0.5, stats.getLOS());
+        assertEquals(0, stats.getLLR());
+        assertEquals(MatchStatistics.SPRTResult.CONTINUE, stats.getSPRTResult());
+
+        for (int i = 0; i < 10; i++) {
+            stats.add(1);
+            stats.add(0.5);
+            stats.add(0);
+        }
+        assertEquals(30, stats.getGames());
+        assertEquals(15, stats.getPoints());
+        assertEquals(0, stats.getElo(), 1e-9);
+        assertEquals(0.5, stats.getLOS(), 1e-6);
+        assertTrue(stats.getEloError() > 0);
+        // score 0.5 is closer to H0 than to H1
+        assertTrue(stats.getLLR() < 0);
+    }
+
+    @Test
+    public void testElo() {
+        assertEquals(0, MatchStatistics.scoreToElo(0.5), 1e-9);
+        assertEquals(100, MatchStatistics.scoreToElo(MatchStatistics.eloToScore(100)), 1e-9);
+        assertEquals(-190.8, MatchStatistics.scoreToElo(0.25), 0.1);
+
+        MatchStatistics stats = new MatchStatistics(0, 5, 0.05, 0.05);
+        for (int i = 0; i < 30; i++) stats.add(1);
+        for (int i = 0; i < 40; i++) stats.add(0.5);
+        for (int i = 0; i < 10; i++) stats.add(0);
+        // 50/80 = 62.5%
+        assertEquals(88.7, stats.getElo(), 0.1);
+        assertTrue(stats.getLOS() > 0.99);
+        assertTrue(stats.getEloError() > 0 && stats.getEloError() < stats.getElo());
+    }
+
+    @Test
+    public void testErf() {
+        assertEquals(0, MatchStatistics.erf(0), 1e-7);
+        assertEquals(0.8427008, MatchStatistics.erf(1), 1e-6);
+        assertEquals(-0.8427008, MatchStatistics.erf(-1), 1e-6);
+    }
+
+    @Test
+    public void testSPRT() {
+        MatchStatistics better = new MatchStatistics(0, 10, 0.05, 0.05);
+        MatchStatistics equal = new MatchStatistics(0, 10, 0.05, 0.05);
+        int games = 0;
+        while (better.getSPRTResult() == MatchStatistics.SPRTResult.CONTINUE && games++ < 100000) {
+            // 55% score
+            better.add(games % 10 < 3 ? 1 : games % 10 < 8 ? 0.5 : 0);
+            better.add(games % 20 == 0 ? 1 : 0.5);
+        }
+        assertEquals(MatchStatistics.SPRTResult.H1, better.getSPRTResult());
+
+        games = 0;
+        while (equal.getSPRTResult() == MatchStatistics.SPRTResult.CONTINUE && games++ < 100000) {
+            equal.add(games % 3 == 0 ? 1 : games % 3 == 1 ? 0.5 : 0);
+        }
+        assertEquals(MatchStatistics.SPRTResult.H0, equal.getSPRTResult());
+        assertTrue(equal.getLLR() <= equal.getLowerBound());
+    }
+
+    @Test
+    public void testIllegalArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new MatchStatistics(5, 0, 0.05, 0.05));
+        assertThrows(IllegalArgumentException.class, () -> new MatchStatistics(0, 5, 0, 0.05));
+        assertThrows(IllegalArgumentException.class, () -> new MatchStatistics(0, 5, 0.05, 1));
+        MatchStatistics stats = new MatchStatistics(0, 5, 0.05, 0.05);
+        assertThrows(IllegalArgumentException.class, () -> stats.add(0.7));
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * The MIT License (MIT)
+ *
+ * "Chessly by Frank Kopp"
+ *
+ * mail-to:frank@familie-kopp.de
+ *
+ * Copyright (c) 2016 Frank Kopp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in the
+ * Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the
+ * following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package fko.chessly.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Frank
+ */
+public class TestStatusController {
+
+    /**
+     * Checkpoint must return immediately when not in the waiting state
+     */
+    @Test
+    public void testCheckpointFastPath() {
+        StatusController sc = new StatusController(1);
+        assertFalse(sc.checkpoint(2));
+        // should not block
+        sc.waitWhileInState(2);
+        assertEquals(1, sc.getStatus());
+    }
+
+    /**
+     * Checkpoint must block while in the waiting state and return after a state change
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    public void testCheckpointWaits() throws InterruptedException {
+        StatusController sc = new StatusController(2);
+        Thread t = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ignore) {
+                // ignore
+            }
+            sc.setStatus(1);
+        });
+        t.start();
+        assertTrue(sc.checkpoint(2));
+        assertEquals(1, sc.getStatus());
+        t.join();
+    }
+}